@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.UserTransaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit entries of committed transactions on a dedicated thread (one per <code>EntityManagerFactory</code>).
+ * Entries are kept in a bounded queue and written in batches, each batch in its own transaction.
+ * <br/>
+ * Supported system properties:
+ * <ul>
+ *  <li>org.jbpm.audit.jpa.batch.queue.size - capacity of the queue, default 10000</li>
+ *  <li>org.jbpm.audit.jpa.batch.size - max number of entries written in single transaction, default 500</li>
+ *  <li>org.jbpm.audit.jpa.batch.overflow - what to do when the queue is full: <code>block</code> (default) waits 
+ *  for free space up to org.jbpm.audit.jpa.batch.block.timeout ms (default 5000) for all entries of a transaction 
+ *  and then drops the ones that did not fit, <code>drop</code> drops entries right away</li>
+ * </ul>
+ * Entries are copied when enqueued so the engine can keep working with its own instances. 
+ * Dropped entries and batches that failed to be written are logged and counted, they are not retried.
+ * Writers are stopped (writing entries that are still queued) when runtime manager using given entity manager 
+ * factory is closed, on JVM shutdown or explicitly with {@link #shutdownAll()}.
+ */
+public class AsyncAuditLogWriter implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncAuditLogWriter.class);
+
+    private static final ConcurrentMap<EntityManagerFactory, AsyncAuditLogWriter> writers = new ConcurrentHashMap<EntityManagerFactory, AsyncAuditLogWriter>();
+
+    private static Thread shutdownHook;
+
+    private static final int PERSIST = 0;
+    private static final int MERGE = 1;
+    private static final int COMPLETE = 2;
+
+    private final int batchSize = Integer.parseInt(System.getProperty("org.jbpm.audit.jpa.batch.size", "500"));
+    private final boolean dropOnOverflow = "drop".equalsIgnoreCase(System.getProperty("org.jbpm.audit.jpa.batch.overflow", "block"));
+    private final long blockTimeout = Long.parseLong(System.getProperty("org.jbpm.audit.jpa.batch.block.timeout", "5000"));
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>(
+            Integer.parseInt(System.getProperty("org.jbpm.audit.jpa.batch.queue.size", "10000")));
+
+    private final EntityManagerFactory emf;
+    private final boolean jta;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private volatile boolean active = true;
+    private Thread thread;
+
+    AsyncAuditLogWriter(EntityManagerFactory emf, boolean jta) {
+        this.emf = emf;
+        this.jta = jta;
+    }
+
+    /**
+     * Returns writer for given entity manager factory, starting it if needed.
+     */
+    public static AsyncAuditLogWriter get(EntityManagerFactory emf, boolean jta) {
+        if (emf == null) {
+            throw new IllegalArgumentException("EntityManagerFactory is required for asynchronous audit log writer");
+        }
+        AsyncAuditLogWriter writer = writers.get(emf);
+        if (writer == null) {
+            AsyncAuditLogWriter newWriter = new AsyncAuditLogWriter(emf, jta);
+            writer = writers.putIfAbsent(emf, newWriter);
+            if (writer == null) {
+                writer = newWriter;
+                writer.start();
+                registerShutdownHook();
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Stops writer of given entity manager factory if there is one, entries that are still queued are written 
+     * before this method returns.
+     */
+    public static void shutdown(EntityManagerFactory emf) {
+        if (emf == null) {
+            return;
+        }
+        AsyncAuditLogWriter writer = writers.remove(emf);
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Stops all writers, entries that are still queued are written before this method returns.
+     */
+    public static void shutdownAll() {
+        for (AsyncAuditLogWriter writer : writers.values()) {
+            writer.shutdown();
+        }
+        writers.clear();
+    }
+
+    private static synchronized void registerShutdownHook() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    shutdownAll();
+                }
+            }, "jbpm-audit-writer-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    protected void start() {
+        thread = new Thread(this, "jbpm-audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void shutdown() {
+        active = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(blockTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // write whatever is left
+        List<Entry> remaining = new ArrayList<Entry>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            write(remaining);
+            remaining.clear();
+        }
+    }
+
+    public void enqueue(List<Object> entities, List<Object> updates, List<ProcessInstanceLog> completions) {
+        // single deadline for all entries so committing thread is never blocked longer than the timeout
+        long deadline = System.currentTimeMillis() + blockTimeout;
+        for (Object entity : entities) {
+            offer(PERSIST, entity, deadline);
+        }
+        for (Object update : updates) {
+            offer(MERGE, update, deadline);
+        }
+        for (ProcessInstanceLog completion : completions) {
+            offer(COMPLETE, completion, deadline);
+        }
+    }
+
+    protected void offer(int type, Object data, long deadline) {
+        Object copy;
+        try {
+            copy = copy(data);
+        } catch (IllegalStateException e) {
+            long count = dropped.incrementAndGet();
+            logger.error("Unable to copy audit entry, dropping {} (dropped so far {})", data, count, e);
+            return;
+        }
+        offer(new Entry(type, copy), deadline);
+    }
+
+    protected void offer(Entry entry, long deadline) {
+        boolean added = queue.offer(entry);
+        if (!added && !dropOnOverflow) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    added = queue.offer(entry, wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (!added) {
+            long count = dropped.incrementAndGet();
+            logger.error("Audit log queue is full, dropping {} (dropped so far {})", entry.data, count);
+        }
+    }
+
+    /*
+     * Entries are still referenced (and modified) by the engine, e.g. process instance log kept in process 
+     * instance meta data, so writer thread works with its own deep copy
+     */
+    static Object copy(Object entity) {
+        if (!(entity instanceof Serializable)) {
+            return entity;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(entity);
+            out.close();
+            final ClassLoader classLoader = entity.getClass().getClassLoader();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    try {
+                        return Class.forName(desc.getName(), false, classLoader);
+                    } catch (ClassNotFoundException e) {
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            return in.readObject();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to copy audit entry " + entity, e);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Entry> batch = new ArrayList<Entry>(batchSize);
+        while (active) {
+            try {
+                Entry first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!active) {
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    protected void write(List<Entry> batch) {
+        EntityManager em = emf.createEntityManager();
+        UserTransaction ut = null;
+        try {
+            if (jta) {
+                ut = JPAWorkingMemoryDbLogger.findUserTransaction();
+                ut.begin();
+                em.joinTransaction();
+            } else {
+                em.getTransaction().begin();
+            }
+            for (Entry entry : batch) {
+                switch (entry.type) {
+                    case PERSIST:
+                        em.persist(entry.data);
+                        break;
+                    case MERGE:
+                        em.merge(entry.data);
+                        break;
+                    case COMPLETE:
+                        ProcessInstanceLog completion = (ProcessInstanceLog) entry.data;
+                        List<ProcessInstanceLog> result = em.createQuery(
+                                "from ProcessInstanceLog as log where log.processInstanceId = :piId and log.end is null", ProcessInstanceLog.class)
+                                .setParameter("piId", completion.getProcessInstanceId()).getResultList();
+                        if (!result.isEmpty()) {
+                            complete(result.get(result.size() - 1), completion);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            em.flush();
+            if (jta) {
+                ut.commit();
+            } else {
+                em.getTransaction().commit();
+            }
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            dropped.addAndGet(batch.size());
+            logger.error("Unable to write batch of {} audit entries, they are lost", batch.size(), e);
+            try {
+                if (jta && ut != null) {
+                    ut.rollback();
+                } else if (!jta && em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            } catch (Exception re) {
+                logger.debug("Unable to rollback audit log transaction", re);
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Applies completion data captured when process instance completed onto its active log entry.
+     */
+    static ProcessInstanceLog complete(ProcessInstanceLog log, ProcessInstanceLog completion) {
+        log.setOutcome(completion.getOutcome());
+        log.setStatus(completion.getStatus());
+        log.setEnd(completion.getEnd());
+        log.setDuration(completion.getEnd().getTime() - log.getStart().getTime());
+        log.setProcessInstanceDescription(completion.getProcessInstanceDescription());
+        return log;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    protected static class Entry {
+        private final int type;
+        private final Object data;
+
+        Entry(int type, Object data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+}
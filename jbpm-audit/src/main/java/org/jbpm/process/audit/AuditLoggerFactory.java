@@ -58,6 +58,7 @@ public class AuditLoggerFactory {
      * <li>jbpm.audit.jms.queue - JMS queue instance - type javax.jms.Queue</li>
      * <li>jbpm.audit.jms.connection.factory.jndi - JNDI name of the connection factory to look up - type String</li>
      * <li>jbpm.audit.jms.queue.jndi - JNDI name of the queue to look up - type String</li>
+     * <li>jbpm.audit.jms.batch - determines if events of a transaction are sent as single batch message - default false - type Boolean</li>
      * </ul>
      * @param type - type of the AuditLoger to create (JPA or JMS)
      * @param ksession - ksession that the logger will be attached to
@@ -77,6 +78,9 @@ public class AuditLoggerFactory {
                 }
                 
                 logger = new AsyncAuditLogProducer(ksession, transacted);
+                if (properties.containsKey("jbpm.audit.jms.batch")) {
+                    ((AsyncAuditLogProducer) logger).setBatched(Boolean.parseBoolean(properties.get("jbpm.audit.jms.batch").toString()));
+                }
                 // set connection factory and queue if given as property
                 if (properties.containsKey("jbpm.audit.jms.connection.factory")) {
                     ConnectionFactory connFactory = (ConnectionFactory) properties.get("jbpm.audit.jms.connection.factory"); 
@@ -122,14 +126,30 @@ public class AuditLoggerFactory {
      * Creates new instance of JPA audit logger with given EntityManagerFactory
      * NOTE: this will build the logger but it is not registered directly on a session: once received, 
      * it will need to be registered as an event listener
+     * When <code>org.jbpm.audit.jpa.batch</code> system property is set to true, audit entries are
+     * buffered per transaction - see {@link BatchingJPAAuditLogger}
      * @param emf EntityManagerFactory used to provide JPA entity manager instances on demand.
      * @param env Environment instance to be used
      * @return new instance of JPA audit logger
      */
     public static AbstractAuditLogger newJPAInstance(Environment env) {
+        if (Boolean.parseBoolean(System.getProperty("org.jbpm.audit.jpa.batch", "false"))) {
+            return newBatchingJPAInstance(env);
+        }
         return new JPAWorkingMemoryDbLogger(env);
     }
     
+    /**
+     * Creates new instance of JPA audit logger that writes audit entries in batches at the end of transaction
+     * NOTE: this will build the logger but it is not registered directly on a session: once received, 
+     * it will need to be registered as an event listener
+     * @param env Environment instance to be used
+     * @return new instance of batching JPA audit logger
+     */
+    public static AbstractAuditLogger newBatchingJPAInstance(Environment env) {
+        return new BatchingJPAAuditLogger(env);
+    }
+    
     /**
      * Creates new instance of JMS audit logger based on given parameters.
      * Supported parameters are as follows:
@@ -139,6 +159,7 @@ public class AuditLoggerFactory {
      * <li>jbpm.audit.jms.queue - JMS queue instance - type javax.jms.Queue</li>
      * <li>jbpm.audit.jms.connection.factory.jndi - JNDI name of the connection factory to look up - type String</li>
      * <li>jbpm.audit.jms.queue.jndi - JNDI name of the queue to look up - type String</li>
+     * <li>jbpm.audit.jms.batch - determines if events of a transaction are sent as single batch message - default false - type Boolean</li>
      * </ul>
      * NOTE: this will build the logger but it is not registered directly on a session: once received, 
      * it will need to be registered as an event listener
@@ -158,6 +179,9 @@ public class AuditLoggerFactory {
         }
         
         logger.setTransacted(transacted);
+        if (properties.containsKey("jbpm.audit.jms.batch")) {
+            logger.setBatched(Boolean.parseBoolean(properties.get("jbpm.audit.jms.batch").toString()));
+        }
         
         // set connection factory and queue if given as property
         if (properties.containsKey("jbpm.audit.jms.connection.factory")) {
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.drools.persistence.OrderedTransactionSynchronization;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerHelper;
+import org.jbpm.process.instance.impl.ProcessInstanceImpl;
+import org.kie.api.event.KieRuntimeEvent;
+import org.kie.api.event.process.ProcessCompletedEvent;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JPA audit logger that does not persist audit entries as they are produced but buffers them for the
+ * duration of the transaction. Depending on the mode buffered entries are:
+ * <ul>
+ *  <li>synchronous (default) - persisted and flushed at once right before the transaction commits, 
+ *  so the persistence provider can group them into JDBC batches (e.g. <code>hibernate.jdbc.batch_size</code>)</li>
+ *  <li>asynchronous (<code>org.jbpm.audit.jpa.batch.async=true</code>) - handed over to {@link AsyncAuditLogWriter} 
+ *  once the transaction committed and written in batches by its writer thread</li>
+ * </ul>
+ * When there is no active transaction entries are persisted directly as by {@link JPAWorkingMemoryDbLogger}.
+ */
+public class BatchingJPAAuditLogger extends JPAWorkingMemoryDbLogger {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingJPAAuditLogger.class);
+
+    private boolean async = Boolean.parseBoolean(System.getProperty("org.jbpm.audit.jpa.batch.async", "false"));
+
+    private final String bufferKey = "AuditLogBuffer-" + System.identityHashCode(this);
+
+    public BatchingJPAAuditLogger(Environment env) {
+        super(env);
+    }
+
+    public BatchingJPAAuditLogger(EntityManagerFactory emf, Environment env) {
+        super(emf, env);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    @Override
+    protected void persist(Object entity, KieRuntimeEvent event) {
+        AuditLogBuffer buffer = getBuffer(event.getKieRuntime().getEnvironment());
+        if (buffer == null) {
+            super.persist(entity, event);
+            return;
+        }
+        buffer.entities.add(entity);
+    }
+
+    @Override
+    public void afterProcessCompleted(ProcessCompletedEvent event) {
+        ProcessInstanceLog log = (ProcessInstanceLog) ((ProcessInstanceImpl) event.getProcessInstance()).getMetaData().get("ProcessInstanceLog");
+        Environment env = event.getKieRuntime().getEnvironment();
+        AuditLogBuffer buffer = getBuffer(env);
+        if (buffer == null) {
+            super.afterProcessCompleted(event);
+            return;
+        }
+        if (log != null && buffer.entities.contains(log)) {
+            // not yet persisted so simply update it before it is written
+            builder.buildEvent(event, log);
+            return;
+        }
+        if (log != null && !async) {
+            // persisted by this logger in an earlier transaction, in async mode only a copy of it was written
+            // so it is completed by lookup below
+            buffer.updates.add(builder.buildEvent(event, log));
+            return;
+        }
+        // capture completion data now, the active log entry is looked up when buffer is written
+        buffer.completions.add((ProcessInstanceLog) builder.buildEvent(event, null));
+    }
+
+    /*
+     * Returns buffer bound to the active transaction, registering it on first use, or null
+     * when there is no active transaction
+     */
+    protected AuditLogBuffer getBuffer(Environment env) {
+        Object txm = env.get(EnvironmentName.TRANSACTION_MANAGER);
+        if (!(txm instanceof TransactionManager)) {
+            return null;
+        }
+        TransactionManager tm = (TransactionManager) txm;
+        if (tm.getStatus() != TransactionManager.STATUS_ACTIVE) {
+            return null;
+        }
+        AuditLogBuffer buffer = (AuditLogBuffer) tm.getResource(bufferKey);
+        if (buffer == null) {
+            buffer = new AuditLogBuffer(env);
+            tm.putResource(bufferKey, buffer);
+            TransactionManagerHelper.registerTransactionSyncInContainer(tm, new AuditLogSynchronization(buffer));
+        }
+        return buffer;
+    }
+
+    /*
+     * Writes content of the buffer within the transaction that is about to be committed
+     */
+    protected void write(AuditLogBuffer buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        EntityManager em = getEntityManager(buffer.env);
+        Object tx = joinTransaction(em);
+        for (Object entity : buffer.entities) {
+            em.persist(entity);
+        }
+        for (Object update : buffer.updates) {
+            em.merge(update);
+        }
+        for (ProcessInstanceLog completion : buffer.completions) {
+            ProcessInstanceLog log = findActiveProcessInstanceLog(em, completion.getProcessInstanceId());
+            if (log != null) {
+                em.merge(AsyncAuditLogWriter.complete(log, completion));
+            }
+        }
+        em.flush();
+        logger.debug("Written {} audit entries, {} updates and {} completions", 
+                buffer.entities.size(), buffer.updates.size(), buffer.completions.size());
+        leaveTransaction(em, tx);
+    }
+
+    protected static class AuditLogBuffer {
+
+        private final Environment env;
+        private final List<Object> entities = new ArrayList<Object>();
+        private final List<Object> updates = new ArrayList<Object>();
+        private final List<ProcessInstanceLog> completions = new ArrayList<ProcessInstanceLog>();
+
+        AuditLogBuffer(Environment env) {
+            this.env = env;
+        }
+
+        boolean isEmpty() {
+            return entities.isEmpty() && updates.isEmpty() && completions.isEmpty();
+        }
+    }
+
+    private class AuditLogSynchronization extends OrderedTransactionSynchronization {
+
+        private final AuditLogBuffer buffer;
+
+        AuditLogSynchronization(AuditLogBuffer buffer) {
+            super(2, bufferKey + "-" + System.identityHashCode(buffer));
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            if (!async) {
+                write(buffer);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (async && status == TransactionManager.STATUS_COMMITTED && !buffer.isEmpty()) {
+                EntityManagerFactory emf = getEntityManagerFactory();
+                if (emf == null) {
+                    emf = (EntityManagerFactory) buffer.env.get(EnvironmentName.ENTITY_MANAGER_FACTORY);
+                }
+                AsyncAuditLogWriter.get(emf, isJTA()).enqueue(buffer.entities, buffer.updates, buffer.completions);
+            }
+        }
+    }
+}
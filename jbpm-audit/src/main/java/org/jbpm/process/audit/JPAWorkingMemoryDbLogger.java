@@ -148,12 +148,7 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
         
         ProcessInstanceLog log = (ProcessInstanceLog) ((ProcessInstanceImpl) event.getProcessInstance()).getMetaData().get("ProcessInstanceLog");
         if (log == null) {
-	        List<ProcessInstanceLog> result = em.createQuery(
-		        "from ProcessInstanceLog as log where log.processInstanceId = :piId and log.end is null")
-		            .setParameter("piId", processInstanceId).getResultList();
-	        if (result != null && result.size() != 0) {
-	           log = result.get(result.size() - 1);
-	        }
+            log = findActiveProcessInstanceLog(em, processInstanceId);
         }
         if (log != null) {
             log = (ProcessInstanceLog) builder.buildEvent(event, log);
@@ -191,13 +186,34 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
     public void dispose() {
     }
 
+    /**
+     * Looks up the latest not yet completed log entry of given process instance.
+     */
+    protected ProcessInstanceLog findActiveProcessInstanceLog(EntityManager em, long processInstanceId) {
+        List<ProcessInstanceLog> result = em.createQuery(
+            "from ProcessInstanceLog as log where log.processInstanceId = :piId and log.end is null")
+                .setParameter("piId", processInstanceId).getResultList();
+        if (result != null && result.size() != 0) {
+           return result.get(result.size() - 1);
+        }
+        return null;
+    }
+
+    protected boolean isJTA() {
+        return isJTA;
+    }
+
+    protected EntityManagerFactory getEntityManagerFactory() {
+        return emf;
+    }
+
     /**
      * This method persists the entity given to it. 
      * </p>
      * This method also makes sure that the entity manager used for persisting the entity, joins the existing JTA transaction. 
      * @param entity An entity to be persisted.
      */
-    private void persist(Object entity, KieRuntimeEvent event) { 
+    protected void persist(Object entity, KieRuntimeEvent event) { 
         EntityManager em = getEntityManager(event);
         Object tx = joinTransaction(em);
         em.persist(entity);
@@ -208,8 +224,13 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
      * This method creates a entity manager. 
      */
     private EntityManager getEntityManager(KieRuntimeEvent event) {
-        
-        Environment env = event.getKieRuntime().getEnvironment();
+        return getEntityManager(event.getKieRuntime().getEnvironment());
+    }
+
+    /**
+     * This method creates a entity manager based on given environment. 
+     */
+    protected EntityManager getEntityManager(Environment env) {
         
         /**
          * It's important to set the sharedEM flag with _every_ operation
@@ -265,7 +286,7 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
      * @throws SystemException 
      * @throws Exception if something goes wrong. 
      */
-    private Object joinTransaction(EntityManager em) {
+    protected Object joinTransaction(EntityManager em) {
         boolean newTx = false;
         UserTransaction ut = null;
 
@@ -314,7 +335,7 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
      * @param em The entity manager.
      * @param ut The (user) transaction.
      */
-    private void leaveTransaction(EntityManager em, Object transaction) {
+    protected void leaveTransaction(EntityManager em, Object transaction) {
         if( isJTA ) { 
             try { 
                 if( transaction != null ) { 
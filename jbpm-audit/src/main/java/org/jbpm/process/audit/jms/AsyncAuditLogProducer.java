@@ -15,26 +15,35 @@
 
 package org.jbpm.process.audit.jms;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
-import javax.jms.Connection;
+import javax.jms.BytesMessage;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
-import javax.jms.MessageProducer;
 import javax.jms.Queue;
-import javax.jms.Session;
 import javax.jms.TextMessage;
 
+import org.drools.persistence.OrderedTransactionSynchronization;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerHelper;
 import org.jbpm.process.audit.AbstractAuditLogger;
 import org.jbpm.process.audit.NodeInstanceLog;
 import org.jbpm.process.audit.ProcessInstanceLog;
 import org.jbpm.process.audit.variable.ProcessIndexerManager;
+import org.jbpm.process.audit.jms.AuditEventCodec.AuditEventEntry;
 import org.jbpm.workflow.instance.impl.NodeInstanceImpl;
+import org.kie.api.event.KieRuntimeEvent;
 import org.kie.api.event.process.ProcessCompletedEvent;
 import org.kie.api.event.process.ProcessNodeLeftEvent;
 import org.kie.api.event.process.ProcessNodeTriggeredEvent;
 import org.kie.api.event.process.ProcessStartedEvent;
 import org.kie.api.event.process.ProcessVariableChangedEvent;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
 import org.kie.api.runtime.KieSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,15 +67,35 @@ import com.thoughtworks.xstream.XStream;
  *  <li>use content based routing in more advanced scenarios</li>
  * </ul>
  * 
+ * When batching is enabled (<code>setBatched(true)</code>) all events produced within single transaction
+ * are collected and sent as one BytesMessage (with <code>EventType</code> property set to 
+ * <code>BATCH_EVENT_TYPE</code>) encoded by <code>AuditEventCodec</code>:
+ * <ul>
+ *  <li>transacted producer sends the batch right before transaction completes so it is part of it</li>
+ *  <li>non transacted producer sends the batch on transaction completion regardless of its outcome</li>
+ * </ul>
+ * Events produced outside of transaction are sent immediately as single element batch.
+ * 
+ * Non transacted sessions and their connection are shared via <code>JMSResourcePool</code>, transacted
+ * sessions get connection of their own for each message (or batch) sent.
+ * 
  * Default receiver is <code>AsyncAuditLogReceiver</code> class
  */
 public class AsyncAuditLogProducer extends AbstractAuditLogger {
     
     private static final Logger logger = LoggerFactory.getLogger(AsyncAuditLogProducer.class);
+    
+    public static final int BATCH_EVENT_TYPE = 100;
+    
+    private static final XStream xstream = new XStream();
 
     private ConnectionFactory connectionFactory;    
     private Queue queue;
     private boolean transacted = true;
+    private boolean batched = false;
+    
+    private final String batchKey = "AuditEventBatch-" + System.identityHashCode(this);
+    private final AuditEventCodec codec = new AuditEventCodec();
     
     private ProcessIndexerManager indexManager = ProcessIndexerManager.get();
 
@@ -99,35 +128,35 @@ public class AsyncAuditLogProducer extends AbstractAuditLogger {
     @Override
     public void beforeNodeTriggered(ProcessNodeTriggeredEvent event) {
         NodeInstanceLog log = (NodeInstanceLog) builder.buildEvent(event);
-        sendMessage(log, BEFORE_NODE_ENTER_EVENT_TYPE);
+        sendMessage(event, log, BEFORE_NODE_ENTER_EVENT_TYPE);
         ((NodeInstanceImpl) event.getNodeInstance()).getMetaData().put("NodeInstanceLog", log);
     }
 
     @Override
     public void afterNodeLeft(ProcessNodeLeftEvent event) {
         NodeInstanceLog log = (NodeInstanceLog) builder.buildEvent(event, null);
-        sendMessage(log, AFTER_NODE_LEFT_EVENT_TYPE);   
+        sendMessage(event, log, AFTER_NODE_LEFT_EVENT_TYPE);   
     }
 
     @Override
     public void afterVariableChanged(ProcessVariableChangedEvent event) {
         List<org.kie.api.runtime.manager.audit.VariableInstanceLog> variables = indexManager.index(getBuilder(), event);
         for (org.kie.api.runtime.manager.audit.VariableInstanceLog log : variables) {  
-            sendMessage(log, AFTER_VAR_CHANGE_EVENT_TYPE);   
+            sendMessage(event, log, AFTER_VAR_CHANGE_EVENT_TYPE);   
         }
     }
 
     @Override
     public void beforeProcessStarted(ProcessStartedEvent event) {
         ProcessInstanceLog log = (ProcessInstanceLog) builder.buildEvent(event);
-        sendMessage(log, BEFORE_START_EVENT_TYPE);
+        sendMessage(event, log, BEFORE_START_EVENT_TYPE);
         
     }
 
     @Override
     public void afterProcessCompleted(ProcessCompletedEvent event) {
         ProcessInstanceLog log = (ProcessInstanceLog) builder.buildEvent(event, null);
-        sendMessage(log, AFTER_COMPLETE_EVENT_TYPE);
+        sendMessage(event, log, AFTER_COMPLETE_EVENT_TYPE);
     }
     
     @Override
@@ -136,7 +165,7 @@ public class AsyncAuditLogProducer extends AbstractAuditLogger {
     	NodeInstanceLog log = (NodeInstanceLog) ((NodeInstanceImpl) event.getNodeInstance()).getMetaData().get("NodeInstanceLog");
     	NodeInstanceLog logUpdated = (NodeInstanceLog) builder.buildEvent(event, log);
     	if (logUpdated != null) {
-    		sendMessage(log, AFTER_NODE_ENTER_EVENT_TYPE);
+    		sendMessage(event, log, AFTER_NODE_ENTER_EVENT_TYPE);
     	}
     }
 
@@ -158,51 +187,85 @@ public class AsyncAuditLogProducer extends AbstractAuditLogger {
     public void beforeProcessCompleted(ProcessCompletedEvent event) {
     }
     
+    protected void sendMessage(KieRuntimeEvent event, Object messageContent, Integer eventType) {
+        if (batched) {
+            AuditEventBatch batch = getBatch(event.getKieRuntime().getEnvironment());
+            if (batch != null) {
+                batch.add(messageContent, eventType);
+            } else {
+                sendBatch(Collections.singletonList(new AuditEventEntry(eventType, messageContent)));
+            }
+        } else {
+            sendMessage(messageContent, eventType);
+        }
+    }
+    
     protected void sendMessage(Object messageContent, Integer eventType) {
         if (connectionFactory == null && queue == null) {
             throw new IllegalStateException("ConnectionFactory and Queue cannot be null");
         }
-        Connection queueConnection = null;
-        Session queueSession = null;
-        MessageProducer producer = null;
+        JMSResourcePool.PooledSession pooled = null;
         try {
-            queueConnection = connectionFactory.createConnection();
-            queueSession = queueConnection.createSession(transacted, Session.AUTO_ACKNOWLEDGE);
+            pooled = JMSResourcePool.get(connectionFactory).borrowSession(transacted);
            
-            XStream xstream = new XStream();
             String eventXml = xstream.toXML(messageContent);
-            TextMessage message = queueSession.createTextMessage(eventXml);
+            TextMessage message = pooled.getSession().createTextMessage(eventXml);
             message.setIntProperty("EventType", eventType);
-            producer = queueSession.createProducer(queue);            
-            producer.send(message);
+            pooled.send(queue, message);
+            pooled.release();
         } catch (Exception e) {
-            throw new RuntimeException("Error when sending JMS message with working memory event", e);
-        } finally {
-            if (producer != null) {
-                try {
-                    producer.close();
-                } catch (JMSException e) {
-                    logger.warn("Error when closing producer", e);
-                }
-            }
-            
-            if (queueSession != null) {
-                try {
-                    queueSession.close();
-                } catch (JMSException e) {
-                    logger.warn("Error when closing queue session", e);
-                }
+            if (pooled != null) {
+                pooled.invalidate();
             }
+            throw new RuntimeException("Error when sending JMS message with working memory event", e);
+        }
+    }
+    
+    protected void sendBatch(List<AuditEventEntry> entries) {
+        if (connectionFactory == null && queue == null) {
+            throw new IllegalStateException("ConnectionFactory and Queue cannot be null");
+        }
+        JMSResourcePool.PooledSession pooled = null;
+        try {
+            byte[] content = codec.encode(entries);
+            pooled = JMSResourcePool.get(connectionFactory).borrowSession(transacted);
             
-            if (queueConnection != null) {
-                try {
-                    queueConnection.close();
-                } catch (JMSException e) {
-                    logger.warn("Error when closing queue connection", e);
-                }
+            BytesMessage message = pooled.getSession().createBytesMessage();
+            message.writeBytes(content);
+            message.setIntProperty("EventType", BATCH_EVENT_TYPE);
+            message.setIntProperty("EventCount", entries.size());
+            pooled.send(queue, message);
+            pooled.release();
+            logger.debug("Sent batch of {} audit events ({} bytes)", entries.size(), content.length);
+        } catch (Exception e) {
+            if (pooled != null) {
+                pooled.invalidate();
             }
+            throw new RuntimeException("Error when sending JMS message with working memory events batch", e);
         }
     }
+    
+    /*
+     * Returns batch bound to the active transaction, registering it on first use, or null
+     * when there is no active transaction
+     */
+    protected AuditEventBatch getBatch(Environment env) {
+        Object txm = env.get(EnvironmentName.TRANSACTION_MANAGER);
+        if (!(txm instanceof TransactionManager)) {
+            return null;
+        }
+        TransactionManager tm = (TransactionManager) txm;
+        if (tm.getStatus() != TransactionManager.STATUS_ACTIVE) {
+            return null;
+        }
+        AuditEventBatch batch = (AuditEventBatch) tm.getResource(batchKey);
+        if (batch == null) {
+            batch = new AuditEventBatch();
+            tm.putResource(batchKey, batch);
+            TransactionManagerHelper.registerTransactionSyncInContainer(tm, new AuditEventBatchSynchronization(batch));
+        }
+        return batch;
+    }
 
     public boolean isTransacted() {
         return transacted;
@@ -212,5 +275,60 @@ public class AsyncAuditLogProducer extends AbstractAuditLogger {
         this.transacted = transacted;
     }
 
+    public boolean isBatched() {
+        return batched;
+    }
+
+    public void setBatched(boolean batched) {
+        this.batched = batched;
+    }
+    
+    protected static class AuditEventBatch {
+        
+        private final List<AuditEventEntry> entries = new ArrayList<AuditEventEntry>();
+        private final Map<Object, Object> logs = new IdentityHashMap<Object, Object>();
+        private boolean sent = false;
+        
+        void add(Object log, int eventType) {
+            // logs are encoded when the batch is sent so an update of already batched log is carried by the log itself
+            if (eventType == AFTER_NODE_ENTER_EVENT_TYPE && logs.containsKey(log)) {
+                return;
+            }
+            logs.put(log, log);
+            entries.add(new AuditEventEntry(eventType, log));
+        }
+    }
+    
+    private class AuditEventBatchSynchronization extends OrderedTransactionSynchronization {
+        
+        private final AuditEventBatch batch;
+        
+        AuditEventBatchSynchronization(AuditEventBatch batch) {
+            super(2, batchKey + "-" + System.identityHashCode(batch));
+            this.batch = batch;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            send();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // non transacted producer delivers events regardless of transaction outcome
+            if (!transacted) {
+                send();
+            }
+        }
+        
+        private void send() {
+            if (batch.sent || batch.entries.isEmpty()) {
+                return;
+            }
+            batch.sent = true;
+            sendBatch(batch.entries);
+        }
+    }
+
 
 }
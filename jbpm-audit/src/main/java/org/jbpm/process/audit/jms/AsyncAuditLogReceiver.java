@@ -15,8 +15,11 @@
 
 package org.jbpm.process.audit.jms;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
@@ -27,6 +30,7 @@ import javax.persistence.EntityManagerFactory;
 import org.jbpm.process.audit.AbstractAuditLogger;
 import org.jbpm.process.audit.NodeInstanceLog;
 import org.jbpm.process.audit.ProcessInstanceLog;
+import org.jbpm.process.audit.jms.AuditEventCodec.AuditEventEntry;
 
 import com.thoughtworks.xstream.XStream;
 
@@ -38,6 +42,10 @@ import com.thoughtworks.xstream.XStream;
  * Thus it shares the same message format that is TextMessage with 
  * Xstream serialized *Log classes (ProcessInstanceLog,
  * NodeInstanceLog, VaraiableInstanceLog) as content.
+ * In addition it accepts batches sent as BytesMessage (encoded by <code>AuditEventCodec</code>) 
+ * and stores all events of the batch with single entity manager and single flush. Updates 
+ * (work item id, process instance completion) are first resolved against logs of the same batch
+ * so they do not require a query.
  * 
  * by default it uses entity manager factory and creates entity manager for each message
  * although it provides getEntityManager method that can be overloaded by extensions to supply 
@@ -52,7 +60,10 @@ import com.thoughtworks.xstream.XStream;
  */
 public class AsyncAuditLogReceiver implements MessageListener {
     
+    private static final XStream xstream = new XStream();
+    
     private EntityManagerFactory entityManagerFactory;
+    private AuditEventCodec codec = new AuditEventCodec();
     
     public AsyncAuditLogReceiver(EntityManagerFactory entityManagerFactory) {
         this.entityManagerFactory = entityManagerFactory;
@@ -67,8 +78,7 @@ public class AsyncAuditLogReceiver implements MessageListener {
             try {
                 String messageContent = textMessage.getText();
                 Integer eventType = textMessage.getIntProperty("EventType");
-                XStream xstram = new XStream();
-                Object event = xstram.fromXML(messageContent);
+                Object event = xstream.fromXML(messageContent);
                 
                 switch (eventType) {
                 case AbstractAuditLogger.AFTER_NODE_ENTER_EVENT_TYPE:
@@ -114,9 +124,83 @@ public class AsyncAuditLogReceiver implements MessageListener {
                 e.printStackTrace();
                 throw new RuntimeException("Exception when receiving audit event event", e);
             }
+        } else if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            List<AuditEventEntry> entries = null;
+            try {
+                byte[] content = new byte[(int) bytesMessage.getBodyLength()];
+                bytesMessage.readBytes(content);
+                entries = codec.decode(content);
+            } catch (Exception e) {
+                throw new RuntimeException("Exception when receiving audit events batch", e);
+            }
+            processBatch(entries);
         }
 
     }
+    
+    @SuppressWarnings("unchecked")
+    protected void processBatch(List<AuditEventEntry> entries) {
+        EntityManager em = getEntityManager();
+        try {
+            Map<String, NodeInstanceLog> enteredNodes = new HashMap<String, NodeInstanceLog>();
+            Map<Long, ProcessInstanceLog> startedProcesses = new HashMap<Long, ProcessInstanceLog>();
+            for (AuditEventEntry entry : entries) {
+                Object event = entry.getLog();
+                switch (entry.getEventType()) {
+                    case AbstractAuditLogger.AFTER_NODE_ENTER_EVENT_TYPE:
+                        NodeInstanceLog nodeAfterEnterEvent = (NodeInstanceLog) event;
+                        if (nodeAfterEnterEvent.getWorkItemId() != null) {
+                            NodeInstanceLog log = enteredNodes.get(nodeAfterEnterEvent.getProcessInstanceId() + ":" + nodeAfterEnterEvent.getNodeInstanceId());
+                            if (log != null) {
+                                log.setWorkItemId(nodeAfterEnterEvent.getWorkItemId());
+                            } else {
+                                List<NodeInstanceLog> result = em.createQuery(
+                                        "from NodeInstanceLog as log where log.nodeInstanceId = :nodeId and log.type = 0")
+                                        .setParameter("nodeId", nodeAfterEnterEvent.getNodeInstanceId()).getResultList();
+                                if (result != null && result.size() != 0) {
+                                    log = result.get(result.size() - 1);
+                                    log.setWorkItemId(nodeAfterEnterEvent.getWorkItemId());
+                                    em.merge(log);
+                                }
+                            }
+                        }
+                        break;
+                    case AbstractAuditLogger.AFTER_COMPLETE_EVENT_TYPE:
+                        ProcessInstanceLog processCompletedEvent = (ProcessInstanceLog) event;
+                        ProcessInstanceLog log = startedProcesses.get(processCompletedEvent.getProcessInstanceId());
+                        if (log == null) {
+                            List<ProcessInstanceLog> result = em.createQuery(
+                                    "from ProcessInstanceLog as log where log.processInstanceId = :piId and log.end is null")
+                                    .setParameter("piId", processCompletedEvent.getProcessInstanceId()).getResultList();
+                            if (result != null && result.size() != 0) {
+                                log = result.get(result.size() - 1);
+                            }
+                        }
+                        if (log != null) {
+                            log.setOutcome(processCompletedEvent.getOutcome());
+                            log.setStatus(processCompletedEvent.getStatus());
+                            log.setEnd(processCompletedEvent.getEnd());
+                            log.setDuration(processCompletedEvent.getDuration());
+                            em.merge(log);
+                        }
+                        break;
+                    default:
+                        em.persist(event);
+                        if (event instanceof NodeInstanceLog && ((NodeInstanceLog) event).getType() == 0) {
+                            NodeInstanceLog nodeLog = (NodeInstanceLog) event;
+                            enteredNodes.put(nodeLog.getProcessInstanceId() + ":" + nodeLog.getNodeInstanceId(), nodeLog);
+                        } else if (event instanceof ProcessInstanceLog) {
+                            startedProcesses.put(((ProcessInstanceLog) event).getProcessInstanceId(), (ProcessInstanceLog) event);
+                        }
+                        break;
+                }
+            }
+            em.flush();
+        } finally {
+            em.close();
+        }
+    }
 
     public EntityManagerFactory getEntityManagerFactory() {
         return entityManagerFactory;
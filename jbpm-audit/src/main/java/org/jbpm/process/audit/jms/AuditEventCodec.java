@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit.jms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jbpm.process.audit.NodeInstanceLog;
+import org.jbpm.process.audit.ProcessInstanceLog;
+import org.jbpm.process.audit.VariableInstanceLog;
+
+/**
+ * Compact binary encoding of audit log entries used for batched audit messages.
+ * Default <code>ProcessInstanceLog</code>, <code>NodeInstanceLog</code> and <code>VariableInstanceLog</code> 
+ * are written field by field, any other (custom) log types fall back to java serialization.
+ */
+public class AuditEventCodec {
+
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte SERIALIZED = 0;
+    private static final byte PROCESS_INSTANCE_LOG = 1;
+    private static final byte NODE_INSTANCE_LOG = 2;
+    private static final byte VARIABLE_INSTANCE_LOG = 3;
+
+    public byte[] encode(List<AuditEventEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * entries.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (AuditEventEntry entry : entries) {
+            out.writeInt(entry.getEventType());
+            Object log = entry.getLog();
+            if (log.getClass() == ProcessInstanceLog.class) {
+                out.writeByte(PROCESS_INSTANCE_LOG);
+                writeProcessInstanceLog(out, (ProcessInstanceLog) log);
+            } else if (log.getClass() == NodeInstanceLog.class) {
+                out.writeByte(NODE_INSTANCE_LOG);
+                writeNodeInstanceLog(out, (NodeInstanceLog) log);
+            } else if (log.getClass() == VariableInstanceLog.class) {
+                out.writeByte(VARIABLE_INSTANCE_LOG);
+                writeVariableInstanceLog(out, (VariableInstanceLog) log);
+            } else {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                ObjectOutputStream oout = new ObjectOutputStream(serialized);
+                oout.writeObject(log);
+                oout.close();
+                byte[] data = serialized.toByteArray();
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public List<AuditEventEntry> decode(byte[] data) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported audit message version " + version);
+        }
+        int size = in.readInt();
+        List<AuditEventEntry> entries = new ArrayList<AuditEventEntry>(size);
+        for (int i = 0; i < size; i++) {
+            int eventType = in.readInt();
+            byte kind = in.readByte();
+            Object log = null;
+            switch (kind) {
+                case PROCESS_INSTANCE_LOG:
+                    log = readProcessInstanceLog(in);
+                    break;
+                case NODE_INSTANCE_LOG:
+                    log = readNodeInstanceLog(in);
+                    break;
+                case VARIABLE_INSTANCE_LOG:
+                    log = readVariableInstanceLog(in);
+                    break;
+                default:
+                    byte[] serialized = new byte[in.readInt()];
+                    in.readFully(serialized);
+                    ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                    log = oin.readObject();
+                    oin.close();
+                    break;
+            }
+            entries.add(new AuditEventEntry(eventType, log));
+        }
+        return entries;
+    }
+
+    protected void writeProcessInstanceLog(DataOutputStream out, ProcessInstanceLog log) throws IOException {
+        out.writeLong(log.getProcessInstanceId());
+        writeString(out, log.getProcessId());
+        writeDate(out, log.getStart());
+        writeDate(out, log.getEnd());
+        writeLong(out, log.getStatus() == null ? null : log.getStatus().longValue());
+        writeLong(out, log.getParentProcessInstanceId());
+        writeString(out, log.getOutcome());
+        writeLong(out, log.getDuration());
+        writeString(out, log.getIdentity());
+        writeString(out, log.getProcessVersion());
+        writeString(out, log.getProcessName());
+        writeString(out, log.getCorrelationKey());
+        writeLong(out, log.getProcessType() == null ? null : log.getProcessType().longValue());
+        writeString(out, log.getExternalId());
+        writeString(out, log.getProcessInstanceDescription());
+    }
+
+    protected ProcessInstanceLog readProcessInstanceLog(DataInputStream in) throws IOException {
+        ProcessInstanceLog log = new ProcessInstanceLog();
+        log.setProcessInstanceId(in.readLong());
+        log.setProcessId(readString(in));
+        log.setStart(readDate(in));
+        log.setEnd(readDate(in));
+        Long status = readLong(in);
+        if (status != null) {
+            log.setStatus(status.intValue());
+        }
+        Long parentProcessInstanceId = readLong(in);
+        if (parentProcessInstanceId != null) {
+            log.setParentProcessInstanceId(parentProcessInstanceId);
+        }
+        log.setOutcome(readString(in));
+        log.setDuration(readLong(in));
+        log.setIdentity(readString(in));
+        log.setProcessVersion(readString(in));
+        log.setProcessName(readString(in));
+        log.setCorrelationKey(readString(in));
+        Long processType = readLong(in);
+        log.setProcessType(processType == null ? null : processType.intValue());
+        log.setExternalId(readString(in));
+        log.setProcessInstanceDescription(readString(in));
+        return log;
+    }
+
+    protected void writeNodeInstanceLog(DataOutputStream out, NodeInstanceLog log) throws IOException {
+        out.writeInt(log.getType() == null ? 0 : log.getType());
+        out.writeLong(log.getProcessInstanceId());
+        writeString(out, log.getProcessId());
+        writeDate(out, log.getDate());
+        writeString(out, log.getNodeInstanceId());
+        writeString(out, log.getNodeId());
+        writeString(out, log.getNodeName());
+        writeString(out, log.getNodeType());
+        writeLong(out, log.getWorkItemId());
+        writeString(out, log.getConnection());
+        writeString(out, log.getExternalId());
+    }
+
+    protected NodeInstanceLog readNodeInstanceLog(DataInputStream in) throws IOException {
+        NodeInstanceLog log = new NodeInstanceLog();
+        log.setType(in.readInt());
+        log.setProcessInstanceId(in.readLong());
+        log.setProcessId(readString(in));
+        log.setDate(readDate(in));
+        log.setNodeInstanceId(readString(in));
+        log.setNodeId(readString(in));
+        log.setNodeName(readString(in));
+        log.setNodeType(readString(in));
+        log.setWorkItemId(readLong(in));
+        log.setConnection(readString(in));
+        log.setExternalId(readString(in));
+        return log;
+    }
+
+    protected void writeVariableInstanceLog(DataOutputStream out, VariableInstanceLog log) throws IOException {
+        out.writeLong(log.getProcessInstanceId());
+        writeString(out, log.getProcessId());
+        writeDate(out, log.getDate());
+        writeString(out, log.getVariableInstanceId());
+        writeString(out, log.getVariableId());
+        writeString(out, log.getValue());
+        writeString(out, log.getOldValue());
+        writeString(out, log.getExternalId());
+    }
+
+    protected VariableInstanceLog readVariableInstanceLog(DataInputStream in) throws IOException {
+        VariableInstanceLog log = new VariableInstanceLog();
+        log.setProcessInstanceId(in.readLong());
+        log.setProcessId(readString(in));
+        log.setDate(readDate(in));
+        log.setVariableInstanceId(readString(in));
+        log.setVariableId(readString(in));
+        log.setValue(readString(in));
+        log.setOldValue(readString(in));
+        log.setExternalId(readString(in));
+        return log;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private Long readLong(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            return in.readLong();
+        }
+        return null;
+    }
+
+    private void writeDate(DataOutputStream out, Date value) throws IOException {
+        writeLong(out, value == null ? null : value.getTime());
+    }
+
+    private Date readDate(DataInputStream in) throws IOException {
+        Long time = readLong(in);
+        return time == null ? null : new Date(time);
+    }
+
+    /**
+     * Single audit log entry together with the event type it was produced for.
+     */
+    public static class AuditEventEntry {
+
+        private final int eventType;
+        private final Object log;
+
+        public AuditEventEntry(int eventType, Object log) {
+            this.eventType = eventType;
+            this.log = log;
+        }
+
+        public int getEventType() {
+            return eventType;
+        }
+
+        public Object getLog() {
+            return log;
+        }
+    }
+}
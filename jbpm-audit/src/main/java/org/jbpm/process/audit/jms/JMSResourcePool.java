@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit.jms;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps single shared connection per connection factory together with small pool of idle, 
+ * non transacted sessions (and their anonymous producers) so audit messages do not have to 
+ * open new connection and session for every message sent.
+ * Transacted sessions are never pooled - each of them is created on its own connection obtained 
+ * from the connection factory when borrowed and both are closed once used, so the container can 
+ * enlist them in the transaction they participate in (managed connection factories pool these 
+ * connections themselves).
+ * 
+ * Number of idle sessions kept per connection factory can be configured via 
+ * <code>org.jbpm.audit.jms.session.pool.size</code> system property (defaults to 10).
+ * Whenever JMS operation fails the pool is reset so next use starts with fresh connection.
+ * Pools are closed when the connection factory is closed via {@link #close(ConnectionFactory)}, 
+ * explicitly with {@link #closeAll()} or on JVM shutdown.
+ */
+public class JMSResourcePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(JMSResourcePool.class);
+
+    private static final int SESSION_POOL_SIZE = Integer.parseInt(System.getProperty("org.jbpm.audit.jms.session.pool.size", "10"));
+
+    private static final ConcurrentMap<ConnectionFactory, JMSResourcePool> pools = new ConcurrentHashMap<ConnectionFactory, JMSResourcePool>();
+
+    private static Thread shutdownHook;
+
+    private final ConnectionFactory connectionFactory;
+    private final BlockingQueue<PooledSession> idleSessions;
+    private Connection connection;
+
+    protected JMSResourcePool(ConnectionFactory connectionFactory, int sessionPoolSize) {
+        this.connectionFactory = connectionFactory;
+        this.idleSessions = new LinkedBlockingQueue<PooledSession>(Math.max(1, sessionPoolSize));
+    }
+
+    public static JMSResourcePool get(ConnectionFactory connectionFactory) {
+        JMSResourcePool pool = pools.get(connectionFactory);
+        if (pool == null) {
+            pool = new JMSResourcePool(connectionFactory, SESSION_POOL_SIZE);
+            JMSResourcePool existing = pools.putIfAbsent(connectionFactory, pool);
+            if (existing != null) {
+                pool = existing;
+            } else {
+                registerShutdownHook();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Closes and removes the pool of given connection factory, to be used when the connection factory 
+     * itself is about to be closed.
+     */
+    public static void close(ConnectionFactory connectionFactory) {
+        JMSResourcePool pool = pools.remove(connectionFactory);
+        if (pool != null) {
+            pool.reset();
+        }
+    }
+
+    /**
+     * Closes and removes pools of all connection factories.
+     */
+    public static void closeAll() {
+        for (ConnectionFactory connectionFactory : pools.keySet()) {
+            close(connectionFactory);
+        }
+    }
+
+    private static synchronized void registerShutdownHook() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    closeAll();
+                }
+            }, "jbpm-audit-jms-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    public PooledSession borrowSession(boolean transacted) throws JMSException {
+        if (transacted) {
+            return createTransactedSession();
+        }
+        PooledSession pooled = idleSessions.poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        Session session = getConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+        try {
+            return new PooledSession(this, null, session, session.createProducer(null));
+        } catch (JMSException e) {
+            closeQuietly(session);
+            throw e;
+        }
+    }
+
+    protected PooledSession createTransactedSession() throws JMSException {
+        Connection transactionConnection = connectionFactory.createConnection();
+        Session session = null;
+        try {
+            session = transactionConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+            return new PooledSession(this, transactionConnection, session, session.createProducer(null));
+        } catch (JMSException e) {
+            if (session != null) {
+                closeQuietly(session);
+            }
+            closeQuietly(transactionConnection);
+            throw e;
+        }
+    }
+
+    protected void release(PooledSession session) {
+        if (session.connection != null || !idleSessions.offer(session)) {
+            session.close();
+        }
+    }
+
+    protected void invalidate(PooledSession session) {
+        session.close();
+        if (session.connection == null) {
+            reset();
+        }
+    }
+
+    protected synchronized Connection getConnection() throws JMSException {
+        if (connection == null) {
+            connection = connectionFactory.createConnection();
+        }
+        return connection;
+    }
+
+    protected void reset() {
+        PooledSession idle = null;
+        while ((idle = idleSessions.poll()) != null) {
+            idle.close();
+        }
+        Connection current = null;
+        synchronized (this) {
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            closeQuietly(current);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (JMSException e) {
+            logger.warn("Error when closing queue connection", e);
+        }
+    }
+
+    private static void closeQuietly(Session session) {
+        try {
+            session.close();
+        } catch (JMSException e) {
+            logger.warn("Error when closing queue session", e);
+        }
+    }
+
+    /**
+     * Session borrowed from the pool, must be given back by calling either <code>release</code> 
+     * when it was successfully used or <code>invalidate</code> when it failed.
+     */
+    public static class PooledSession {
+
+        private final JMSResourcePool pool;
+        // own connection of transacted session, null for sessions created from the shared connection
+        private final Connection connection;
+        private final Session session;
+        private final MessageProducer producer;
+
+        PooledSession(JMSResourcePool pool, Connection connection, Session session, MessageProducer producer) {
+            this.pool = pool;
+            this.connection = connection;
+            this.session = session;
+            this.producer = producer;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public void send(Destination destination, Message message) throws JMSException {
+            producer.send(destination, message);
+        }
+
+        public void release() {
+            pool.release(this);
+        }
+
+        public void invalidate() {
+            pool.invalidate(this);
+        }
+
+        void close() {
+            try {
+                producer.close();
+            } catch (JMSException e) {
+                logger.warn("Error when closing producer", e);
+            }
+            closeQuietly(session);
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+        }
+    }
+}
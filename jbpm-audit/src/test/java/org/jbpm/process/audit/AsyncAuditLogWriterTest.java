@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncAuditLogWriterTest {
+
+    @After
+    public void cleanup() {
+        System.clearProperty("org.jbpm.audit.jpa.batch.queue.size");
+        System.clearProperty("org.jbpm.audit.jpa.batch.overflow");
+        System.clearProperty("org.jbpm.audit.jpa.batch.block.timeout");
+    }
+
+    @Test
+    public void testEntriesAreCopied() {
+        ProcessInstanceLog log = new ProcessInstanceLog(1, "test.process");
+        log.setStart(new Date());
+
+        ProcessInstanceLog copy = (ProcessInstanceLog) AsyncAuditLogWriter.copy(log);
+        assertNotSame(log, copy);
+        assertEquals(log.getProcessInstanceId(), copy.getProcessInstanceId());
+        assertEquals(log.getStart(), copy.getStart());
+
+        // engine keeps working with its own instance
+        log.setEnd(new Date());
+        assertNull(copy.getEnd());
+    }
+
+    @Test
+    public void testDropOnOverflow() {
+        System.setProperty("org.jbpm.audit.jpa.batch.queue.size", "2");
+        System.setProperty("org.jbpm.audit.jpa.batch.overflow", "drop");
+        // not started so nothing is taken from the queue
+        AsyncAuditLogWriter writer = new AsyncAuditLogWriter(null, false);
+
+        writer.enqueue(entries(3), Collections.emptyList(), Collections.<ProcessInstanceLog>emptyList());
+
+        assertEquals(2, writer.getPendingCount());
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    public void testBlockOnOverflowUsesSingleDeadline() {
+        System.setProperty("org.jbpm.audit.jpa.batch.queue.size", "2");
+        System.setProperty("org.jbpm.audit.jpa.batch.overflow", "block");
+        System.setProperty("org.jbpm.audit.jpa.batch.block.timeout", "300");
+        AsyncAuditLogWriter writer = new AsyncAuditLogWriter(null, false);
+
+        long start = System.currentTimeMillis();
+        writer.enqueue(entries(6), Collections.emptyList(), Collections.<ProcessInstanceLog>emptyList());
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(2, writer.getPendingCount());
+        assertEquals(4, writer.getDroppedCount());
+        // waiting per entry would take at least 4 * 300 ms
+        assertTrue("Enqueue took " + elapsed + " ms", elapsed >= 250 && elapsed < 1200);
+    }
+
+    private static List<Object> entries(int count) {
+        List<Object> entries = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new ProcessInstanceLog(i, "test.process"));
+        }
+        return entries;
+    }
+}
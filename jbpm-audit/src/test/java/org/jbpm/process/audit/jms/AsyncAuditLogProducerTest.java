@@ -208,6 +208,86 @@ public class AsyncAuditLogProducerTest extends AbstractBaseTest {
 
     }
     
+    @Test
+    public void testAsyncAuditProducerBatched() throws Exception {
+        Environment env = createEnvironment(context);
+        // load the process
+        KnowledgeBase kbase = createKnowledgeBase();
+        // create a new session
+        StatefulKnowledgeSession session = createSession(kbase, env);
+
+        Map<String, Object> jmsProps = new HashMap<String, Object>();
+        jmsProps.put("jbpm.audit.jms.transacted", true);
+        jmsProps.put("jbpm.audit.jms.batch", true);
+        jmsProps.put("jbpm.audit.jms.connection.factory", factory);
+        jmsProps.put("jbpm.audit.jms.queue", queue);
+        AbstractAuditLogger logger = AuditLoggerFactory.newInstance(Type.JMS, session, jmsProps);
+        assertNotNull(logger);
+        assertTrue(((AsyncAuditLogProducer) logger).isBatched());
+
+        // start process instance
+        session.startProcess("com.sample.ruleflow");
+        
+        MessageReceiver receiver = new MessageReceiver();
+        List<Message> messages = receiver.receive(queue);
+        assertNotNull(messages);
+        // all events of the transaction are sent as one message, node updates are carried by already batched node logs
+        assertEquals(1, messages.size());
+        assertEquals(AsyncAuditLogProducer.BATCH_EVENT_TYPE, messages.get(0).getIntProperty("EventType"));
+        assertEquals(8, messages.get(0).getIntProperty("EventCount"));
+    }
+    
+    @Test
+    public void testAsyncAuditLoggerCompleteBatched() throws Exception {
+        Environment env = createEnvironment(context);
+        // load the process
+        KnowledgeBase kbase = createKnowledgeBase();
+        // create a new session
+        StatefulKnowledgeSession session = createSession(kbase, env);
+        
+        Map<String, Object> jmsProps = new HashMap<String, Object>();
+        jmsProps.put("jbpm.audit.jms.transacted", true);
+        jmsProps.put("jbpm.audit.jms.batch", "true");
+        jmsProps.put("jbpm.audit.jms.connection.factory", factory);
+        jmsProps.put("jbpm.audit.jms.queue", queue);
+        AbstractAuditLogger logger = AuditLoggerFactory.newJMSInstance(jmsProps);
+        assertNotNull(logger);
+        session.addEventListener(logger);
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("s", "test value");
+
+        // start process instance
+        ProcessInstance processInstance = session.startProcess("com.sample.ruleflow3", params);
+        
+        MessageReceiver receiver = new MessageReceiver();
+        receiver.receiveAndProcess(queue, ((EntityManagerFactory)env.get(EnvironmentName.ENTITY_MANAGER_FACTORY)));
+     
+        // validate if everything is stored in db
+        AuditLogService logService = new JPAAuditLogService(env);
+        List<ProcessInstanceLog> processInstances = logService.findProcessInstances("com.sample.ruleflow3");
+        assertEquals(1, processInstances.size());
+        assertNotNull(processInstances.get(0).getEnd());
+        List<NodeInstanceLog> nodeInstances = logService.findNodeInstances(processInstance.getId());
+        assertEquals(6, nodeInstances.size());
+        for (NodeInstanceLog nodeInstance: nodeInstances) {
+
+            assertEquals(processInstance.getId(), nodeInstance.getProcessInstanceId().longValue());
+            assertEquals("com.sample.ruleflow3", nodeInstance.getProcessId());
+            assertNotNull(nodeInstance.getDate());
+        }
+        List<VariableInstanceLog> variables = logService.findVariableInstances(processInstance.getId());
+        assertNotNull(variables);
+        assertEquals(2, variables.size());
+        assertEquals("test value", variables.get(1).getValue());
+        assertEquals("InitialValue", variables.get(1).getOldValue());
+        
+        logService.clear();
+        processInstances = logService.findProcessInstances("com.sample.ruleflow3");
+        logService.dispose();
+        assertTrue(processInstances.isEmpty());
+    }
+    
     @Test
     public void testAsyncAuditLoggerComplete() throws Exception {
         Environment env = createEnvironment(context);
@@ -469,6 +549,8 @@ public class AsyncAuditLogProducerTest extends AbstractBaseTest {
     }
     
     private void stopHornetQServer() throws Exception {
+        JMSResourcePool.close(factory);
+        JMSResourcePool.close((ConnectionFactory) jmsServer.lookup("ConnectionFactory"));
         ((PoolingConnectionFactory) factory).close();
         jmsServer.stop();
         jmsServer = null;
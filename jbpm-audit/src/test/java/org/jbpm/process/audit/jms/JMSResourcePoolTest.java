@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.process.audit.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class JMSResourcePoolTest {
+
+    private final AtomicInteger createdConnections = new AtomicInteger();
+    private final AtomicInteger closedConnections = new AtomicInteger();
+    private final AtomicInteger closedSessions = new AtomicInteger();
+
+    private final ConnectionFactory connectionFactory = proxy(ConnectionFactory.class, new InvocationHandler() {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("createConnection")) {
+                createdConnections.incrementAndGet();
+                return newConnection();
+            }
+            return defaultValue(proxy, method, args);
+        }
+    });
+
+    @After
+    public void cleanup() {
+        JMSResourcePool.close(connectionFactory);
+    }
+
+    @Test
+    public void testNonTransactedSessionsShareConnectionAndArePooled() throws Exception {
+        JMSResourcePool pool = JMSResourcePool.get(connectionFactory);
+
+        JMSResourcePool.PooledSession first = pool.borrowSession(false);
+        first.release();
+        JMSResourcePool.PooledSession second = pool.borrowSession(false);
+        JMSResourcePool.PooledSession third = pool.borrowSession(false);
+
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertEquals(1, createdConnections.get());
+        assertEquals(0, closedConnections.get());
+
+        second.release();
+        third.release();
+        JMSResourcePool.close(connectionFactory);
+        assertEquals(2, closedSessions.get());
+        assertEquals(1, closedConnections.get());
+    }
+
+    @Test
+    public void testTransactedSessionUsesOwnConnection() throws Exception {
+        JMSResourcePool pool = JMSResourcePool.get(connectionFactory);
+
+        JMSResourcePool.PooledSession shared = pool.borrowSession(false);
+        JMSResourcePool.PooledSession transacted = pool.borrowSession(true);
+        assertEquals(2, createdConnections.get());
+
+        transacted.release();
+        assertEquals(1, closedSessions.get());
+        assertEquals(1, closedConnections.get());
+
+        // next transacted session must not reuse the closed one
+        JMSResourcePool.PooledSession next = pool.borrowSession(true);
+        assertNotSame(transacted, next);
+        assertEquals(3, createdConnections.get());
+
+        // failing transacted session does not reset the shared connection
+        next.invalidate();
+        assertEquals(2, closedConnections.get());
+        shared.release();
+        assertSame(shared, pool.borrowSession(false));
+        assertEquals(3, createdConnections.get());
+    }
+
+    @Test
+    public void testCloseAll() throws Exception {
+        JMSResourcePool.get(connectionFactory).borrowSession(false).release();
+
+        JMSResourcePool.closeAll();
+        assertEquals(1, closedConnections.get());
+
+        JMSResourcePool.get(connectionFactory).borrowSession(false).release();
+        assertEquals(2, createdConnections.get());
+    }
+
+    private Connection newConnection() {
+        return proxy(Connection.class, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("createSession")) {
+                    return newSession();
+                } else if (method.getName().equals("close")) {
+                    closedConnections.incrementAndGet();
+                    return null;
+                }
+                return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    private Session newSession() {
+        return proxy(Session.class, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("createProducer")) {
+                    return proxy(MessageProducer.class, new InvocationHandler() {
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            return defaultValue(proxy, method, args);
+                        }
+                    });
+                } else if (method.getName().equals("close")) {
+                    closedSessions.incrementAndGet();
+                    return null;
+                }
+                return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(JMSResourcePoolTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.drools.core.process.core.datatype.impl.type.IntegerDataType;
+import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
+import org.jbpm.bpmn2.xml.XmlBPMNProcessDumper;
+import org.jbpm.ruleflow.core.RuleFlowProcess;
+import org.jbpm.ruleflow.core.RuleFlowProcessFactory;
+import org.jbpm.workflow.core.node.Split;
+import org.kie.api.KieBase;
+import org.kie.api.io.Resource;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.process.WorkItem;
+import org.kie.api.runtime.process.WorkItemHandler;
+import org.kie.api.runtime.process.WorkItemManager;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.utils.KieHelper;
+
+/**
+ * Process definitions shared by the benchmarks. Processes are built with the fluent process API and
+ * compiled through their BPMN2 representation so the same code paths as for regular BPMN2 resources
+ * (including dialect specific compilation of constraints) are used.
+ */
+public final class BenchmarkProcesses {
+
+    public static final String PACKAGE = "org.jbpm.benchmarks";
+
+    public static final String SIMPLE_PROCESS = PACKAGE + ".simple";
+    public static final String WORK_ITEM_PROCESS = PACKAGE + ".workitem";
+    public static final String GATEWAY_PROCESS = PACKAGE + ".gateway.";
+
+    public static final String TASK_NAME = "BenchmarkTask";
+
+    private BenchmarkProcesses() {
+    }
+
+    public static RuleFlowProcess simpleProcess() {
+        RuleFlowProcessFactory factory = RuleFlowProcessFactory.createProcess(SIMPLE_PROCESS);
+        factory
+            .name("Simple").packageName(PACKAGE)
+            .startNode(1).name("Start").done()
+            .endNode(2).name("End").done()
+            .connection(1, 2);
+        return factory.validate().getProcess();
+    }
+
+    public static RuleFlowProcess workItemProcess() {
+        RuleFlowProcessFactory factory = RuleFlowProcessFactory.createProcess(WORK_ITEM_PROCESS);
+        factory
+            .name("Work item").packageName(PACKAGE)
+            .variable("data", new ObjectDataType("java.lang.Object"))
+            .startNode(1).name("Start").done()
+            .workItemNode(2).name("Task").workName(TASK_NAME).done()
+            .endNode(3).name("End").done()
+            .connection(1, 2)
+            .connection(2, 3);
+        return factory.validate().getProcess();
+    }
+
+    /**
+     * Exclusive gateway with two outgoing connections guarded by constraints written in given dialect.
+     */
+    public static RuleFlowProcess gatewayProcess(String dialect) {
+        String high = "JavaScript".equals(dialect) ? "x > 5" : "return x > 5;";
+        String low = "JavaScript".equals(dialect) ? "x <= 5" : "return x <= 5;";
+
+        RuleFlowProcessFactory factory = RuleFlowProcessFactory.createProcess(GATEWAY_PROCESS + dialect);
+        factory
+            .name("Gateway " + dialect).packageName(PACKAGE)
+            .variable("x", new IntegerDataType())
+            .startNode(1).name("Start").done()
+            .splitNode(2).name("Gateway").type(Split.TYPE_XOR)
+                .constraint(3, "high", "code", dialect, high)
+                .constraint(4, "low", "code", dialect, low).done()
+            .endNode(3).name("High").done()
+            .endNode(4).name("Low").done()
+            .connection(1, 2)
+            .connection(2, 3)
+            .connection(2, 4);
+        return factory.validate().getProcess();
+    }
+
+    public static KieBase newKieBase(RuleFlowProcess... processes) {
+        KieHelper helper = new KieHelper();
+        for (RuleFlowProcess process : processes) {
+            Resource resource = ResourceFactory.newByteArrayResource(XmlBPMNProcessDumper.INSTANCE.dump(process).getBytes());
+            // source path must be set to be added into kbase
+            resource.setSourcePath(process.getId().replace('.', '/') + ".bpmn2");
+            helper.addResource(resource, ResourceType.BPMN2);
+        }
+        return helper.build();
+    }
+
+    public static Map<String, Object> variables(int count, int size) {
+        StringBuilder value = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        Map<String, Object> variables = new HashMap<String, Object>();
+        for (int i = 0; i < count; i++) {
+            variables.put("var" + i, value.toString());
+        }
+        return variables;
+    }
+
+    /**
+     * Work item handler that keeps the last work item so benchmarks can complete it explicitly.
+     */
+    public static class KeepingWorkItemHandler implements WorkItemHandler {
+
+        private WorkItem workItem;
+
+        @Override
+        public void executeWorkItem(WorkItem workItem, WorkItemManager manager) {
+            this.workItem = workItem;
+        }
+
+        @Override
+        public void abortWorkItem(WorkItem workItem, WorkItemManager manager) {
+            this.workItem = null;
+        }
+
+        public WorkItem getWorkItem() {
+            return workItem;
+        }
+    }
+}
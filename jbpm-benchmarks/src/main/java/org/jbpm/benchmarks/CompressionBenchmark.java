@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.impl.EnvironmentFactory;
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jbpm.benchmarks.BenchmarkProcesses.KeepingWorkItemHandler;
+import org.jbpm.persistence.processinstance.ProcessInstanceCompression;
+import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.kie.api.KieBase;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compression of marshalled process instances (ProcessInstanceCompression) with built in and trained
+ * dictionary - time of compress and decompress. Original and compressed sizes are reported as secondary
+ * results when run with <code>-prof org.jbpm.benchmarks.CompressionSizeProfiler</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.jbpm.persistence.pi.compress=true")
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    @Param({"10", "100"})
+    private int variables;
+
+    @Param({"100", "10000"})
+    private int variableSize;
+
+    @Param({"false", "true"})
+    private boolean trained;
+
+    private KieSession ksession;
+    private String processId;
+    private byte[] content;
+    private byte[] compressed;
+
+    // sizes of the current trial, read by CompressionSizeProfiler in the same (forked) VM
+    static volatile int originalSize;
+    static volatile int compressedSize;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.workItemProcess());
+        ksession = kbase.newKieSession();
+        ksession.getWorkItemManager().registerWorkItemHandler(BenchmarkProcesses.TASK_NAME, new KeepingWorkItemHandler());
+
+        Environment env = EnvironmentFactory.newEnvironment();
+        env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[] {
+                new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT) });
+
+        processId = BenchmarkProcesses.WORK_ITEM_PROCESS;
+        // marshall without compression to get the raw content
+        ProcessInstanceCompression.setEnabled(false);
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 0; i < 10; i++) {
+            ProcessInstance processInstance = ksession.startProcess(processId,
+                    BenchmarkProcesses.variables(variables, variableSize));
+            ProcessInstanceInfo processInstanceInfo = new ProcessInstanceInfo(processInstance, env);
+            processInstanceInfo.transform();
+            samples.add(processInstanceInfo.getProcessInstanceByteArray());
+        }
+        ProcessInstanceCompression.setEnabled(true);
+        content = samples.remove(samples.size() - 1);
+        if (trained) {
+            processId = processId + ".trained";
+            ProcessInstanceCompression.registerDictionary(processId, ProcessInstanceCompression.trainDictionary(samples, 32 * 1024));
+        }
+        compressed = ProcessInstanceCompression.compress(processId, content);
+        originalSize = content.length;
+        compressedSize = compressed.length;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return ProcessInstanceCompression.compress(processId, content);
+    }
+
+    @Benchmark
+    public byte[] decompress() {
+        return ProcessInstanceCompression.decompress(processId, compressed);
+    }
+}
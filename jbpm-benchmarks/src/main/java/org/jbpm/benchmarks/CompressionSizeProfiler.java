@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports sizes of the process instance used by {@link CompressionBenchmark} (original and compressed size 
+ * in bytes and compression ratio) as secondary results of every iteration, so they become part of the 
+ * benchmark results. Enable with <code>-prof org.jbpm.benchmarks.CompressionSizeProfiler</code>.
+ */
+public class CompressionSizeProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+        return "Size of process instances compressed by CompressionBenchmark";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, 
+            IterationResult result) {
+        int originalSize = CompressionBenchmark.originalSize;
+        int compressedSize = CompressionBenchmark.compressedSize;
+        if (!benchmarkParams.getBenchmark().startsWith(CompressionBenchmark.class.getName()) || originalSize == 0) {
+            return Collections.emptyList();
+        }
+        List<Result> results = new ArrayList<Result>();
+        results.add(new ScalarResult("size.original", originalSize, "bytes", AggregationPolicy.AVG));
+        results.add(new ScalarResult("size.compressed", compressedSize, "bytes", AggregationPolicy.AVG));
+        results.add(new ScalarResult("size.ratio", (double) compressedSize / originalSize, "ratio", AggregationPolicy.AVG));
+        return results;
+    }
+}
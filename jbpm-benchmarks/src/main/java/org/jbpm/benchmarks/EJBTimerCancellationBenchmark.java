@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.ejb.EJBException;
+import javax.ejb.NoSuchObjectLocalException;
+import javax.ejb.ScheduleExpression;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerHandle;
+import javax.ejb.TimerService;
+
+import org.drools.core.time.Job;
+import org.drools.core.time.JobContext;
+import org.drools.core.time.JobHandle;
+import org.drools.core.time.Trigger;
+import org.drools.core.time.impl.PointInTimeTrigger;
+import org.drools.core.time.impl.TimerJobInstance;
+import org.jbpm.services.ejb.timer.EJBTimerScheduler;
+import org.jbpm.services.ejb.timer.EjbGlobalJobHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cancellation and lookup of timers in EJBTimerScheduler against number of scheduled timers, with and without
+ * the timer index. EJB timer service is replaced with in memory one that (as the container does) returns
+ * deserialized copy of timer info on every access. Canceled timer is scheduled again so the number of timers
+ * stays constant - cancel time therefore includes one schedule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class EJBTimerCancellationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int timers;
+
+    @Param({"true", "false"})
+    private boolean index;
+
+    private EJBTimerScheduler scheduler;
+    private BenchmarkTimerJobInstance[] jobs;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        scheduler = new EJBTimerScheduler();
+        setField(scheduler, "timerService", new InMemoryTimerService());
+        setField(scheduler, "useIndex", index);
+
+        jobs = new BenchmarkTimerJobInstance[timers];
+        long fireTime = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < timers; i++) {
+            jobs[i] = new BenchmarkTimerJobInstance(new EjbGlobalJobHandle(i, UUID.randomUUID().toString(), "benchmark"), fireTime);
+            scheduler.internalSchedule(jobs[i]);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean cancel() {
+        BenchmarkTimerJobInstance job = nextJob();
+        boolean removed = scheduler.removeJob(job.getJobHandle());
+        scheduler.internalSchedule(job);
+        return removed;
+    }
+
+    @Benchmark
+    public TimerJobInstance lookup() {
+        return scheduler.getTimerByName(((EjbGlobalJobHandle) nextJob().getJobHandle()).getUuid());
+    }
+
+    private BenchmarkTimerJobInstance nextJob() {
+        BenchmarkTimerJobInstance job = jobs[next];
+        next = (next + 1) % jobs.length;
+        return job;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static byte[] serialize(Serializable object) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(object);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new EJBException(e);
+        }
+    }
+
+    private static Serializable deserialize(byte[] data) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            return (Serializable) in.readObject();
+        } catch (Exception e) {
+            throw new EJBException(e);
+        }
+    }
+
+    public static class BenchmarkTimerJobInstance implements TimerJobInstance, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final JobHandle jobHandle;
+        private final Trigger trigger;
+
+        public BenchmarkTimerJobInstance(JobHandle jobHandle, long fireTime) {
+            this.jobHandle = jobHandle;
+            this.trigger = new PointInTimeTrigger(fireTime, null, null);
+        }
+
+        public JobHandle getJobHandle() {
+            return jobHandle;
+        }
+
+        public Job getJob() {
+            return null;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public JobContext getJobContext() {
+            return null;
+        }
+    }
+
+    /*
+     * Keeps timers in memory only, info is kept serialized as persistent timers are
+     */
+    private static class InMemoryTimerService implements TimerService {
+
+        private final Map<Long, InMemoryTimer> timers = new LinkedHashMap<Long, InMemoryTimer>();
+        private long counter;
+
+        public Timer createSingleActionTimer(Date expiration, TimerConfig timerConfig) {
+            InMemoryTimer timer = new InMemoryTimer(this, ++counter, expiration, serialize(timerConfig.getInfo()));
+            timers.put(timer.id, timer);
+            return timer;
+        }
+
+        public Timer createSingleActionTimer(long duration, TimerConfig timerConfig) {
+            return createSingleActionTimer(new Date(System.currentTimeMillis() + duration), timerConfig);
+        }
+
+        public Timer createTimer(long duration, Serializable info) {
+            return createSingleActionTimer(duration, new TimerConfig(info, true));
+        }
+
+        public Timer createTimer(Date expiration, Serializable info) {
+            return createSingleActionTimer(expiration, new TimerConfig(info, true));
+        }
+
+        public Timer createTimer(long initialDuration, long intervalDuration, Serializable info) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createTimer(Date initialExpiration, long intervalDuration, Serializable info) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createIntervalTimer(long initialDuration, long intervalDuration, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createIntervalTimer(Date initialExpiration, long intervalDuration, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createCalendarTimer(ScheduleExpression schedule) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createCalendarTimer(ScheduleExpression schedule, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Collection<Timer> getTimers() {
+            return new ArrayList<Timer>(timers.values());
+        }
+
+        public Collection<Timer> getAllTimers() {
+            return getTimers();
+        }
+
+        InMemoryTimer getTimer(long id) {
+            InMemoryTimer timer = timers.get(id);
+            if (timer == null) {
+                throw new NoSuchObjectLocalException("Timer " + id + " does not exist");
+            }
+            return timer;
+        }
+    }
+
+    private static class InMemoryTimer implements Timer {
+
+        private final InMemoryTimerService timerService;
+        private final long id;
+        private final Date expiration;
+        private final byte[] info;
+
+        InMemoryTimer(InMemoryTimerService timerService, long id, Date expiration, byte[] info) {
+            this.timerService = timerService;
+            this.id = id;
+            this.expiration = expiration;
+            this.info = info;
+        }
+
+        public void cancel() {
+            timerService.getTimer(id);
+            timerService.timers.remove(id);
+        }
+
+        public long getTimeRemaining() {
+            return expiration.getTime() - System.currentTimeMillis();
+        }
+
+        public Date getNextTimeout() {
+            return expiration;
+        }
+
+        public ScheduleExpression getSchedule() {
+            throw new IllegalStateException("Not a calendar timer");
+        }
+
+        public boolean isPersistent() {
+            return true;
+        }
+
+        public boolean isCalendarTimer() {
+            return false;
+        }
+
+        public Serializable getInfo() {
+            return deserialize(info);
+        }
+
+        public TimerHandle getHandle() {
+            return new InMemoryTimerHandle(timerService, id);
+        }
+    }
+
+    private static class InMemoryTimerHandle implements TimerHandle {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient InMemoryTimerService timerService;
+        private final long id;
+
+        InMemoryTimerHandle(InMemoryTimerService timerService, long id) {
+            this.timerService = timerService;
+            this.id = id;
+        }
+
+        public Timer getTimer() {
+            return timerService.getTimer(id);
+        }
+    }
+}
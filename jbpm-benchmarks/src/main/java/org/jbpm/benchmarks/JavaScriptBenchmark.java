@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gateway with JavaScript constraints evaluated with and without pooling of the engine bindings
+ * (org.jbpm.javascript.bindings.pool.size), for process instances carrying given number of variables.
+ * Each parameter combination runs in its own fork so the pool size is read on first use.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class JavaScriptBenchmark {
+
+    private static final String DIALECT = "JavaScript";
+
+    @Param({"0", "16"})
+    private String poolSize;
+
+    @Param({"1", "50"})
+    private int variableCount;
+
+    private KieSession ksession;
+    private String processId;
+    private Map<String, Object> parameters;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty("org.jbpm.javascript.bindings.pool.size", poolSize);
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.gatewayProcess(DIALECT));
+        ksession = kbase.newKieSession();
+        processId = BenchmarkProcesses.GATEWAY_PROCESS + DIALECT;
+        parameters = BenchmarkProcesses.variables(variableCount, 16);
+        parameters.put("x", 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+        System.clearProperty("org.jbpm.javascript.bindings.pool.size");
+    }
+
+    @Benchmark
+    public ProcessInstance evaluateConstraints() {
+        return ksession.startProcess(processId, parameters);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jbpm.services.task.events.TaskEventSupport;
+import org.jbpm.services.task.internals.lifecycle.Allowed;
+import org.jbpm.services.task.internals.lifecycle.MVELLifeCycleManager;
+import org.jbpm.services.task.internals.lifecycle.OperationCommand;
+import org.kie.api.task.model.Group;
+import org.kie.api.task.model.OrganizationalEntity;
+import org.kie.api.task.model.Status;
+import org.kie.api.task.model.Task;
+import org.kie.api.task.model.User;
+import org.kie.internal.task.api.TaskModelFactory;
+import org.kie.internal.task.api.TaskModelProvider;
+import org.kie.internal.task.api.TaskPersistenceContext;
+import org.kie.internal.task.api.model.InternalPeopleAssignments;
+import org.kie.internal.task.api.model.InternalTask;
+import org.kie.internal.task.api.model.InternalTaskData;
+import org.kie.internal.task.api.model.Operation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Permission and status evaluation of task operations by MVELLifeCycleManager (compiled life cycle table 
+ * and hashed group membership) compared with evaluation that walks the operation commands as the manager 
+ * did before (<code>interpreted</code>). View operation is used as it does not change the task. 
+ * User is member of the last potential owner group so all potential owners are checked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LifeCycleBenchmark {
+
+    @Param({"5", "50"})
+    private int userGroups;
+
+    @Param({"10", "100"})
+    private int ownerGroups;
+
+    private MVELLifeCycleManager lifeCycleManager;
+    private TaskPersistenceContext persistenceContext;
+    private Map<Operation, List<OperationCommand>> operations;
+    private List<String> groupIds;
+
+    @Setup
+    public void setup() {
+        TaskModelFactory factory = TaskModelProvider.getFactory();
+        final User user = factory.newUser("john");
+
+        List<OrganizationalEntity> potentialOwners = new ArrayList<OrganizationalEntity>();
+        for (int i = 0; i < ownerGroups; i++) {
+            potentialOwners.add(factory.newGroup("owners" + i));
+        }
+        groupIds = new ArrayList<String>();
+        for (int i = 0; i < userGroups - 1; i++) {
+            groupIds.add("other" + i);
+        }
+        groupIds.add("owners" + (ownerGroups - 1));
+
+        InternalPeopleAssignments people = (InternalPeopleAssignments) factory.newPeopleAssignments();
+        people.setPotentialOwners(potentialOwners);
+        people.setBusinessAdministrators(new ArrayList<OrganizationalEntity>());
+        people.setTaskStakeholders(new ArrayList<OrganizationalEntity>());
+        InternalTaskData taskData = (InternalTaskData) factory.newTaskData();
+        taskData.setStatus(Status.Ready);
+        final InternalTask task = (InternalTask) factory.newTask();
+        task.setId(1L);
+        task.setPeopleAssignments(people);
+        task.setTaskData(taskData);
+
+        persistenceContext = (TaskPersistenceContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {TaskPersistenceContext.class}, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("findTask".equals(method.getName())) {
+                            return task;
+                        } else if ("findUser".equals(method.getName())) {
+                            return user;
+                        }
+                        return null;
+                    }
+                });
+        lifeCycleManager = new MVELLifeCycleManager(null, persistenceContext, null, new TaskEventSupport());
+        operations = MVELLifeCycleManager.initMVELOperations();
+    }
+
+    @Benchmark
+    public void compiled() {
+        lifeCycleManager.taskOperation(Operation.View, 1L, "john", null, null, groupIds);
+    }
+
+    @Benchmark
+    public void interpreted() {
+        Task task = persistenceContext.findTask(1L);
+        User user = persistenceContext.findUser("john");
+        evalCommand(Operation.View, operations.get(Operation.View), task, user, groupIds);
+    }
+
+    /*
+     * Status and permission evaluation as done by MVELLifeCycleManager before the life cycle table, 
+     * commands are not applied as View operation does not change the task
+     */
+    private static void evalCommand(Operation operation, List<OperationCommand> commands, Task task, User user, List<String> groupIds) {
+        boolean statusMatched = false;
+        for (OperationCommand command : commands) {
+            if (command.getStatus() != null) {
+                for (Status status : command.getStatus()) {
+                    if (task.getTaskData().getStatus() == status) {
+                        statusMatched = true;
+                        if (!isAllowed(command, task, user, groupIds)) {
+                            throw new IllegalStateException("User '" + user + "' does not have permissions to execute operation '" + operation + "'");
+                        }
+                    }
+                }
+            }
+            if (command.getPreviousStatus() != null) {
+                for (Status status : command.getPreviousStatus()) {
+                    if (task.getTaskData().getPreviousStatus() == status) {
+                        statusMatched = true;
+                        if (!isAllowed(command, task, user, groupIds)) {
+                            throw new IllegalStateException("User '" + user + "' does not have permissions to execute operation '" + operation + "'");
+                        }
+                    }
+                }
+            }
+        }
+        if (!statusMatched) {
+            throw new IllegalStateException("No status match for operation '" + operation + "'");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isAllowed(OperationCommand command, Task task, User user, List<String> groupIds) {
+        boolean operationAllowed = false;
+        for (Allowed allowed : command.getAllowed()) {
+            if (operationAllowed) {
+                break;
+            }
+            switch (allowed) {
+                case Owner:
+                    operationAllowed = task.getTaskData().getActualOwner() != null && task.getTaskData().getActualOwner().equals(user);
+                    break;
+                case Initiator:
+                    operationAllowed = task.getTaskData().getCreatedBy() != null
+                            && (task.getTaskData().getCreatedBy().equals(user) || groupIds.contains(task.getTaskData().getCreatedBy().getId()));
+                    break;
+                case PotentialOwner:
+                    operationAllowed = isAllowed(user, groupIds, (List<OrganizationalEntity>) task.getPeopleAssignments().getPotentialOwners());
+                    break;
+                case BusinessAdministrator:
+                    operationAllowed = isAllowed(user, groupIds, (List<OrganizationalEntity>) task.getPeopleAssignments().getBusinessAdministrators());
+                    break;
+                case TaskStakeholders:
+                    operationAllowed = isAllowed(user, groupIds, (List<OrganizationalEntity>) ((InternalPeopleAssignments) task.getPeopleAssignments()).getTaskStakeholders());
+                    break;
+                case Anyone:
+                    operationAllowed = true;
+                    break;
+            }
+        }
+        return operationAllowed;
+    }
+
+    private static boolean isAllowed(User user, List<String> groupIds, List<OrganizationalEntity> entities) {
+        for (OrganizationalEntity entity : entities) {
+            if (entity instanceof User && entity.equals(user)) {
+                return true;
+            }
+            if (entity instanceof Group && groupIds.contains(entity.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
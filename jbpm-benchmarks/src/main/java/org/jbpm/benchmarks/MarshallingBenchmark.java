@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.common.InternalKnowledgeRuntime;
+import org.drools.core.impl.EnvironmentFactory;
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jbpm.benchmarks.BenchmarkProcesses.KeepingWorkItemHandler;
+import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.kie.api.KieBase;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Marshalling of process instances through ProcessInstanceInfo which uses
+ * ProtobufRuleFlowProcessInstanceMarshaller - both writing (transform) and full round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class MarshallingBenchmark {
+
+    @Param({"10", "100"})
+    private int variables;
+
+    @Param({"100", "10000"})
+    private int variableSize;
+
+    private KieSession ksession;
+    private Environment env;
+    private ProcessInstance processInstance;
+    private ProcessInstanceInfo processInstanceInfo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.workItemProcess());
+        ksession = kbase.newKieSession();
+        ksession.getWorkItemManager().registerWorkItemHandler(BenchmarkProcesses.TASK_NAME, new KeepingWorkItemHandler());
+
+        env = EnvironmentFactory.newEnvironment();
+        env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[] {
+                new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT) });
+
+        processInstance = ksession.startProcess(BenchmarkProcesses.WORK_ITEM_PROCESS,
+                BenchmarkProcesses.variables(variables, variableSize));
+        processInstanceInfo = new ProcessInstanceInfo(processInstance, env);
+        processInstanceInfo.transform();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+    }
+
+    @Benchmark
+    public byte[] transform() {
+        processInstanceInfo.transform();
+        return processInstanceInfo.getProcessInstanceByteArray();
+    }
+
+    @Benchmark
+    public ProcessInstance roundTrip() {
+        ProcessInstanceInfo info = new ProcessInstanceInfo(processInstance, env);
+        info.transform();
+        info.clearProcessInstance();
+        // read only so the unmarshalled instance does not register its listeners in the session
+        return info.getProcessInstance((InternalKnowledgeRuntime) ksession, env, true);
+    }
+}
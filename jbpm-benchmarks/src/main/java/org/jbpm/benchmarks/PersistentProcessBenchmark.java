@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.drools.core.impl.EnvironmentFactory;
+import org.jbpm.benchmarks.BenchmarkProcesses.KeepingWorkItemHandler;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.internal.persistence.jpa.JPAKnowledgeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+/**
+ * Persistent (JPA) process execution backed by in memory H2 data base - includes ProcessInstanceInfo.transform()
+ * and the whole transaction handling of the engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistentProcessBenchmark {
+
+    private static final String DATASOURCE_NAME = "jdbc/jbpm-bench-ds";
+
+    @Param({"0", "50"})
+    private int variables;
+
+    private PoolingDataSource dataSource;
+    private EntityManagerFactory emf;
+    private KieSession ksession;
+    private KeepingWorkItemHandler handler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // no need for transaction journal as data base does not outlive the benchmark
+        TransactionManagerServices.getConfiguration().setJournal("null");
+
+        dataSource = new PoolingDataSource();
+        dataSource.setUniqueName(DATASOURCE_NAME);
+        dataSource.setClassName("bitronix.tm.resource.jdbc.lrc.LrcXADataSource");
+        dataSource.setMaxPoolSize(5);
+        dataSource.setAllowLocalTransactions(true);
+        dataSource.getDriverProperties().put("user", "sa");
+        dataSource.getDriverProperties().put("password", "");
+        dataSource.getDriverProperties().put("url", "jdbc:h2:mem:jbpm-bench;DB_CLOSE_DELAY=-1;MVCC=TRUE");
+        dataSource.getDriverProperties().put("driverClassName", "org.h2.Driver");
+        dataSource.init();
+
+        emf = Persistence.createEntityManagerFactory("org.jbpm.benchmarks.jpa");
+
+        Environment env = EnvironmentFactory.newEnvironment();
+        env.set(EnvironmentName.ENTITY_MANAGER_FACTORY, emf);
+        env.set(EnvironmentName.TRANSACTION_MANAGER, TransactionManagerServices.getTransactionManager());
+
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.simpleProcess(), BenchmarkProcesses.workItemProcess());
+        ksession = JPAKnowledgeService.newStatefulKnowledgeSession(kbase, null, env);
+        handler = new KeepingWorkItemHandler();
+        ksession.getWorkItemManager().registerWorkItemHandler(BenchmarkProcesses.TASK_NAME, handler);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+        emf.close();
+        dataSource.close();
+        TransactionManagerServices.getTransactionManager().shutdown();
+    }
+
+    @Benchmark
+    public ProcessInstance startSimpleProcess() {
+        return ksession.startProcess(BenchmarkProcesses.SIMPLE_PROCESS);
+    }
+
+    @Benchmark
+    public ProcessInstance startAndCompleteWorkItemProcess() {
+        ProcessInstance processInstance = ksession.startProcess(BenchmarkProcesses.WORK_ITEM_PROCESS,
+                BenchmarkProcesses.variables(variables, 100));
+        ksession.getWorkItemManager().completeWorkItem(handler.getWorkItem().getId(), null);
+        return processInstance;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jbpm.benchmarks.BenchmarkProcesses.KeepingWorkItemHandler;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starting and completing process instances on in memory session (ProcessRuntimeImpl).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessRuntimeBenchmark {
+
+    private KieSession ksession;
+    private KeepingWorkItemHandler handler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.simpleProcess(), BenchmarkProcesses.workItemProcess());
+        ksession = kbase.newKieSession();
+        handler = new KeepingWorkItemHandler();
+        ksession.getWorkItemManager().registerWorkItemHandler(BenchmarkProcesses.TASK_NAME, handler);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+    }
+
+    @Benchmark
+    public ProcessInstance startSimpleProcess() {
+        return ksession.startProcess(BenchmarkProcesses.SIMPLE_PROCESS);
+    }
+
+    @Benchmark
+    public ProcessInstance startAndCompleteWorkItemProcess() {
+        ProcessInstance processInstance = ksession.startProcess(BenchmarkProcesses.WORK_ITEM_PROCESS);
+        ksession.getWorkItemManager().completeWorkItem(handler.getWorkItem().getId(), null);
+        return processInstance;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.process.instance.impl.WorkItemImpl;
+import org.jbpm.process.workitem.rest.RESTWorkItemHandler;
+import org.kie.api.runtime.process.WorkItemHandler;
+import org.kie.api.runtime.process.WorkItemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Round trip of RESTWorkItemHandler GET request against embedded HTTP server (JDK's own so no extra dependency
+ * is needed), with and without the shared connection pool. In ASYNC mode the time includes handing the request 
+ * over to the handler's thread pool and waiting for the work item to be completed from there.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RESTWorkItemBenchmark {
+
+    private static final byte[] RESPONSE = "Hello from REST".getBytes();
+
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    @Param({"SYNC", "ASYNC"})
+    private String mode;
+
+    private HttpServer server;
+    private RESTWorkItemHandler handler;
+    private String url;
+
+    @Setup
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 50);
+        server.createContext("/test", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(RESPONSE);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/test";
+
+        BenchmarkRESTWorkItemHandler.setPooling(pooled);
+        handler = new BenchmarkRESTWorkItemHandler();
+    }
+
+    @TearDown
+    public void tearDown() {
+        RESTWorkItemHandler.shutdownConnectionPool();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public Object get() throws Exception {
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter("Url", url);
+        workItem.setParameter("Method", "GET");
+        workItem.setParameter("Mode", mode);
+
+        CompletingWorkItemManager manager = new CompletingWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        if (!manager.completed.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Work item was not completed");
+        }
+        return workItem.getResult("Result");
+    }
+
+    private static class BenchmarkRESTWorkItemHandler extends RESTWorkItemHandler {
+
+        static void setPooling(boolean pooling) {
+            HTTP_CLIENT_POOLING = pooling && HTTP_CLIENT_API_43;
+        }
+    }
+
+    private static class CompletingWorkItemManager implements WorkItemManager {
+
+        private final WorkItemImpl workItem;
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        CompletingWorkItemManager(WorkItemImpl workItem) {
+            this.workItem = workItem;
+        }
+
+        public void completeWorkItem(long id, Map<String, Object> results) {
+            workItem.setResults(results);
+            completed.countDown();
+        }
+
+        public void abortWorkItem(long id) {
+            completed.countDown();
+        }
+
+        public void registerWorkItemHandler(String workItemName, WorkItemHandler handler) {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jbpm.benchmarks.BenchmarkProcesses.KeepingWorkItemHandler;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.EventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * WorkflowProcessInstanceImpl.signalEvent on process instance with many registered event listeners,
+ * both for signal type that has listeners and for one that does not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class SignalEventBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int listeners;
+
+    private KieSession ksession;
+    private WorkflowProcessInstanceImpl processInstance;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        KieBase kbase = BenchmarkProcesses.newKieBase(BenchmarkProcesses.workItemProcess());
+        ksession = kbase.newKieSession();
+        ksession.getWorkItemManager().registerWorkItemHandler(BenchmarkProcesses.TASK_NAME, new KeepingWorkItemHandler());
+        processInstance = (WorkflowProcessInstanceImpl) ksession.startProcess(BenchmarkProcesses.WORK_ITEM_PROCESS);
+
+        for (int i = 0; i < listeners; i++) {
+            // spread listeners across event types so lookup of given type matters
+            processInstance.addEventListener("event" + (i % 10), new CountingEventListener(), false);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ksession.dispose();
+    }
+
+    @Benchmark
+    public void signalWithListeners() {
+        processInstance.signalEvent("event0", blackhole);
+    }
+
+    @Benchmark
+    public void signalWithoutListeners() {
+        processInstance.signalEvent("unknown", blackhole);
+    }
+
+    private static class CountingEventListener implements EventListener {
+
+        @Override
+        public void signalEvent(String type, Object event) {
+            ((Blackhole) event).consume(type);
+        }
+
+        @Override
+        public String[] getEventTypes() {
+            return null;
+        }
+    }
+}
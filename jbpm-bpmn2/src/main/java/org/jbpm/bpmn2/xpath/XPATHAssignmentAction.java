@@ -16,14 +16,12 @@
 package org.jbpm.bpmn2.xpath;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 
 import org.drools.core.process.instance.WorkItem;
 import org.jbpm.process.instance.impl.AssignmentAction;
+import org.jbpm.process.instance.impl.util.XPATHSupport;
 import org.jbpm.workflow.core.node.Assignment;
 import org.kie.api.runtime.process.ProcessContext;
 import org.w3c.dom.Attr;
@@ -50,14 +48,10 @@ public class XPATHAssignmentAction implements AssignmentAction {
         String from = assignment.getFrom();
         String to = assignment.getTo();
         
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpathFrom = factory.newXPath();
+        // compiled expressions are cached per thread
+        XPathExpression exprFrom = XPATHSupport.compile(from);
 
-        XPathExpression exprFrom = xpathFrom.compile(from);
-
-        XPath xpathTo = factory.newXPath();
-
-        XPathExpression exprTo = xpathTo.compile(to);
+        XPathExpression exprTo = XPATHSupport.compile(to);
 
         Object target = null;
         Object source = null;
@@ -92,7 +86,7 @@ public class XPATHAssignmentAction implements AssignmentAction {
         if (source instanceof org.w3c.dom.Node) {
              nl = (NodeList) exprFrom.evaluate(source, XPathConstants.NODESET);
         } else if (source instanceof String) {
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            DocumentBuilder builder = XPATHSupport.getDocumentBuilder();
             Document doc = builder.newDocument();
             //quirky: create a temporary element, use its nodelist
             Element temp = doc.createElementNS(null, "temp");
@@ -114,7 +108,7 @@ public class XPATHAssignmentAction implements AssignmentAction {
                 } else if (nl.item(i) instanceof Text) {
                     targetElem = ((Text) nl.item(i)).getWholeText();
                 } else {
-                    DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                    DocumentBuilder builder = XPATHSupport.getDocumentBuilder();
                     Document doc = builder.newDocument();
                     targetElem  = doc.importNode(nl.item(i), true);
                 }
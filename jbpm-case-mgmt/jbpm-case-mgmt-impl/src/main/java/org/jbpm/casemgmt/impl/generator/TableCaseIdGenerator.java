@@ -18,10 +18,19 @@ package org.jbpm.casemgmt.impl.generator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.persistence.NoResultException;
 
 import org.drools.core.command.impl.GenericCommand;
+import org.drools.persistence.OrderedTransactionSynchronization;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerFactory;
+import org.drools.persistence.TransactionManagerHelper;
 import org.jbpm.casemgmt.api.generator.CaseIdGenerator;
 import org.jbpm.casemgmt.api.generator.CasePrefixNotFoundException;
 import org.jbpm.shared.services.impl.TransactionalCommandService;
@@ -38,18 +47,38 @@ import org.slf4j.LoggerFactory;
  * 
  * Generation is done with pessimistic locking to secure correctness and since it's the only operation in transaction it should not
  * cause any performance issues.
+ * 
+ * When block size (<code>org.jbpm.casemgmt.table.generator.block.size</code>) is bigger than 1 (default) the table entry is incremented 
+ * by block size so each call reserves whole block of ids for this generator (hi/lo) and ids are then given out from memory without
+ * touching data base until the block is exhausted. As a consequence:
+ * <ul>
+ *  <li>ids are unique but not ordered across nodes - each node gives out ids from its own block</li>
+ *  <li>ids not given out when generator is discarded (e.g. server restart) are lost, so there might be gaps of up to 
+ *  block size - 1 ids per prefix and node on each restart</li>
+ * </ul>
+ * Block reserved within a transaction is given out to others only after that transaction commits, if it's rolled back 
+ * the reservation is rolled back as well.
  */
 public class TableCaseIdGenerator implements CaseIdGenerator {
     
     private static final Logger logger = LoggerFactory.getLogger(TableCaseIdGenerator.class);
     private boolean removeOnUnregister = Boolean.parseBoolean(System.getProperty("org.jbpm.casemgmt.table.generator.clean", "false"));
     
+    private int blockSize = Integer.parseInt(System.getProperty("org.jbpm.casemgmt.table.generator.block.size", "1"));
+    
     private TransactionalCommandService commandService;
+    
+    private final ConcurrentMap<String, IdBlocks> blocks = new ConcurrentHashMap<String, IdBlocks>();
 
     public TableCaseIdGenerator(TransactionalCommandService commandService) {
         this.commandService = commandService;
     }
 
+    public TableCaseIdGenerator(TransactionalCommandService commandService, int blockSize) {
+        this.commandService = commandService;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
     @Override
     public void register(String prefix) {
         CaseIdInfo caseIdInfo = findCaseIdInfoByPrefix(prefix);
@@ -67,6 +96,7 @@ public class TableCaseIdGenerator implements CaseIdGenerator {
 
     @Override
     public void unregister(String prefix) {
+        blocks.remove(prefix);
         if (removeOnUnregister) {
             CaseIdInfo caseIdInfo = findCaseIdInfoByPrefix(prefix);
             if (caseIdInfo != null) {
@@ -81,13 +111,67 @@ public class TableCaseIdGenerator implements CaseIdGenerator {
 
     @Override
     public String generate(String prefix, Map<String, Object> optionalParameters) throws CasePrefixNotFoundException {
-        CaseIdInfo caseIdInfo = commandService.execute(new IncrementAndGetCaseIdCommand(prefix));
-        logger.debug("Next sequence value for case id prefix {} is {}", prefix, caseIdInfo.getCurrentValue());
-        long nextVal = caseIdInfo.getCurrentValue();
+        long nextVal;
+        if (blockSize > 1) {
+            nextVal = nextFromBlock(prefix);
+        } else {
+            CaseIdInfo caseIdInfo = commandService.execute(new IncrementAndGetCaseIdCommand(prefix, 1));
+            if (caseIdInfo == null) {
+                throw new CasePrefixNotFoundException("Case id prefix " + prefix + " is not registered");
+            }
+            logger.debug("Next sequence value for case id prefix {} is {}", prefix, caseIdInfo.getCurrentValue());
+            nextVal = caseIdInfo.getCurrentValue();
+        }
         String paddedNumber = String.format("%010d", nextVal);
         return prefix + "-" + paddedNumber;
     }
     
+    protected long nextFromBlock(final String prefix) {
+        IdBlocks prefixBlocks = blocks.get(prefix);
+        if (prefixBlocks == null) {
+            prefixBlocks = new IdBlocks();
+            IdBlocks existing = blocks.putIfAbsent(prefix, prefixBlocks);
+            if (existing != null) {
+                prefixBlocks = existing;
+            }
+        }
+        long nextVal = prefixBlocks.next();
+        if (nextVal > 0) {
+            return nextVal;
+        }
+        // reserve new block, first id is used directly and the rest is given out from memory
+        CaseIdInfo caseIdInfo = commandService.execute(new IncrementAndGetCaseIdCommand(prefix, blockSize));
+        if (caseIdInfo == null) {
+            throw new CasePrefixNotFoundException("Case id prefix " + prefix + " is not registered");
+        }
+        long hi = caseIdInfo.getCurrentValue();
+        long lo = hi - blockSize + 1;
+        logger.debug("Reserved block of case ids {} - {} for prefix {}", lo, hi, prefix);
+        
+        final IdBlock block = new IdBlock(lo + 1, hi);
+        final IdBlocks reservedFor = prefixBlocks;
+        TransactionManager tm = TransactionManagerFactory.get().newTransactionManager();
+        if (tm.getStatus() == TransactionManager.STATUS_ACTIVE) {
+            // reservation is part of outer transaction so make it available only once it's committed
+            TransactionManagerHelper.registerTransactionSyncInContainer(tm, new OrderedTransactionSynchronization(5, "CaseIdBlock-" + prefix + "-" + lo) {
+                
+                @Override
+                public void beforeCompletion() {
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionManager.STATUS_COMMITTED) {
+                        reservedFor.add(block);
+                    }
+                }
+            });
+        } else {
+            prefixBlocks.add(block);
+        }
+        return lo;
+    }
+    
     protected CaseIdInfo findCaseIdInfoByPrefix(String prefix) {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("prefix", prefix);
@@ -106,9 +190,11 @@ public class TableCaseIdGenerator implements CaseIdGenerator {
         private static final long serialVersionUID = 8670412133363766162L;
         
         private String prefix;
+        private long increment;
         
-        public IncrementAndGetCaseIdCommand(String prefix) {
+        public IncrementAndGetCaseIdCommand(String prefix, long increment) {
             this.prefix = prefix;
+            this.increment = increment;
         }
 
         @Override
@@ -123,7 +209,7 @@ public class TableCaseIdGenerator implements CaseIdGenerator {
                 caseIdInfo = ctx.queryAndLockWithParametersInTransaction("findCaseIdInfoByPrefix",params, true, CaseIdInfo.class);
                 
                 if (caseIdInfo != null) {
-                    caseIdInfo.setCurrentValue(caseIdInfo.getCurrentValue() + 1);
+                    caseIdInfo.setCurrentValue(caseIdInfo.getCurrentValue() + increment);
                     ctx.merge(caseIdInfo);
                 }
             } catch (NoResultException e) {
@@ -134,4 +220,53 @@ public class TableCaseIdGenerator implements CaseIdGenerator {
         
     }
 
+    /*
+     * Reserved blocks of single prefix, ids are given out without locking
+     */
+    private static class IdBlocks {
+        
+        private final AtomicReference<IdBlock> current = new AtomicReference<IdBlock>();
+        private final ConcurrentLinkedQueue<IdBlock> reserved = new ConcurrentLinkedQueue<IdBlock>();
+        
+        long next() {
+            while (true) {
+                IdBlock block = current.get();
+                if (block != null) {
+                    long nextVal = block.next();
+                    if (nextVal > 0) {
+                        return nextVal;
+                    }
+                }
+                IdBlock nextBlock = reserved.poll();
+                if (nextBlock == null) {
+                    return -1;
+                }
+                if (!current.compareAndSet(block, nextBlock)) {
+                    // other thread already switched to new block, keep this one for later
+                    reserved.offer(nextBlock);
+                }
+            }
+        }
+        
+        void add(IdBlock block) {
+            reserved.offer(block);
+        }
+    }
+    
+    private static class IdBlock {
+        
+        private final AtomicLong next;
+        private final long max;
+        
+        IdBlock(long first, long max) {
+            this.next = new AtomicLong(first);
+            this.max = max;
+        }
+        
+        long next() {
+            long nextVal = next.getAndIncrement();
+            return nextVal <= max ? nextVal : -1;
+        }
+    }
+
 }
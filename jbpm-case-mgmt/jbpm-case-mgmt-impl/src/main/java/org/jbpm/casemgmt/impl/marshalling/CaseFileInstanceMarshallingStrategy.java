@@ -34,12 +34,13 @@ import org.drools.persistence.TransactionManager;
 import org.jbpm.casemgmt.api.model.instance.CaseRoleInstance;
 import org.jbpm.casemgmt.api.model.instance.CommentInstance;
 import org.jbpm.casemgmt.impl.model.instance.CaseFileInstanceImpl;
+import org.jbpm.marshalling.impl.ReaderContextDependentStrategy;
 import org.kie.api.marshalling.ObjectMarshallingStrategy;
 import org.kie.internal.runtime.Cacheable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class CaseFileInstanceMarshallingStrategy implements ObjectMarshallingStrategy, TransactionAware, Cacheable {
+public class CaseFileInstanceMarshallingStrategy implements ObjectMarshallingStrategy, TransactionAware, Cacheable, ReaderContextDependentStrategy {
 
     private static final Logger logger = LoggerFactory.getLogger(CaseFileInstanceMarshallingStrategy.class);
     
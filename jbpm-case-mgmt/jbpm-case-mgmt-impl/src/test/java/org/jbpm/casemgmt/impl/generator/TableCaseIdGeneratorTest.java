@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.casemgmt.impl.generator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jbpm.casemgmt.impl.util.AbstractCaseServicesBaseTest;
+import org.jbpm.shared.services.impl.TransactionalCommandService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableCaseIdGeneratorTest extends AbstractCaseServicesBaseTest {
+
+    @Before
+    public void prepare() {
+        configureServices();
+    }
+
+    @After
+    public void cleanup() {
+        close();
+    }
+
+    @Test
+    public void testGenerateInBlocks() {
+        TableCaseIdGenerator generator = new TableCaseIdGenerator(new TransactionalCommandService(emf), 5);
+        generator.register("BLOCK");
+
+        for (int i = 1; i <= 12; i++) {
+            assertEquals("BLOCK-" + String.format("%010d", i), generator.generate("BLOCK", null));
+        }
+        // three blocks were reserved
+        assertEquals(15, generator.findCaseIdInfoByPrefix("BLOCK").getCurrentValue().longValue());
+    }
+
+    @Test
+    public void testGenerateInBlocksByMultipleGenerators() {
+        // simulates two cluster nodes sharing the same table
+        TableCaseIdGenerator generator1 = new TableCaseIdGenerator(new TransactionalCommandService(emf), 3);
+        TableCaseIdGenerator generator2 = new TableCaseIdGenerator(new TransactionalCommandService(emf), 3);
+        generator1.register("NODES");
+
+        Set<String> caseIds = new HashSet<String>();
+        for (int i = 0; i < 10; i++) {
+            caseIds.add(generator1.generate("NODES", null));
+            caseIds.add(generator2.generate("NODES", null));
+        }
+        assertEquals(20, caseIds.size());
+    }
+}
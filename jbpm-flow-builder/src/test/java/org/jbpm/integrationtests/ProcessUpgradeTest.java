@@ -29,6 +29,7 @@ import org.jbpm.integrationtests.test.Person;
 import org.jbpm.process.instance.ProcessInstance;
 import org.jbpm.test.util.AbstractBaseTest;
 import org.jbpm.workflow.instance.WorkflowProcessInstanceUpgrader;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
 import org.junit.Test;
 import org.kie.api.io.ResourceType;
 import org.kie.internal.KnowledgeBase;
@@ -219,6 +220,9 @@ public class ProcessUpgradeTest extends AbstractBaseTest {
         WorkflowProcessInstanceUpgrader.upgradeProcessInstance(
             session, processInstance.getId(), "org.test.ruleflow2", mapping);
         assertEquals("org.test.ruleflow2", processInstance.getProcessId());
+        // node instances are looked up by their new node id
+        assertEquals(1, ((WorkflowProcessInstanceImpl) processInstance).getNodeInstances(102).size());
+        assertEquals(0, ((WorkflowProcessInstanceImpl) processInstance).getNodeInstances(2).size());
         
         session.fireAllRules();
         
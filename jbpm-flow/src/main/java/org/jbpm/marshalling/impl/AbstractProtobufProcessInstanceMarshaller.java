@@ -142,7 +142,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
         }
 
         VariableScopeInstance variableScopeInstance = (VariableScopeInstance) workFlow.getContextInstance( VariableScope.VARIABLE_SCOPE );
-        List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.getVariables().entrySet() );
+        List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.internalGetVariables().entrySet() );
         Collections.sort( variables,
                           new Comparator<Map.Entry<String, Object>>() {
                               public int compare(Map.Entry<String, Object> o1,
@@ -342,7 +342,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
             
             VariableScopeInstance variableScopeInstance = (VariableScopeInstance) forEachNodeInstance.getContextInstance( VariableScope.VARIABLE_SCOPE);
             if ( variableScopeInstance != null ) {
-                List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.getVariables().entrySet() );
+                List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.internalGetVariables().entrySet() );
                 Collections.sort( variables,
                                   new Comparator<Map.Entry<String, Object>>() {
                                       public int compare(Map.Entry<String, Object> o1,
@@ -398,7 +398,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
             }
             VariableScopeInstance variableScopeInstance = (VariableScopeInstance) compositeNodeInstance.getContextInstance( VariableScope.VARIABLE_SCOPE );
             if ( variableScopeInstance != null ) {
-                List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.getVariables().entrySet() );
+                List<Map.Entry<String, Object>> variables = new ArrayList<Map.Entry<String, Object>>( variableScopeInstance.internalGetVariables().entrySet() );
                 Collections.sort( variables,
                                   new Comparator<Map.Entry<String, Object>>() {
                                       public int compare(Map.Entry<String, Object> o1,
@@ -549,7 +549,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     .getContextInstance( variableScope );
             for ( JBPMMessages.Variable _variable : _instance.getVariableList() ) {
                 try {
-                    Object _value = ProtobufProcessMarshaller.unmarshallVariableValue( context, _variable );
+                    Object _value = ProtobufProcessMarshaller.readVariableValue( context, _variable );
                     variableScopeInstance.internalSetVariable( _variable.getName(), 
                                                                _value );
                 } catch ( ClassNotFoundException e ) {
@@ -595,7 +595,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     VariableScopeInstance variableScopeInstance = (VariableScopeInstance) ((CompositeContextNodeInstance) nodeInstance).getContextInstance( variableScope );
                     for ( JBPMMessages.Variable _variable : _node.getContent().getComposite().getVariableList() ) {
                         try {
-                            Object _value = ProtobufProcessMarshaller.unmarshallVariableValue( context, _variable );
+                            Object _value = ProtobufProcessMarshaller.readVariableValue( context, _variable );
                             variableScopeInstance.internalSetVariable( _variable.getName(), _value );
                         } catch ( ClassNotFoundException e ) {
                             throw new IllegalArgumentException( "Could not reload variable " + _variable.getName() );
@@ -636,7 +636,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     VariableScopeInstance variableScopeInstance = (VariableScopeInstance) ((ForEachNodeInstance) nodeInstance).getContextInstance( VariableScope.VARIABLE_SCOPE );
                     for ( JBPMMessages.Variable _variable : _node.getContent().getForEach().getVariableList() ) {
                         try {
-                            Object _value = ProtobufProcessMarshaller.unmarshallVariableValue( context, _variable );
+                            Object _value = ProtobufProcessMarshaller.readVariableValue( context, _variable );
                             variableScopeInstance.internalSetVariable( _variable.getName(), _value );
                         } catch ( ClassNotFoundException e ) {
                             throw new IllegalArgumentException( "Could not reload variable " + _variable.getName() );
@@ -659,7 +659,7 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     VariableScopeInstance variableScopeInstance = (VariableScopeInstance) ((EventSubProcessNodeInstance) nodeInstance).getContextInstance( VariableScope.VARIABLE_SCOPE );
                     for ( JBPMMessages.Variable _variable : _node.getContent().getComposite().getVariableList() ) {
                         try {
-                            Object _value = ProtobufProcessMarshaller.unmarshallVariableValue( context, _variable );
+                            Object _value = ProtobufProcessMarshaller.readVariableValue( context, _variable );
                             variableScopeInstance.internalSetVariable( _variable.getName(), _value );
                         } catch ( ClassNotFoundException e ) {
                             throw new IllegalArgumentException( "Could not reload variable " + _variable.getName() );
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.marshalling.impl;
+
+import java.io.IOException;
+
+import org.drools.core.marshalling.impl.MarshallerReaderContext;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Variable value that was read from the marshalled process instance but not yet unmarshalled. 
+ * It keeps the raw bytes together with the strategy that produced them and unmarshalls them on 
+ * first access. As long as the value is not accessed and its strategy keeps no context it is written 
+ * back as is - the raw bytes are reused without invoking the strategy again. Bytes of strategies with
+ * context (e.g. <code>SerializablePlaceholderResolverStrategy</code>) are only valid together with that 
+ * context so such values are unmarshalled and marshalled again when written.
+ * <br/>
+ * Only the strategy, its context and the class loader are kept from the reader context so the 
+ * rest of the marshalled session can be garbage collected - strategies are given no input stream
+ * when unmarshalling lazily and must rely on the variable bytes only. Strategies that need the reader
+ * context implement {@link ReaderContextDependentStrategy} and their variables are never read lazily.
+ */
+public class LazyVariable {
+
+    private final String name;
+    private final ByteString bytes;
+    private final ObjectMarshallingStrategy strategy;
+    private final ObjectMarshallingStrategy.Context strategyContext;
+    private final ClassLoader classLoader;
+
+    private boolean resolved = false;
+    private Object value;
+
+    public LazyVariable(MarshallerReaderContext context, JBPMMessages.Variable _variable) {
+        this.name = _variable.getName();
+        this.bytes = _variable.getValue();
+        this.strategy = context.usedStrategies.get( _variable.getStrategyIndex() );
+        this.strategyContext = context.strategyContexts.get( strategy );
+        this.classLoader = (context.kBase == null)?null:context.kBase.getRootClassLoader();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ByteString getBytes() {
+        return bytes;
+    }
+
+    public ObjectMarshallingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Returns true if the strategy kept context when reading the variable, its bytes then
+     * refer to that context and cannot be written back as is
+     */
+    public boolean hasStrategyContext() {
+        return strategyContext != null;
+    }
+
+    public synchronized boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * Unmarshalls the value on first call, subsequent calls return the same instance
+     */
+    public synchronized Object getValue() {
+        if ( !resolved ) {
+            try {
+                value = strategy.unmarshal( strategyContext,
+                                            null,
+                                            bytes.toByteArray(),
+                                            classLoader );
+            } catch ( IOException e ) {
+                throw new IllegalArgumentException( "Could not reload variable " + name, e );
+            } catch ( ClassNotFoundException e ) {
+                throw new IllegalArgumentException( "Could not reload variable " + name, e );
+            }
+            resolved = true;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyVariable [name=" + name + ", resolved=" + resolved + "]";
+    }
+}
@@ -50,7 +50,8 @@ import org.kie.api.runtime.process.ProcessInstance;
  */
 public class ProcessInstanceResolverStrategy
         implements
-        ObjectMarshallingStrategy {
+        ObjectMarshallingStrategy,
+        ReaderContextDependentStrategy {
 
     public boolean accept(Object object) {
         if ( object instanceof ProcessInstance ) {
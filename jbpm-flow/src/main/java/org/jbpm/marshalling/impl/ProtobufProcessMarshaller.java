@@ -57,6 +57,12 @@ public class ProtobufProcessMarshaller
 	public static void setWorkItemVarsPersistence(boolean turnOn) {
 		persistWorkItemVars = turnOn;
 	}
+	
+	private static boolean lazyVariables = Boolean.parseBoolean(System.getProperty("org.jbpm.marshalling.lazy.variables", "false"));
+	// mainly for testability as the setting is global
+	public static void setLazyVariables(boolean turnOn) {
+	    lazyVariables = turnOn;
+	}
 
     public void writeProcessInstances(MarshallerWriteContext context) throws IOException {
         ProtobufMessages.ProcessData.Builder _pdata = (ProtobufMessages.ProcessData.Builder) context.parameterObject;
@@ -259,6 +265,18 @@ public class ProtobufProcessMarshaller
                                             String name,
                                             Object value) throws IOException {
         JBPMMessages.Variable.Builder builder = JBPMMessages.Variable.newBuilder().setName( name );
+        if(value instanceof LazyVariable){
+            LazyVariable lazyVariable = (LazyVariable) value;
+            if(!lazyVariable.isResolved() && !lazyVariable.hasStrategyContext()){
+                // never accessed so write back the original bytes, only when they do not refer to 
+                // strategy context (e.g. index into serialized objects kept by placeholder strategy) 
+                // as that is not carried over to the new write context
+                return builder.setStrategyIndex( context.getStrategyIndex( lazyVariable.getStrategy() ) )
+                              .setValue( lazyVariable.getBytes() )
+                              .build();
+            }
+            value = lazyVariable.getValue();
+        }
         if(value != null){
             ObjectMarshallingStrategy strategy = context.objectMarshallingStrategyStore.getStrategyObject( value );
             Integer index = context.getStrategyIndex( strategy );
@@ -314,6 +332,21 @@ public class ProtobufProcessMarshaller
         return vcbuilder.build();
     }
 
+    /**
+     * Reads value of process or node instance variable - when lazy variables are enabled 
+     * (<code>org.jbpm.marshalling.lazy.variables</code>) the value is not unmarshalled but returned as {@link LazyVariable}
+     * unless its strategy needs the reader context ({@link ReaderContextDependentStrategy})
+     */
+    public static Object readVariableValue(MarshallerReaderContext context,
+                                           JBPMMessages.Variable _variable) throws IOException,
+                                                                           ClassNotFoundException {
+        if(lazyVariables && _variable.getValue() != null && !_variable.getValue().isEmpty()
+                && !(context.usedStrategies.get( _variable.getStrategyIndex() ) instanceof ReaderContextDependentStrategy)){
+            return new LazyVariable( context, _variable );
+        }
+        return unmarshallVariableValue( context, _variable );
+    }
+
     public static Object unmarshallVariableValue(MarshallerReaderContext context,
                                                   JBPMMessages.Variable _variable) throws IOException,
                                                                                   ClassNotFoundException {
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.marshalling.impl;
+
+/**
+ * Marker for marshalling strategies that need the {@link org.drools.core.marshalling.impl.MarshallerReaderContext}
+ * given as input stream to unmarshal a value (e.g. to access the session it is read into). Variables stored 
+ * by such strategies are always unmarshalled eagerly, even when lazy variables are enabled 
+ * (<code>org.jbpm.marshalling.lazy.variables</code>), as there is no reader context anymore once 
+ * the variable is accessed.
+ */
+public interface ReaderContextDependentStrategy {
+
+}
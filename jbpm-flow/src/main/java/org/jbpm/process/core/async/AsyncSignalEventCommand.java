@@ -15,21 +15,34 @@
 
 package org.jbpm.process.core.async;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.kie.api.executor.Command;
 import org.kie.api.executor.CommandContext;
 import org.kie.api.executor.ExecutionResults;
+import org.kie.api.executor.ExecutorService;
 import org.kie.api.runtime.manager.RuntimeEngine;
 import org.kie.api.runtime.manager.RuntimeManager;
+import org.kie.internal.runtime.manager.InternalRuntimeManager;
 import org.kie.internal.runtime.manager.RuntimeManagerRegistry;
 import org.kie.internal.runtime.manager.context.ProcessInstanceIdContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class AsyncSignalEventCommand implements Command {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSignalEventCommand.class);
+
+    private static final int MAX_ATTEMPTS = Integer.parseInt(System.getProperty("org.kie.executor.retry.count", "3"));
 
+    @SuppressWarnings("unchecked")
     @Override
     public ExecutionResults execute(CommandContext ctx) throws Exception {
         String deploymentId = (String) ctx.getData("DeploymentId");
         Long processInstanceId = (Long) ctx.getData("ProcessInstanceId");
+        List<Long> processInstanceIds = (List<Long>) ctx.getData("ProcessInstanceIds");
         String signal = (String) ctx.getData("Signal");
         Object event = ctx.getData("Event");
         
@@ -41,11 +54,62 @@ public class AsyncSignalEventCommand implements Command {
         if (runtimeManager == null) {
             throw new IllegalArgumentException("No runtime manager found for deployment id " + deploymentId);  
         }
+        if (processInstanceIds != null) {
+            // chunk of process instances, failure of one of them must not cause redelivery to the others
+            // so the failed ones are rescheduled as separate job instead of failing (and retrying) this one
+            List<Long> failed = new ArrayList<Long>();
+            for (Long id : processInstanceIds) {
+                try {
+                    signal(runtimeManager, id, signal, event);
+                } catch (Exception e) {
+                    logger.warn("Signal '{}' could not be delivered to process instance {} due to {}", signal, id, e.getMessage(), e);
+                    failed.add(id);
+                }
+            }
+            if (!failed.isEmpty()) {
+                rescheduleFailed(runtimeManager, ctx, failed);
+            }
+            ExecutionResults results = new ExecutionResults();
+            results.setData("FailedProcessInstanceIds", failed);
+            return results;
+        }
+        signal(runtimeManager, processInstanceId, signal, event);
+        
+        return new ExecutionResults();
+    }
+    
+    /*
+     * Schedules new job for process instances the signal could not be delivered to. Rescheduled jobs are not
+     * retried by the executor itself (as that would redeliver to all of them) but reschedule the remaining
+     * failures again until attempts configured via org.kie.executor.retry.count are exhausted, then the job
+     * fails. Job fails right away as well when there is no executor service to reschedule with.
+     */
+    protected void rescheduleFailed(RuntimeManager runtimeManager, CommandContext ctx, List<Long> failed) {
+        String signal = (String) ctx.getData("Signal");
+        Integer attempt = (Integer) ctx.getData("SignalAttempt");
+        int nextAttempt = attempt == null ? 1 : attempt + 1;
+        ExecutorService executorService = null;
+        if (runtimeManager instanceof InternalRuntimeManager) {
+            executorService = (ExecutorService) ((InternalRuntimeManager) runtimeManager).getEnvironment().getEnvironment().get("ExecutorService");
+        }
+        if (executorService == null || nextAttempt > MAX_ATTEMPTS) {
+            throw new IllegalStateException("Signal '" + signal + "' could not be delivered to process instances " + failed);
+        }
+        CommandContext retryCtx = new CommandContext();
+        retryCtx.setData("DeploymentId", ctx.getData("DeploymentId"));
+        retryCtx.setData("ProcessInstanceIds", failed);
+        retryCtx.setData("Signal", signal);
+        retryCtx.setData("Event", ctx.getData("Event"));
+        retryCtx.setData("SignalAttempt", nextAttempt);
+        retryCtx.setData("retries", 0);
+        executorService.scheduleRequest(AsyncSignalEventCommand.class.getName(), retryCtx);
+        logger.info("Signal '{}' rescheduled (attempt {}) for process instances {}", signal, nextAttempt, failed);
+    }
+
+    protected void signal(RuntimeManager runtimeManager, Long processInstanceId, String signal, Object event) {
         RuntimeEngine engine = runtimeManager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstanceId));        
         try {
             engine.getKieSession().signalEvent(signal, event, processInstanceId);
-            
-            return new ExecutionResults();
         } finally {
             runtimeManager.disposeRuntimeEngine(engine);
         }
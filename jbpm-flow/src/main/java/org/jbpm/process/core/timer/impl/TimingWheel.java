@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.core.timer.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hierarchical timing wheel as described by Varghese and Lauck - each wheel consists of fixed number of
+ * buckets, each covering one tick of the wheel. Entries that do not fit into the wheel's interval are
+ * placed into overflow wheel (created on demand) whose tick is the interval of the wheel below. 
+ * When overflow bucket expires its entries are reinserted and thus cascade down to the finer wheels.
+ * <br/>
+ * Adding and removing of an entry are constant time operations, only non empty buckets are kept 
+ * in a <code>DelayQueue</code> so there is no need to tick through empty buckets.
+ * <br/>
+ * Expiration of every entry is rounded up to the tick of the lowest wheel so entries never expire before
+ * their expiration time, but might expire up to one tick later.
+ * <br/>
+ * This class is not thread safe on its own - adding entries can be done concurrently but must not overlap with
+ * advancing of the clock, see <code>TimingWheelSchedulerService</code>.
+ */
+public class TimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final Bucket[] buckets;
+    private final DelayQueue<Bucket> queue;
+
+    private volatile long currentTime;
+    private volatile TimingWheel overflowWheel;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this(tickMs, wheelSize, startMs, new DelayQueue<Bucket>());
+    }
+
+    protected TimingWheel(long tickMs, int wheelSize, long startMs, DelayQueue<Bucket> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.queue = queue;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Adds given entry to the wheel
+     * @param entry entry to be added
+     * @return true if the entry was added, false if the entry is already expired or cancelled
+     */
+    public boolean add(Entry entry) {
+        long expiration = entry.deadline;
+        if (entry.isCancelled()) {
+            return false;
+        } else if (expiration < currentTime + tickMs) {
+            return false;
+        } else if (expiration < currentTime + interval) {
+            long virtualId = expiration / tickMs;
+            Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(entry);
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        } else {
+            return getOverflowWheel().add(entry);
+        }
+    }
+
+    /**
+     * Advances the clock of this wheel (and all overflow wheels) to given time
+     * @param timeMs time to advance to
+     */
+    public void advanceClock(long timeMs) {
+        if (timeMs >= currentTime + tickMs) {
+            currentTime = timeMs - (timeMs % tickMs);
+            TimingWheel overflow = overflowWheel;
+            if (overflow != null) {
+                overflow.advanceClock(currentTime);
+            }
+        }
+    }
+
+    /**
+     * Waits up to given timeout for the next bucket to expire. 
+     * @return expired bucket or null if none expired within timeout
+     */
+    public Bucket poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Returns next expired bucket without waiting or null if there is none
+     */
+    public Bucket poll() {
+        return queue.poll();
+    }
+
+    /**
+     * Creates new entry with expiration rounded up to tick of this wheel
+     */
+    public <T> Entry newEntry(T item, long expirationMs) {
+        long deadline = expirationMs;
+        long remainder = expirationMs % tickMs;
+        if (remainder != 0) {
+            deadline = expirationMs - remainder + tickMs;
+        }
+        return new Entry(item, expirationMs, deadline);
+    }
+
+    private TimingWheel getOverflowWheel() {
+        TimingWheel overflow = overflowWheel;
+        if (overflow == null) {
+            synchronized (this) {
+                overflow = overflowWheel;
+                if (overflow == null) {
+                    overflow = new TimingWheel(interval, wheelSize, currentTime, queue);
+                    overflowWheel = overflow;
+                }
+            }
+        }
+        return overflow;
+    }
+
+    /**
+     * Single item placed in the wheel, kept in doubly linked list of its bucket for constant time removal.
+     */
+    public static class Entry {
+
+        private final Object item;
+        private final long expiration;
+        private final long deadline;
+
+        private volatile Bucket bucket;
+        private volatile boolean cancelled;
+        private Entry next;
+        private Entry prev;
+
+        Entry(Object item, long expiration, long deadline) {
+            this.item = item;
+            this.expiration = expiration;
+            this.deadline = deadline;
+        }
+
+        public Object getItem() {
+            return item;
+        }
+
+        public long getExpiration() {
+            return expiration;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Cancels this entry and removes it from the bucket it is currently placed in.
+         * @return true if the entry was waiting in the wheel
+         */
+        public boolean cancel() {
+            cancelled = true;
+            boolean removed = false;
+            Bucket current = bucket;
+            while (current != null) {
+                removed = current.remove(this) || removed;
+                current = bucket;
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Bucket of the wheel holding all entries expiring within the same tick
+     */
+    public static class Bucket implements Delayed {
+
+        private final Entry root = new Entry(null, -1, -1);
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        Bucket() {
+            root.next = root;
+            root.prev = root;
+        }
+
+        synchronized void add(Entry entry) {
+            Bucket current = entry.bucket;
+            if (current != null && current != this) {
+                current.remove(entry);
+            }
+            if (entry.bucket == null) {
+                Entry tail = root.prev;
+                entry.next = root;
+                entry.prev = tail;
+                entry.bucket = this;
+                tail.next = entry;
+                root.prev = entry;
+            }
+        }
+
+        synchronized boolean remove(Entry entry) {
+            if (entry.bucket != this) {
+                return false;
+            }
+            entry.next.prev = entry.prev;
+            entry.prev.next = entry.next;
+            entry.next = null;
+            entry.prev = null;
+            entry.bucket = null;
+            return true;
+        }
+
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        public long getExpiration() {
+            return expiration.get();
+        }
+
+        /**
+         * Removes all entries from this bucket and resets its expiration
+         * @return entries that were placed in this bucket
+         */
+        public synchronized List<Entry> flush() {
+            List<Entry> entries = new ArrayList<Entry>();
+            Entry head = root.next;
+            while (head != root) {
+                Entry next = head.next;
+                remove(head);
+                entries.add(head);
+                head = next;
+            }
+            expiration.set(-1);
+            return entries;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long otherExpiration = ((Bucket) other).getExpiration();
+            long thisExpiration = getExpiration();
+            return thisExpiration < otherExpiration ? -1 : (thisExpiration > otherExpiration ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.core.timer.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.drools.core.time.InternalSchedulerService;
+import org.drools.core.time.Job;
+import org.drools.core.time.JobContext;
+import org.drools.core.time.JobHandle;
+import org.drools.core.time.SelfRemovalJobContext;
+import org.drools.core.time.TimerService;
+import org.drools.core.time.Trigger;
+import org.drools.core.time.impl.TimerJobInstance;
+import org.jbpm.process.core.timer.GlobalSchedulerService;
+import org.jbpm.process.core.timer.NamedJobContext;
+import org.jbpm.process.core.timer.SchedulerServiceInterceptor;
+import org.jbpm.process.core.timer.impl.GlobalTimerService.GlobalJobHandle;
+import org.jbpm.process.instance.timer.TimerManager.ProcessJobContext;
+import org.jbpm.process.instance.timer.TimerManager.StartProcessJobContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory scheduler service backed by hierarchical <code>TimingWheel</code>, meant as replacement of 
+ * <code>ThreadPoolSchedulerService</code> for very large number of timers - scheduling and cancelling 
+ * of a timer are constant time operations regardless of number of timers. 
+ * Single ticker thread collects expired timers and hands them over in batches to the worker pool.
+ * <br/>
+ * It is used by default runtime environment when <code>org.jbpm.timer.wheel</code> system property is set to true.
+ * <br/>
+ * Following system properties can be used to tune it:
+ * <ul>
+ *  <li>org.jbpm.timer.wheel.tick - duration of single tick of the wheel in milliseconds (defaults to 10),
+ *  timers fire at most one tick after their expiration</li>
+ *  <li>org.jbpm.timer.wheel.size - number of buckets of each wheel (defaults to 512)</li>
+ *  <li>org.jbpm.timer.wheel.batch.size - max number of timers fired by single worker task (defaults to 20)</li>
+ * </ul>
+ */
+public class TimingWheelSchedulerService implements GlobalSchedulerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheelSchedulerService.class);
+
+    private static final AtomicInteger instanceCounter = new AtomicInteger();
+
+    private AtomicLong idCounter = new AtomicLong();
+    private TimerService globalTimerService;
+    private SchedulerServiceInterceptor interceptor = new DelegateSchedulerServiceInterceptor(this);
+
+    private final int poolSize;
+    private final long tickMs;
+    private final int wheelSize;
+    private final int batchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private TimingWheel wheel;
+    private ExecutorService workers;
+    private Thread ticker;
+    private volatile boolean active = false;
+
+    private ConcurrentHashMap<String, JobHandle> activeTimer = new ConcurrentHashMap<String, JobHandle>();
+
+    public TimingWheelSchedulerService(int poolSize) {
+        this(poolSize, 
+                Long.parseLong(System.getProperty("org.jbpm.timer.wheel.tick", "10")),
+                Integer.parseInt(System.getProperty("org.jbpm.timer.wheel.size", "512")),
+                Integer.parseInt(System.getProperty("org.jbpm.timer.wheel.batch.size", "20")));
+    }
+
+    public TimingWheelSchedulerService(int poolSize, long tickMs, int wheelSize, int batchSize) {
+        this.poolSize = poolSize;
+        this.tickMs = Math.max(1, tickMs);
+        this.wheelSize = Math.max(2, wheelSize);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void initScheduler(TimerService globalTimerService) {
+        this.globalTimerService = globalTimerService;
+
+        final int instance = instanceCounter.incrementAndGet();
+        this.wheel = new TimingWheel(tickMs, wheelSize, System.currentTimeMillis());
+        this.workers = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "jbpm-timer-wheel-" + instance + "-worker-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.active = true;
+        this.ticker = new Thread(new Ticker(), "jbpm-timer-wheel-" + instance + "-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    @Override
+    public void shutdown() {
+        active = false;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        if (workers == null) {
+            return;
+        }
+        try {
+            this.workers.shutdown();
+            if ( !this.workers.awaitTermination( 10, TimeUnit.SECONDS ) ) {
+                this.workers.shutdownNow();
+            }
+        } catch ( InterruptedException e ) {
+            this.workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public JobHandle scheduleJob(Job job, JobContext ctx, Trigger trigger) {
+
+        Date date = trigger.hasNextFireTime();
+        if ( date != null ) {
+            String jobname = null;
+            if (ctx instanceof ProcessJobContext) {
+                ProcessJobContext processCtx = (ProcessJobContext) ctx;
+                jobname = processCtx.getSessionId() + "-" + processCtx.getProcessInstanceId() + "-" + processCtx.getTimer().getId();
+                if (processCtx instanceof StartProcessJobContext) {
+                    jobname = "StartProcess-"+((StartProcessJobContext) processCtx).getProcessId()+ "-" + processCtx.getTimer().getId();
+                }
+                if (activeTimer.containsKey(jobname)) {
+                    return activeTimer.get(jobname);
+                }
+
+            }
+            GlobalTimingWheelJobHandle jobHandle = new GlobalTimingWheelJobHandle( idCounter.getAndIncrement() );
+
+            TimerJobInstance jobInstance = globalTimerService.
+                                 getTimerJobFactoryManager().createTimerJobInstance( job,
+                                                                                     ctx,
+                                                                                     trigger,
+                                                                                     jobHandle,
+                                                                                     (InternalSchedulerService) globalTimerService );
+            jobHandle.setTimerJobInstance( (TimerJobInstance) jobInstance );
+            interceptor.internalSchedule( (TimerJobInstance) jobInstance );
+            if (jobname != null) {
+                activeTimer.put(jobname, jobHandle);
+            }
+            return jobHandle;
+        } else {
+            return null;
+        }
+
+    }
+
+    @Override
+    public boolean removeJob(JobHandle jobHandle) {
+        if (jobHandle == null) {
+            return false;
+        }
+        jobHandle.setCancel( true );
+        JobContext jobContext = ((GlobalTimingWheelJobHandle) jobHandle).getTimerJobInstance().getJobContext();
+        try {
+            ProcessJobContext processCtx = null;
+            if (jobContext instanceof SelfRemovalJobContext) {
+                processCtx = (ProcessJobContext) ((SelfRemovalJobContext) jobContext).getJobContext();
+            } else {
+                processCtx = (ProcessJobContext) jobContext;
+            }
+
+            String jobname = processCtx.getSessionId() + "-" + processCtx.getProcessInstanceId() + "-" + processCtx.getTimer().getId();
+            if (processCtx instanceof StartProcessJobContext) {
+                jobname = "StartProcess-"+((StartProcessJobContext) processCtx).getProcessId()+ "-" + processCtx.getTimer().getId();
+            }
+            activeTimer.remove(jobname);
+            globalTimerService.getTimerJobFactoryManager().removeTimerJobInstance( ((GlobalTimingWheelJobHandle) jobHandle).getTimerJobInstance() );
+        } catch (ClassCastException e) {
+            // do nothing in case ProcessJobContext was not given
+        }
+        TimingWheel.Entry entry = ((GlobalTimingWheelJobHandle) jobHandle).getEntry();
+        if (entry == null) {
+            return false;
+        }
+        return entry.cancel();
+    }
+
+    @Override
+    public void internalSchedule(TimerJobInstance timerJobInstance) {
+        if (!active) {
+            return;
+        }
+        Date date = timerJobInstance.getTrigger().hasNextFireTime();
+
+        GlobalTimingWheelJobHandle jobHandle = (GlobalTimingWheelJobHandle) timerJobInstance.getJobHandle();
+        TimingWheel.Entry entry = wheel.newEntry(timerJobInstance, date.getTime());
+        jobHandle.setEntry( entry );
+        globalTimerService.getTimerJobFactoryManager().addTimerJobInstance( timerJobInstance );
+
+        boolean added = false;
+        lock.readLock().lock();
+        try {
+            added = wheel.add(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!added) {
+            // already expired
+            fire(Collections.singletonList(entry));
+        }
+    }
+
+    /*
+     * Hands over expired entries to the worker pool in batches
+     */
+    protected void fire(List<TimingWheel.Entry> expired) {
+        for (int i = 0; i < expired.size(); i += batchSize) {
+            List<TimingWheel.Entry> batch = new ArrayList<TimingWheel.Entry>(expired.subList(i, Math.min(i + batchSize, expired.size())));
+            try {
+                workers.execute(new FireBatch(batch));
+            } catch (RejectedExecutionException e) {
+                if (active) {
+                    throw e;
+                }
+                logger.debug("Timer wheel already shut down, {} timers not fired", batch.size());
+            }
+        }
+    }
+
+    public static class GlobalTimingWheelJobHandle extends GlobalJobHandle implements Serializable {
+
+        private static final long     serialVersionUID = 510l;
+
+        private transient volatile TimingWheel.Entry entry;
+
+        public GlobalTimingWheelJobHandle(long id) {
+            super(id);
+        }
+
+        public TimingWheel.Entry getEntry() {
+            return entry;
+        }
+
+        public void setEntry(TimingWheel.Entry entry) {
+            this.entry = entry;
+        }
+
+    }
+
+    @Override
+    public JobHandle buildJobHandleForContext(NamedJobContext ctx) {
+        // this is in memory scheduler and the building of context is required for permanent ScueduleService only
+        return null;
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    @Override
+    public void setInterceptor(SchedulerServiceInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public boolean retryEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isValid(GlobalJobHandle jobHandle) {
+
+        return true;
+    }
+
+    private class Ticker implements Runnable {
+
+        @Override
+        public void run() {
+            while (active) {
+                try {
+                    TimingWheel.Bucket bucket = wheel.poll(200, TimeUnit.MILLISECONDS);
+                    if (bucket == null) {
+                        continue;
+                    }
+                    List<TimingWheel.Entry> expired = new ArrayList<TimingWheel.Entry>();
+                    lock.writeLock().lock();
+                    try {
+                        while (bucket != null) {
+                            wheel.advanceClock(bucket.getExpiration());
+                            for (TimingWheel.Entry entry : bucket.flush()) {
+                                // entries of higher wheels cascade down, expired ones are fired
+                                if (!wheel.add(entry) && !entry.isCancelled()) {
+                                    expired.add(entry);
+                                }
+                            }
+                            bucket = wheel.poll();
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    if (!expired.isEmpty()) {
+                        logger.debug("Firing {} expired timers", expired.size());
+                        fire(expired);
+                    }
+                } catch (InterruptedException e) {
+                    if (active) {
+                        logger.debug("Timer wheel ticker interrupted while active");
+                    }
+                } catch (Throwable e) {
+                    logger.error("Unexpected error in timer wheel ticker", e);
+                }
+            }
+        }
+    }
+
+    private static class FireBatch implements Runnable {
+
+        private final List<TimingWheel.Entry> entries;
+
+        FireBatch(List<TimingWheel.Entry> entries) {
+            this.entries = entries;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void run() {
+            for (TimingWheel.Entry entry : entries) {
+                TimerJobInstance timerJobInstance = (TimerJobInstance) entry.getItem();
+                if (entry.isCancelled() || timerJobInstance.getJobHandle().isCancel()) {
+                    continue;
+                }
+                try {
+                    ((Callable<Void>) timerJobInstance).call();
+                } catch (Exception e) {
+                    logger.warn("Timer job {} failed due to {}", timerJobInstance, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -117,6 +117,7 @@ public class MigrateProcessInstanceCommand implements GenericCommand<Void>, Proc
 	    		nodeMapping = new HashMap<String, Long>();
 	    	}
 	        updateNodeInstances(processInstance, nodeMapping);
+	        processInstance.rebuildNodeInstanceIndex();
 	        processInstance.setKnowledgeRuntime((InternalKnowledgeRuntime) ksession);
 	        processInstance.setProcess(process);
 	        processInstance.reconnect();
@@ -140,6 +140,8 @@ public class UpdateTimerCommand implements GenericCommand<Void>, ProcessInstance
                 }
             }
         }
+        // timer ids are kept on node instances so make sure they get persisted
+        wfp.markDirty();
         return null;
     }
 
@@ -16,19 +16,27 @@
 
 package org.jbpm.process.instance.context.variable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.drools.core.ClassObjectFilter;
 import org.drools.core.event.ProcessEventSupport;
+import org.jbpm.marshalling.impl.LazyVariable;
 import org.jbpm.process.core.context.variable.Variable;
 import org.jbpm.process.core.context.variable.VariableScope;
 import org.jbpm.process.instance.ContextInstanceContainer;
 import org.jbpm.process.instance.InternalProcessRuntime;
 import org.jbpm.process.instance.context.AbstractContextInstance;
 import org.jbpm.workflow.core.Node;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
 import org.jbpm.workflow.instance.node.CompositeContextNodeInstance;
 import org.kie.api.runtime.rule.FactHandle;
 import org.kie.internal.process.CaseData;
@@ -41,6 +49,7 @@ public class VariableScopeInstance extends AbstractContextInstance {
     private static final long serialVersionUID = 510l;    
     
     private Map<String, Object> variables = new HashMap<String, Object>();
+    private transient Map<String, Object> variablesView = new VariablesView();
     private transient String variableIdPrefix = null;
     private transient String variableInstanceIdPrefix = null;
 
@@ -50,7 +59,7 @@ public class VariableScopeInstance extends AbstractContextInstance {
 
     public Object getVariable(String name) {
                 
-        Object value = variables.get(name);
+        Object value = resolveVariable(name);
         if (value != null) {
             return value;
         }
@@ -86,16 +95,36 @@ public class VariableScopeInstance extends AbstractContextInstance {
         return null;
     }
 
+    /**
+     * Returns unmodifiable view of the variables, not yet unmarshalled {@link LazyVariable}s are 
+     * unmarshalled only when their value is actually read through the view
+     */
     public Map<String, Object> getVariables() {
+        return variablesView;
+    }
+
+    /**
+     * Returns variables as they are stored, including not yet unmarshalled {@link LazyVariable}s
+     */
+    public Map<String, Object> internalGetVariables() {
         return Collections.unmodifiableMap(variables);
     }
 
+    private Object resolveVariable(String name) {
+        Object value = variables.get(name);
+        if (value instanceof LazyVariable) {
+            value = ((LazyVariable) value).getValue();
+            variables.put(name, value);
+        }
+        return value;
+    }
+
     public void setVariable(String name, Object value) {
         if (name == null) {
             throw new IllegalArgumentException(
                 "The name of a variable may not be null!");
         }
-        Object oldValue = variables.get(name);
+        Object oldValue = resolveVariable(name);
         if (oldValue == null) {
         	if (value == null) {
         		return;
@@ -109,6 +138,9 @@ public class VariableScopeInstance extends AbstractContextInstance {
 			oldValue, value, getProcessInstance(),
 			getProcessInstance().getKnowledgeRuntime());
         internalSetVariable(name, value);
+        if (getProcessInstance() instanceof WorkflowProcessInstanceImpl) {
+            ((WorkflowProcessInstanceImpl) getProcessInstance()).markDirty();
+        }
         processEventSupport.fireAfterVariableChanged(
 			(variableIdPrefix == null ? "" : variableIdPrefix + ":") + name,
 			(variableInstanceIdPrefix == null? "" : variableInstanceIdPrefix + ":") + name,
@@ -136,6 +168,104 @@ public class VariableScopeInstance extends AbstractContextInstance {
     	variables.put(name, value);
     }
     
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        variablesView = new VariablesView();
+    }
+
+    private class VariablesView extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            return resolveVariable((String) key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return variables.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return variables.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    final Iterator<String> names = variables.keySet().iterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        public Map.Entry<String, Object> next() {
+                            return new VariableEntry(names.next());
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return variables.size();
+                }
+            };
+        }
+    }
+
+    private class VariableEntry implements Map.Entry<String, Object> {
+
+        private final String name;
+
+        VariableEntry(String name) {
+            this.name = name;
+        }
+
+        public String getKey() {
+            return name;
+        }
+
+        public Object getValue() {
+            return resolveVariable(name);
+        }
+
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return name.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return name.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + getValue();
+        }
+    }
+
     public VariableScope getVariableScope() {
     	return (VariableScope) getContext();
     }
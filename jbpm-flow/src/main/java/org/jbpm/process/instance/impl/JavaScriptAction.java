@@ -20,16 +20,11 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.Map;
-import java.util.Map.Entry;
 
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 
-import org.jbpm.process.core.context.variable.VariableScope;
-import org.jbpm.process.instance.context.variable.VariableScopeInstance;
-import org.jbpm.workflow.instance.WorkflowProcessInstance;
-import org.kie.api.runtime.Globals;
+import org.jbpm.process.instance.impl.util.JavaScriptSupport;
 import org.kie.api.runtime.process.ProcessContext;
 
 public class JavaScriptAction implements Action, Externalizable {
@@ -37,6 +32,8 @@ public class JavaScriptAction implements Action, Externalizable {
     private static final long serialVersionUID = 630l;
     
     private String expr;
+    // compiled once per process definition (this action is part of it)
+    private transient volatile CompiledScript compiled;
 
     public JavaScriptAction() {
     }
@@ -54,31 +51,11 @@ public class JavaScriptAction implements Action, Externalizable {
     }
     
     public void execute(ProcessContext context) throws Exception {
-        ScriptEngineManager factory = new ScriptEngineManager();
-        ScriptEngine engine = factory.getEngineByName("JavaScript");
-        engine.put("kcontext", context);
+        ScriptEngine engine = JavaScriptSupport.getEngine();
+        CompiledScript script = JavaScriptSupport.compile(engine, compiled, expr);
+        compiled = script;
         
-        // insert globals into context
-        Globals globals = context.getKieRuntime().getGlobals();
-        
-        if (globals != null && globals.getGlobalKeys() != null) {
-            for (String gKey : globals.getGlobalKeys()) {
-                engine.put(gKey, globals.get(gKey));
-            }
-        }
-        if (context.getProcessInstance() != null && context.getProcessInstance().getProcess() != null) {
-            // insert process variables
-            VariableScopeInstance variableScope = (VariableScopeInstance) ((WorkflowProcessInstance)context.getProcessInstance())
-                    .getContextInstance(VariableScope.VARIABLE_SCOPE);
-    
-            Map<String, Object> variables = variableScope.getVariables();
-            if (variables != null ) {
-                for (Entry<String, Object> variable : variables.entrySet()) {
-                    engine.put(variable.getKey(), variable.getValue());
-                }
-            }
-        }
-        engine.eval(expr);
+        JavaScriptSupport.eval(engine, script, expr, context);
     }
 
 }
@@ -20,22 +20,11 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
-
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
+
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
-import javax.xml.xpath.XPathFunction;
-import javax.xml.xpath.XPathFunctionException;
-import javax.xml.xpath.XPathFunctionResolver;
-import javax.xml.xpath.XPathVariableResolver;
+import javax.xml.xpath.XPathExpression;
 
+import org.jbpm.process.instance.impl.util.XPATHSupport;
 import org.kie.api.runtime.process.ProcessContext;
 
 public class XPATHReturnValueEvaluator
@@ -72,63 +61,14 @@ public class XPATHReturnValueEvaluator
     }
 
     public Object evaluate(final ProcessContext context) throws Exception {        
-    	XPathFactory factory = XPathFactory.newInstance();
-    	XPath xpathEvaluator = factory.newXPath();
-    	xpathEvaluator.setXPathFunctionResolver( 
-    			new  XPathFunctionResolver() {
-    				public XPathFunction resolveFunction(QName functionName, int arity)
-    				{
-    					String localName = functionName.getLocalPart();
-    					if ("getVariable".equals(localName)) {
-    						return new GetVariableData();
-    					}
-    					else {
-                            throw new IllegalArgumentException("Unknown BPMN function: " + functionName);
-    					}
-    				}
-
-    				class GetVariableData implements XPathFunction {
-    					public Object evaluate(List args) throws XPathFunctionException {
-    						String varname = (String) args.get(0);
-    						return context.getVariable(varname);
-    					}
-    				}
-    			}
-    	);
-    	xpathEvaluator.setXPathVariableResolver(new XPathVariableResolver() {
-            
-            public Object resolveVariable(QName variableName) {
-                return context.getVariable(variableName.getLocalPart());
-            }
-        });
-    	
-    	xpathEvaluator.setNamespaceContext(new NamespaceContext() {
-			private static final String DROOLS_NAMESPACE_URI = "http://www.jboss.org/drools";
-			private String[] prefixes = {"drools", "bpmn2"};
-			@Override
-			public Iterator getPrefixes(String namespaceURI) {
-				return Arrays.asList(prefixes).iterator();
-			}
-			
-			@Override
-			public String getPrefix(String namespaceURI) {
-				if (DROOLS_NAMESPACE_URI.equalsIgnoreCase(namespaceURI)) {
-					return "bpmn2";
-				}
-				return null;
-			}
-			
-			@Override
-			public String getNamespaceURI(String prefix) {
-				if ("bpmn2".equalsIgnoreCase(prefix)) {
-					return DROOLS_NAMESPACE_URI;
-				}
-				return null;
-			}
-		});
-
-		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        return xpathEvaluator.evaluate(this.expression, builder.newDocument(), XPathConstants.BOOLEAN);
+        XPathExpression compiled = XPATHSupport.compileWithProcessContext(this.expression);
+        // resolvers of compiled expression take variables from context bound to current thread
+        ProcessContext previous = XPATHSupport.bind(context);
+        try {
+            return compiled.evaluate(XPATHSupport.getEmptyDocument(), XPathConstants.BOOLEAN);
+        } finally {
+            XPATHSupport.bind(previous);
+        }
     }
 
     public String toString() {
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl.util;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import org.jbpm.process.core.context.variable.VariableScope;
+import org.jbpm.process.instance.context.variable.VariableScopeInstance;
+import org.jbpm.workflow.instance.WorkflowProcessInstance;
+import org.kie.api.runtime.process.ProcessContext;
+
+/**
+ * Shared support for JavaScript dialect evaluation.
+ * Script engines are created once per class loader (instead of once per evaluation) and
+ * expressions are compiled once when the engine supports it.
+ * <br/>
+ * Engine scope bindings are created by the engine itself (for Nashorn that is a script global, which
+ * is expensive to create) and pooled per engine, size of the pool can be configured via
+ * <code>org.jbpm.javascript.bindings.pool.size</code> system property (defaults to 16, 0 disables pooling).
+ * Process variables, globals and <code>kcontext</code> are resolved lazily from global scope bindings
+ * created for each evaluation. Top level names a script defines are removed before the bindings are
+ * returned to the pool, bindings that cannot be cleaned that way (e.g. declared with <code>var</code>)
+ * are discarded so no state is shared between process instances.
+ */
+public class JavaScriptSupport {
+
+    private static final int BINDINGS_POOL_SIZE = Integer.parseInt(System.getProperty("org.jbpm.javascript.bindings.pool.size", "16"));
+
+    private static final Map<ClassLoader, WeakReference<ScriptEngine>> engines = new WeakHashMap<ClassLoader, WeakReference<ScriptEngine>>();
+    // pooled bindings are softly referenced as they refer back to the engine
+    private static final Map<ScriptEngine, BlockingQueue<SoftReference<PooledBindings>>> bindingsPools = new WeakHashMap<ScriptEngine, BlockingQueue<SoftReference<PooledBindings>>>();
+
+    private JavaScriptSupport() {
+    }
+
+    public static ScriptEngine getEngine() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        synchronized (engines) {
+            WeakReference<ScriptEngine> ref = engines.get(cl);
+            ScriptEngine engine = ref == null ? null : ref.get();
+            if (engine == null) {
+                engine = new ScriptEngineManager(cl).getEngineByName("JavaScript");
+                if (engine == null) {
+                    throw new IllegalStateException("No JavaScript engine available");
+                }
+                engines.put(cl, new WeakReference<ScriptEngine>(engine));
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * Returns given compiled script if it was compiled by given engine, otherwise compiles the expression.
+     * @return compiled script or null if engine does not support compilation
+     */
+    public static CompiledScript compile(ScriptEngine engine, CompiledScript compiled, String expr) throws ScriptException {
+        if (compiled != null && compiled.getEngine() == engine) {
+            return compiled;
+        }
+        if (engine instanceof Compilable) {
+            return ((Compilable) engine).compile(expr);
+        }
+        return null;
+    }
+
+    public static Object eval(ScriptEngine engine, CompiledScript compiled, String expr, ProcessContext context) throws ScriptException {
+        PooledBindings pooled = borrowBindings(engine);
+        try {
+            ScriptContext scriptContext = new SimpleScriptContext();
+            scriptContext.setBindings(pooled.getBindings(), ScriptContext.ENGINE_SCOPE);
+            scriptContext.setBindings(createBindings(context), ScriptContext.GLOBAL_SCOPE);
+            if (compiled != null) {
+                return compiled.eval(scriptContext);
+            }
+            return engine.eval(expr, scriptContext);
+        } finally {
+            releaseBindings(engine, pooled);
+        }
+    }
+
+    protected static PooledBindings borrowBindings(ScriptEngine engine) {
+        BlockingQueue<SoftReference<PooledBindings>> pool = getBindingsPool(engine);
+        if (pool != null) {
+            SoftReference<PooledBindings> ref = null;
+            while ((ref = pool.poll()) != null) {
+                PooledBindings pooled = ref.get();
+                if (pooled != null) {
+                    return pooled;
+                }
+            }
+        }
+        return new PooledBindings(engine.createBindings());
+    }
+
+    protected static void releaseBindings(ScriptEngine engine, PooledBindings pooled) {
+        BlockingQueue<SoftReference<PooledBindings>> pool = getBindingsPool(engine);
+        if (pool == null || !pooled.clean()) {
+            return;
+        }
+        pool.offer(new SoftReference<PooledBindings>(pooled));
+    }
+
+    private static BlockingQueue<SoftReference<PooledBindings>> getBindingsPool(ScriptEngine engine) {
+        if (BINDINGS_POOL_SIZE <= 0) {
+            return null;
+        }
+        synchronized (bindingsPools) {
+            BlockingQueue<SoftReference<PooledBindings>> pool = bindingsPools.get(engine);
+            if (pool == null) {
+                pool = new LinkedBlockingQueue<SoftReference<PooledBindings>>(BINDINGS_POOL_SIZE);
+                bindingsPools.put(engine, pool);
+            }
+            return pool;
+        }
+    }
+
+    protected static Bindings createBindings(ProcessContext context) {
+        VariableScopeInstance variableScope = null;
+        if (context.getProcessInstance() != null && context.getProcessInstance().getProcess() != null) {
+            variableScope = (VariableScopeInstance) ((WorkflowProcessInstance) context.getProcessInstance())
+                    .getContextInstance(VariableScope.VARIABLE_SCOPE);
+        }
+        Bindings bindings = new ProcessContextBindings(context.getKieRuntime().getGlobals(), variableScope);
+        bindings.put("kcontext", context);
+
+        return bindings;
+    }
+
+    /*
+     * Engine created bindings together with the names they had when created
+     */
+    protected static class PooledBindings {
+
+        private final Bindings bindings;
+        private final Set<String> initialNames;
+
+        PooledBindings(Bindings bindings) {
+            this.bindings = bindings;
+            this.initialNames = new HashSet<String>(bindings.keySet());
+        }
+
+        Bindings getBindings() {
+            return bindings;
+        }
+
+        /*
+         * Removes names defined since the bindings were created, returns false if some of them could not be removed
+         */
+        boolean clean() {
+            if (initialNames.containsAll(bindings.keySet())) {
+                return true;
+            }
+            for (String name : new HashSet<String>(bindings.keySet())) {
+                if (!initialNames.contains(name)) {
+                    bindings.remove(name);
+                }
+            }
+            return initialNames.containsAll(bindings.keySet());
+        }
+    }
+}
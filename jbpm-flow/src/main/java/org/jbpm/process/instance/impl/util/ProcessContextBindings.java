@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl.util;
+
+import javax.script.SimpleBindings;
+
+import org.jbpm.process.instance.context.variable.VariableScopeInstance;
+import org.kie.api.runtime.Globals;
+
+/**
+ * Script bindings that resolve process variables and globals lazily on lookup instead of
+ * copying all of them into the engine scope up front. Values put by the script engine
+ * or caller are kept locally and take precedence, then process variables, then globals.
+ * Only the variable being looked up is resolved (and unmarshalled if it was read lazily).
+ */
+public class ProcessContextBindings extends SimpleBindings {
+
+    private Globals globals;
+    private VariableScopeInstance variableScope;
+
+    public ProcessContextBindings(Globals globals, VariableScopeInstance variableScope) {
+        this.globals = globals;
+        this.variableScope = variableScope;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (super.containsKey(key)) {
+            return true;
+        }
+        if (!(key instanceof String)) {
+            return false;
+        }
+        if (hasVariable((String) key)) {
+            return true;
+        }
+        return globals != null && globals.get((String) key) != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (super.containsKey(key)) {
+            return super.get(key);
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        if (hasVariable(name)) {
+            return variableScope.getVariable(name);
+        }
+        if (globals != null) {
+            return globals.get(name);
+        }
+        return null;
+    }
+
+    protected boolean hasVariable(String name) {
+        return variableScope != null && variableScope.internalGetVariables().containsKey(name);
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathFunction;
+import javax.xml.xpath.XPathFunctionException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.kie.api.runtime.process.ProcessContext;
+import org.w3c.dom.Document;
+
+/**
+ * Shared support for XPath dialect evaluation.
+ * Neither XPath factories, document builders nor compiled expressions are thread safe so all of them
+ * are cached per thread - expressions are compiled only once per thread and expression text.
+ * Factories are looked up through the context class loader (that may provide its own implementation), 
+ * so the cache of a thread is only used with the context class loader it was created with and is replaced
+ * once the thread runs with another one - cache of a thread that runs with class loader that is going away 
+ * (e.g. undeployed) can be dropped with <code>clearCache</code>.
+ * Expressions compiled with process context resolvers (see <code>compileWithProcessContext</code>) resolve
+ * variables and the <code>getVariable</code> function against the process context bound to the current thread
+ * with <code>bind</code>.
+ */
+public class XPATHSupport {
+
+    private static final String DROOLS_NAMESPACE_URI = "http://www.jboss.org/drools";
+    private static final int CACHE_SIZE = Integer.parseInt(System.getProperty("org.jbpm.xpath.cache.size", "500"));
+
+    private static final ThreadLocal<ProcessContext> currentContext = new ThreadLocal<ProcessContext>();
+
+    private static final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>();
+
+    private XPATHSupport() {
+    }
+
+    /**
+     * Binds given process context to the current thread.
+     * @return previously bound context that should be restored after the evaluation
+     */
+    public static ProcessContext bind(ProcessContext context) {
+        ProcessContext previous = currentContext.get();
+        if (context == null) {
+            currentContext.remove();
+        } else {
+            currentContext.set(context);
+        }
+        return previous;
+    }
+
+    public static XPathExpression compile(String expression) throws XPathExpressionException {
+        ThreadCache cache = getThreadCache();
+        XPathExpression compiled = cache.expressions.get(expression);
+        if (compiled == null) {
+            compiled = cache.factory.newXPath().compile(expression);
+            cache.expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    public static XPathExpression compileWithProcessContext(String expression) throws XPathExpressionException {
+        ThreadCache cache = getThreadCache();
+        XPathExpression compiled = cache.contextExpressions.get(expression);
+        if (compiled == null) {
+            XPath xpath = cache.factory.newXPath();
+            xpath.setXPathFunctionResolver(PROCESS_CONTEXT_FUNCTIONS);
+            xpath.setXPathVariableResolver(PROCESS_CONTEXT_VARIABLES);
+            xpath.setNamespaceContext(BPMN2_NAMESPACES);
+            compiled = xpath.compile(expression);
+            cache.contextExpressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        ThreadCache cache = getThreadCache();
+        if (cache.builder == null) {
+            cache.builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        }
+        return cache.builder;
+    }
+
+    /**
+     * Returns empty document that can be used as evaluation context of expressions that do not
+     * navigate any node - it must not be modified.
+     */
+    public static Document getEmptyDocument() throws ParserConfigurationException {
+        ThreadCache cache = getThreadCache();
+        if (cache.emptyDocument == null) {
+            cache.emptyDocument = getDocumentBuilder().newDocument();
+        }
+        return cache.emptyDocument;
+    }
+
+    /**
+     * Drops XPath factory, document builder and compiled expressions cached for the current thread
+     */
+    public static void clearCache() {
+        threadCache.remove();
+    }
+
+    private static ThreadCache getThreadCache() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ThreadCache cache = threadCache.get();
+        if (cache == null || cache.classLoader.get() != classLoader) {
+            cache = new ThreadCache(classLoader);
+            threadCache.set(cache);
+        }
+        return cache;
+    }
+
+    private static ProcessContext getCurrentContext() {
+        ProcessContext context = currentContext.get();
+        if (context == null) {
+            throw new IllegalStateException("No process context bound to current thread");
+        }
+        return context;
+    }
+
+    private static final XPathFunction GET_VARIABLE = new XPathFunction() {
+        @SuppressWarnings("rawtypes")
+        public Object evaluate(List args) throws XPathFunctionException {
+            String varname = (String) args.get(0);
+            return getCurrentContext().getVariable(varname);
+        }
+    };
+
+    private static final XPathFunctionResolver PROCESS_CONTEXT_FUNCTIONS = new XPathFunctionResolver() {
+        public XPathFunction resolveFunction(QName functionName, int arity) {
+            String localName = functionName.getLocalPart();
+            if ("getVariable".equals(localName)) {
+                return GET_VARIABLE;
+            } else {
+                throw new IllegalArgumentException("Unknown BPMN function: " + functionName);
+            }
+        }
+    };
+
+    private static final XPathVariableResolver PROCESS_CONTEXT_VARIABLES = new XPathVariableResolver() {
+        public Object resolveVariable(QName variableName) {
+            return getCurrentContext().getVariable(variableName.getLocalPart());
+        }
+    };
+
+    private static final NamespaceContext BPMN2_NAMESPACES = new NamespaceContext() {
+        private String[] prefixes = {"drools", "bpmn2"};
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public Iterator getPrefixes(String namespaceURI) {
+            return Arrays.asList(prefixes).iterator();
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            if (DROOLS_NAMESPACE_URI.equalsIgnoreCase(namespaceURI)) {
+                return "bpmn2";
+            }
+            return null;
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if ("bpmn2".equalsIgnoreCase(prefix)) {
+                return DROOLS_NAMESPACE_URI;
+            }
+            return null;
+        }
+    };
+
+    private static class ThreadCache {
+
+        // cache itself must not keep the class loader alive
+        private final WeakReference<ClassLoader> classLoader;
+        private XPathFactory factory = XPathFactory.newInstance();
+        private DocumentBuilder builder;
+        private Document emptyDocument;
+        private Map<String, XPathExpression> expressions = new LruCache();
+        private Map<String, XPathExpression> contextExpressions = new LruCache();
+
+        ThreadCache(ClassLoader classLoader) {
+            this.classLoader = new WeakReference<ClassLoader>(classLoader);
+        }
+    }
+
+    private static class LruCache extends LinkedHashMap<String, XPathExpression> {
+
+        private static final long serialVersionUID = -1954622461383577935L;
+
+        LruCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.workflow.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jbpm.process.core.event.EventFilter;
+import org.jbpm.process.core.event.EventTypeFilter;
+import org.jbpm.process.core.event.NonAcceptingEventTypeFilter;
+import org.jbpm.workflow.core.node.EventNode;
+import org.jbpm.workflow.core.node.EventNodeInterface;
+import org.jbpm.workflow.core.node.EventSubProcessNode;
+import org.kie.api.definition.process.Node;
+
+/**
+ * Index of event nodes of a node container by the event type they accept. 
+ * <br/>
+ * Nodes accepting only exact event types (plain <code>EventTypeFilter</code>s) are indexed by these types,
+ * all other event nodes (broadcast filters, custom filters, composite and dynamic nodes) are returned
+ * as candidates for every type. Candidates are always returned in the order of the nodes in the container
+ * and still need to be checked with <code>acceptsEvent</code> by the caller.
+ */
+public class EventNodeIndex {
+
+    private final Map<String, List<Node>> candidatesByType = new HashMap<String, List<Node>>();
+    private final List<Node> unindexedNodes;
+
+    public EventNodeIndex(Node[] nodes) {
+        Map<Node, Set<String>> acceptedTypes = new HashMap<Node, Set<String>>();
+        Set<String> allTypes = new LinkedHashSet<String>();
+        List<Node> unindexed = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (node instanceof EventNodeInterface) {
+                Set<String> types = getAcceptedTypes(node);
+                if (types == null) {
+                    unindexed.add(node);
+                } else {
+                    acceptedTypes.put(node, types);
+                    allTypes.addAll(types);
+                }
+            }
+        }
+        this.unindexedNodes = Collections.unmodifiableList(unindexed);
+        for (String type : allTypes) {
+            List<Node> candidates = new ArrayList<Node>();
+            for (Node node : nodes) {
+                if (!(node instanceof EventNodeInterface)) {
+                    continue;
+                }
+                Set<String> types = acceptedTypes.get(node);
+                if (types == null || types.contains(type)) {
+                    candidates.add(node);
+                }
+            }
+            candidatesByType.put(type, Collections.unmodifiableList(candidates));
+        }
+    }
+
+    /**
+     * Returns event nodes that might accept given event type.
+     * @param type event type
+     * @return ordered list of candidate event nodes, never null
+     */
+    public List<Node> getCandidates(String type) {
+        List<Node> candidates = candidatesByType.get(type);
+        if (candidates == null) {
+            return unindexedNodes;
+        }
+        return candidates;
+    }
+
+    /*
+     * Returns exact types accepted by given node or null when it cannot be determined 
+     * without evaluating the node for every event
+     */
+    protected static Set<String> getAcceptedTypes(Node node) {
+        if (node instanceof EventSubProcessNode) {
+            Set<String> types = new HashSet<String>();
+            for (EventTypeFilter filter : ((EventSubProcessNode) node).getEventTypeFilters()) {
+                if (filter instanceof NonAcceptingEventTypeFilter) {
+                    continue;
+                }
+                if (!EventTypeFilter.class.equals(filter.getClass())) {
+                    return null;
+                }
+                if (filter.getType() != null) {
+                    types.add(filter.getType());
+                }
+            }
+            return types;
+        } else if (node instanceof EventNode) {
+            List<EventFilter> filters = ((EventNode) node).getEventFilters();
+            if (filters.isEmpty()) {
+                return null;
+            }
+            Set<String> types = null;
+            for (EventFilter filter : filters) {
+                Set<String> filterTypes = new HashSet<String>();
+                if (filter instanceof NonAcceptingEventTypeFilter) {
+                    // accepts nothing
+                } else if (EventTypeFilter.class.equals(filter.getClass())) {
+                    if (((EventTypeFilter) filter).getType() != null) {
+                        filterTypes.add(((EventTypeFilter) filter).getType());
+                    }
+                } else {
+                    return null;
+                }
+                // all filters must accept the event
+                if (types == null) {
+                    types = filterTypes;
+                } else {
+                    types.retainAll(filterTypes);
+                }
+            }
+            return types;
+        }
+        return null;
+    }
+}
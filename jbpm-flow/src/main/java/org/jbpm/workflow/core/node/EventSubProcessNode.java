@@ -40,6 +40,10 @@ public class EventSubProcessNode extends CompositeContextNode {
     public List<String> getEvents() {
         return events;
     }
+    
+    public List<EventTypeFilter> getEventTypeFilters() {
+        return eventTypeFilters;
+    }
 
     public boolean isKeepActive() {
         return keepActive;
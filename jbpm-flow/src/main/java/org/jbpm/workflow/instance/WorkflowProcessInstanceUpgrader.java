@@ -61,6 +61,7 @@ public class WorkflowProcessInstanceUpgrader {
             processInstance.disconnect();
             processInstance.setProcess(oldProcess);
             updateNodeInstances(processInstance, nodeMapping);
+            processInstance.rebuildNodeInstanceIndex();
             processInstance.setKnowledgeRuntime((InternalKnowledgeRuntime) kruntime);
             processInstance.setProcess(process);
             processInstance.reconnect();
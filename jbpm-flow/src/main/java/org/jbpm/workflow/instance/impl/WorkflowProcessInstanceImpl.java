@@ -39,6 +39,7 @@ import org.jbpm.process.instance.context.variable.VariableScopeInstance;
 import org.jbpm.process.instance.impl.ProcessInstanceImpl;
 import org.jbpm.workflow.core.DroolsAction;
 import org.jbpm.workflow.core.impl.NodeImpl;
+import org.jbpm.workflow.core.impl.WorkflowProcessImpl;
 import org.jbpm.workflow.core.node.AsyncEventNode;
 import org.jbpm.workflow.core.node.EventNode;
 import org.jbpm.workflow.core.node.EventNodeInterface;
@@ -80,6 +81,8 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	private static final Logger logger = LoggerFactory.getLogger(WorkflowProcessInstanceImpl.class);
 
 	private final List<NodeInstance> nodeInstances = new ArrayList<NodeInstance>();;
+	// node instances by node id, kept in sync with nodeInstances
+	private final Map<Long, List<NodeInstance>> nodeInstancesByNodeId = new HashMap<Long, List<NodeInstance>>();
 
 	private AtomicLong singleNodeInstanceCounter = new AtomicLong(0);
 
@@ -91,6 +94,8 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	private Map<String, Integer> iterationLevels = new HashMap<String, Integer>();
 	private int currentLevel;
 	private boolean persisted = false;
+	// tracks if the process instance was changed since it was last marshalled or loaded
+	private boolean dirty = true;
 	private Object faultData;
 
 	private boolean signalCompletion = true;
@@ -110,6 +115,8 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
     		((NodeInstanceImpl) nodeInstance).setId(id);
 	    }
 		this.nodeInstances.add(nodeInstance);
+		indexNodeInstance(nodeInstance);
+		markDirty();
 	}
 
     @Override
@@ -137,6 +144,40 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 					getKnowledgeRuntime().getFactHandle(nodeInstance));
 		}
 		this.nodeInstances.remove(nodeInstance);
+		unindexNodeInstance(nodeInstance);
+		markDirty();
+	}
+
+	private void indexNodeInstance(NodeInstance nodeInstance) {
+		List<NodeInstance> list = nodeInstancesByNodeId.get(nodeInstance.getNodeId());
+		if (list == null) {
+			list = new ArrayList<NodeInstance>(2);
+			nodeInstancesByNodeId.put(nodeInstance.getNodeId(), list);
+		}
+		list.add(nodeInstance);
+	}
+
+	private void unindexNodeInstance(NodeInstance nodeInstance) {
+		List<NodeInstance> list = nodeInstancesByNodeId.get(nodeInstance.getNodeId());
+		if (list != null && list.remove(nodeInstance)) {
+			if (list.isEmpty()) {
+				nodeInstancesByNodeId.remove(nodeInstance.getNodeId());
+			}
+			return;
+		}
+		// node id was changed after the node instance was added
+		rebuildNodeInstanceIndex();
+	}
+
+	/**
+	 * Rebuilds the node id based lookup of node instances, needs to be called whenever node ids 
+	 * of already added node instances are changed e.g. by migration.
+	 */
+	public void rebuildNodeInstanceIndex() {
+		nodeInstancesByNodeId.clear();
+		for (NodeInstance nodeInstance : nodeInstances) {
+			indexNodeInstance(nodeInstance);
+		}
 	}
 
 	public Collection<org.kie.api.runtime.process.NodeInstance> getNodeInstances() {
@@ -194,11 +235,12 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	}
 
 	public NodeInstance getFirstNodeInstance(final long nodeId) {
-		for (final Iterator<NodeInstance> iterator = this.nodeInstances
-				.iterator(); iterator.hasNext();) {
-			final NodeInstance nodeInstance = iterator.next();
-			if (nodeInstance.getNodeId() == nodeId && nodeInstance.getLevel() == getCurrentLevel()) {
-				return nodeInstance;
+		List<NodeInstance> indexed = nodeInstancesByNodeId.get(nodeId);
+		if (indexed != null) {
+			for (NodeInstance nodeInstance : indexed) {
+				if (nodeInstance.getNodeId() == nodeId && nodeInstance.getLevel() == getCurrentLevel()) {
+					return nodeInstance;
+				}
 			}
 		}
 		return null;
@@ -206,11 +248,12 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 
 	public List<NodeInstance> getNodeInstances(final long nodeId) {
 		List<NodeInstance> result = new ArrayList<NodeInstance>();
-		for (final Iterator<NodeInstance> iterator = this.nodeInstances
-				.iterator(); iterator.hasNext();) {
-			final NodeInstance nodeInstance = iterator.next();
-			if (nodeInstance.getNodeId() == nodeId) {
-				result.add(nodeInstance);
+		List<NodeInstance> indexed = nodeInstancesByNodeId.get(nodeId);
+		if (indexed != null) {
+			for (NodeInstance nodeInstance : indexed) {
+				if (nodeInstance.getNodeId() == nodeId) {
+					result.add(nodeInstance);
+				}
 			}
 		}
 		return result;
@@ -341,6 +384,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 
 	public void setState(final int state, String outcome) {
 	    super.setState(state, outcome);
+	    markDirty();
         // TODO move most of this to ProcessInstanceImpl
         if (state == ProcessInstance.STATE_COMPLETED
                 || state == ProcessInstance.STATE_ABORTED) {
@@ -425,6 +469,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 
 	public void start(String trigger) {
 		synchronized (this) {
+			markDirty();
 			registerExternalEventNodeListeners();
 			// activate timer event sub processes
 	        Node[] nodes = getNodeContainer().getNodes();
@@ -475,6 +520,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 			if (getState() != ProcessInstance.STATE_ACTIVE) {
 				return;
 			}
+			markDirty();
 			InternalRuntimeManager manager = (InternalRuntimeManager) getKnowledgeRuntime().getEnvironment().get("RuntimeManager");
 	        if (manager != null) {            
 	            // check if process instance is owned by the same manager as the one owning ksession
@@ -484,7 +530,19 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	                return;
 	            }
 	        }
-			List<NodeInstance> currentView = new ArrayList<NodeInstance>(this.nodeInstances);
+			// take a view of node instances of candidate event nodes before delivering the event, node 
+			// instances created while signaling must not receive it; whether the nodes accept the event is
+			// still evaluated after listeners were notified
+			List<Node> candidateNodes = getEventNodeCandidates(type);
+			Map<Long, List<NodeInstance>> currentView = new HashMap<Long, List<NodeInstance>>();
+			for (Node node : candidateNodes) {
+			    if (!(node instanceof EventNode && ((EventNode) node).getFrom() == null) && !(node instanceof EventSubProcessNode)) {
+			        List<NodeInstance> nodeInstances = getNodeInstances(node.getId());
+			        if (!nodeInstances.isEmpty()) {
+			            currentView.put(node.getId(), nodeInstances);
+			        }
+			    }
+			}
 
 			try {
 				this.activatingNodeIds = new ArrayList<String>();
@@ -500,25 +558,24 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 						listener.signalEvent(type, event);
 					}
 				}
-				for (Node node : getWorkflowProcess().getNodes()) {
-			        if (node instanceof EventNodeInterface) {
-			            if (((EventNodeInterface) node).acceptsEvent(type, event)) {
-			                if (node instanceof EventNode && ((EventNode) node).getFrom() == null) {
-			                    EventNodeInstance eventNodeInstance = (EventNodeInstance) getNodeInstance(node);
-			                    eventNodeInstance.signalEvent(type, event);
-			                } else if (node instanceof EventSubProcessNode ) {
-			                    EventSubProcessNodeInstance eventNodeInstance = (EventSubProcessNodeInstance) getNodeInstance(node);
-			                    eventNodeInstance.signalEvent(type, event);
-			                }  else {
-								List<NodeInstance> nodeInstances = getNodeInstances(node.getId(), currentView);
-			                    if (nodeInstances != null && !nodeInstances.isEmpty()) {
-			                        for (NodeInstance nodeInstance : nodeInstances) {
-										((EventNodeInstanceInterface) nodeInstance).signalEvent(type, event);
-			                        }
-			                    }
-			                }
-			            }
-			        }
+				for (Node node : candidateNodes) {
+				    if (!((EventNodeInterface) node).acceptsEvent(type, event)) {
+				        continue;
+				    }
+	                if (node instanceof EventNode && ((EventNode) node).getFrom() == null) {
+	                    EventNodeInstance eventNodeInstance = (EventNodeInstance) getNodeInstance(node);
+	                    eventNodeInstance.signalEvent(type, event);
+	                } else if (node instanceof EventSubProcessNode ) {
+	                    EventSubProcessNodeInstance eventNodeInstance = (EventSubProcessNodeInstance) getNodeInstance(node);
+	                    eventNodeInstance.signalEvent(type, event);
+	                }  else {
+						List<NodeInstance> nodeInstances = currentView.get(node.getId());
+	                    if (nodeInstances != null && !nodeInstances.isEmpty()) {
+	                        for (NodeInstance nodeInstance : nodeInstances) {
+								((EventNodeInstanceInterface) nodeInstance).signalEvent(type, event);
+	                        }
+	                    }
+	                }
 				}
 				if (((org.jbpm.workflow.core.WorkflowProcess) getWorkflowProcess()).isDynamic()) {
 					for (Node node : getWorkflowProcess().getNodes()) {
@@ -547,6 +604,20 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 		}
 	}
 
+	protected List<Node> getEventNodeCandidates(String type) {
+		WorkflowProcess process = getWorkflowProcess();
+		if (process instanceof WorkflowProcessImpl) {
+			return ((WorkflowProcessImpl) process).getEventNodeIndex().getCandidates(type);
+		}
+		List<Node> candidates = new ArrayList<Node>();
+		for (Node node : process.getNodes()) {
+			if (node instanceof EventNodeInterface) {
+				candidates.add(node);
+			}
+		}
+		return candidates;
+	}
+
 	public void addEventListener(String type, EventListener listener, boolean external) {
 		Map<String, List<EventListener>> eventListeners = external ? this.externalEventListeners : this.eventListeners;
 		List<EventListener> listeners = eventListeners.get(type);
@@ -660,6 +731,23 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 		this.persisted = persisted;
 	}
 
+	/**
+	 * Returns true if the process instance might have changed since it was loaded or last
+	 * marshalled. Changes done directly on internal structures (e.g. modifying variable
+	 * value in place) are not tracked and require explicit call to <code>markDirty</code>.
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	public void markDirty() {
+		this.dirty = true;
+	}
+
+	public void resetDirty() {
+		this.dirty = false;
+	}
+
 	public void addActivatingNodeId(String uniqueId) {
 		if (this.activatingNodeIds == null) {
 			return;
@@ -703,5 +791,6 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
     
     public void setCorrelationKey(String correlationKey) {
         this.correlationKey = correlationKey;
+        markDirty();
     }
 }
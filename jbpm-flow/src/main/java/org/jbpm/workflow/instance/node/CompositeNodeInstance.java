@@ -187,10 +187,18 @@ public class CompositeNodeInstance extends StateBasedNodeInstance implements Nod
             ((NodeInstanceImpl) nodeInstance).setId(id);
         }
         this.nodeInstances.add(nodeInstance);
+        markProcessInstanceDirty();
     }
 
     public void removeNodeInstance(final NodeInstance nodeInstance) {
         this.nodeInstances.remove(nodeInstance);
+        markProcessInstanceDirty();
+    }
+
+    private void markProcessInstanceDirty() {
+        if (getProcessInstance() instanceof WorkflowProcessInstanceImpl) {
+            ((WorkflowProcessInstanceImpl) getProcessInstance()).markDirty();
+        }
     }
 
     public Collection<org.kie.api.runtime.process.NodeInstance> getNodeInstances() {
@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
 import org.jbpm.process.core.context.variable.Variable;
+import org.jbpm.process.core.event.EventFilter;
 import org.jbpm.process.core.event.EventTypeFilter;
 import org.jbpm.process.instance.impl.Action;
 import org.jbpm.process.test.Person;
@@ -40,8 +41,10 @@ import org.jbpm.workflow.core.node.EventNode;
 import org.jbpm.workflow.core.node.Join;
 import org.jbpm.workflow.core.node.MilestoneNode;
 import org.jbpm.workflow.core.node.StartNode;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
 import org.junit.Test;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.EventListener;
 import org.kie.api.runtime.process.ProcessContext;
 import org.kie.api.runtime.process.ProcessInstance;
 import org.slf4j.LoggerFactory;
@@ -828,4 +831,79 @@ public class EventTest extends AbstractBaseTest  {
         verifyEventHistory(test5EventOrder, procEventListener.getEventHistory());
     }
     
+
+    @Test
+    public void testEventAcceptanceEvaluatedAfterListeners() {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.drools.core.process.event");
+        process.setName("Event Process");
+
+        StartNode startNode = new StartNode();
+        startNode.setName("Start");
+        startNode.setId(1);
+        process.addNode(startNode);
+
+        MilestoneNode milestoneNode = new MilestoneNode();
+        milestoneNode.setName("Milestone");
+        milestoneNode.setConstraint("eval(false)");
+        milestoneNode.setId(2);
+        process.addNode(milestoneNode);
+        new ConnectionImpl(
+            startNode, Node.CONNECTION_DEFAULT_TYPE,
+            milestoneNode, Node.CONNECTION_DEFAULT_TYPE
+        );
+
+        // accepts the event only once process instance listener of the same type was notified
+        final boolean[] listenerNotified = new boolean[1];
+        EventNode eventNode = new EventNode();
+        eventNode.addEventFilter(new EventFilter() {
+            public boolean acceptsEvent(String type, Object event) {
+                return "myEvent".equals(type) && listenerNotified[0];
+            }
+        });
+        eventNode.setId(3);
+        process.addNode(eventNode);
+
+        final List<String> myList = new ArrayList<String>();
+        ActionNode actionNode = new ActionNode();
+        actionNode.setName("Print");
+        DroolsAction action = new DroolsConsequenceAction("java", null);
+        action.setMetaData("Action", new Action() {
+            public void execute(ProcessContext context) throws Exception {
+                myList.add("Executed action");
+            }
+        });
+        actionNode.setAction(action);
+        actionNode.setId(4);
+        process.addNode(actionNode);
+        new ConnectionImpl(
+            eventNode, Node.CONNECTION_DEFAULT_TYPE,
+            actionNode, Node.CONNECTION_DEFAULT_TYPE
+        );
+
+        EndNode endNode = new EndNode();
+        endNode.setName("EndNode");
+        endNode.setId(5);
+        process.addNode(endNode);
+        new ConnectionImpl(
+            actionNode, Node.CONNECTION_DEFAULT_TYPE,
+            endNode, Node.CONNECTION_DEFAULT_TYPE
+        );
+
+        KieSession ksession = createKieSession(process);
+        ProcessInstance processInstance = ksession.startProcess("org.drools.core.process.event");
+        ((WorkflowProcessInstanceImpl) processInstance).addEventListener("myEvent", new EventListener() {
+            public void signalEvent(String type, Object event) {
+                listenerNotified[0] = true;
+            }
+
+            public String[] getEventTypes() {
+                return new String[] { "myEvent" };
+            }
+        }, false);
+
+        processInstance.signalEvent("myEvent", null);
+        assertEquals(1, myList.size());
+        assertEquals(ProcessInstance.STATE_COMPLETED, processInstance.getState());
+    }
 }
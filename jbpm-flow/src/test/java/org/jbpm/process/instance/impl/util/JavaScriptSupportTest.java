@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.process.instance.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleScriptContext;
+
+import org.drools.core.base.MapGlobalResolver;
+import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
+import org.jbpm.process.core.context.variable.Variable;
+import org.jbpm.process.instance.context.variable.VariableScopeInstance;
+import org.jbpm.process.instance.impl.Action;
+import org.jbpm.process.instance.impl.JavaScriptAction;
+import org.jbpm.process.instance.impl.JavaScriptReturnValueEvaluator;
+import org.jbpm.ruleflow.core.RuleFlowProcess;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.jbpm.workflow.core.DroolsAction;
+import org.jbpm.workflow.core.Node;
+import org.jbpm.workflow.core.impl.ConnectionImpl;
+import org.jbpm.workflow.core.impl.DroolsConsequenceAction;
+import org.jbpm.workflow.core.node.ActionNode;
+import org.jbpm.workflow.core.node.EndNode;
+import org.jbpm.workflow.core.node.StartNode;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessContext;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
+import org.slf4j.LoggerFactory;
+
+public class JavaScriptSupportTest extends AbstractBaseTest {
+
+    public void addLogger() { 
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void testBindingsResolveSingleVariable() {
+        VariableScopeInstance variableScope = new VariableScopeInstance();
+        variableScope.internalSetVariable("a", "value");
+        variableScope.internalSetVariable("empty", null);
+        MapGlobalResolver globals = new MapGlobalResolver();
+        globals.setGlobal("g", "global");
+        globals.setGlobal("a", "shadowed");
+
+        ProcessContextBindings bindings = new ProcessContextBindings(globals, variableScope);
+        bindings.put("local", "put by engine");
+
+        assertTrue(bindings.containsKey("a"));
+        assertEquals("value", bindings.get("a"));
+        // declared variable without value is still visible to the script
+        assertTrue(bindings.containsKey("empty"));
+        assertNull(bindings.get("empty"));
+        assertTrue(bindings.containsKey("g"));
+        assertEquals("global", bindings.get("g"));
+        assertEquals("put by engine", bindings.get("local"));
+        assertFalse(bindings.containsKey("unknown"));
+        assertNull(bindings.get("unknown"));
+        // non string keys are not resolved against variables or globals
+        assertFalse(bindings.containsKey(Integer.valueOf(1)));
+        assertNull(bindings.get(Integer.valueOf(1)));
+    }
+
+    @Test
+    public void testEngineBindingsArePooledAndCleaned() throws Exception {
+        // own engine so that the pool is not shared with other tests
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+        JavaScriptSupport.PooledBindings pooled = JavaScriptSupport.borrowBindings(engine);
+        Bindings bindings = pooled.getBindings();
+        bindings.put("leaked", "value");
+        JavaScriptSupport.releaseBindings(engine, pooled);
+        assertFalse(bindings.containsKey("leaked"));
+
+        // the same (cleaned) bindings are handed out again instead of creating new ones
+        JavaScriptSupport.PooledBindings reused = JavaScriptSupport.borrowBindings(engine);
+        assertTrue(pooled == reused);
+        JavaScriptSupport.releaseBindings(engine, reused);
+
+        // names that cannot be removed (var declarations) make the bindings unusable for the pool
+        JavaScriptSupport.PooledBindings declared = JavaScriptSupport.borrowBindings(engine);
+        assertTrue(declared == pooled);
+        ScriptContext scriptContext = new SimpleScriptContext();
+        scriptContext.setBindings(declared.getBindings(), ScriptContext.ENGINE_SCOPE);
+        engine.eval("var declared = 1;", scriptContext);
+        JavaScriptSupport.releaseBindings(engine, declared);
+        JavaScriptSupport.PooledBindings fresh = JavaScriptSupport.borrowBindings(engine);
+        assertFalse(fresh == declared);
+        assertFalse(fresh.getBindings().containsKey("declared"));
+    }
+
+    @Test
+    public void testScriptStateNotSharedBetweenEvaluations() {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.jbpm.process.javascript");
+        process.setName("JavaScript Process");
+        process.setPackageName("org.jbpm");
+
+        List<Variable> variables = new ArrayList<Variable>();
+        for (String name : new String[] { "x", "result" }) {
+            Variable variable = new Variable();
+            variable.setName(name);
+            variable.setType(new ObjectDataType("java.lang.Object"));
+            variables.add(variable);
+        }
+        process.getVariableScope().setVariables(variables);
+
+        StartNode startNode = new StartNode();
+        startNode.setName("Start");
+        startNode.setId(1);
+        process.addNode(startNode);
+
+        ActionNode first = actionNode(2, "leaked = x; var declared = x + 1;");
+        process.addNode(first);
+        connect(startNode, first);
+
+        ActionNode second = actionNode(3, "kcontext.setVariable('result', typeof leaked + ',' + typeof declared + ',' + (x + 1));");
+        process.addNode(second);
+        connect(first, second);
+
+        EndNode endNode = new EndNode();
+        endNode.setName("End");
+        endNode.setId(4);
+        process.addNode(endNode);
+        connect(second, endNode);
+
+        KieSession ksession = createKieSession(process);
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("x", 1);
+        for (int i = 0; i < 2; i++) {
+            ProcessInstance processInstance = ksession.startProcess("org.jbpm.process.javascript", parameters);
+            assertEquals(ProcessInstance.STATE_COMPLETED, processInstance.getState());
+            assertEquals("undefined,undefined,2", ((WorkflowProcessInstance) processInstance).getVariable("result"));
+        }
+    }
+
+    @Test
+    public void testReturnValueEvaluatorReadsVariables() throws Exception {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.jbpm.process.javascript.constraint");
+        process.setName("JavaScript Constraint Process");
+        process.setPackageName("org.jbpm");
+        Variable variable = new Variable();
+        variable.setName("x");
+        variable.setType(new ObjectDataType("java.lang.Integer"));
+        List<Variable> variables = new ArrayList<Variable>();
+        variables.add(variable);
+        process.getVariableScope().setVariables(variables);
+
+        final List<Object> results = new ArrayList<Object>();
+        StartNode startNode = new StartNode();
+        startNode.setName("Start");
+        startNode.setId(1);
+        process.addNode(startNode);
+        ActionNode actionNode = new ActionNode();
+        actionNode.setName("Evaluate");
+        actionNode.setId(2);
+        DroolsAction action = new DroolsConsequenceAction("java", null);
+        final JavaScriptReturnValueEvaluator constraint = new JavaScriptReturnValueEvaluator("x > 5");
+        action.setMetaData("Action", new Action() {
+            public void execute(ProcessContext context) throws Exception {
+                results.add(constraint.evaluate(context));
+            }
+        });
+        actionNode.setAction(action);
+        process.addNode(actionNode);
+        connect(startNode, actionNode);
+        EndNode endNode = new EndNode();
+        endNode.setName("End");
+        endNode.setId(3);
+        process.addNode(endNode);
+        connect(actionNode, endNode);
+
+        KieSession ksession = createKieSession(process);
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("x", 10);
+        ksession.startProcess("org.jbpm.process.javascript.constraint", parameters);
+        parameters.put("x", 1);
+        ksession.startProcess("org.jbpm.process.javascript.constraint", parameters);
+
+        assertEquals(2, results.size());
+        assertEquals(Boolean.TRUE, results.get(0));
+        assertEquals(Boolean.FALSE, results.get(1));
+    }
+
+    private ActionNode actionNode(long id, String script) {
+        ActionNode actionNode = new ActionNode();
+        actionNode.setName("Script " + id);
+        actionNode.setId(id);
+        DroolsAction action = new DroolsConsequenceAction("JavaScript", script);
+        action.setMetaData("Action", new JavaScriptAction(script));
+        actionNode.setAction(action);
+        return actionNode;
+    }
+
+    private void connect(Node from, Node to) {
+        new ConnectionImpl(
+            from, Node.CONNECTION_DEFAULT_TYPE,
+            to, Node.CONNECTION_DEFAULT_TYPE
+        );
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.process.instance.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+
+import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
+import org.jbpm.process.core.context.variable.Variable;
+import org.jbpm.process.instance.impl.Action;
+import org.jbpm.process.instance.impl.XPATHReturnValueEvaluator;
+import org.jbpm.ruleflow.core.RuleFlowProcess;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.jbpm.workflow.core.DroolsAction;
+import org.jbpm.workflow.core.Node;
+import org.jbpm.workflow.core.impl.ConnectionImpl;
+import org.jbpm.workflow.core.impl.DroolsConsequenceAction;
+import org.jbpm.workflow.core.node.ActionNode;
+import org.jbpm.workflow.core.node.EndNode;
+import org.jbpm.workflow.core.node.StartNode;
+import org.junit.After;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessContext;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class XPATHSupportTest extends AbstractBaseTest {
+
+    public void addLogger() { 
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @After
+    public void tearDown() {
+        XPATHSupport.clearCache();
+    }
+
+    @Test
+    public void testExpressionsAreCompiledOncePerThread() throws Exception {
+        final XPathExpression compiled = XPATHSupport.compile("/order/@id");
+        assertSame(compiled, XPATHSupport.compile("/order/@id"));
+        assertNotSame(compiled, XPATHSupport.compile("/order/item"));
+        // expressions with process context resolvers are cached separately
+        assertNotSame(compiled, XPATHSupport.compileWithProcessContext("/order/@id"));
+
+        Document document = XPATHSupport.getDocumentBuilder().newDocument();
+        Element order = document.createElement("order");
+        order.setAttribute("id", "42");
+        document.appendChild(order);
+        assertEquals("42", compiled.evaluate(document));
+
+        // compiled expressions are not thread safe and so not shared with other threads
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            XPathExpression other = executor.submit(new Callable<XPathExpression>() {
+                public XPathExpression call() throws Exception {
+                    try {
+                        return XPATHSupport.compile("/order/@id");
+                    } finally {
+                        XPATHSupport.clearCache();
+                    }
+                }
+            }).get();
+            assertNotSame(compiled, other);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCacheIsBoundToContextClassLoader() throws Exception {
+        XPathExpression compiled = XPATHSupport.compile("count(/order)");
+        Document emptyDocument = XPATHSupport.getEmptyDocument();
+        assertSame(emptyDocument, XPATHSupport.getEmptyDocument());
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        URLClassLoader deploymentClassLoader = new URLClassLoader(new URL[0], original);
+        Thread.currentThread().setContextClassLoader(deploymentClassLoader);
+        XPathExpression deploymentCompiled;
+        try {
+            deploymentCompiled = XPATHSupport.compile("count(/order)");
+            assertNotSame(compiled, deploymentCompiled);
+            assertNotSame(emptyDocument, XPATHSupport.getEmptyDocument());
+            assertSame(deploymentCompiled, XPATHSupport.compile("count(/order)"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+        // resources of other class loader are never reused
+        XPathExpression recompiled = XPATHSupport.compile("count(/order)");
+        assertNotSame(deploymentCompiled, recompiled);
+        assertNotSame(compiled, recompiled);
+
+        XPATHSupport.clearCache();
+        assertNotSame(recompiled, XPATHSupport.compile("count(/order)"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedExpressionsAreDropped() throws Exception {
+        int size = Integer.parseInt(System.getProperty("org.jbpm.xpath.cache.size", "500"));
+        XPathExpression first = XPATHSupport.compile("1 + 0");
+        for (int i = 1; i <= size; i++) {
+            XPATHSupport.compile("1 + " + i);
+        }
+        assertNotSame(first, XPATHSupport.compile("1 + 0"));
+        // most recently used one is still there
+        XPathExpression last = XPATHSupport.compile("1 + " + size);
+        assertSame(last, XPATHSupport.compile("1 + " + size));
+    }
+
+    @Test
+    public void testBindRestoresPreviousContext() {
+        assertNull(XPATHSupport.bind(null));
+        ProcessContext context = newProcessContextProxy();
+        assertNull(XPATHSupport.bind(context));
+        ProcessContext nested = newProcessContextProxy();
+        assertSame(context, XPATHSupport.bind(nested));
+        assertSame(nested, XPATHSupport.bind(context));
+        assertSame(context, XPATHSupport.bind(null));
+        assertNull(XPATHSupport.bind(null));
+    }
+
+    @Test
+    public void testProcessContextExpressionWithoutBoundContext() throws Exception {
+        try {
+            XPATHSupport.compileWithProcessContext("$x = 'a'").evaluate(XPATHSupport.getEmptyDocument(), XPathConstants.BOOLEAN);
+            fail("Variables cannot be resolved without process context");
+        } catch (Exception e) {
+            // XPath implementation may wrap the exception of the resolver
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertTrue("Unexpected exception " + e, cause != null);
+        }
+    }
+
+    @Test
+    public void testReturnValueEvaluatorReadsVariables() throws Exception {
+        final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+        final XPATHReturnValueEvaluator variable = new XPATHReturnValueEvaluator("$x = 'approved'", null);
+        final XPATHReturnValueEvaluator function = new XPATHReturnValueEvaluator("bpmn2:getVariable('x') = 'approved'", null);
+        RuleFlowProcess process = newProcess(new Action() {
+            public void execute(ProcessContext context) throws Exception {
+                results.add(variable.evaluate(context));
+                results.add(function.evaluate(context));
+            }
+        });
+
+        KieSession ksession = createKieSession(process);
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("x", "approved");
+        ksession.startProcess("org.jbpm.process.xpath", parameters);
+        parameters.put("x", "rejected");
+        ksession.startProcess("org.jbpm.process.xpath", parameters);
+
+        assertEquals(4, results.size());
+        assertEquals(Boolean.TRUE, results.get(0));
+        assertEquals(Boolean.TRUE, results.get(1));
+        assertEquals(Boolean.FALSE, results.get(2));
+        assertEquals(Boolean.FALSE, results.get(3));
+        // context is unbound once evaluated
+        assertNull(XPATHSupport.bind(null));
+    }
+
+    @Test
+    public void testConcurrentEvaluationsUseOwnContext() throws Exception {
+        final XPATHReturnValueEvaluator evaluator = new XPATHReturnValueEvaluator("$x = bpmn2:getVariable('expected')", null);
+        final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+        RuleFlowProcess process = newProcess(new Action() {
+            public void execute(ProcessContext context) throws Exception {
+                results.add(evaluator.evaluate(context));
+            }
+        });
+
+        int threads = 4;
+        final int iterations = 50;
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                final KieSession ksession = createKieSession(process);
+                final String value = "thread" + t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int i = 0; i < iterations; i++) {
+                            Map<String, Object> parameters = new HashMap<String, Object>();
+                            parameters.put("x", value + i);
+                            parameters.put("expected", value + i);
+                            ksession.startProcess("org.jbpm.process.xpath", parameters);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * iterations, results.size());
+        assertFalse(results.contains(Boolean.FALSE));
+    }
+
+    private RuleFlowProcess newProcess(Action evaluation) {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.jbpm.process.xpath");
+        process.setName("XPath Process");
+        process.setPackageName("org.jbpm");
+        List<Variable> variables = new ArrayList<Variable>();
+        for (String name : new String[] { "x", "expected" }) {
+            Variable variable = new Variable();
+            variable.setName(name);
+            variable.setType(new ObjectDataType("java.lang.String"));
+            variables.add(variable);
+        }
+        process.getVariableScope().setVariables(variables);
+
+        StartNode startNode = new StartNode();
+        startNode.setName("Start");
+        startNode.setId(1);
+        process.addNode(startNode);
+        ActionNode actionNode = new ActionNode();
+        actionNode.setName("Evaluate");
+        actionNode.setId(2);
+        DroolsAction action = new DroolsConsequenceAction("java", null);
+        action.setMetaData("Action", evaluation);
+        actionNode.setAction(action);
+        process.addNode(actionNode);
+        connect(startNode, actionNode);
+        EndNode endNode = new EndNode();
+        endNode.setName("End");
+        endNode.setId(3);
+        process.addNode(endNode);
+        connect(actionNode, endNode);
+        return process;
+    }
+
+    private ProcessContext newProcessContextProxy() {
+        return (ProcessContext) Proxy.newProxyInstance(getClass().getClassLoader(), 
+                new Class<?>[] { ProcessContext.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+            }
+        });
+    }
+
+    private void connect(Node from, Node to) {
+        new ConnectionImpl(
+            from, Node.CONNECTION_DEFAULT_TYPE,
+            to, Node.CONNECTION_DEFAULT_TYPE
+        );
+    }
+}
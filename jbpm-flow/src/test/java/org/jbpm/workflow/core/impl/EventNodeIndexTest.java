@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.workflow.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jbpm.process.core.event.BroadcastEventTypeFilter;
+import org.jbpm.process.core.event.EventTypeFilter;
+import org.jbpm.process.core.event.NonAcceptingEventTypeFilter;
+import org.jbpm.ruleflow.core.RuleFlowProcess;
+import org.jbpm.workflow.core.node.ActionNode;
+import org.jbpm.workflow.core.node.EventNode;
+import org.jbpm.workflow.core.node.EventSubProcessNode;
+import org.junit.Test;
+import org.kie.api.definition.process.Node;
+
+public class EventNodeIndexTest {
+
+    @Test
+    public void testCandidatesByEventType() {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.jbpm.process.index");
+
+        ActionNode actionNode = new ActionNode();
+        actionNode.setId(1);
+        process.addNode(actionNode);
+
+        EventNode first = eventNode(2, new EventTypeFilter(), "first");
+        process.addNode(first);
+
+        EventNode broadcast = eventNode(3, new BroadcastEventTypeFilter(), "Escalation");
+        process.addNode(broadcast);
+
+        EventNode second = eventNode(4, new EventTypeFilter(), "second");
+        process.addNode(second);
+
+        EventNode nonAccepting = eventNode(5, new NonAcceptingEventTypeFilter(), "first");
+        process.addNode(nonAccepting);
+
+        EventSubProcessNode eventSubProcess = new EventSubProcessNode();
+        eventSubProcess.setId(6);
+        EventTypeFilter filter = new EventTypeFilter();
+        filter.setType("first");
+        eventSubProcess.addEvent(filter);
+        process.addNode(eventSubProcess);
+
+        EventNodeIndex index = process.getEventNodeIndex();
+
+        List<Node> candidates = index.getCandidates("first");
+        assertEquals(3, candidates.size());
+        assertTrue(candidates.get(0) == first);
+        assertTrue(candidates.get(1) == broadcast);
+        assertTrue(candidates.get(2) == eventSubProcess);
+
+        candidates = index.getCandidates("second");
+        assertEquals(2, candidates.size());
+        assertTrue(candidates.get(0) == broadcast);
+        assertTrue(candidates.get(1) == second);
+
+        // unknown types still go to nodes that cannot be indexed
+        candidates = index.getCandidates("Escalation-code");
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.get(0) == broadcast);
+    }
+
+    @Test
+    public void testIndexRebuiltOnNodeChange() {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId("org.jbpm.process.index");
+
+        EventNode first = eventNode(1, new EventTypeFilter(), "first");
+        process.addNode(first);
+        assertEquals(1, process.getEventNodeIndex().getCandidates("first").size());
+        assertEquals(0, process.getEventNodeIndex().getCandidates("second").size());
+
+        EventNode second = eventNode(2, new EventTypeFilter(), "second");
+        process.addNode(second);
+        assertEquals(1, process.getEventNodeIndex().getCandidates("second").size());
+
+        process.removeNode(first);
+        assertEquals(0, process.getEventNodeIndex().getCandidates("first").size());
+    }
+
+    private EventNode eventNode(long id, EventTypeFilter filter, String type) {
+        EventNode eventNode = new EventNode();
+        eventNode.setId(id);
+        filter.setType(type);
+        eventNode.addEventFilter(filter);
+        return eventNode;
+    }
+}
@@ -27,6 +27,8 @@ import org.drools.core.command.Interceptor;
 import org.drools.core.impl.EnvironmentFactory;
 import org.jbpm.services.task.commands.TaskCommandExecutorImpl;
 import org.jbpm.services.task.events.TaskEventSupport;
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.jbpm.services.task.identity.CachingUserInfo;
 import org.jbpm.services.task.identity.DefaultUserInfo;
 import org.jbpm.services.task.identity.MvelUserGroupCallbackImpl;
 import org.jbpm.services.task.impl.TaskDeadlinesServiceImpl;
@@ -52,6 +54,8 @@ import org.slf4j.LoggerFactory;
  * 	<li>userInfo - DefaultUserInfo by default</li>
  * 	<li>userGroupCallback - uses MvelUserGroupCallbackImpl by default</li>
  * </ul>
+ * Both userInfo and userGroupCallback can be wrapped with caching decorators by setting
+ * <code>org.jbpm.ht.identity.cache</code> system property to true or via <code>identityCache(true)</code>.
  * 
  * @see DefaultUserInfo
  * @see MvelUserGroupCallbackImpl
@@ -63,6 +67,7 @@ public class HumanTaskConfigurator {
 	private static final String DEFAULT_INTERCEPTOR = "org.jbpm.services.task.persistence.TaskTransactionInterceptor";
 	private static final String TX_LOCK_INTERCEPTOR = "org.drools.persistence.jta.TransactionLockInterceptor";
 	private static final String OPTIMISTIC_LOCK_INTERCEPTOR = "org.drools.persistence.jpa.OptimisticLockRetryInterceptor";
+	private static final boolean IDENTITY_CACHE = Boolean.parseBoolean(System.getProperty("org.jbpm.ht.identity.cache", "false"));
 
     private TaskService service;
     private TaskCommandExecutorImpl commandExecutor;
@@ -70,6 +75,7 @@ public class HumanTaskConfigurator {
 	
     private UserGroupCallback userGroupCallback;
     private UserInfo userInfo;
+    private boolean identityCache = IDENTITY_CACHE;
     
     private Set<PriorityInterceptor> interceptors = new TreeSet<PriorityInterceptor>();
     private Set<TaskLifeCycleEventListener> listeners = new HashSet<TaskLifeCycleEventListener>();
@@ -118,6 +124,12 @@ public class HumanTaskConfigurator {
     }
    
     
+    public HumanTaskConfigurator identityCache(boolean identityCache) {
+        this.identityCache = identityCache;
+        
+        return this;
+    }
+    
     public HumanTaskConfigurator userGroupCallback(UserGroupCallback userGroupCallback) {
         if (userGroupCallback == null) {
             return this;
@@ -135,10 +147,16 @@ public class HumanTaskConfigurator {
         	if (userGroupCallback == null) {
         		userGroupCallback = new MvelUserGroupCallbackImpl(true);
         	}
+        	if (identityCache && !(userGroupCallback instanceof CachingUserGroupCallback)) {
+        		userGroupCallback = new CachingUserGroupCallback(userGroupCallback);
+        	}
         	environment.set(EnvironmentName.TASK_USER_GROUP_CALLBACK, userGroupCallback);
         	if (userInfo == null) {
         		userInfo = new DefaultUserInfo(true);
         	}
+        	if (identityCache && !(userInfo instanceof CachingUserInfo)) {
+        		userInfo = new CachingUserInfo(userInfo);
+        	}
         	environment.set(EnvironmentName.TASK_USER_INFO, userInfo);
         	addDefaultInterceptor();
         	addTransactionLockInterceptor();
@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlSchemaType;
 
 import org.jbpm.services.task.deadlines.notifications.impl.NotificationListenerManager;
 import org.jbpm.services.task.events.TaskEventSupport;
+import org.jbpm.services.task.impl.TaskDeadlinesServiceImpl;
 import org.jbpm.services.task.utils.ContentMarshallerHelper;
 import org.kie.api.runtime.EnvironmentName;
 import org.kie.api.task.model.Content;
@@ -84,13 +85,20 @@ public class ExecuteDeadlinesCommand extends TaskCommand<Void> {
 		UserInfo userInfo = (UserInfo) context.get(EnvironmentName.TASK_USER_INFO);
 		
 		TaskPersistenceContext persistenceContext = ctx.getPersistenceContext();
-		
+		boolean claimed = false;
 		try {
 	        Task task = persistenceContext.findTask(taskId);
 	        Deadline deadline = persistenceContext.findDeadline(deadlineId);
 	        if (task == null || deadline == null) {
 	        	return null;
 	        }
+	        if (TaskDeadlinesServiceImpl.getHorizon() > 0) {
+	            if (!claim(persistenceContext)) {
+	                logger.debug("Deadline {} of task {} was already escalated", deadlineId, taskId);
+	                return null;
+	            }
+	            claimed = true;
+	        }
 	        TaskData taskData = task.getTaskData();
 	        
 	        
@@ -164,10 +172,28 @@ public class ExecuteDeadlinesCommand extends TaskCommand<Void> {
 	        persistenceContext.updateDeadline(deadline);
 	        persistenceContext.updateTask(task);
         } catch (Exception e) {
-
+            if (claimed) {
+                // deadline is already marked as escalated, transaction must not be committed 
+                // otherwise it would never be escalated again
+                logger.error("Error when executing deadline {} of task {}, rolling back its claim", deadlineId, taskId, e);
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
+                }
+                throw new IllegalStateException("Unable to escalate deadline " + deadlineId + " of task " + taskId, e);
+            }
         	logger.error("Error when executing deadlines", e);
         }
 		return null;
 	}
 
+	/*
+	 * Marks the deadline as escalated unless it already is, so only one of (cluster) nodes that have 
+	 * the deadline scheduled escalates it
+	 */
+	protected boolean claim(TaskPersistenceContext persistenceContext) {
+	    int updated = persistenceContext.executeUpdateString("update DeadlineImpl d set d.escalated = 1 where d.id = " 
+	            + deadlineId + " and d.escalated = 0");
+	    return updated > 0;
+	}
+
 }
@@ -15,13 +15,17 @@
 
 package org.jbpm.services.task.commands;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.jbpm.services.task.impl.TaskDeadlinesServiceImpl;
 import org.jbpm.services.task.utils.ClassUtil;
+import org.kie.internal.query.QueryParameterIdentifiers;
 import org.kie.internal.command.Context;
 import org.kie.internal.task.api.TaskDeadlinesService;
 import org.kie.internal.task.api.TaskDeadlinesService.DeadlineType;
@@ -30,6 +34,10 @@ import org.kie.internal.task.api.model.DeadlineSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Schedules unescalated deadlines - either all of them or, when deadlines horizon is configured 
+ * (see {@link TaskDeadlinesServiceImpl}), those of the next window that was not loaded yet.
+ */
 @XmlRootElement(name="init-deadlines-command")
 @XmlAccessorType(XmlAccessType.NONE)
 public class InitDeadlinesCommand extends TaskCommand<Void> {
@@ -49,6 +57,21 @@ public class InitDeadlinesCommand extends TaskCommand<Void> {
 		
         try {
 	        long now = System.currentTimeMillis();
+	        long horizon = TaskDeadlinesServiceImpl.getHorizon();
+	        if (horizon > 0) {
+	            long from = TaskDeadlinesServiceImpl.advanceWindow(now + horizon);
+	            if (from >= 0) {
+	                try {
+	                    scheduleWindow(persistenceContext, deadlineService, "UnescalatedStartDeadlinesInWindow", from, now + horizon, DeadlineType.START);
+	                    scheduleWindow(persistenceContext, deadlineService, "UnescalatedEndDeadlinesInWindow", from, now + horizon, DeadlineType.END);
+	                } catch (RuntimeException e) {
+	                    // window will be loaded again next time, already scheduled deadlines are not scheduled twice
+	                    TaskDeadlinesServiceImpl.rewindWindow(from, now + horizon);
+	                    throw e;
+	                }
+	            }
+	            return null;
+	        }
 	        List<DeadlineSummary> resultList = persistenceContext.queryInTransaction("UnescalatedStartDeadlines",
 	        										ClassUtil.<List<DeadlineSummary>>castClass(List.class));
 	        for (DeadlineSummary summary : resultList) {
@@ -69,5 +92,33 @@ public class InitDeadlinesCommand extends TaskCommand<Void> {
         }
 		return null;
 	}
+	
+	/*
+	 * Schedules deadlines due in given window page by page so they are not all loaded at once, pages
+	 * continue after last loaded deadline (by date and id) as deadlines might be escalated in the meantime
+	 */
+	protected void scheduleWindow(TaskPersistenceContext persistenceContext, TaskDeadlinesService deadlineService, 
+	        String queryName, long from, long to, DeadlineType type) {
+	    int pageSize = TaskDeadlinesServiceImpl.getPageSize();
+	    Date after = new Date(from);
+	    long afterId = -1;
+	    int scheduled = 0;
+	    List<DeadlineSummary> resultList;
+	    do {
+	        Map<String, Object> params = persistenceContext.addParametersToMap("from", after, "afterId", afterId, "to", new Date(to));
+	        params.put(QueryParameterIdentifiers.MAX_RESULTS, pageSize);
+	        
+	        resultList = persistenceContext.queryWithParametersInTransaction(queryName, params, 
+	                ClassUtil.<List<DeadlineSummary>>castClass(List.class));
+	        long now = System.currentTimeMillis();
+	        for (DeadlineSummary summary : resultList) {
+	            deadlineService.schedule(summary.getTaskId(), summary.getDeadlineId(), summary.getDate().getTime() - now, type);
+	            after = summary.getDate();
+	            afterId = summary.getDeadlineId();
+	        }
+	        scheduled += resultList.size();
+	    } while (resultList.size() == pageSize);
+	    logger.debug("Scheduled {} {} deadlines due between {} and {}", scheduled, type, new Date(from), new Date(to));
+	}
 
 }
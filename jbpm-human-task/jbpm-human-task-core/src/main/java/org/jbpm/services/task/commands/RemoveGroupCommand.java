@@ -21,6 +21,8 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSchemaType;
 
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.kie.api.task.UserGroupCallback;
 import org.kie.internal.command.Context;
 
 
@@ -45,7 +47,11 @@ public class RemoveGroupCommand extends TaskCommand<Void> {
     public Void execute(Context cntxt) {
         TaskContext context = (TaskContext) cntxt;
                 
-        context.getTaskIdentityService().removeGroup(groupId);;
+        context.getTaskIdentityService().removeGroup(groupId);
+        UserGroupCallback callback = context.getUserGroupCallback();
+        if (callback instanceof CachingUserGroupCallback) {
+            ((CachingUserGroupCallback) callback).invalidateGroup(groupId);
+        }
         return null;
     	 
     }
@@ -19,6 +19,8 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.kie.api.task.UserGroupCallback;
 import org.kie.internal.command.Context;
 
 
@@ -40,6 +42,10 @@ public class RemoveUserCommand extends TaskCommand<Void> {
         TaskContext context = (TaskContext) cntxt;
                 
         context.getTaskIdentityService().removeUser(userId);
+        UserGroupCallback callback = context.getUserGroupCallback();
+        if (callback instanceof CachingUserGroupCallback) {
+            ((CachingUserGroupCallback) callback).invalidateUser(userId);
+        }
         return null;
     	 
     }
@@ -31,6 +31,9 @@ import javax.xml.bind.annotation.XmlTransient;
 
 import org.drools.core.util.StringUtils;
 import org.jbpm.services.task.exception.CannotAddTaskException;
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.task.UserGroupCallback;
 import org.kie.api.task.model.Attachment;
 import org.kie.api.task.model.Comment;
 import org.kie.api.task.model.Group;
@@ -95,7 +98,9 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
     protected boolean doCallbackUserOperation(String userId, TaskContext context) {
 
         if (userId != null && context.getUserGroupCallback().existsUser(userId)) {
-            addUserFromCallbackOperation(userId, context);
+            if (!isKnownEntity(userId, false, context)) {
+                addUserFromCallbackOperation(userId, context);
+            }
             return true;
         }
         return false;
@@ -131,6 +136,7 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
             
             persistIfNotExists(user, context);
         } 
+        addKnownEntity(userId, false, context);
         
         return user;
     }
@@ -183,13 +189,17 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
     }
 
     protected void addGroupFromCallbackOperation(String groupId, TaskContext context) {
+        if (isKnownEntity(groupId, true, context)) {
+            return;
+        }
     	Group group = context.getPersistenceContext().findGroup(groupId);
     	boolean groupExists = group != null;
         if (!StringUtils.isEmpty(groupId) && !groupExists) {
         	group = TaskModelProvider.getFactory().newGroup();
             ((InternalOrganizationalEntity) group).setId(groupId);
             persistIfNotExists(group, context);
-        }    
+        }
+        addKnownEntity(groupId, true, context);    
     }
 
     protected void doCallbackOperationForTaskData(InternalTaskData data, TaskContext context) {
@@ -500,6 +510,49 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
      }
     
      
+    /*
+     * known entities are only tracked when caching user group callback is configured
+     */
+    protected boolean isKnownEntity(String entityId, boolean group, TaskContext context) {
+        UserGroupCallback callback = context.getUserGroupCallback();
+        if (entityId != null && callback instanceof CachingUserGroupCallback) {
+            return ((CachingUserGroupCallback) callback).isKnownEntity(entityId, group);
+        }
+        return false;
+    }
+
+    /*
+     * Entities are only recorded as known once the transaction that found or persisted them commits,
+     * otherwise a rollback would leave the cache claiming an entity is stored while it is not.
+     * Transaction interceptor runs actions collected under local:after-commit once it sees the commit.
+     */
+    @SuppressWarnings("unchecked")
+    protected void addKnownEntity(final String entityId, final boolean group, TaskContext context) {
+        UserGroupCallback callback = context.getUserGroupCallback();
+        if (StringUtils.isEmpty(entityId) || !(callback instanceof CachingUserGroupCallback)) {
+            return;
+        }
+        final CachingUserGroupCallback cachingCallback = (CachingUserGroupCallback) callback;
+        Runnable knownEntity = new Runnable() {
+
+            @Override
+            public void run() {
+                cachingCallback.addKnownEntity(entityId, group);
+            }
+        };
+        if (context.get(EnvironmentName.TRANSACTION_MANAGER) == null) {
+            // no transaction support configured, nothing can be rolled back
+            knownEntity.run();
+            return;
+        }
+        List<Runnable> afterCommit = (List<Runnable>) context.get("local:after-commit");
+        if (afterCommit == null) {
+            afterCommit = new ArrayList<Runnable>();
+            context.set("local:after-commit", afterCommit);
+        }
+        afterCommit.add(knownEntity);
+    }
+
      protected List<String> filterGroups(List<String> groups) {
          if (groups != null) {
              groups.removeAll(restrictedGroups);
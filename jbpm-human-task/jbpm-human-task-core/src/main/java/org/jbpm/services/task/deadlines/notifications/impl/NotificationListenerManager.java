@@ -15,6 +15,7 @@
  */
 package org.jbpm.services.task.deadlines.notifications.impl;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ServiceLoader;
@@ -66,6 +67,21 @@ public class NotificationListenerManager {
         }
     }
     
+    /**
+     * Closes listeners that hold resources (implement <code>Closeable</code>), e.g. open mail connections.
+     */
+    public void closeListeners() {
+        for (NotificationListener listener : listeners) {
+            if (listener instanceof Closeable) {
+                try {
+                    ((Closeable) listener).close();
+                } catch (Exception e) {
+                    logger.warn("Exception encountered while closing listener {} - error {}", listener, e.getMessage());
+                }
+            }
+        }
+    }
+    
     public static NotificationListenerManager get() {        
         return INSTANCE;
     }
@@ -15,6 +15,7 @@
  */
 package org.jbpm.services.task.deadlines.notifications.impl.email;
 
+import java.io.Closeable;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -27,13 +28,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.activation.DataHandler;
 import javax.activation.MimetypesFileTypeMap;
 import javax.mail.Message;
 import javax.mail.Multipart;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -52,15 +54,25 @@ import org.kie.internal.task.api.model.EmailNotificationHeader;
 import org.kie.internal.task.api.model.InternalOrganizationalEntity;
 import org.kie.internal.task.api.model.Language;
 import org.kie.internal.task.api.model.NotificationEvent;
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateCompiler;
 import org.mvel2.templates.TemplateRuntime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class EmailNotificationListener implements NotificationListener {
+/**
+ * Sends email notifications to recipients grouped by language. Subject and body templates are compiled once
+ * and cached, messages are sent by {@link EmailSender} - over reused connection and optionally asynchronously.
+ */
+public class EmailNotificationListener implements NotificationListener, Closeable {
     
     private static final Logger logger = LoggerFactory.getLogger(EmailNotificationListener.class);
+    
+    private static final int TEMPLATE_CACHE_SIZE = Integer.parseInt(System.getProperty("org.jbpm.ht.email.template.cache.size", "500"));
+    private static final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<String, CompiledTemplate>();
 
     private Session mailSession = EmailSessionProducer.produceSession();
+    private volatile EmailSender emailSender = mailSession == null ? null : new EmailSender(mailSession);
     
     
     @Override
@@ -99,6 +111,7 @@ public class EmailNotificationListener implements NotificationListener {
 
 
             Map<? extends Language, ? extends EmailNotificationHeader> headers = notification.getEmailHeaders();
+            List<Message> messages = new ArrayList<Message>(users.size());
 
             for (Iterator<Map.Entry<String, List<User>>> it = users.entrySet()
                     .iterator(); it.hasNext();) {
@@ -152,8 +165,8 @@ public class EmailNotificationListener implements NotificationListener {
                         vars.put("owners", task.getPeopleAssignments().getPotentialOwners());
                     }
     
-                    String subject = (String) TemplateRuntime.eval(header.getSubject(), vars);
-                    String body = (String) TemplateRuntime.eval(header.getBody(), vars);
+                    String subject = evalTemplate(header.getSubject(), vars);
+                    String body = evalTemplate(header.getBody(), vars);
     
                     if (variables.containsKey("attachments")) {
                         Multipart multipart = new MimeMultipart();
@@ -186,14 +199,49 @@ public class EmailNotificationListener implements NotificationListener {
                     msg.setHeader( "X-Mailer", "jbpm huamn task service" );
                     msg.setSentDate( new Date() );
 
-                    Transport.send(msg);
+                    messages.add(msg);
 
                 } catch (Exception e) {
                     logger.error("Unable to send email notification due to {}", e.getMessage());
                     logger.debug("Stacktrace:", e);
                 }
             }
+            // all messages of the notification are sent over single connection
+            emailSender.send(messages);
+        }
+    }
+    
+    protected String evalTemplate(String template, Map<String, Object> vars) {
+        if (template == null) {
+            return null;
+        }
+        CompiledTemplate compiled = templates.get(template);
+        if (compiled == null) {
+            compiled = TemplateCompiler.compileTemplate(template);
+            if (templates.size() >= TEMPLATE_CACHE_SIZE) {
+                templates.clear();
+            }
+            templates.put(template, compiled);
+        }
+        return (String) TemplateRuntime.execute(compiled, vars);
+    }
+    
+    public EmailSender getEmailSender() {
+        return emailSender;
+    }
+
+    /**
+     * Sends queued messages and closes connections of the current sender, listener stays usable
+     * with new sender as listeners are shared by all task services.
+     */
+    @Override
+    public void close() {
+        EmailSender current = emailSender;
+        if (current == null) {
+            return;
         }
+        emailSender = new EmailSender(mailSession);
+        current.close();
     }
     
     protected URL getAttachemntURL(String attachment) throws MalformedURLException {
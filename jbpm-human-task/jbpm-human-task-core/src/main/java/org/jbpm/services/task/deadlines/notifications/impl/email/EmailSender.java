@@ -0,0 +1,304 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.deadlines.notifications.impl.email;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.AuthenticationFailedException;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends email messages over transports (SMTP connections) that are kept open and reused - up to 
+ * <code>org.jbpm.ht.email.pool.size</code> idle connections are kept, each batch of messages is sent over one of them.
+ * When the connection was lost the message is sent again over new connection, messages rejected by the server 
+ * (e.g. invalid recipients) are not retried.
+ * <br/>
+ * When asynchronous (<code>org.jbpm.ht.email.async=true</code>) messages are put into bounded queue
+ * (<code>org.jbpm.ht.email.queue.size</code>) and sent in batches (<code>org.jbpm.ht.email.batch.size</code>)
+ * by background thread, messages that failed due to connection problems are retried up to 
+ * <code>org.jbpm.ht.email.retries</code> times. When the queue is full messages are sent by the calling thread.
+ */
+public class EmailSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailSender.class);
+    
+    private final Session mailSession;
+    private final boolean async;
+    private final int batchSize;
+    private final int retries;
+    private final long retryDelay;
+    
+    private final BlockingQueue<PendingMessage> queue;
+    private final BlockingQueue<Transport> idleTransports;
+    private Thread worker;
+    private volatile boolean closed;
+    
+    public EmailSender(Session mailSession) {
+        this(mailSession, 
+             Boolean.parseBoolean(System.getProperty("org.jbpm.ht.email.async", "false")),
+             Integer.parseInt(System.getProperty("org.jbpm.ht.email.queue.size", "1000")),
+             Integer.parseInt(System.getProperty("org.jbpm.ht.email.batch.size", "50")),
+             Integer.parseInt(System.getProperty("org.jbpm.ht.email.retries", "3")),
+             Long.parseLong(System.getProperty("org.jbpm.ht.email.retry.delay", "1000")),
+             Integer.parseInt(System.getProperty("org.jbpm.ht.email.pool.size", "3")));
+    }
+    
+    public EmailSender(Session mailSession, boolean async, int queueSize, int batchSize, int retries, long retryDelay) {
+        this(mailSession, async, queueSize, batchSize, retries, retryDelay, 
+             Integer.parseInt(System.getProperty("org.jbpm.ht.email.pool.size", "3")));
+    }
+    
+    public EmailSender(Session mailSession, boolean async, int queueSize, int batchSize, int retries, long retryDelay, int poolSize) {
+        this.mailSession = mailSession;
+        this.async = async;
+        this.batchSize = Math.max(batchSize, 1);
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+        this.queue = async ? new LinkedBlockingQueue<PendingMessage>(queueSize) : null;
+        this.idleTransports = new LinkedBlockingQueue<Transport>(Math.max(poolSize, 1));
+    }
+    
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Sends (or enqueues when asynchronous) given messages.
+     */
+    public void send(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!async || closed) {
+            sendBatch(toPending(messages), 1);
+            return;
+        }
+        startWorker();
+        List<PendingMessage> rejected = new ArrayList<PendingMessage>();
+        for (PendingMessage message : toPending(messages)) {
+            if (!queue.offer(message)) {
+                rejected.add(message);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            logger.warn("Email queue is full, sending {} messages directly", rejected.size());
+            sendBatch(rejected, 1);
+        }
+    }
+    
+    /**
+     * Stops background thread (after the queued messages were sent) and closes the idle transports.
+     */
+    public void close() {
+        closed = true;
+        Thread current;
+        synchronized (this) {
+            current = worker;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Transport idle = null;
+        while ((idle = idleTransports.poll()) != null) {
+            closeTransport(idle);
+        }
+    }
+    
+    /*
+     * Sends messages over one of the pooled transports, returns messages that could not be sent due to 
+     * connection failures and were attempted less than given number of times
+     */
+    protected List<PendingMessage> sendBatch(List<PendingMessage> messages, int attempts) {
+        List<PendingMessage> failed = new ArrayList<PendingMessage>();
+        Transport transport = idleTransports.poll();
+        try {
+            for (PendingMessage message : messages) {
+                transport = sendMessage(transport, message);
+                if (message.error == null) {
+                    continue;
+                }
+                message.attempts++;
+                if (message.retryable && message.attempts < attempts) {
+                    failed.add(message);
+                } else {
+                    logger.error("Unable to send email notification due to {}", message.error.getMessage());
+                    logger.debug("Stacktrace:", message.error);
+                }
+            }
+        } finally {
+            releaseTransport(transport);
+        }
+        return failed;
+    }
+    
+    /*
+     * Sends single message over given transport, when the connection was lost it is sent once more over 
+     * new connection. Returns transport to be used for next messages, null if there is none.
+     */
+    protected Transport sendMessage(Transport transport, PendingMessage pending) {
+        pending.error = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                transport = connect(transport);
+                pending.message.saveChanges();
+                transport.sendMessage(pending.message, pending.message.getAllRecipients());
+                return transport;
+            } catch (MessagingException e) {
+                pending.error = e;
+                pending.retryable = isConnectionFailure(transport, e);
+                if (!pending.retryable) {
+                    // message was rejected, connection can still be used
+                    return transport;
+                }
+                closeTransport(transport);
+                transport = null;
+            }
+        }
+        return transport;
+    }
+    
+    /*
+     * Message rejected by the server (or not accepted at all) is not worth sending again, only
+     * failures of the connection itself are
+     */
+    protected boolean isConnectionFailure(Transport transport, MessagingException e) {
+        if (e instanceof SendFailedException || e instanceof AuthenticationFailedException) {
+            return false;
+        }
+        if (transport == null || !transport.isConnected()) {
+            return true;
+        }
+        Exception cause = e.getNextException();
+        return cause instanceof IOException || e.getCause() instanceof IOException;
+    }
+    
+    protected Transport connect(Transport transport) throws MessagingException {
+        if (transport == null) {
+            transport = mailSession.getTransport();
+        }
+        if (!transport.isConnected()) {
+            transport.connect();
+        }
+        return transport;
+    }
+    
+    protected void releaseTransport(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        if (closed || !transport.isConnected() || !idleTransports.offer(transport)) {
+            closeTransport(transport);
+        }
+    }
+    
+    protected void closeTransport(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                logger.debug("Error when closing mail transport", e);
+            }
+        }
+    }
+    
+    protected int getIdleTransports() {
+        return idleTransports.size();
+    }
+    
+    protected synchronized void startWorker() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                processQueue();
+            }
+        }, "jbpm-email-sender");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    protected void processQueue() {
+        List<PendingMessage> batch = new ArrayList<PendingMessage>(batchSize);
+        List<PendingMessage> retry = Collections.emptyList();
+        while (!closed || !queue.isEmpty() || !retry.isEmpty()) {
+            batch.clear();
+            batch.addAll(retry);
+            try {
+                if (batch.isEmpty()) {
+                    PendingMessage first = closed ? queue.poll() : queue.poll(retryDelay, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                retry = sendBatch(batch, retries + 1);
+                if (!retry.isEmpty() && !closed) {
+                    Thread.sleep(retryDelay);
+                }
+            } catch (InterruptedException e) {
+                // closing, remaining messages are still sent
+                closed = true;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error when sending email notifications", e);
+                retry = Collections.emptyList();
+            }
+        }
+        logger.debug("Email sender stopped");
+    }
+    
+    private List<PendingMessage> toPending(List<Message> messages) {
+        List<PendingMessage> pending = new ArrayList<PendingMessage>(messages.size());
+        for (Message message : messages) {
+            pending.add(new PendingMessage(message));
+        }
+        return pending;
+    }
+    
+    protected static class PendingMessage {
+        
+        private final Message message;
+        private int attempts;
+        private boolean retryable;
+        private Exception error;
+        
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.identity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.kie.api.task.UserGroupCallback;
+
+/**
+ * <code>UserGroupCallback</code> decorator that caches results of the delegate for configured
+ * amount of time. Intended to be used with callbacks that perform remote lookups (e.g. LDAP or database)
+ * to avoid hitting the identity store on every task operation.
+ * <br/>
+ * Following system properties can be used to configure the cache:
+ * <ul>
+ * 	<li>org.jbpm.ht.identity.cache.size - max number of cached lookups, defaults to 1000</li>
+ * 	<li>org.jbpm.ht.identity.cache.ttl - time to live of cached lookups in milliseconds, defaults to 60000</li>
+ * 	<li>org.jbpm.ht.identity.known.size - max number of org entities known to be stored in the data base, defaults to 10000</li>
+ * 	<li>org.jbpm.ht.identity.known.ttl - time to live of known org entities in milliseconds, defaults to 600000</li>
+ * </ul>
+ * In addition to the callback results it keeps track of organizational entities that are known to be
+ * already stored in the data base so task commands can skip looking them up over and over again.
+ */
+public class CachingUserGroupCallback implements UserGroupCallback {
+
+    private static final String USER_PREFIX = "u:";
+    private static final String GROUP_PREFIX = "g:";
+
+    private final UserGroupCallback delegate;
+
+    private final ExpiringCache<String, Boolean> existsCache;
+    private final ExpiringCache<List<Object>, List<String>> groupsCache;
+    private final ExpiringCache<String, Boolean> knownEntities;
+
+    public CachingUserGroupCallback(UserGroupCallback delegate) {
+        this(delegate,
+             Integer.parseInt(System.getProperty("org.jbpm.ht.identity.cache.size", "1000")),
+             Long.parseLong(System.getProperty("org.jbpm.ht.identity.cache.ttl", "60000")),
+             Integer.parseInt(System.getProperty("org.jbpm.ht.identity.known.size", "10000")),
+             Long.parseLong(System.getProperty("org.jbpm.ht.identity.known.ttl", "600000")));
+    }
+
+    public CachingUserGroupCallback(UserGroupCallback delegate, int cacheSize, long timeToLive, int knownSize, long knownTimeToLive) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate UserGroupCallback cannot be null");
+        }
+        this.delegate = delegate;
+        this.existsCache = new ExpiringCache<String, Boolean>(cacheSize, timeToLive);
+        this.groupsCache = new ExpiringCache<List<Object>, List<String>>(cacheSize, timeToLive);
+        this.knownEntities = new ExpiringCache<String, Boolean>(knownSize, knownTimeToLive);
+    }
+
+    @Override
+    public boolean existsUser(String userId) {
+        String key = USER_PREFIX + userId;
+        Boolean exists = existsCache.get(key);
+        if (exists == null) {
+            exists = delegate.existsUser(userId);
+            existsCache.put(key, exists);
+        }
+        return exists;
+    }
+
+    @Override
+    public boolean existsGroup(String groupId) {
+        String key = GROUP_PREFIX + groupId;
+        Boolean exists = existsCache.get(key);
+        if (exists == null) {
+            exists = delegate.existsGroup(groupId);
+            existsCache.put(key, exists);
+        }
+        return exists;
+    }
+
+    @Override
+    public List<String> getGroupsForUser(String userId, List<String> groupIds, List<String> allExistingGroupIds) {
+        List<Object> key = Arrays.<Object>asList(userId, copy(groupIds), copy(allExistingGroupIds));
+        List<String> groups = groupsCache.get(key);
+        if (groups == null) {
+            groups = delegate.getGroupsForUser(userId, groupIds, allExistingGroupIds);
+            if (groups == null) {
+                return null;
+            }
+            groups = copy(groups);
+            groupsCache.put(key, groups);
+        }
+        // callers are allowed to modify returned list so never hand out the cached instance
+        return copy(groups);
+    }
+
+    /**
+     * Returns true if given user or group is known to be stored in the task data base.
+     */
+    public boolean isKnownEntity(String entityId, boolean group) {
+        return knownEntities.get((group ? GROUP_PREFIX : USER_PREFIX) + entityId) != null;
+    }
+
+    /**
+     * Records that given user or group is stored in the task data base. Should only be called once the
+     * transaction that found or persisted the entity has committed as it might still be rolled back.
+     */
+    public void addKnownEntity(String entityId, boolean group) {
+        knownEntities.put((group ? GROUP_PREFIX : USER_PREFIX) + entityId, Boolean.TRUE);
+    }
+
+    public void invalidateUser(String userId) {
+        existsCache.remove(USER_PREFIX + userId);
+        knownEntities.remove(USER_PREFIX + userId);
+        // group memberships are keyed with additional arguments so drop them all
+        groupsCache.clear();
+    }
+
+    public void invalidateGroup(String groupId) {
+        existsCache.remove(GROUP_PREFIX + groupId);
+        knownEntities.remove(GROUP_PREFIX + groupId);
+        groupsCache.clear();
+    }
+
+    public void invalidateAll() {
+        existsCache.clear();
+        groupsCache.clear();
+        knownEntities.clear();
+    }
+
+    public long getHits() {
+        return existsCache.getHits() + groupsCache.getHits();
+    }
+
+    public long getMisses() {
+        return existsCache.getMisses() + groupsCache.getMisses();
+    }
+
+    public long getKnownEntityHits() {
+        return knownEntities.getHits();
+    }
+
+    public long getKnownEntityMisses() {
+        return knownEntities.getMisses();
+    }
+
+    public UserGroupCallback getDelegate() {
+        return delegate;
+    }
+
+    private static List<String> copy(List<String> list) {
+        if (list == null) {
+            return null;
+        }
+        return new ArrayList<String>(list);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingUserGroupCallback [delegate=" + delegate + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
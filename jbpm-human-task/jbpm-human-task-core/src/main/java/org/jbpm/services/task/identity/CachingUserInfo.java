@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.identity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.kie.api.task.model.Group;
+import org.kie.api.task.model.OrganizationalEntity;
+import org.kie.internal.task.api.UserInfo;
+
+/**
+ * <code>UserInfo</code> decorator that caches results of the delegate for configured amount of time.
+ * Uses the same system properties as <code>CachingUserGroupCallback</code> for its configuration:
+ * <ul>
+ * 	<li>org.jbpm.ht.identity.cache.size - max number of cached lookups, defaults to 1000</li>
+ * 	<li>org.jbpm.ht.identity.cache.ttl - time to live of cached lookups in milliseconds, defaults to 60000</li>
+ * </ul>
+ * @see CachingUserGroupCallback
+ */
+public class CachingUserInfo implements UserInfo {
+
+    // marker for null results as they are valid answers that should be cached as well
+    private static final Object NONE = new Object();
+
+    private final UserInfo delegate;
+    private final ExpiringCache<String, Object> cache;
+
+    public CachingUserInfo(UserInfo delegate) {
+        this(delegate,
+             Integer.parseInt(System.getProperty("org.jbpm.ht.identity.cache.size", "1000")),
+             Long.parseLong(System.getProperty("org.jbpm.ht.identity.cache.ttl", "60000")));
+    }
+
+    public CachingUserInfo(UserInfo delegate, int cacheSize, long timeToLive) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate UserInfo cannot be null");
+        }
+        this.delegate = delegate;
+        this.cache = new ExpiringCache<String, Object>(cacheSize, timeToLive);
+    }
+
+    @Override
+    public String getDisplayName(OrganizationalEntity entity) {
+        String key = key("name:", entity);
+        Object value = cache.get(key);
+        if (value == null) {
+            value = delegate.getDisplayName(entity);
+            cache.put(key, value == null ? NONE : value);
+        }
+        return value == NONE ? null : (String) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterator<OrganizationalEntity> getMembersForGroup(Group group) {
+        String key = key("members:", group);
+        Object value = cache.get(key);
+        if (value == null) {
+            Iterator<OrganizationalEntity> members = delegate.getMembersForGroup(group);
+            if (members == null) {
+                value = NONE;
+            } else {
+                List<OrganizationalEntity> list = new ArrayList<OrganizationalEntity>();
+                while (members.hasNext()) {
+                    list.add(members.next());
+                }
+                value = list;
+            }
+            cache.put(key, value);
+        }
+        if (value == NONE) {
+            return null;
+        }
+        return new ArrayList<OrganizationalEntity>((List<OrganizationalEntity>) value).iterator();
+    }
+
+    @Override
+    public boolean hasEmail(Group group) {
+        String key = key("hasEmail:", group);
+        Object value = cache.get(key);
+        if (value == null) {
+            value = delegate.hasEmail(group);
+            cache.put(key, value);
+        }
+        return (Boolean) value;
+    }
+
+    @Override
+    public String getEmailForEntity(OrganizationalEntity entity) {
+        String key = key("email:", entity);
+        Object value = cache.get(key);
+        if (value == null) {
+            value = delegate.getEmailForEntity(entity);
+            cache.put(key, value == null ? NONE : value);
+        }
+        return value == NONE ? null : (String) value;
+    }
+
+    @Override
+    public String getLanguageForEntity(OrganizationalEntity entity) {
+        String key = key("lang:", entity);
+        Object value = cache.get(key);
+        if (value == null) {
+            value = delegate.getLanguageForEntity(entity);
+            cache.put(key, value == null ? NONE : value);
+        }
+        return value == NONE ? null : (String) value;
+    }
+
+    public void invalidate(OrganizationalEntity entity) {
+        for (String prefix : new String[]{"name:", "members:", "hasEmail:", "email:", "lang:"}) {
+            cache.remove(key(prefix, entity));
+        }
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public UserInfo getDelegate() {
+        return delegate;
+    }
+
+    private static String key(String prefix, OrganizationalEntity entity) {
+        return prefix + (entity instanceof Group ? "g:" : "u:") + entity.getId();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingUserInfo [delegate=" + delegate + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -16,15 +16,18 @@
 package org.jbpm.services.task.impl;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.drools.core.common.InternalWorkingMemory;
 import org.drools.core.time.Job;
@@ -39,6 +42,7 @@ import org.jbpm.process.core.timer.impl.GlobalTimerService;
 import org.jbpm.services.task.commands.ExecuteDeadlinesCommand;
 import org.jbpm.services.task.commands.InitDeadlinesCommand;
 import org.jbpm.services.task.deadlines.NotificationListener;
+import org.jbpm.services.task.deadlines.notifications.impl.NotificationListenerManager;
 import org.jbpm.services.task.utils.ClassUtil;
 import org.kie.api.runtime.CommandExecutor;
 import org.kie.api.task.model.Task;
@@ -51,19 +55,40 @@ import org.kie.internal.task.api.model.InternalTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Schedules task deadlines either as jobs of the (global) timer service of the deployment or, when there is none,
+ * in memory on shared scheduled executor (<code>org.jbpm.ht.deadlines.pool.size</code> threads, 3 by default).
+ * <br/>
+ * By default all unescalated deadlines are scheduled on initialization. With <code>org.jbpm.ht.deadlines.horizon</code>
+ * (in milliseconds) only deadlines due within the horizon are loaded - page by page, see 
+ * <code>org.jbpm.ht.deadlines.page.size</code> - and the window is moved forward every half of the horizon.
+ * Both can also be set with {@link #setHorizon(long)} and {@link #setPageSize(int)}. 
+ * In this mode deadline is claimed in the data base before it is escalated, so it is escalated only once 
+ * even if it was loaded on multiple cluster nodes.
+ */
 public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
     
     private static final Logger logger = LoggerFactory.getLogger(TaskDeadlinesServiceImpl.class);
+    
+    private static final int POOL_SIZE = Integer.parseInt(System.getProperty("org.jbpm.ht.deadlines.pool.size", "3"));
+    private static volatile long horizon = Long.parseLong(System.getProperty("org.jbpm.ht.deadlines.horizon", "0"));
+    private static volatile int pageSize = Integer.parseInt(System.getProperty("org.jbpm.ht.deadlines.page.size", "1000"));
+    
     // static instance so it can be used from background jobs
     protected static volatile CommandExecutor instance;
     
     protected static NotificationListener notificationListener;
 
 	// use single ThreadPoolExecutor for all instances of task services within same JVM
-    private volatile static ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(3);
+    private volatile static ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(POOL_SIZE);
     private volatile static Map<Long, List<ScheduledFuture<ScheduledTaskDeadline>>> startScheduledTaskDeadlines = new ConcurrentHashMap<Long, List<ScheduledFuture<ScheduledTaskDeadline>>>();
     private volatile static Map<Long, List<ScheduledFuture<ScheduledTaskDeadline>>> endScheduledTaskDeadlines = new ConcurrentHashMap<Long, List<ScheduledFuture<ScheduledTaskDeadline>>>();
     private volatile static Map<String, JobHandle> jobHandles = new ConcurrentHashMap<String, JobHandle>();
+    // deadlines scheduled in memory, to not schedule them again when loaded with next window
+    private volatile static Set<String> scheduledDeadlines = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // end of window of loaded deadlines (exclusive)
+    private static final AtomicLong windowEnd = new AtomicLong();
+    private volatile static ScheduledFuture<?> windowRefresh;
 
     private TaskPersistenceContext persistenceContext;
 
@@ -100,6 +125,10 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
             jobHandles.put(deadlineJob.getId(), handle);
 
         } else {
+            if (!scheduledDeadlines.add(deadlineKey(taskId, deadlineId, type))) {
+                logger.debug("Deadline {} of task {} is already scheduled", deadlineId, taskId);
+                return;
+            }
             ScheduledFuture<ScheduledTaskDeadline> scheduled = scheduler.schedule(new ScheduledTaskDeadline(taskId, deadlineId, type), delay, TimeUnit.MILLISECONDS);
             
             List<ScheduledFuture<ScheduledTaskDeadline>> knownFutures = null;
@@ -178,9 +207,11 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
         } else {
             List<ScheduledFuture<ScheduledTaskDeadline>> knownFutures = null;
             if (type == DeadlineType.START) {
-                knownFutures = startScheduledTaskDeadlines.get(taskId);
+                knownFutures = startScheduledTaskDeadlines.remove(taskId);
+                removeDeadlineKeys(taskId, deadlines != null ? deadlines.getStartDeadlines() : null, type);
             } else if (type == DeadlineType.END) {
-                knownFutures = endScheduledTaskDeadlines.get(taskId);
+                knownFutures = endScheduledTaskDeadlines.remove(taskId);
+                removeDeadlineKeys(taskId, deadlines != null ? deadlines.getEndDeadlines() : null, type);
             }
             if (knownFutures == null) {
                 return;
@@ -200,6 +231,69 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
         }
     }
 
+    private void removeDeadlineKeys(long taskId, List<? extends Deadline> deadlines, DeadlineType type) {
+        if (deadlines != null) {
+            for (Deadline deadline : deadlines) {
+                scheduledDeadlines.remove(deadlineKey(taskId, deadline.getId(), type));
+            }
+        }
+    }
+    
+    protected static String deadlineKey(long taskId, long deadlineId, DeadlineType type) {
+        return taskId + "_" + deadlineId + "_" + type;
+    }
+    
+    /**
+     * Returns horizon (in milliseconds) of loaded deadlines, 0 or less when all deadlines are loaded at once.
+     */
+    public static long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Sets horizon (in milliseconds) of loaded deadlines, overrides <code>org.jbpm.ht.deadlines.horizon</code>.
+     * Must be set before the task service is initialized for the window to be moved forward.
+     */
+    public static void setHorizon(long horizon) {
+        TaskDeadlinesServiceImpl.horizon = horizon;
+    }
+    
+    public static int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets number of deadlines loaded at once, overrides <code>org.jbpm.ht.deadlines.page.size</code>.
+     */
+    public static void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive, was " + pageSize);
+        }
+        TaskDeadlinesServiceImpl.pageSize = pageSize;
+    }
+    
+    /**
+     * Moves end of the window of loaded deadlines to given time and returns previous end - start of the window
+     * that should be loaded now, or -1 when the window is already beyond the given time.
+     */
+    public static long advanceWindow(long to) {
+        long from = windowEnd.get();
+        while (from < to) {
+            if (windowEnd.compareAndSet(from, to)) {
+                return from;
+            }
+            from = windowEnd.get();
+        }
+        return -1;
+    }
+
+    /**
+     * Moves end of the window back to <code>from</code> unless it was moved already by someone else.
+     */
+    public static void rewindWindow(long from, long to) {
+        windowEnd.compareAndSet(to, from);
+    }
+
     public static class ScheduledTaskDeadline implements
             Callable<ScheduledTaskDeadline>, Serializable {
 
@@ -229,9 +323,15 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
         }
 
         public ScheduledTaskDeadline call() throws Exception {
+            scheduledDeadlines.remove(deadlineKey(taskId, deadlineId, type));
         	CommandExecutor executor = TaskDeadlinesServiceImpl.getInstance();
             if (executor != null) {
-                executor.execute(new ExecuteDeadlinesCommand(taskId, deadlineId, type));
+                try {
+                    executor.execute(new ExecuteDeadlinesCommand(taskId, deadlineId, type));
+                } catch (Exception e) {
+                    // nobody reads the result of the future so log it here, deadline stays unescalated
+                    logger.error("Error when executing deadline {} of task {}", deadlineId, taskId, e);
+                }
             } else {
                 logger.error("TaskDeadlineService instance is not available, most likely was not properly initialized - Job did not run!");
             }
@@ -365,12 +465,31 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
     	if (instance != null) {
     	    TaskDeadlinesServiceImpl.instance = instance;
 	        getInstance().execute(new InitDeadlinesCommand());
+	        long windowHorizon = horizon;
+	        if (windowHorizon > 0 && windowRefresh == null) {
+	            long interval = Math.max(windowHorizon / 2, 1000);
+	            windowRefresh = scheduler.scheduleWithFixedDelay(new Runnable() {
+	                
+	                @Override
+	                public void run() {
+	                    CommandExecutor executor = getInstance();
+	                    if (executor == null) {
+	                        return;
+	                    }
+	                    try {
+	                        executor.execute(new InitDeadlinesCommand());
+	                    } catch (Exception e) {
+	                        logger.error("Error when loading next window of deadlines", e);
+	                    }
+	                }
+	            }, interval, interval, TimeUnit.MILLISECONDS);
+	        }
     	}        
     }
     
     public static synchronized void reset() {
     	dispose();
-        scheduler = new ScheduledThreadPoolExecutor(3);        
+        scheduler = new ScheduledThreadPoolExecutor(POOL_SIZE);        
     }
 
     public static synchronized void dispose() {
@@ -381,8 +500,13 @@ public class TaskDeadlinesServiceImpl implements TaskDeadlinesService {
             startScheduledTaskDeadlines.clear();
             endScheduledTaskDeadlines.clear();
             jobHandles.clear();
+            scheduledDeadlines.clear();
+            windowEnd.set(0);
+            windowRefresh = null;
             notificationListener = null;
             TaskDeadlinesServiceImpl.instance = null;
+            // flush pending notifications and release mail connections
+            NotificationListenerManager.get().closeListeners();
         } catch (Exception e) {
             logger.error("Error encountered when disposing TaskDeadlineService", e);
         }
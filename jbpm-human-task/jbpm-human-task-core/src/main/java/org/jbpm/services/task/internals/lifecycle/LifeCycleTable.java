@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.internals.lifecycle;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.kie.api.task.model.Status;
+import org.kie.internal.task.api.model.Operation;
+
+/**
+ * Operation commands (as defined by operations-dsl.mvel) compiled into tables indexed by operation 
+ * and status so evaluation of task operation does not need to iterate over status lists of the commands.
+ * <br/>
+ * For every status list of a command there is a table of next matching position by (position, status), 
+ * that keeps the exact semantic of walking the list entry by entry - including matches of the status 
+ * that was changed by the command itself while the list is being evaluated.
+ */
+public class LifeCycleTable {
+
+    private static final Status[] STATUSES = Status.values();
+    private static final CompiledCommand[] NO_COMMANDS = new CompiledCommand[0];
+    
+    private final CompiledCommand[][] commands = new CompiledCommand[Operation.values().length][];
+    
+    public LifeCycleTable(Map<Operation, List<OperationCommand>> operations) {
+        Arrays.fill(commands, NO_COMMANDS);
+        for (Map.Entry<Operation, List<OperationCommand>> entry : operations.entrySet()) {
+            List<OperationCommand> operationCommands = entry.getValue();
+            CompiledCommand[] compiled = new CompiledCommand[operationCommands.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = new CompiledCommand(operationCommands.get(i));
+            }
+            commands[entry.getKey().ordinal()] = compiled;
+        }
+    }
+    
+    /**
+     * Returns compiled commands of given operation in order of their definition, empty array if 
+     * the operation has no commands.
+     */
+    public CompiledCommand[] getCommands(Operation operation) {
+        return commands[operation.ordinal()];
+    }
+    
+    /*
+     * Builds table of next position (starting at given position) in the list that holds given status, 
+     * -1 means there is no such position
+     */
+    static int[][] compile(List<Status> statuses) {
+        if (statuses == null || statuses.isEmpty()) {
+            return null;
+        }
+        int[][] table = new int[statuses.size() + 1][STATUSES.length];
+        Arrays.fill(table[statuses.size()], -1);
+        for (int position = statuses.size() - 1; position >= 0; position--) {
+            System.arraycopy(table[position + 1], 0, table[position], 0, STATUSES.length);
+            Status status = statuses.get(position);
+            if (status != null) {
+                table[position][status.ordinal()] = position;
+            }
+        }
+        return table;
+    }
+    
+    static int nextMatch(int[][] table, int from, Status status) {
+        if (table == null || status == null || from >= table.length) {
+            return -1;
+        }
+        return table[from][status.ordinal()];
+    }
+    
+    public static class CompiledCommand {
+        
+        private final OperationCommand command;
+        private final Allowed[] allowed;
+        private final int[][] statusTable;
+        private final int[][] previousStatusTable;
+        
+        CompiledCommand(OperationCommand command) {
+            this.command = command;
+            this.allowed = command.getAllowed() == null ? new Allowed[0] : command.getAllowed().toArray(new Allowed[command.getAllowed().size()]);
+            this.statusTable = compile(command.getStatus());
+            this.previousStatusTable = compile(command.getPreviousStatus());
+        }
+        
+        public OperationCommand getCommand() {
+            return command;
+        }
+        
+        public Allowed[] getAllowed() {
+            return allowed;
+        }
+        
+        /**
+         * Returns position (starting at <code>from</code>) of given status in status list of the command or -1.
+         */
+        public int nextStatusMatch(int from, Status status) {
+            return nextMatch(statusTable, from, status);
+        }
+        
+        /**
+         * Returns position (starting at <code>from</code>) of given status in previous status list of the command or -1.
+         */
+        public int nextPreviousStatusMatch(int from, Status status) {
+            return nextMatch(previousStatusTable, from, status);
+        }
+    }
+}
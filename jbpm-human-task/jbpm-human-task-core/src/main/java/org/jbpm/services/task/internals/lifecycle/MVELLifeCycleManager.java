@@ -26,13 +26,18 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.drools.core.util.MVELSafeHelper;
 import org.jbpm.services.task.events.TaskEventSupport;
 import org.jbpm.services.task.exception.PermissionDeniedException;
+import org.jbpm.services.task.internals.lifecycle.LifeCycleTable.CompiledCommand;
 import org.jbpm.services.task.utils.ContentMarshallerHelper;
 import org.kie.api.task.model.Content;
 import org.kie.api.task.model.Group;
@@ -74,6 +79,7 @@ public class MVELLifeCycleManager implements LifeCycleManager {
     private TaskContentService taskContentService;
     private TaskEventSupport taskEventSupport;
     private static Map<Operation, List<OperationCommand>> operations = initMVELOperations();
+    private static LifeCycleTable lifeCycleTable = new LifeCycleTable(operations);
 
     public MVELLifeCycleManager() {
     }
@@ -100,57 +106,50 @@ public class MVELLifeCycleManager implements LifeCycleManager {
     }
     
 
-    void evalCommand(final Operation operation, final List<OperationCommand> commands, final Task task,
+    void evalCommand(final Operation operation, final CompiledCommand[] commands, final Task task,
             final User user, final OrganizationalEntity targetEntity,
-            List<String> groupIds, OrganizationalEntity...entities) throws PermissionDeniedException {
+            Set<String> groupIds, OrganizationalEntity...entities) throws PermissionDeniedException {
 
         boolean statusMatched = false;
         final TaskData taskData = task.getTaskData();
-        for (OperationCommand command : commands) {
-            // first find out if we have a matching status
-            if (command.getStatus() != null) {
-                for (Status status : command.getStatus()) {
-                    if (task.getTaskData().getStatus() == status) {
-                        statusMatched = true;
-                        // next find out if the user can execute this doOperation
-                        if (!isAllowed(command, task, user, groupIds)) {
-                            String errorMessage = "User '" + user + "' does not have permissions to execute operation '" + operation + "' on task id " + task.getId();
-
-                            throw new PermissionDeniedException(errorMessage);
-                        }
-
-                        commands(command, task, user, targetEntity, entities);
-                    } else {
-                        logger.debug("No match on status for task {} :status {}  != {}", task.getId(), task.getTaskData().getStatus(), status);
-                    }
+        for (CompiledCommand command : commands) {
+            // first find out if we have a matching status, status is read again after every match as command changes it
+            int match = command.nextStatusMatch(0, taskData.getStatus());
+            while (match != -1) {
+                statusMatched = true;
+                // next find out if the user can execute this doOperation
+                if (!isAllowed(command, task, user, groupIds)) {
+                    String errorMessage = "User '" + user + "' does not have permissions to execute operation '" + operation + "' on task id " + task.getId();
+
+                    throw new PermissionDeniedException(errorMessage);
                 }
-            }
 
-            if (command.getPreviousStatus() != null) {
-                for (Status status : command.getPreviousStatus()) {
-                    if (taskData.getPreviousStatus() == status) {
-                        statusMatched = true;
+                commands(command.getCommand(), task, user, targetEntity, entities);
+                match = command.nextStatusMatch(match + 1, taskData.getStatus());
+            }
 
-                        // next find out if the user can execute this doOperation
-                        if (!isAllowed(command, task, user, groupIds)) {
-                            String errorMessage = "User '" + user + "' does not have permissions to execute operation '" + operation + "' on task id " + task.getId();
-                            throw new PermissionDeniedException(errorMessage);
-                        }
+            match = command.nextPreviousStatusMatch(0, taskData.getPreviousStatus());
+            while (match != -1) {
+                statusMatched = true;
 
-                        commands(command, task, user, targetEntity, entities);
-                    } else {
-                        logger.debug("No match on previous status for task {} :status {}  != {}", task.getId(), task.getTaskData().getStatus(), status);
-                    }
+                // next find out if the user can execute this doOperation
+                if (!isAllowed(command, task, user, groupIds)) {
+                    String errorMessage = "User '" + user + "' does not have permissions to execute operation '" + operation + "' on task id " + task.getId();
+                    throw new PermissionDeniedException(errorMessage);
                 }
+
+                commands(command.getCommand(), task, user, targetEntity, entities);
+                match = command.nextPreviousStatusMatch(match + 1, taskData.getPreviousStatus());
             }
             
 
-            if (!command.isGroupTargetEntityAllowed() && targetEntity instanceof Group) {
+            if (!command.getCommand().isGroupTargetEntityAllowed() && targetEntity instanceof Group) {
                 String errorMessage = "User '" + user + "' was unable to execute operation '" + operation + "' on task id " + task.getId() + " due to 'target entity cannot be group'";
                 throw new PermissionDeniedException(errorMessage); 
             }
         }
         if (!statusMatched) {
+            logger.debug("No match on status for task {} :status {}, previous status {}", task.getId(), taskData.getStatus(), taskData.getPreviousStatus());
             String errorMessage = "User '" + user + "' was unable to execute operation '" + operation + "' on task id " + task.getId() + " due to a no 'current status' match";
             throw new PermissionDeniedException(errorMessage);
         }
@@ -158,8 +157,8 @@ public class MVELLifeCycleManager implements LifeCycleManager {
 
     }
 
-    private boolean isAllowed(final OperationCommand command, final Task task, final User user,
-            List<String> groupIds) {
+    private boolean isAllowed(final CompiledCommand command, final Task task, final User user,
+            Set<String> groupIds) {
 
 
         boolean operationAllowed = false;
@@ -176,7 +175,7 @@ public class MVELLifeCycleManager implements LifeCycleManager {
                     operationAllowed = (
                             task.getTaskData().getCreatedBy() != null
                             && (task.getTaskData().getCreatedBy().equals(user)
-                            || groupIds != null && groupIds.contains(task.getTaskData().getCreatedBy().getId())));
+                            || groupIds.contains(task.getTaskData().getCreatedBy().getId())));
                     break;
                 }
                 case PotentialOwner: {
@@ -198,30 +197,43 @@ public class MVELLifeCycleManager implements LifeCycleManager {
             }
         }
 
-        if (operationAllowed && command.isUserIsExplicitPotentialOwner()) {
+        if (operationAllowed && command.getCommand().isUserIsExplicitPotentialOwner()) {
             // if user has rights to execute the command, make sure user is explicitly specified (not as a group)
             operationAllowed = task.getPeopleAssignments().getPotentialOwners().contains(user);
         }
 
-        if (operationAllowed && command.isSkipable()) {
+        if (operationAllowed && command.getCommand().isSkipable()) {
             operationAllowed = task.getTaskData().isSkipable();
         }
 
         return operationAllowed;
     }
 
-    private boolean isAllowed(final User user, final List<String> groupIds, final List<OrganizationalEntity> entities) {
-        // for now just do a contains, I'll figure out group membership later.
+    private boolean isAllowed(final User user, final Set<String> groupIds, final List<OrganizationalEntity> entities) {
+        // group membership is checked against hashed groups of the user
         for (OrganizationalEntity entity : entities) {
             if (entity instanceof User && entity.equals(user)) {
                 return true;
             }
-            if (entity instanceof Group && groupIds != null && groupIds.contains(entity.getId())) {
+            if (entity instanceof Group && groupIds.contains(entity.getId())) {
                 return true;
             }
         }
         return false;
     }
+    
+    /*
+     * Groups of the user are looked up for every entity in the people assignments so they are hashed once per operation
+     */
+    static Set<String> toGroupSet(Collection<String> groupIds) {
+        if (groupIds == null || groupIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        if (groupIds instanceof Set) {
+            return (Set<String>) groupIds;
+        }
+        return new HashSet<String>(groupIds);
+    }
 
     private void commands(final OperationCommand command, final Task task, final User user,
             final OrganizationalEntity targetEntity, OrganizationalEntity...entities) {
@@ -282,7 +294,7 @@ public class MVELLifeCycleManager implements LifeCycleManager {
             List<String> groupIds, OrganizationalEntity...entities) throws TaskException {
 
         try {
-            final List<OperationCommand> commands = operations.get(operation);
+            final CompiledCommand[] commands = lifeCycleTable.getCommands(operation);
 
             Task task = persistenceContext.findTask(taskId);
             if (task == null) {
@@ -366,7 +378,7 @@ public class MVELLifeCycleManager implements LifeCycleManager {
 
             }
             
-            evalCommand(operation, commands, task, user, targetEntity, groupIds, entities);
+            evalCommand(operation, commands, task, user, targetEntity, toGroupSet(groupIds), entities);
 
             switch (operation) {
                 case Activate: {
@@ -15,7 +15,16 @@
  */
 package org.jbpm.services.task.rule.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jbpm.services.task.impl.TaskContentRegistry;
 import org.jbpm.services.task.rule.RuleContextProvider;
@@ -24,6 +33,8 @@ import org.jbpm.services.task.rule.TaskServiceRequest;
 import org.jbpm.services.task.utils.ContentMarshallerHelper;
 import org.kie.api.KieBase;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.AgendaGroup;
+import org.kie.api.runtime.rule.FactHandle;
 import org.kie.api.task.model.Task;
 import org.kie.api.task.model.User;
 import org.kie.internal.task.api.ContentMarshallerContext;
@@ -31,9 +42,31 @@ import org.kie.internal.task.api.TaskModelProvider;
 import org.kie.internal.task.api.model.ContentData;
 import org.kie.internal.task.api.model.InternalOrganizationalEntity;
 import org.kie.internal.task.exception.TaskException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Evaluates task rules of given scope. By default new session is created (and disposed) for every evaluation,
+ * with <code>org.jbpm.ht.rules.session.pool.size</code> set to value greater than 0 sessions are pooled per rule
+ * context provider and scope (bound to the rule base of the scope) and reused - facts and pending activations 
+ * are removed and focus is given back to the MAIN agenda group before the session is returned to the pool.
+ * <br/>
+ * Globals cannot be unset through the session API, so a pooled session keeps the globals of its last evaluation
+ * until they are set again - sessions are not reused once the provider stops setting any of them. Rules without
+ * any pattern fire only once per session, pooling should not be enabled for rule bases relying on them.
+ * <br/>
+ * Evaluation time is collected per scope, see {@link #getRuleExecutionStats()}.
+ */
 public class TaskRuleServiceImpl implements TaskRuleService {
     
+    private static final Logger logger = LoggerFactory.getLogger(TaskRuleServiceImpl.class);
+    
+    private static volatile int poolSize = Integer.parseInt(System.getProperty("org.jbpm.ht.rules.session.pool.size", "0"));
+    
+    // task rule service is created for every command so pools and stats are shared
+    private static final ConcurrentMap<PoolKey, SessionPool> pools = new ConcurrentHashMap<PoolKey, SessionPool>();
+    private static final ConcurrentMap<String, RuleExecutionStats> stats = new ConcurrentHashMap<String, RuleExecutionStats>();
+    
     private RuleContextProvider ruleContextProvider;
     
     public TaskRuleServiceImpl() {
@@ -48,27 +81,56 @@ public class TaskRuleServiceImpl implements TaskRuleService {
     public void executeRules(Task task, String userId, Object params, String scope) throws TaskException {
         KieBase ruleBase = ruleContextProvider.getKieBase(scope);
         if (ruleBase != null) {
-            KieSession session = ruleBase.newKieSession();
+            long start = System.nanoTime();
             Map<String, Object> globals = ruleContextProvider.getGlobals(scope);
-            if (globals != null) {
-                for (Map.Entry<String, Object> entry : globals.entrySet()) {
-                    session.setGlobal(entry.getKey(), entry.getValue());
-                }
+            SessionPool pool = getSessionPool(scope, ruleBase);
+            PooledSession pooled = null;
+            KieSession session;
+            if (pool != null) {
+                pooled = pool.borrow(globals == null ? Collections.<String>emptySet() : globals.keySet());
+                session = pooled.session;
+            } else {
+                session = ruleBase.newKieSession();
             }
-            User user = TaskModelProvider.getFactory().newUser();
-            ((InternalOrganizationalEntity) user).setId(userId);
-            TaskServiceRequest request = new TaskServiceRequest(scope, user, null);
-            session.setGlobal("request", request);
-            session.insert(task);
-            if (params != null) {
-            	if (params instanceof ContentData) {
-            		ContentMarshallerContext ctx = TaskContentRegistry.get().getMarshallerContext(task);
-            		params = ContentMarshallerHelper.unmarshall(((ContentData) params).getContent(), ctx.getEnvironment(), ctx.getClassloader());
-            	}
-            	
-                session.insert(params);
+            boolean reusable = pool != null;
+            TaskServiceRequest request;
+            try {
+                if (globals != null) {
+                    for (Map.Entry<String, Object> entry : globals.entrySet()) {
+                        session.setGlobal(entry.getKey(), entry.getValue());
+                    }
+                }
+                User user = TaskModelProvider.getFactory().newUser();
+                ((InternalOrganizationalEntity) user).setId(userId);
+                request = new TaskServiceRequest(scope, user, null);
+                session.setGlobal("request", request);
+                session.insert(task);
+                if (params != null) {
+                	if (params instanceof ContentData) {
+                		ContentMarshallerContext ctx = TaskContentRegistry.get().getMarshallerContext(task);
+                		params = ContentMarshallerHelper.unmarshall(((ContentData) params).getContent(), ctx.getEnvironment(), ctx.getClassloader());
+                	}
+                	
+                    session.insert(params);
+                }
+                session.fireAllRules();
+                
+                if (reusable) {
+                    reusable = clear(session);
+                }
+            } catch (RuntimeException e) {
+                reusable = false;
+                throw e;
+            } finally {
+                if (reusable) {
+                    pool.release(pooled);
+                } else {
+                    session.dispose();
+                }
+                long time = System.nanoTime() - start;
+                getRuleExecutionStats(scope).record(time);
+                logger.debug("Task rules of scope {} evaluated for task {} in {} ns", scope, task.getId(), time);
             }
-            session.fireAllRules();
 
             if (!request.isAllowed()) {
                 StringBuilder error = new StringBuilder("Cannot perform operation " + scope + " :\n");
@@ -82,7 +144,80 @@ public class TaskRuleServiceImpl implements TaskRuleService {
             }
         }
     }
-
+    
+    /**
+     * Sets maximum number of idle sessions kept per scope, 0 disables pooling.
+     */
+    public static void setSessionPoolSize(int size) {
+        poolSize = size;
+        for (SessionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+    
+    /**
+     * Returns rule evaluation statistics by scope (task operation).
+     */
+    public static Map<String, RuleExecutionStats> getRuleExecutionStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+    
+    protected static RuleExecutionStats getRuleExecutionStats(String scope) {
+        RuleExecutionStats scopeStats = stats.get(scope);
+        if (scopeStats == null) {
+            scopeStats = new RuleExecutionStats();
+            RuleExecutionStats existing = stats.putIfAbsent(scope, scopeStats);
+            if (existing != null) {
+                scopeStats = existing;
+            }
+        }
+        return scopeStats;
+    }
+    
+    /*
+     * Returns pool of sessions for given scope of the rule context provider, pool is replaced when rule base 
+     * of the scope has changed so sessions of replaced rule bases are not kept
+     */
+    protected SessionPool getSessionPool(String scope, KieBase ruleBase) {
+        if (poolSize <= 0) {
+            return null;
+        }
+        PoolKey key = new PoolKey(ruleContextProvider, scope);
+        SessionPool pool = pools.get(key);
+        while (pool == null || pool.ruleBase != ruleBase) {
+            SessionPool newPool = new SessionPool(ruleBase, poolSize);
+            boolean replaced = pool == null ? pools.putIfAbsent(key, newPool) == null : pools.replace(key, pool, newPool);
+            if (replaced) {
+                if (pool != null) {
+                    pool.close();
+                }
+                pool = newPool;
+            } else {
+                pool = pools.get(key);
+            }
+        }
+        return pool;
+    }
+    
+    /*
+     * Removes all facts and pending activations and gives focus back to MAIN agenda group so the session 
+     * can be reused, returns false if that was not possible
+     */
+    protected boolean clear(KieSession session) {
+        try {
+            for (FactHandle factHandle : new ArrayList<FactHandle>(session.getFactHandles())) {
+                session.delete(factHandle);
+            }
+            session.getAgenda().clear();
+            session.getAgenda().getAgendaGroup(AgendaGroup.MAIN).setFocus();
+            return true;
+        } catch (RuntimeException e) {
+            logger.debug("Unable to clear task rules session, it won't be reused due to {}", e.getMessage());
+            return false;
+        }
+    }
+    
     public RuleContextProvider getRuleContextProvider() {
         return ruleContextProvider;
     }
@@ -91,4 +226,143 @@ public class TaskRuleServiceImpl implements TaskRuleService {
         this.ruleContextProvider = ruleContextProvider;
     }
 
+    protected static class PoolKey {
+        
+        private final RuleContextProvider ruleContextProvider;
+        private final String scope;
+        
+        PoolKey(RuleContextProvider ruleContextProvider, String scope) {
+            this.ruleContextProvider = ruleContextProvider;
+            this.scope = scope;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(ruleContextProvider) + scope.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) obj;
+            return ruleContextProvider == other.ruleContextProvider && scope.equals(other.scope);
+        }
+    }
+    
+    protected static class PooledSession {
+        
+        private final KieSession session;
+        // globals set by last evaluation
+        private final Set<String> globals = new HashSet<String>();
+        
+        PooledSession(KieSession session) {
+            this.session = session;
+        }
+    }
+    
+    protected static class SessionPool {
+        
+        private final KieBase ruleBase;
+        private final int size;
+        private final ConcurrentLinkedQueue<PooledSession> sessions = new ConcurrentLinkedQueue<PooledSession>();
+        private final AtomicInteger idle = new AtomicInteger();
+        private volatile boolean closed;
+        
+        SessionPool(KieBase ruleBase, int size) {
+            this.ruleBase = ruleBase;
+            this.size = size;
+        }
+        
+        /*
+         * Returns idle session that had no other globals set than the given ones, or new session
+         */
+        PooledSession borrow(Set<String> globals) {
+            PooledSession pooled;
+            while ((pooled = sessions.poll()) != null) {
+                idle.decrementAndGet();
+                if (globals.containsAll(pooled.globals)) {
+                    pooled.globals.clear();
+                    pooled.globals.addAll(globals);
+                    return pooled;
+                }
+                // stale global would stay visible to the rules
+                pooled.session.dispose();
+            }
+            pooled = new PooledSession(ruleBase.newKieSession());
+            pooled.globals.addAll(globals);
+            return pooled;
+        }
+        
+        void release(PooledSession pooled) {
+            if (closed || idle.incrementAndGet() > size) {
+                idle.decrementAndGet();
+                pooled.session.dispose();
+                return;
+            }
+            sessions.offer(pooled);
+        }
+        
+        int getIdle() {
+            return idle.get();
+        }
+        
+        void close() {
+            closed = true;
+            PooledSession pooled;
+            while ((pooled = sessions.poll()) != null) {
+                idle.decrementAndGet();
+                pooled.session.dispose();
+            }
+        }
+    }
+    
+    public static class RuleExecutionStats {
+        
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        
+        void record(long time) {
+            count.incrementAndGet();
+            totalTime.addAndGet(time);
+            long max = maxTime.get();
+            while (time > max && !maxTime.compareAndSet(max, time)) {
+                max = maxTime.get();
+            }
+        }
+        
+        public long getCount() {
+            return count.get();
+        }
+        
+        /**
+         * Total evaluation time in nanoseconds
+         */
+        public long getTotalTime() {
+            return totalTime.get();
+        }
+        
+        /**
+         * Longest evaluation time in nanoseconds
+         */
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+        
+        /**
+         * Average evaluation time in nanoseconds
+         */
+        public long getAverageTime() {
+            long executions = count.get();
+            return executions == 0 ? 0 : totalTime.get() / executions;
+        }
+
+        @Override
+        public String toString() {
+            return "RuleExecutionStats [count=" + getCount() + ", average=" + getAverageTime() + "ns, max=" + getMaxTime() + "ns]";
+        }
+    }
+
 }
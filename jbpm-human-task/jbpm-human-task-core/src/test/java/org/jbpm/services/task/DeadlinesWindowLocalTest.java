@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.services.task.commands.ExecuteDeadlinesCommand;
+import org.jbpm.services.task.commands.InitDeadlinesCommand;
+import org.jbpm.services.task.commands.TaskContext;
+import org.jbpm.services.task.events.DefaultTaskEventListener;
+import org.jbpm.services.task.impl.TaskDeadlinesServiceImpl;
+import org.jbpm.services.task.impl.factories.TaskFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.task.TaskEvent;
+import org.kie.api.task.TaskLifeCycleEventListener;
+import org.kie.api.task.model.Task;
+import org.kie.internal.command.Context;
+import org.kie.internal.task.api.EventService;
+import org.kie.internal.task.api.InternalTaskService;
+import org.kie.internal.task.api.TaskDeadlinesService.DeadlineType;
+import org.kie.internal.task.api.model.InternalTask;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+/**
+ * Loading of deadlines in a window (org.jbpm.ht.deadlines.horizon) - window queries, keyset paging,
+ * window bookkeeping and claiming of deadlines before escalation.
+ */
+public class DeadlinesWindowLocalTest extends HumanTaskServicesBaseTest {
+
+    private static final String TASK = "with ( new Task() ) { "
+            + "taskData = (with ( new TaskData() ) { }), "
+            + "peopleAssignments = (with ( new PeopleAssignments() ) { businessAdministrators = [ new User('Administrator') ], }), "
+            + "names = [ new I18NText( 'en-UK', 'Deadline Window Task')], "
+            + "deadlines = ( with ( new Deadlines() ) { "
+            + "    startDeadlines = [ (with (new Deadline()) { date = deadlineDate }) ], "
+            + "    endDeadlines = [ (with (new Deadline()) { date = deadlineDate }) ] "
+            + "}) }";
+    
+    private static final String ESCALATED_TASK = "with ( new Task() ) { "
+            + "taskData = (with ( new TaskData() ) { }), "
+            + "peopleAssignments = (with ( new PeopleAssignments() ) { businessAdministrators = [ new User('Administrator') ], }), "
+            + "names = [ new I18NText( 'en-UK', 'Deadline Window Task')], "
+            + "deadlines = ( with ( new Deadlines() ) { "
+            + "    startDeadlines = [ (with (new Deadline()) { date = deadlineDate, "
+            + "        escalations = [ (with (new Escalation()) { name = 'Window Escalation', "
+            + "            reassignments = [ (with ( new Reassignment() ) { potentialOwners = [ new User('Bobba Fet') ] }) ] }) ] "
+            + "    }) ] "
+            + "}) }";
+
+    private PoolingDataSource pds;
+    private EntityManagerFactory emf;
+    private long base;
+    private Map<Long, Long> startDeadlines = new HashMap<Long, Long>();
+
+    @Before
+    public void setup() {
+        pds = setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory( "org.jbpm.services.task" );
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                                                .entityManagerFactory(emf)
+                                                .getTaskService();
+        // far enough in the future so none of the deadlines fires during the test
+        base = System.currentTimeMillis() + 24 * 60 * 60 * 1000;
+    }
+
+    @After
+    public void clean() {
+        TaskDeadlinesServiceImpl.setPageSize(1000);
+        TaskDeadlinesServiceImpl.setHorizon(0);
+        TaskDeadlinesServiceImpl.reset();
+        super.tearDown();
+        if (emf != null) {
+            emf.close();
+        }
+        if (pds != null) {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testWindowPagesOverEqualDates() {
+        List<Long> expected = new ArrayList<Long>();
+        // three deadlines with the same date so page boundary falls in between them
+        expected.add(addTask(base));
+        expected.add(addTask(base));
+        expected.add(addTask(base));
+        expected.add(addTask(base + 1000));
+        expected.add(addTask(base + 2000));
+        // outside of the window
+        addTask(base + 10000);
+
+        TaskDeadlinesServiceImpl.setPageSize(2);
+        List<long[]> scheduled = scheduleWindow("UnescalatedStartDeadlinesInWindow", base, base + 5000, DeadlineType.START);
+
+        assertEquals(expected.size(), scheduled.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(startDeadlineId(expected.get(i)), scheduled.get(i)[1]);
+            assertEquals(expected.get(i).longValue(), scheduled.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void testWindowPageSizeMatchesResults() {
+        long first = addTask(base);
+        long second = addTask(base);
+
+        // last page is full, so one more (empty) page is read and nothing is scheduled twice
+        TaskDeadlinesServiceImpl.setPageSize(1);
+        List<long[]> scheduled = scheduleWindow("UnescalatedEndDeadlinesInWindow", base, base + 1000, DeadlineType.END);
+
+        assertEquals(2, scheduled.size());
+        assertEquals(first, scheduled.get(0)[0]);
+        assertEquals(second, scheduled.get(1)[0]);
+    }
+
+    @Test
+    public void testWindowExcludesEscalatedDeadlines() {
+        long first = addTask(base);
+        long second = addTask(base);
+
+        assertTrue(claim(first));
+        // already claimed, e.g. by other cluster node
+        assertFalse(claim(first));
+
+        List<long[]> scheduled = scheduleWindow("UnescalatedStartDeadlinesInWindow", base, base + 1000, DeadlineType.START);
+        assertEquals(1, scheduled.size());
+        assertEquals(second, scheduled.get(0)[0]);
+    }
+
+    @Test
+    public void testWindowAdvanceAndRewind() {
+        TaskDeadlinesServiceImpl.reset();
+
+        assertEquals(0, TaskDeadlinesServiceImpl.advanceWindow(100));
+        // window already covers it
+        assertEquals(-1, TaskDeadlinesServiceImpl.advanceWindow(50));
+        assertEquals(100, TaskDeadlinesServiceImpl.advanceWindow(200));
+
+        // loading failed, same window is loaded again
+        TaskDeadlinesServiceImpl.rewindWindow(100, 200);
+        assertEquals(100, TaskDeadlinesServiceImpl.advanceWindow(200));
+
+        // window was moved by someone else in the meantime, it is not rewound
+        assertEquals(200, TaskDeadlinesServiceImpl.advanceWindow(300));
+        TaskDeadlinesServiceImpl.rewindWindow(100, 200);
+        assertEquals(-1, TaskDeadlinesServiceImpl.advanceWindow(300));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFailedEscalationReleasesClaim() {
+        TaskDeadlinesServiceImpl.setHorizon(60000);
+        long taskId = addTask(ESCALATED_TASK, base);
+        ((EventService<TaskLifeCycleEventListener>) taskService).registerTaskEventListener(new FailingReassignmentListener());
+
+        try {
+            taskService.execute(new ExecuteDeadlinesCommand(taskId, startDeadlineId(taskId), DeadlineType.START));
+            fail("Escalation failure should be propagated");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        // claim was rolled back together with the escalation so the deadline can be escalated again
+        assertTrue(claim(taskId));
+    }
+
+    private long addTask(long deadlineDate) {
+        return addTask(TASK, deadlineDate);
+    }
+
+    private long addTask(String taskExpression, long deadlineDate) {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("deadlineDate", new Date(deadlineDate));
+        Task task = TaskFactory.evalTask(taskExpression, vars);
+        taskService.addTask(task, new HashMap<String, Object>());
+        startDeadlines.put(task.getId(), ((InternalTask) task).getDeadlines().getStartDeadlines().get(0).getId());
+        return task.getId();
+    }
+
+    private long startDeadlineId(long taskId) {
+        return startDeadlines.get(taskId);
+    }
+
+    private List<long[]> scheduleWindow(final String queryName, final long from, final long to, final DeadlineType type) {
+        final List<long[]> scheduled = new ArrayList<long[]>();
+        final TaskDeadlinesServiceImpl recorder = new TaskDeadlinesServiceImpl() {
+
+            @Override
+            public void schedule(long taskId, long deadlineId, long delay, DeadlineType type) {
+                scheduled.add(new long[] { taskId, deadlineId });
+            }
+        };
+        taskService.execute(new InitDeadlinesCommand() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Void execute(Context context) {
+                scheduleWindow(((TaskContext) context).getPersistenceContext(), recorder, queryName, from, to, type);
+                return null;
+            }
+        });
+        List<String> keys = new ArrayList<String>();
+        for (long[] deadline : scheduled) {
+            keys.add(Arrays.toString(deadline));
+        }
+        assertEquals("deadline scheduled more than once " + keys, keys.size(), new HashSet<String>(keys).size());
+        return scheduled;
+    }
+
+    private boolean claim(long taskId) {
+        final boolean[] claimed = new boolean[1];
+        taskService.execute(new ExecuteDeadlinesCommand(taskId, startDeadlineId(taskId), DeadlineType.START) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Void execute(Context context) {
+                claimed[0] = claim(((TaskContext) context).getPersistenceContext());
+                return null;
+            }
+        });
+        return claimed[0];
+    }
+
+    private static class FailingReassignmentListener extends DefaultTaskEventListener 
+            implements org.jbpm.services.task.lifecycle.listeners.TaskLifeCycleEventListener {
+
+        @Override
+        public void beforeTaskReassignedEvent(TaskEvent event) {
+            throw new IllegalStateException("Reassignment failed");
+        }
+
+        @Override
+        public void afterTaskReassignedEvent(TaskEvent event) {
+        }
+
+        @Override
+        public void beforeTaskUpdatedEvent(TaskEvent event) {
+        }
+
+        @Override
+        public void afterTaskUpdatedEvent(TaskEvent event) {
+        }
+
+        @Override
+        public void beforeTaskNotificationEvent(TaskEvent event) {
+        }
+
+        @Override
+        public void afterTaskNotificationEvent(TaskEvent event) {
+        }
+
+        @Override
+        public void afterTaskInputVariableChangedEvent(TaskEvent event, Map<String, Object> variables) {
+        }
+
+        @Override
+        public void afterTaskOutputVariableChangedEvent(TaskEvent event, Map<String, Object> variables) {
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.naming.InitialContext;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.transaction.UserTransaction;
+
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.jbpm.services.task.impl.factories.TaskFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.task.UserGroupCallback;
+import org.kie.api.task.model.Task;
+import org.kie.internal.task.api.InternalTaskService;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+public class IdentityCacheLocalTest extends HumanTaskServicesBaseTest {
+
+    private PoolingDataSource pds;
+    private EntityManagerFactory emf;
+    private CountingUserGroupCallback delegate;
+
+    @Before
+    public void setup() {
+        pds = setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory( "org.jbpm.services.task" );
+        delegate = new CountingUserGroupCallback();
+    }
+
+    @After
+    public void clean() {
+        if (emf != null) {
+            emf.close();
+        }
+        if (pds != null) {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testConfiguratorWrapsCallbackWithCache() {
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                .entityManagerFactory(emf)
+                .userGroupCallback(delegate)
+                .identityCache(true)
+                .getTaskService();
+
+        taskService.addTask(newTask("Bobba Fet"), new HashMap<String, Object>());
+        assertEquals(2, delegate.existsUserCounter);
+
+        taskService.addTask(newTask("Bobba Fet"), new HashMap<String, Object>());
+        // both users were served from cache
+        assertEquals(2, delegate.existsUserCounter);
+    }
+
+    @Test
+    public void testConfiguratorWithoutCache() {
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                .entityManagerFactory(emf)
+                .userGroupCallback(delegate)
+                .identityCache(false)
+                .getTaskService();
+
+        taskService.addTask(newTask("Bobba Fet"), new HashMap<String, Object>());
+        taskService.addTask(newTask("Bobba Fet"), new HashMap<String, Object>());
+        assertEquals(4, delegate.existsUserCounter);
+    }
+
+    @Test
+    public void testKnownEntitiesRecordedAfterCommit() {
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate);
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                .entityManagerFactory(emf)
+                .userGroupCallback(callback)
+                .getTaskService();
+
+        taskService.addTask(newTask("Bobba Fet"), new HashMap<String, Object>());
+
+        assertTrue(callback.isKnownEntity("Bobba Fet", false));
+        assertTrue(callback.isKnownEntity("Administrator", false));
+    }
+
+    @Test
+    public void testKnownEntitiesNotRecordedOnRollback() throws Exception {
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate);
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                .entityManagerFactory(emf)
+                .userGroupCallback(callback)
+                .getTaskService();
+
+        UserTransaction ut = InitialContext.doLookup("java:comp/UserTransaction");
+        ut.begin();
+        taskService.addTask(newTask("Han Solo"), new HashMap<String, Object>());
+        // not committed yet so it must not be considered as stored
+        assertFalse(callback.isKnownEntity("Han Solo", false));
+        ut.rollback();
+
+        assertFalse(callback.isKnownEntity("Han Solo", false));
+        assertFalse(callback.isKnownEntity("Administrator", false));
+
+        // user must be persisted again as it was rolled back
+        Task task = newTask("Han Solo");
+        taskService.addTask(task, new HashMap<String, Object>());
+        assertTrue(callback.isKnownEntity("Han Solo", false));
+        assertEquals("Han Solo", taskService.getTaskById(task.getId()).getPeopleAssignments().getPotentialOwners().get(0).getId());
+    }
+
+    private Task newTask(String potentialOwner) {
+        String str = "(with (new Task()) { priority = 55, taskData = (with( new TaskData()) { } ), ";
+        str += "peopleAssignments = (with ( new PeopleAssignments() ) { potentialOwners = [new User('" + potentialOwner + "') ],businessAdministrators = [ new User('Administrator') ], }),";
+        str += "name = 'This is my task name' })";
+
+        return (Task) TaskFactory.evalTask(new StringReader(str));
+    }
+
+    private class CountingUserGroupCallback implements UserGroupCallback {
+
+        private int existsUserCounter = 0;
+
+        @Override
+        public boolean existsUser(String userId) {
+            existsUserCounter++;
+            return true;
+        }
+
+        @Override
+        public boolean existsGroup(String groupId) {
+            return true;
+        }
+
+        @Override
+        public List<String> getGroupsForUser(String userId, List<String> groupIds, List<String> allExistingGroupIds) {
+            return new ArrayList<String>();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.jbpm.services.task.internals.rule.AssignmentService;
 import org.jbpm.services.task.rule.RuleContextProvider;
 import org.jbpm.services.task.rule.TaskRuleService;
 import org.jbpm.services.task.rule.impl.RuleContextProviderImpl;
+import org.jbpm.services.task.rule.impl.TaskRuleServiceImpl;
 import org.jbpm.services.task.utils.ContentMarshallerHelper;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -297,4 +298,43 @@ public class LifeCycleLocalWithRuleServiceTest extends HumanTaskServicesBaseTest
             assertTrue(e.getMessage().indexOf("Mary is not allowed to complete task with approved false") != -1);
         }
     }
+
+    @Test
+    public void testCreateTaskWithPooledRuleSessions() {
+        TaskRuleServiceImpl.setSessionPoolSize(1);
+        try {
+            long executions = getAddTaskRuleExecutions();
+            
+            String str = "(with (new Task()) { priority = 55, taskData = (with( new TaskData()) { workItemId = 1 } ), ";
+            str += "peopleAssignments = (with ( new PeopleAssignments() ) { potentialOwners = [new User('john')],businessAdministrators = [ new User('Administrator') ], }),";
+            str += "description = 'This is my description', ";
+            str += "subject =  'This is my subject', ";
+            str += "name =  'This is my task name' })";
+            
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("manager", "John");
+            try {
+                taskService.addTask((Task) TaskFactory.evalTask(new StringReader(str)), params);
+                
+                fail("Task should not be created due to rule violation");
+            } catch (CannotAddTaskException e) {
+                assertTrue(e.getMessage().indexOf("John (manager) does not work here any more") != -1);
+            }
+            // same session is reused, facts of previous evaluation must not affect this one
+            str = str.replace("new User('john')", "new User('mary')");
+            taskService.addTask((Task) TaskFactory.evalTask(new StringReader(str)), new HashMap<String, Object>());
+            
+            List<TaskSummary> tasks = taskService.getTasksOwned("mary", "en-UK");
+            assertNotNull(tasks);
+            assertEquals(1, tasks.size());
+            assertEquals(executions + 2, getAddTaskRuleExecutions());
+        } finally {
+            TaskRuleServiceImpl.setSessionPoolSize(0);
+        }
+    }
+    
+    private long getAddTaskRuleExecutions() {
+        TaskRuleServiceImpl.RuleExecutionStats stats = TaskRuleServiceImpl.getRuleExecutionStats().get(TaskRuleService.ADD_TASK_SCOPE);
+        return stats == null ? 0 : stats.getCount();
+    }
 }
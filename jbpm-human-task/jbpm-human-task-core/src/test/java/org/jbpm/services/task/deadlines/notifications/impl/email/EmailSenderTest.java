@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.deadlines.notifications.impl.email;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.subethamail.wiser.Wiser;
+
+public class EmailSenderTest {
+
+    private Wiser wiser;
+    private Session mailSession;
+    
+    @Before
+    public void setup() {
+        wiser = new Wiser();
+        wiser.setHostname("localhost");
+        wiser.setPort(2346);
+        wiser.start();
+        
+        Properties props = new Properties();
+        props.setProperty("mail.transport.protocol", "smtp");
+        props.setProperty("mail.smtp.host", "localhost");
+        props.setProperty("mail.smtp.port", "2346");
+        mailSession = Session.getInstance(props);
+    }
+    
+    @After
+    public void tearDown() {
+        if (wiser != null) {
+            wiser.stop();
+        }
+    }
+    
+    @Test(timeout=10000)
+    public void testSendOverReusedConnection() throws Exception {
+        final AtomicInteger connections = new AtomicInteger();
+        EmailSender sender = countingSender(connections, 1);
+        try {
+            sender.send(messages(3));
+            assertEquals(3, wiser.getMessages().size());
+            
+            sender.send(messages(2));
+            assertEquals(5, wiser.getMessages().size());
+            // both batches were sent over the same connection that is kept open
+            assertEquals(1, connections.get());
+            assertEquals(1, sender.getIdleTransports());
+        } finally {
+            sender.close();
+        }
+        assertEquals(0, sender.getIdleTransports());
+    }
+    
+    @Test(timeout=10000)
+    public void testRejectedMessageNotRetried() throws Exception {
+        wiser.stop();
+        wiser = new Wiser() {
+            @Override
+            public boolean accept(String from, String recipient) {
+                return !recipient.startsWith("user1@");
+            }
+        };
+        wiser.setHostname("localhost");
+        wiser.setPort(2346);
+        wiser.start();
+        
+        final AtomicInteger connections = new AtomicInteger();
+        EmailSender sender = countingSender(connections, 1);
+        try {
+            sender.send(messages(3));
+            // rejected recipient neither breaks the connection nor makes the message to be sent again
+            assertEquals(2, wiser.getMessages().size());
+            assertEquals(1, connections.get());
+        } finally {
+            sender.close();
+        }
+    }
+    
+    @Test(timeout=10000)
+    public void testConcurrentSendersUsePooledConnections() throws Exception {
+        final AtomicInteger connections = new AtomicInteger();
+        final EmailSender sender = countingSender(connections, 2);
+        try {
+            final CountDownLatch done = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                new Thread(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        try {
+                            sender.send(messages(5));
+                        } catch (Exception e) {
+                            // counted as missing messages below
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(20, wiser.getMessages().size());
+            // callers do not wait for each other, at most pool size connections stay open
+            assertTrue(connections.get() >= 1 && connections.get() <= 4);
+            assertTrue(sender.getIdleTransports() <= 2);
+        } finally {
+            sender.close();
+        }
+    }
+    
+    @Test(timeout=10000)
+    public void testSendAsync() throws Exception {
+        EmailSender sender = new EmailSender(mailSession, true, 100, 10, 3, 100);
+        
+        sender.send(messages(25));
+        // close waits for queued messages to be sent
+        sender.close();
+        
+        assertEquals(25, wiser.getMessages().size());
+    }
+    
+    @Test(timeout=10000)
+    public void testSendAsyncFullQueue() throws Exception {
+        EmailSender sender = new EmailSender(mailSession, true, 1, 1, 3, 100);
+        
+        sender.send(messages(10));
+        sender.close();
+        
+        assertEquals(10, wiser.getMessages().size());
+    }
+    
+    @Test(timeout=10000)
+    public void testReconnectAfterServerRestart() throws Exception {
+        EmailSender sender = new EmailSender(mailSession, false, 0, 10, 0, 0);
+        try {
+            sender.send(messages(1));
+            
+            wiser.stop();
+            wiser = new Wiser();
+            wiser.setHostname("localhost");
+            wiser.setPort(2346);
+            wiser.start();
+            
+            sender.send(messages(1));
+            assertEquals(1, wiser.getMessages().size());
+        } finally {
+            sender.close();
+        }
+    }
+    
+    private EmailSender countingSender(final AtomicInteger connections, int poolSize) {
+        return new EmailSender(mailSession, false, 0, 10, 0, 0, poolSize) {
+            
+            @Override
+            protected Transport connect(Transport transport) throws MessagingException {
+                if (transport == null || !transport.isConnected()) {
+                    connections.incrementAndGet();
+                }
+                return super.connect(transport);
+            }
+        };
+    }
+    
+    private List<Message> messages(int count) throws Exception {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            Message msg = new MimeMessage(mailSession);
+            msg.setFrom(new InternetAddress("from@domain.com"));
+            msg.addRecipient(Message.RecipientType.TO, new InternetAddress("user" + i + "@domain.com"));
+            msg.setSubject("Notification " + i);
+            msg.setText("Body " + i);
+            messages.add(msg);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.identity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.kie.api.task.UserGroupCallback;
+
+public class CachingUserGroupCallbackTest {
+
+    @Test
+    public void testLookupsAreCached() {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 60000, 100, 60000);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(callback.existsUser("john"));
+            assertFalse(callback.existsUser("unknown"));
+            assertTrue(callback.existsGroup("HR"));
+            List<String> groups = callback.getGroupsForUser("john", null, null);
+            assertNotNull(groups);
+            assertEquals(2, groups.size());
+            // callers are allowed to modify returned list
+            groups.clear();
+        }
+        assertEquals(4, delegate.calls);
+        assertEquals(4, callback.getMisses());
+        assertEquals(16, callback.getHits());
+    }
+
+    @Test
+    public void testExpiredLookupsAreReloaded() throws Exception {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 50, 100, 50);
+
+        assertTrue(callback.existsUser("john"));
+        assertTrue(callback.existsUser("john"));
+        assertEquals(1, delegate.calls);
+
+        Thread.sleep(100);
+
+        assertTrue(callback.existsUser("john"));
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 2, 60000, 2, 60000);
+
+        callback.existsGroup("HR");
+        callback.existsGroup("IT");
+        callback.existsGroup("PM");
+        assertEquals(3, delegate.calls);
+        // HR was evicted as least recently used
+        callback.existsGroup("HR");
+        assertEquals(4, delegate.calls);
+        callback.existsGroup("PM");
+        assertEquals(4, delegate.calls);
+    }
+
+    @Test
+    public void testInvalidation() {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 60000, 100, 60000);
+
+        callback.existsUser("john");
+        callback.addKnownEntity("john", false);
+        callback.addKnownEntity("HR", true);
+        assertTrue(callback.isKnownEntity("john", false));
+        assertFalse(callback.isKnownEntity("john", true));
+
+        callback.invalidateUser("john");
+        assertFalse(callback.isKnownEntity("john", false));
+        assertTrue(callback.isKnownEntity("HR", true));
+        callback.existsUser("john");
+        assertEquals(2, delegate.calls);
+
+        callback.invalidateAll();
+        assertFalse(callback.isKnownEntity("HR", true));
+        callback.existsUser("john");
+        assertEquals(3, delegate.calls);
+    }
+
+    private static class CountingCallback implements UserGroupCallback {
+
+        private int calls;
+
+        @Override
+        public boolean existsUser(String userId) {
+            calls++;
+            return "john".equals(userId);
+        }
+
+        @Override
+        public boolean existsGroup(String groupId) {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public List<String> getGroupsForUser(String userId, List<String> groupIds, List<String> allExistingGroupIds) {
+            calls++;
+            return new ArrayList<String>(Arrays.asList("HR", "IT"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.task.internals.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jbpm.services.task.internals.lifecycle.LifeCycleTable.CompiledCommand;
+import org.junit.Test;
+import org.kie.api.task.model.Status;
+import org.kie.internal.task.api.model.Operation;
+
+public class LifeCycleTableTest {
+
+    @Test
+    public void testOperationsFromDsl() {
+        LifeCycleTable table = new LifeCycleTable(MVELLifeCycleManager.initMVELOperations());
+        
+        CompiledCommand[] start = table.getCommands(Operation.Start);
+        assertEquals(2, start.length);
+        assertEquals(0, start[0].nextStatusMatch(0, Status.Ready));
+        assertEquals(-1, start[0].nextStatusMatch(0, Status.Reserved));
+        assertEquals(0, start[1].nextStatusMatch(0, Status.Reserved));
+        assertEquals(-1, start[1].nextPreviousStatusMatch(0, Status.Reserved));
+        
+        CompiledCommand[] resume = table.getCommands(Operation.Resume);
+        assertEquals(-1, resume[1].nextStatusMatch(0, Status.Suspended));
+        assertEquals(1, resume[1].nextPreviousStatusMatch(0, Status.InProgress));
+        assertEquals(-1, resume[1].nextPreviousStatusMatch(0, null));
+    }
+    
+    @Test
+    public void testStatusListPositions() {
+        OperationCommand command = new OperationCommand();
+        command.setStatus(Arrays.asList(Status.Ready, Status.Reserved, Status.Ready));
+        command.setAllowed(Collections.singletonList(Allowed.Anyone));
+        
+        Map<Operation, List<OperationCommand>> operations = new HashMap<Operation, List<OperationCommand>>();
+        operations.put(Operation.Claim, Collections.singletonList(command));
+        LifeCycleTable table = new LifeCycleTable(operations);
+        
+        CompiledCommand compiled = table.getCommands(Operation.Claim)[0];
+        assertEquals(0, compiled.nextStatusMatch(0, Status.Ready));
+        assertEquals(2, compiled.nextStatusMatch(1, Status.Ready));
+        assertEquals(1, compiled.nextStatusMatch(1, Status.Reserved));
+        assertEquals(-1, compiled.nextStatusMatch(2, Status.Reserved));
+        assertEquals(-1, compiled.nextStatusMatch(3, Status.Ready));
+        
+        assertEquals(0, table.getCommands(Operation.Start).length);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.services.task.rule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jbpm.services.task.exception.CannotAddTaskException;
+import org.jbpm.services.task.impl.model.TaskImpl;
+import org.jbpm.services.task.rule.RuleContextProvider;
+import org.jbpm.services.task.rule.TaskRuleService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.io.ResourceType;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+
+public class TaskRuleServiceImplTest {
+
+    private static final String RULES = ""
+            + "package org.jbpm.services.task.rule.test\n"
+            + "import org.kie.api.task.model.Task;\n"
+            + "import org.jbpm.services.task.rule.TaskServiceRequest;\n"
+            + "global TaskServiceRequest request;\n"
+            + "global java.util.List names;\n"
+            + "rule \"Reject\"\n"
+            + "when\n"
+            + "  Task( name == \"rejected\" )\n"
+            + "then\n"
+            + "  request.setAllowed(false);\n"
+            + "  request.addReason(\"rejected by rule\");\n"
+            + "end\n"
+            + "rule \"Record\"\n"
+            + "when\n"
+            + "  $task : Task()\n"
+            + "then\n"
+            + "  if (names != null) { names.add($task.getName()); }\n"
+            + "end\n";
+
+    @Before
+    public void setUp() {
+        TaskRuleServiceImpl.setSessionPoolSize(1);
+    }
+
+    @After
+    public void tearDown() {
+        TaskRuleServiceImpl.setSessionPoolSize(0);
+    }
+
+    @Test
+    public void testPooledSessionIsCleared() {
+        MapRuleContextProvider provider = new MapRuleContextProvider();
+        provider.addKieBase(TaskRuleService.ADD_TASK_SCOPE, newKieBase());
+        TaskRuleServiceImpl ruleService = new TaskRuleServiceImpl(provider);
+
+        TaskImpl task = newTask("rejected");
+        for (int i = 0; i < 2; i++) {
+            // same session is reused, if the task was still in the session it would not be matched again
+            try {
+                ruleService.executeRules(task, "john", null, TaskRuleService.ADD_TASK_SCOPE);
+                fail("Task should be rejected by rule");
+            } catch (CannotAddTaskException e) {
+                assertTrue(e.getMessage().contains("rejected by rule"));
+            }
+            TaskRuleServiceImpl.SessionPool pool = ruleService.getSessionPool(TaskRuleService.ADD_TASK_SCOPE, 
+                    provider.getKieBase(TaskRuleService.ADD_TASK_SCOPE));
+            assertEquals(1, pool.getIdle());
+        }
+    }
+
+    @Test
+    public void testPoolsAreKeptPerProvider() {
+        MapRuleContextProvider provider = new MapRuleContextProvider();
+        KieBase kieBase = newKieBase();
+        provider.addKieBase(TaskRuleService.ADD_TASK_SCOPE, kieBase);
+        MapRuleContextProvider otherProvider = new MapRuleContextProvider();
+        KieBase otherKieBase = newKieBase();
+        otherProvider.addKieBase(TaskRuleService.ADD_TASK_SCOPE, otherKieBase);
+
+        TaskRuleServiceImpl ruleService = new TaskRuleServiceImpl(provider);
+        TaskRuleServiceImpl otherRuleService = new TaskRuleServiceImpl(otherProvider);
+
+        ruleService.executeRules(newTask("task"), "john", null, TaskRuleService.ADD_TASK_SCOPE);
+        TaskRuleServiceImpl.SessionPool pool = ruleService.getSessionPool(TaskRuleService.ADD_TASK_SCOPE, kieBase);
+        otherRuleService.executeRules(newTask("task"), "john", null, TaskRuleService.ADD_TASK_SCOPE);
+        TaskRuleServiceImpl.SessionPool otherPool = otherRuleService.getSessionPool(TaskRuleService.ADD_TASK_SCOPE, otherKieBase);
+
+        // providers using the same scope do not replace each other's pools
+        assertNotSame(pool, otherPool);
+        assertSame(pool, new TaskRuleServiceImpl(provider).getSessionPool(TaskRuleService.ADD_TASK_SCOPE, kieBase));
+        assertEquals(1, pool.getIdle());
+        assertEquals(1, otherPool.getIdle());
+    }
+
+    @Test
+    public void testSessionWithStaleGlobalIsNotReused() {
+        MapRuleContextProvider provider = new MapRuleContextProvider();
+        provider.addKieBase(TaskRuleService.ADD_TASK_SCOPE, newKieBase());
+        List<String> names = new ArrayList<String>();
+        Map<String, Object> globals = new HashMap<String, Object>();
+        globals.put("names", names);
+        provider.addGlobals(TaskRuleService.ADD_TASK_SCOPE, globals);
+        TaskRuleServiceImpl ruleService = new TaskRuleServiceImpl(provider);
+
+        ruleService.executeRules(newTask("first"), "john", null, TaskRuleService.ADD_TASK_SCOPE);
+        assertEquals(1, names.size());
+
+        // global is no longer provided so it must not be seen by the rules
+        globals.remove("names");
+        ruleService.executeRules(newTask("second"), "john", null, TaskRuleService.ADD_TASK_SCOPE);
+        assertEquals(1, names.size());
+    }
+
+    private TaskImpl newTask(String name) {
+        TaskImpl task = new TaskImpl();
+        task.setName(name);
+        return task;
+    }
+
+    private KieBase newKieBase() {
+        KnowledgeBuilder kbuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+        kbuilder.add(ResourceFactory.newByteArrayResource(RULES.getBytes()), ResourceType.DRL);
+        if (kbuilder.hasErrors()) {
+            fail(kbuilder.getErrors().toString());
+        }
+        return kbuilder.newKnowledgeBase();
+    }
+
+    private static class MapRuleContextProvider implements RuleContextProvider {
+
+        private Map<String, KieBase> kieBases = new HashMap<String, KieBase>();
+        private Map<String, Map<String, Object>> globals = new HashMap<String, Map<String, Object>>();
+
+        @Override
+        public KieBase getKieBase(String scope) {
+            return kieBases.get(scope);
+        }
+
+        @Override
+        public void addKieBase(String scope, KieBase kbase) {
+            kieBases.put(scope, kbase);
+        }
+
+        @Override
+        public Map<String, Object> getGlobals(String scope) {
+            return globals.get(scope);
+        }
+
+        @Override
+        public void addGlobals(String scope, Map<String, Object> globals) {
+            this.globals.put(scope, globals);
+        }
+    }
+}
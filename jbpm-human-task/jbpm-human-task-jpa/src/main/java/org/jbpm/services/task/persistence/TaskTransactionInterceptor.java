@@ -17,6 +17,7 @@ package org.jbpm.services.task.persistence;
 
 import java.lang.reflect.Constructor;
 import java.util.Collection;
+import java.util.List;
 
 import org.drools.core.command.CommandService;
 import org.drools.core.command.Interceptor;
@@ -240,6 +241,8 @@ public class TaskTransactionInterceptor extends AbstractInterceptor {
 
 		TaskTransactionInterceptor service;
 
+		private List<Runnable> afterCommit;
+
 		public TaskSynchronizationImpl(TaskTransactionInterceptor service) {
 			super(1, "TaskService-"+service.toString());
 			this.service = service;
@@ -249,10 +252,21 @@ public class TaskTransactionInterceptor extends AbstractInterceptor {
 
 			this.service.tpm.endCommandScopedEntityManager();
 
+			if (status == TransactionManager.STATUS_COMMITTED && afterCommit != null) {
+				for (Runnable action : afterCommit) {
+					try {
+						action.run();
+					} catch (RuntimeException e) {
+						logger.warn("Error while running after commit action {}", action, e);
+					}
+				}
+			}
 		}
 
+		@SuppressWarnings("unchecked")
 		public void beforeCompletion() {
-			// not used
+			// actions registered by commands via local:after-commit, transaction resources are not accessible after completion
+			this.afterCommit = (List<Runnable>) this.service.txm.getResource("local:after-commit");
 		}
 
 	}
@@ -290,6 +290,21 @@
         primary key (id)
     );
 
+    create table ScheduledTimerInfo (
+        id bigint generated by default as identity (start with 1),
+        failedCount integer not null,
+        fireTime timestamp,
+        jobName varchar(255) not null,
+        leaseExpiration timestamp,
+        owner varchar(255),
+        processInstanceId bigint,
+        sessionId bigint,
+        timerJobInstance longvarbinary,
+        timerServiceId varchar(255),
+        OPTLOCK integer,
+        primary key (id)
+    );
+
     create table SessionInfo (
         id bigint generated by default as identity (start with 1),
         lastModificationDate timestamp,
@@ -423,6 +438,9 @@
     alter table QueryDefinitionStore 
         add constraint UK_4ry5gt77jvq0orfttsoghta2j unique (qName);
 
+    alter table ScheduledTimerInfo 
+        add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
     alter table Attachment 
         add constraint FK_7ndpfa311i50bq7hy18q05va3 
         foreign key (attachedBy_id) 
@@ -702,6 +720,7 @@
     create index IDX_Task_workItemId on Task(workItemId);
     
     create index IDX_EventTypes_element ON EventTypes(element);
+    create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
 
     create index IDX_CMI_Context ON ContextMappingInfo(CONTEXT_ID);    
     create index IDX_CMI_KSession ON ContextMappingInfo(KSESSION_ID);    
@@ -710,6 +729,8 @@
     create index IDX_RequestInfo_status ON RequestInfo(status);
     create index IDX_RequestInfo_timestamp ON RequestInfo(timestamp);
     create index IDX_RequestInfo_owner ON RequestInfo(owner);
+
+    create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
     
     create index IDX_BAMTaskSumm_createdDate on BAMTaskSummary(createdDate);
     create index IDX_BAMTaskSumm_duration on BAMTaskSummary(duration);
@@ -307,6 +307,23 @@
         primary key (id)
     ) ENGINE=InnoDB;
 
+    create table ScheduledTimerInfo (
+        id bigint not null auto_increment,
+        failedCount integer not null,
+        fireTime datetime,
+        -- fireTime datetime(6), to be used with mysql 5.6.4 that supports millis precision
+        jobName varchar(255) not null,
+        leaseExpiration datetime,
+        -- leaseExpiration datetime(6), to be used with mysql 5.6.4 that supports millis precision
+        owner varchar(255),
+        processInstanceId bigint,
+        sessionId bigint,
+        timerJobInstance longblob,
+        timerServiceId varchar(255),
+        OPTLOCK integer,
+        primary key (id)
+    ) ENGINE=InnoDB;
+
     create table SessionInfo (
         id bigint not null auto_increment,
         lastModificationDate datetime,
@@ -450,6 +467,9 @@
     alter table QueryDefinitionStore 
         add constraint UK_4ry5gt77jvq0orfttsoghta2j unique (qName);
 
+    alter table ScheduledTimerInfo 
+        add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
     alter table Attachment 
         add index FK_7ndpfa311i50bq7hy18q05va3 (attachedBy_id), 
         add constraint FK_7ndpfa311i50bq7hy18q05va3 
@@ -774,6 +794,7 @@
     create index IDX_Task_workItemId on Task(workItemId);
     
     create index IDX_EventTypes_element ON EventTypes(element);
+    create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
 
     create index IDX_CMI_Context ON ContextMappingInfo(CONTEXT_ID);    
     create index IDX_CMI_KSession ON ContextMappingInfo(KSESSION_ID);    
@@ -782,6 +803,8 @@
     create index IDX_RequestInfo_status ON RequestInfo(status);
     create index IDX_RequestInfo_timestamp ON RequestInfo(timestamp);
     create index IDX_RequestInfo_owner ON RequestInfo(owner);
+
+    create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
     
     create index IDX_BAMTaskSumm_createdDate on BAMTaskSummary(createdDate);
     create index IDX_BAMTaskSumm_duration on BAMTaskSummary(duration);
@@ -322,6 +322,22 @@
     ) lock datarows
     go
 
+    create table ScheduledTimerInfo (
+        id numeric(19,0) identity not null,
+        failedCount int not null,
+        fireTime datetime null,
+        jobName varchar(255) not null,
+        leaseExpiration datetime null,
+        owner varchar(255) null,
+        processInstanceId numeric(19,0) null,
+        sessionId numeric(19,0) null,
+        timerJobInstance image null,
+        timerServiceId varchar(255) null,
+        OPTLOCK int null,
+        primary key (id)
+    ) lock datarows
+    go
+
     create table SessionInfo (
         id numeric(19,0) identity not null,
         lastModificationDate datetime null,
@@ -689,6 +705,10 @@
         add constraint UK_4ry5gt77jvq0orfttsoghta2j unique (qName)
     go
 
+    alter table ScheduledTimerInfo
+        add constraint UK_SchedTimerInfo_jobName unique (jobName)
+    go
+
     alter table Reassignment
         add constraint FK724D056062A1E871
         foreign key (Escalation_Reassignments_Id)
@@ -790,6 +810,7 @@
     create index IDX_Task_workItemId on Task(workItemId)
 
     create index IDX_EventTypes_element ON EventTypes(element)
+    create index IDX_EventTypes_compound ON EventTypes(element, InstanceId)
 
     create index IDX_CMI_Context ON ContextMappingInfo(CONTEXT_ID)
     create index IDX_CMI_KSession ON ContextMappingInfo(KSESSION_ID)
@@ -799,6 +820,8 @@
     create index IDX_RequestInfo_timestamp ON RequestInfo(timestamp)
     create index IDX_RequestInfo_owner ON RequestInfo(owner)
 
+    create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime)
+
     create index IDX_BAMTaskSumm_createdDate on BAMTaskSummary(createdDate)
     create index IDX_BAMTaskSumm_duration on BAMTaskSummary(duration)
     create index IDX_BAMTaskSumm_endDate on BAMTaskSummary(endDate)
@@ -2,4 +2,25 @@ alter table RequestInfo add column priority integer;
 ALTER TABLE ProcessInstanceLog ADD COLUMN processType integer;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id bigint generated by default as identity,
+    failedCount integer not null,
+    fireTime timestamp,
+    jobName varchar(255) not null,
+    leaseExpiration timestamp,
+    owner varchar(255),
+    processInstanceId bigint,
+    sessionId bigint,
+    timerJobInstance blob(2147483647),
+    timerServiceId varchar(255),
+    OPTLOCK integer,
+    primary key (id)
+);
+
+create unique index UK_SchedTimerInfo_jobName on ScheduledTimerInfo (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
@@ -2,4 +2,26 @@ alter table RequestInfo add column priority integer;
 alter table ProcessInstanceLog add column processType integer;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id bigint generated by default as identity (start with 1),
+    failedCount integer not null,
+    fireTime timestamp,
+    jobName varchar(255) not null,
+    leaseExpiration timestamp,
+    owner varchar(255),
+    processInstanceId bigint,
+    sessionId bigint,
+    timerJobInstance longvarbinary,
+    timerServiceId varchar(255),
+    OPTLOCK integer,
+    primary key (id)
+);
+
+alter table ScheduledTimerInfo 
+    add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
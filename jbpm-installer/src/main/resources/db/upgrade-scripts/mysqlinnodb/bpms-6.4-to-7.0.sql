@@ -2,4 +2,28 @@ alter table RequestInfo add column priority integer;
 alter table ProcessInstanceLog add column processType integer;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id bigint not null auto_increment,
+    failedCount integer not null,
+    fireTime datetime,
+    -- fireTime datetime(6), to be used with mysql 5.6.4 that supports millis precision
+    jobName varchar(255) not null,
+    leaseExpiration datetime,
+    -- leaseExpiration datetime(6), to be used with mysql 5.6.4 that supports millis precision
+    owner varchar(255),
+    processInstanceId bigint,
+    sessionId bigint,
+    timerJobInstance longblob,
+    timerServiceId varchar(255),
+    OPTLOCK integer,
+    primary key (id)
+) ENGINE=InnoDB;
+
+alter table ScheduledTimerInfo 
+    add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
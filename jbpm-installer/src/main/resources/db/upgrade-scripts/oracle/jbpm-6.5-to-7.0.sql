@@ -2,4 +2,27 @@ alter table RequestInfo add priority number(10,0);
 alter table ProcessInstanceLog add processType number(10,0);
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id number(19,0) not null,
+    failedCount number(10,0) not null,
+    fireTime timestamp,
+    jobName varchar2(255 char) not null,
+    leaseExpiration timestamp,
+    owner varchar2(255 char),
+    processInstanceId number(19,0),
+    sessionId number(19,0),
+    timerJobInstance blob,
+    timerServiceId varchar2(255 char),
+    OPTLOCK number(10,0),
+    primary key (id)
+);
+create sequence SCHEDULED_TIMER_ID_SEQ;
+
+alter table ScheduledTimerInfo 
+    add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
@@ -2,4 +2,27 @@ alter table RequestInfo add column priority int4;
 ALTER TABLE ProcessInstanceLog ADD COLUMN processType int4;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id int8 not null,
+    failedCount int4 not null,
+    fireTime timestamp,
+    jobName varchar(255) not null,
+    leaseExpiration timestamp,
+    owner varchar(255),
+    processInstanceId int8,
+    sessionId int8,
+    timerJobInstance oid,
+    timerServiceId varchar(255),
+    OPTLOCK int4,
+    primary key (id)
+);
+create sequence SCHEDULED_TIMER_ID_SEQ;
+
+alter table ScheduledTimerInfo 
+    add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
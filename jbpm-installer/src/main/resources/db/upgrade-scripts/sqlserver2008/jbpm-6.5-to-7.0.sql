@@ -2,4 +2,26 @@ alter table RequestInfo add priority int;
 ALTER TABLE ProcessInstanceLog ADD processType int;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id bigint identity not null,
+    failedCount int not null,
+    fireTime datetime2,
+    jobName varchar(255) not null,
+    leaseExpiration datetime2,
+    owner varchar(255),
+    processInstanceId bigint,
+    sessionId bigint,
+    timerJobInstance varbinary(MAX),
+    timerServiceId varchar(255),
+    OPTLOCK int,
+    primary key (id)
+);
+
+alter table ScheduledTimerInfo 
+    add constraint UK_SchedTimerInfo_jobName unique (jobName);
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime);
@@ -2,4 +2,29 @@ alter table RequestInfo add priority int;
 ALTER TABLE ProcessInstanceLog ADD processType int;
 
 update ProcessInstanceLog set processType = 1;
-update RequestInfo set priority = 5;
\ No newline at end of file
+update RequestInfo set priority = 5;
+
+create index IDX_EventTypes_compound ON EventTypes(element, InstanceId);
+
+create table ScheduledTimerInfo (
+    id numeric(19,0) identity not null,
+    failedCount int not null,
+    fireTime datetime null,
+    jobName varchar(255) not null,
+    leaseExpiration datetime null,
+    owner varchar(255) null,
+    processInstanceId numeric(19,0) null,
+    sessionId numeric(19,0) null,
+    timerJobInstance image null,
+    timerServiceId varchar(255) null,
+    OPTLOCK int null,
+    primary key (id)
+) lock datarows
+go
+
+alter table ScheduledTimerInfo
+    add constraint UK_SchedTimerInfo_jobName unique (jobName)
+go
+
+create index IDX_SchedTimer_due ON ScheduledTimerInfo(timerServiceId, fireTime)
+go
@@ -67,6 +67,21 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
         return em.find( ProcessInstanceInfo.class, processId );
     }
 
+    /**
+     * Flushes pending changes and detaches given process instance infos from the entity manager so they
+     * (and process instances they hold) are no longer referenced by the persistence context.
+     */
+    public void flushAndDetach(List<ProcessInstanceInfo> processInstanceInfos) {
+        if (processInstanceInfos.isEmpty()) {
+            return;
+        }
+        EntityManager em = getEntityManager();
+        em.flush();
+        for (ProcessInstanceInfo processInstanceInfo : processInstanceInfos) {
+            em.detach(processInstanceInfo);
+        }
+    }
+
     public void remove(ProcessInstanceInfo processInstanceInfo) {
         getEntityManager().remove( processInstanceInfo );
         TransactionManagerHelper.removeFromUpdatableSet(txm, processInstanceInfo);
@@ -111,6 +126,28 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
     	}
     }
 
+    /**
+     * Pages through process instances waiting for given event type ordered by their id. Returns at most
+     * <code>maxResults</code> ids greater than <code>afterId</code> so callers can iterate over large number
+     * of waiting process instances without loading all of them at once.
+     * </p>
+     * Same locking considerations as for {@link #getProcessInstancesWaitingForEvent(String)} apply.
+     */
+    public List<Long> getProcessInstancesWaitingForEvent(String type, long afterId, int maxResults) {
+        EntityManager entityManager = getEntityManager();
+        if (entityManager != null) {
+            Query processInstancesForEvent = entityManager.createNamedQuery( "ProcessInstancesWaitingForEventAfterId" );
+            processInstancesForEvent.setParameter( "type",
+                                                   type );
+            processInstancesForEvent.setParameter( "afterId",
+                                                   afterId );
+            processInstancesForEvent.setMaxResults( maxResults );
+            return (List<Long>) processInstancesForEvent.getResultList();
+        } else {
+            return new ArrayList<Long>();
+        }
+    }
+
     public CorrelationKeyInfo persist(CorrelationKeyInfo correlationKeyInfo) {
         Long processInstanceId = getProcessInstanceByCorrelationKey(correlationKeyInfo);
         if (processInstanceId != null) {
@@ -24,8 +24,10 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.drools.core.common.InternalKnowledgeRuntime;
+import org.drools.persistence.OrderedTransactionSynchronization;
 import org.drools.persistence.TransactionManager;
 import org.drools.persistence.TransactionManagerHelper;
+import org.jbpm.persistence.JpaProcessPersistenceContext;
 import org.jbpm.persistence.ProcessPersistenceContext;
 import org.jbpm.persistence.ProcessPersistenceContextManager;
 import org.jbpm.persistence.correlation.CorrelationKeyInfo;
@@ -85,6 +87,10 @@ public class JPAProcessInstanceManager
             context.persist(correlationKeyInfo);
         }
         internalAddProcessInstance(processInstance);
+        ProcessInstanceCache cache = getProcessInstanceCache();
+        if (cache != null) {
+            registerCacheSynchronization(cache, processInstanceInfo, processInstance);
+        }
     }
     
     public void internalAddProcessInstance(ProcessInstance processInstance) {
@@ -121,7 +127,10 @@ public class JPAProcessInstanceManager
                 }                
                 TransactionManagerHelper.addToUpdatableSet(txm, processInstanceInfo);
                 processInstanceInfo.updateLastReadDate();
-  
+                ProcessInstanceCache cache = getProcessInstanceCache();
+                if (cache != null) {
+                    registerCacheSynchronization(cache, processInstanceInfo, processInstance);
+                }
             }
         	return processInstance;
         }
@@ -136,11 +145,22 @@ public class JPAProcessInstanceManager
         if ( processInstanceInfo == null ) {
             return null;
         }
+        ProcessInstanceCache cache = readOnly ? null : getProcessInstanceCache();
+        if (cache != null) {
+            // reuse instance unmarshalled by previous transaction if nobody changed it since then
+            ProcessInstance cached = cache.take(id, processInstanceInfo.getVersion());
+            if (cached != null) {
+                processInstanceInfo.setCachedProcessInstance(cached, this.kruntime.getEnvironment());
+            }
+        }
         processInstance = (org.jbpm.process.instance.ProcessInstance)
         	processInstanceInfo.getProcessInstance(kruntime, this.kruntime.getEnvironment());
         if (!readOnly) {
             processInstanceInfo.updateLastReadDate();
             TransactionManagerHelper.addToUpdatableSet(txm, processInstanceInfo);
+            if (cache != null) {
+                registerCacheSynchronization(cache, processInstanceInfo, processInstance);
+            }
         }
         if (((ProcessInstanceImpl) processInstance).getProcessXml() == null) {
 	        Process process = kruntime.getKieBase().getProcess( processInstance.getProcessId() );
@@ -172,12 +192,90 @@ public class JPAProcessInstanceManager
             context.remove( processInstanceInfo );
         }
         internalRemoveProcessInstance(processInstance);
+        ProcessInstanceCache cache = getProcessInstanceCache();
+        if (cache != null) {
+            cache.invalidate(processInstance.getId());
+        }
+    }
+
+    protected ProcessInstanceCache getProcessInstanceCache() {
+        InternalRuntimeManager manager = (InternalRuntimeManager) kruntime.getEnvironment().get(EnvironmentName.RUNTIME_MANAGER);
+        if (manager == null) {
+            return null;
+        }
+        return ProcessInstanceCache.get(manager.getIdentifier());
+    }
+
+    /*
+     * Puts the process instance into the cache once the transaction is successfully committed
+     * so next transaction does not have to unmarshall it again as long as its version is the same
+     */
+    protected void registerCacheSynchronization(final ProcessInstanceCache cache, final ProcessInstanceInfo processInstanceInfo, 
+            final ProcessInstance processInstance) {
+        TransactionManager txm = (TransactionManager) this.kruntime.getEnvironment().get( EnvironmentName.TRANSACTION_MANAGER );
+        if (txm == null || txm.getStatus() != TransactionManager.STATUS_ACTIVE) {
+            return;
+        }
+        String key = "PICache-" + processInstance.getId();
+        if (txm.getResource(key) != null) {
+            return;
+        }
+        txm.putResource(key, processInstanceInfo);
+        TransactionManagerHelper.registerTransactionSyncInContainer(txm, new OrderedTransactionSynchronization(20, key) {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == TransactionManager.STATUS_COMMITTED && processInstance.getState() == ProcessInstance.STATE_ACTIVE) {
+                    if (((ProcessInstanceImpl) processInstance).getKnowledgeRuntime() != null) {
+                        ((ProcessInstanceImpl) processInstance).disconnect();
+                    }
+                    cache.put(processInstance.getId(), processInstanceInfo.getVersion(), processInstance);
+                } else {
+                    // rolled back (or completed) - the instance may hold changes that were never persisted
+                    cache.invalidate(processInstance.getId());
+                }
+            }
+        });
     }
 
     public void internalRemoveProcessInstance(ProcessInstance processInstance) {
         processInstances.remove( processInstance.getId() );
     }
     
+    /**
+     * Writes current state of given loaded process instances to the data base and releases them from this 
+     * manager and from the persistence context, so they can be garbage collected before the transaction 
+     * completes. Meant for operations that touch large number of process instances within single transaction;
+     * process instances that are not loaded (e.g. already completed) are ignored.
+     */
+    public void evictProcessInstances(Collection<Long> ids) {
+        ProcessPersistenceContext context = ((ProcessPersistenceContextManager) this.kruntime.getEnvironment().get( EnvironmentName.PERSISTENCE_CONTEXT_MANAGER )).getProcessPersistenceContext();
+        if (!(context instanceof JpaProcessPersistenceContext)) {
+            return;
+        }
+        TransactionManager txm = (TransactionManager) this.kruntime.getEnvironment().get( EnvironmentName.TRANSACTION_MANAGER );
+        List<ProcessInstanceInfo> processInstanceInfos = new ArrayList<ProcessInstanceInfo>();
+        for (Long id : ids) {
+            ProcessInstance processInstance = processInstances.get(id);
+            if (processInstance == null) {
+                continue;
+            }
+            ProcessInstanceInfo processInstanceInfo = context.findProcessInstanceInfo( id );
+            if (processInstanceInfo != null) {
+                processInstanceInfo.transform();
+                TransactionManagerHelper.removeFromUpdatableSet(txm, processInstanceInfo);
+                processInstanceInfos.add(processInstanceInfo);
+            }
+            ((ProcessInstanceImpl) processInstance).disconnect();
+            internalRemoveProcessInstance(processInstance);
+        }
+        ((JpaProcessPersistenceContext) context).flushAndDetach(processInstanceInfos);
+    }
+
     public void clearProcessInstances() {
         for (ProcessInstance processInstance: new ArrayList<ProcessInstance>(processInstances.values())) {
             ((ProcessInstanceImpl) processInstance).disconnect();
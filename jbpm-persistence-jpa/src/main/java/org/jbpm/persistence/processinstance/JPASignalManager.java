@@ -15,17 +15,24 @@
 
 package org.jbpm.persistence.processinstance;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.drools.core.common.InternalKnowledgeRuntime;
+import org.jbpm.persistence.JpaProcessPersistenceContext;
 import org.jbpm.persistence.ProcessPersistenceContext;
 import org.jbpm.persistence.ProcessPersistenceContextManager;
 import org.jbpm.process.core.async.AsyncSignalEventCommand;
+import org.jbpm.process.instance.InternalProcessRuntime;
+import org.jbpm.process.instance.ProcessInstanceManager;
 import org.jbpm.process.instance.event.DefaultSignalManager;
 import org.kie.api.executor.CommandContext;
 import org.kie.api.executor.ExecutorService;
 import org.kie.api.runtime.EnvironmentName;
 import org.kie.api.runtime.manager.RuntimeManager;
+import org.kie.api.runtime.process.ProcessInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +40,9 @@ public class JPASignalManager extends DefaultSignalManager {
     private static final String ASYNC_SIGNAL_PREFIX = "ASYNC-";
     private static final Logger logger = LoggerFactory.getLogger(JPASignalManager.class);
 
+    // when greater than 0 waiting process instances are paged through in chunks of given size instead of loading all at once
+    private final int chunkSize = Integer.parseInt(System.getProperty("org.jbpm.signal.chunk.size", "0"));
+
     public JPASignalManager(InternalKnowledgeRuntime kruntime) {
         super(kruntime);
     }
@@ -43,6 +53,10 @@ public class JPASignalManager extends DefaultSignalManager {
         ProcessPersistenceContextManager contextManager 
             = (ProcessPersistenceContextManager) getKnowledgeRuntime().getEnvironment().get( EnvironmentName.PERSISTENCE_CONTEXT_MANAGER );
         ProcessPersistenceContext context = contextManager.getProcessPersistenceContext();
+        if (chunkSize > 0 && context instanceof JpaProcessPersistenceContext) {
+            signalEventInChunks(type, actualSignalType, event, (JpaProcessPersistenceContext) context);
+            return;
+        }
         List<Long> processInstancesToSignalList = context.getProcessInstancesWaitingForEvent(actualSignalType);
         // handle signal asynchronously
         if (type.startsWith(ASYNC_SIGNAL_PREFIX)) {
@@ -82,4 +96,84 @@ public class JPASignalManager extends DefaultSignalManager {
                            event );
     }
 
+    /*
+     * Delivers the signal to waiting process instances page by page. In async mode every chunk is
+     * scheduled as single job so it is processed in its own transaction by executor threads, in sync mode
+     * signal is first broadcast to already active listeners (loaded process instances, start events) and
+     * then delivered directly to each of the remaining waiting process instances. As sync mode runs in
+     * the caller's transaction, process instances loaded for a chunk are written to the data base and
+     * evicted from the session once the chunk is done so memory does not grow with number of instances.
+     */
+    protected void signalEventInChunks(String type, String actualSignalType, Object event, JpaProcessPersistenceContext context) {
+        RuntimeManager runtimeManager = null;
+        ExecutorService executorService = null;
+        boolean async = type.startsWith(ASYNC_SIGNAL_PREFIX);
+        if (async) {
+            runtimeManager = ((RuntimeManager)getKnowledgeRuntime().getEnvironment().get("RuntimeManager"));
+            executorService = (ExecutorService) getKnowledgeRuntime().getEnvironment().get("ExecutorService");
+            if (runtimeManager == null || executorService == null) {
+                logger.warn("Signal should be sent asynchronously but there is no executor service available, continuing sync...");
+                async = false;
+            }
+        }
+        Set<Long> signaled = new HashSet<Long>();
+        if (!async) {
+            super.signalEvent( actualSignalType,
+                               event );
+            // process instances already loaded received the signal via their registered listeners, the ones 
+            // started by the signal (start events) must not get it again either, so take them after the broadcast
+            for (ProcessInstance processInstance : getKnowledgeRuntime().getProcessInstances()) {
+                signaled.add(processInstance.getId());
+            }
+        }
+        long lastId = -1;
+        int processed = 0;
+        while (true) {
+            List<Long> chunk = context.getProcessInstancesWaitingForEvent(actualSignalType, lastId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1);
+            if (async) {
+                CommandContext ctx = new CommandContext();
+                ctx.setData("DeploymentId", runtimeManager.getIdentifier());
+                ctx.setData("ProcessInstanceIds", new ArrayList<Long>(chunk));
+                ctx.setData("Signal", actualSignalType);
+                ctx.setData("Event", event);
+                
+                executorService.scheduleRequest(AsyncSignalEventCommand.class.getName(), ctx);
+            } else {
+                List<Long> loaded = new ArrayList<Long>(chunk.size());
+                for ( Long id : chunk ) {
+                    if (!signaled.add(id)) {
+                        continue;
+                    }
+                    loaded.add(id);
+                    try {
+                        super.signalEvent( id, actualSignalType, event );
+                    } catch (IllegalStateException e) {
+                        // IllegalStateException can be thrown when using RuntimeManager
+                        // and invalid ksession was used for given context
+                    } catch (RuntimeException e) {
+                        logger.warn("Exception when loading process instance for signal '{}', instance with id {} will not be signaled",
+                                e.getMessage(), id);
+                    }
+                }
+                evict(loaded);
+            }
+            processed += chunk.size();
+            logger.debug("Signal '{}' {} for {} waiting process instances so far", actualSignalType, async ? "scheduled" : "delivered", processed);
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+    }
+
+    protected void evict(List<Long> processInstanceIds) {
+        ProcessInstanceManager processInstanceManager = ((InternalProcessRuntime) getKnowledgeRuntime().getProcessRuntime()).getProcessInstanceManager();
+        if (processInstanceManager instanceof JPAProcessInstanceManager) {
+            ((JPAProcessInstanceManager) processInstanceManager).evictProcessInstances(processInstanceIds);
+        }
+    }
+
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jbpm.marshalling.impl.LazyVariable;
+import org.jbpm.process.core.context.variable.VariableScope;
+import org.jbpm.process.instance.ContextInstance;
+import org.jbpm.process.instance.ContextInstanceContainer;
+import org.jbpm.process.instance.context.variable.VariableScopeInstance;
+import org.jbpm.workflow.instance.NodeInstance;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
+import org.kie.api.runtime.process.ProcessInstance;
+
+/**
+ * Bounded (LRU) cache of process instances that survives transactions - instances are put into the cache
+ * when the transaction that used them commits (already disconnected from the session) together with 
+ * version (OPTLOCK) of their <code>ProcessInstanceInfo</code>. When the process instance is loaded again 
+ * and the version did not change, cached instance is used instead of unmarshalling it. Any change made
+ * by another node (or another runtime manager) changes the version and thus cached instance is discarded.
+ * <br/>
+ * Cached instance is handed over to single caller only (it is removed from the cache when taken) so the 
+ * same instance is never used by two sessions at the same time. Instances used by a transaction that
+ * rolled back are never cached.
+ * <br/>
+ * Callers of the committed transaction may still hold references to variable values of the cached instance,
+ * so only instances whose variables are immutable (strings, numbers, booleans, enums), dates (that are copied)
+ * or not yet unmarshalled are cached - any other value could be changed without being persisted.
+ * <br/>
+ * There is one cache per runtime manager, enabled by <code>org.jbpm.persistence.pi.cache.size</code> system 
+ * property that defines max number of cached instances (defaults to 0 - disabled).
+ */
+public class ProcessInstanceCache {
+
+    private static volatile int cacheSize = Integer.parseInt(System.getProperty("org.jbpm.persistence.pi.cache.size", "0"));
+
+    private static final ConcurrentMap<String, ProcessInstanceCache> caches = new ConcurrentHashMap<String, ProcessInstanceCache>();
+
+    private final int maxSize;
+    private final Map<Long, CachedProcessInstance> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ProcessInstanceCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Long, CachedProcessInstance>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 4567807618932164817L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedProcessInstance> eldest) {
+                if (size() > ProcessInstanceCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cache of given runtime manager, creating it on first use, or null if caching is disabled
+     */
+    public static ProcessInstanceCache get(String identifier) {
+        if (cacheSize <= 0 || identifier == null) {
+            return null;
+        }
+        ProcessInstanceCache cache = caches.get(identifier);
+        if (cache == null) {
+            cache = new ProcessInstanceCache(cacheSize);
+            ProcessInstanceCache existing = caches.putIfAbsent(identifier, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Sets max number of cached instances of caches created from now on, 0 disables caching
+     */
+    public static void setCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + size);
+        }
+        cacheSize = size;
+    }
+
+    /**
+     * Removes cache of given runtime manager, to be called when runtime manager is closed
+     */
+    public static void remove(String identifier) {
+        if (identifier != null) {
+            caches.remove(identifier);
+        }
+    }
+
+    /**
+     * Takes process instance out of the cache if it is cached with given version
+     * @param processInstanceId id of the process instance
+     * @param version current version of the process instance info
+     * @return cached process instance or null if it is not cached or its version does not match
+     */
+    public ProcessInstance take(long processInstanceId, int version) {
+        CachedProcessInstance cached = null;
+        synchronized (entries) {
+            cached = entries.remove(processInstanceId);
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (cached.version != version) {
+            stale.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.processInstance;
+    }
+
+    /**
+     * Caches given (disconnected) process instance unless it holds variable values that might be changed 
+     * by the caller without being persisted
+     * @return true if the instance was cached
+     */
+    public boolean put(long processInstanceId, int version, ProcessInstance processInstance) {
+        if (!isolateVariables(processInstance)) {
+            rejected.incrementAndGet();
+            invalidate(processInstanceId);
+            return false;
+        }
+        synchronized (entries) {
+            entries.put(processInstanceId, new CachedProcessInstance(version, processInstance));
+        }
+        return true;
+    }
+
+    public void invalidate(long processInstanceId) {
+        synchronized (entries) {
+            entries.remove(processInstanceId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of lookups that found cached instance with different version (changed elsewhere)
+     */
+    public long getStale() {
+        return stale.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Number of instances that were not cached because of their (possibly mutable) variable values
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessInstanceCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses 
+                + ", stale=" + stale + ", evictions=" + evictions + ", rejected=" + rejected + "]";
+    }
+
+    /*
+     * Replaces dates with copies and checks that all other variable values (of the process instance and 
+     * all its nested scopes) are immutable, so the cached instance does not share anything with the caller
+     */
+    protected boolean isolateVariables(ProcessInstance processInstance) {
+        if (!(processInstance instanceof WorkflowProcessInstanceImpl)) {
+            return false;
+        }
+        WorkflowProcessInstanceImpl workflowProcessInstance = (WorkflowProcessInstanceImpl) processInstance;
+        List<VariableScopeInstance> scopes = new ArrayList<VariableScopeInstance>();
+        collectVariableScopes(workflowProcessInstance, scopes);
+        for (NodeInstance nodeInstance : workflowProcessInstance.getNodeInstances(true)) {
+            if (nodeInstance instanceof ContextInstanceContainer) {
+                collectVariableScopes((ContextInstanceContainer) nodeInstance, scopes);
+            }
+        }
+        Map<VariableScopeInstance, Map<String, Object>> copies = new HashMap<VariableScopeInstance, Map<String, Object>>();
+        for (VariableScopeInstance scope : scopes) {
+            for (Map.Entry<String, Object> entry : scope.internalGetVariables().entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof LazyVariable) {
+                    if (!((LazyVariable) value).isResolved()) {
+                        // still raw bytes, nobody could get hold of its value
+                        continue;
+                    }
+                    value = ((LazyVariable) value).getValue();
+                }
+                if (isImmutable(value)) {
+                    continue;
+                }
+                if (value instanceof Date && !entry.getKey().startsWith(VariableScope.CASE_FILE_PREFIX)) {
+                    Map<String, Object> scopeCopies = copies.get(scope);
+                    if (scopeCopies == null) {
+                        scopeCopies = new HashMap<String, Object>();
+                        copies.put(scope, scopeCopies);
+                    }
+                    scopeCopies.put(entry.getKey(), ((Date) value).clone());
+                    continue;
+                }
+                return false;
+            }
+        }
+        for (Map.Entry<VariableScopeInstance, Map<String, Object>> scopeCopies : copies.entrySet()) {
+            for (Map.Entry<String, Object> copy : scopeCopies.getValue().entrySet()) {
+                scopeCopies.getKey().internalSetVariable(copy.getKey(), copy.getValue());
+            }
+        }
+        return true;
+    }
+
+    private void collectVariableScopes(ContextInstanceContainer container, List<VariableScopeInstance> scopes) {
+        List<ContextInstance> contextInstances = container.getContextInstances(VariableScope.VARIABLE_SCOPE);
+        if (contextInstances != null) {
+            for (ContextInstance contextInstance : contextInstances) {
+                scopes.add((VariableScopeInstance) contextInstance);
+            }
+        }
+    }
+
+    private boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Boolean || value instanceof Character 
+                || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof Double || value instanceof Float || value instanceof BigDecimal 
+                || value instanceof BigInteger || value instanceof Enum;
+    }
+
+    private static class CachedProcessInstance {
+
+        private final int version;
+        private final ProcessInstance processInstance;
+
+        CachedProcessInstance(int version, ProcessInstance processInstance) {
+            this.version = version;
+            this.processInstance = processInstance;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Optional compression of marshalled process instances stored in <code>ProcessInstanceInfo</code>.
+ * <br/>
+ * Compressed content starts with a format header:
+ * <ul>
+ *  <li>2 bytes magic ('J', 'Z') - marshalled content always starts with java serialization stream header (0xACED) 
+ *  so rows stored without compression are recognized and read as they are</li>
+ *  <li>1 byte format version</li>
+ *  <li>4 bytes id (Adler32 checksum) of the dictionary used to compress the content</li>
+ *  <li>4 bytes length of uncompressed content</li>
+ * </ul>
+ * followed by deflated content. Deflate at fast level is used as it is available in every JVM.
+ * <br/>
+ * Dictionary is selected per process definition - when <code>META-INF/jbpm-dictionaries/[process id].dict</code>
+ * is found on class path (usually trained from sample instances with {@link #trainDictionary(List, int)}
+ * and shipped with the project) it is used, otherwise built in dictionary of common marshalling content is used.
+ * Dictionary must stay available as long as there are instances compressed with it.
+ * <br/>
+ * Compression is disabled by default and can be enabled with <code>org.jbpm.persistence.pi.compress</code> system property, 
+ * instances smaller than <code>org.jbpm.persistence.pi.compress.threshold</code> (1024 bytes by default) are stored as is.
+ */
+public class ProcessInstanceCompression {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessInstanceCompression.class);
+
+    private static final byte MAGIC_1 = 'J';
+    private static final byte MAGIC_2 = 'Z';
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 11;
+
+    private static final String DICTIONARY_LOCATION = "META-INF/jbpm-dictionaries/";
+    private static final byte[] NO_DICTIONARY = new byte[0];
+
+    private static final byte[] DEFAULT_DICTIONARY = buildDefaultDictionary();
+    private static final int DEFAULT_DICTIONARY_ID = dictionaryId(DEFAULT_DICTIONARY);
+
+    private static boolean enabled = Boolean.parseBoolean(System.getProperty("org.jbpm.persistence.pi.compress", "false"));
+    private static final int THRESHOLD = Integer.parseInt(System.getProperty("org.jbpm.persistence.pi.compress.threshold", "1024"));
+    private static final int LEVEL = Integer.parseInt(System.getProperty("org.jbpm.persistence.pi.compress.level", String.valueOf(Deflater.BEST_SPEED)));
+
+    private static final ConcurrentMap<String, byte[]> processDictionaries = new ConcurrentHashMap<String, byte[]>();
+    private static final ConcurrentMap<Integer, byte[]> dictionariesById = new ConcurrentHashMap<Integer, byte[]>();
+
+    static {
+        dictionariesById.put(DEFAULT_DICTIONARY_ID, DEFAULT_DICTIONARY);
+    }
+
+    // mainly for testability as the setting is global
+    public static void setEnabled(boolean turnOn) {
+        enabled = turnOn;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers dictionary to be used for given process definition instead of the one found on class path
+     */
+    public static void registerDictionary(String processId, byte[] dictionary) {
+        processDictionaries.put(processId, dictionary);
+        dictionariesById.put(dictionaryId(dictionary), dictionary);
+    }
+
+    public static boolean isCompressed(byte[] content) {
+        return content != null && content.length >= HEADER_LENGTH && content[0] == MAGIC_1 && content[1] == MAGIC_2;
+    }
+
+    /**
+     * Compresses marshalled process instance if compression is enabled and the content is big enough,
+     * otherwise returns given content
+     */
+    public static byte[] compress(String processId, byte[] content) {
+        if (!enabled || content == null || content.length < THRESHOLD) {
+            return content;
+        }
+        byte[] dictionary = getDictionary(processId);
+        Deflater deflater = new Deflater(LEVEL);
+        try {
+            deflater.setDictionary(dictionary);
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + HEADER_LENGTH);
+            out.write(MAGIC_1);
+            out.write(MAGIC_2);
+            out.write(FORMAT_VERSION);
+            writeInt(out, dictionaryId(dictionary));
+            writeInt(out, content.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns uncompressed content of the process instance, content stored without compression is returned as is
+     */
+    public static byte[] decompress(String processId, byte[] content) {
+        if (!isCompressed(content)) {
+            return content;
+        }
+        if (content[2] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported format version " + content[2] + " of process instance of " + processId);
+        }
+        int dictionaryId = readInt(content, 3);
+        int length = readInt(content, 7);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(content, HEADER_LENGTH, content.length - HEADER_LENGTH);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = inflater.inflate(result, offset, length - offset);
+                if (count == 0) {
+                    if (!inflater.needsDictionary()) {
+                        throw new IllegalArgumentException("Truncated content of process instance of " + processId);
+                    }
+                    inflater.setDictionary(findDictionary(processId, dictionaryId));
+                }
+                offset += count;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Unable to decompress process instance of " + processId + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Builds dictionary from sample marshalled process instances (uncompressed) of single process definition. 
+     * It consists of fixed size segments that appear in most samples, the most frequent ones at the end 
+     * as deflate encodes closer matches with fewer bits.
+     * @param samples uncompressed marshalled process instances
+     * @param size max size of the dictionary, deflate uses up to 32KB
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int size) {
+        final int segment = 16;
+        final Map<Segment, int[]> counts = new HashMap<Segment, int[]>();
+        for (byte[] sample : samples) {
+            Map<Segment, Boolean> seen = new HashMap<Segment, Boolean>();
+            for (int i = 0; i + segment <= sample.length; i += segment) {
+                Segment key = new Segment(sample, i, segment);
+                if (seen.put(key, Boolean.TRUE) == null) {
+                    int[] count = counts.get(key);
+                    if (count == null) {
+                        counts.put(key, new int[] {1});
+                    } else {
+                        count[0]++;
+                    }
+                }
+            }
+        }
+        List<Segment> segments = new ArrayList<Segment>();
+        for (Map.Entry<Segment, int[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] > 1 || samples.size() == 1) {
+                segments.add(entry.getKey());
+            }
+        }
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment s1, Segment s2) {
+                return counts.get(s2)[0] - counts.get(s1)[0];
+            }
+        });
+        int total = Math.min(size, segments.size() * segment);
+        byte[] dictionary = new byte[total];
+        int position = total;
+        for (Segment s : segments) {
+            if (position < segment) {
+                break;
+            }
+            position -= segment;
+            System.arraycopy(s.data, s.offset, dictionary, position, segment);
+        }
+        if (position > 0) {
+            byte[] trimmed = new byte[total - position];
+            System.arraycopy(dictionary, position, trimmed, 0, trimmed.length);
+            dictionary = trimmed;
+        }
+        return dictionary;
+    }
+
+    protected static byte[] getDictionary(String processId) {
+        if (processId == null) {
+            return DEFAULT_DICTIONARY;
+        }
+        byte[] dictionary = processDictionaries.get(processId);
+        if (dictionary == null) {
+            dictionary = loadDictionary(processId);
+            byte[] existing = processDictionaries.putIfAbsent(processId, dictionary);
+            if (existing != null) {
+                dictionary = existing;
+            } else if (dictionary != NO_DICTIONARY) {
+                dictionariesById.put(dictionaryId(dictionary), dictionary);
+            }
+        }
+        if (dictionary == NO_DICTIONARY) {
+            return DEFAULT_DICTIONARY;
+        }
+        return dictionary;
+    }
+
+    protected static byte[] findDictionary(String processId, int dictionaryId) {
+        byte[] dictionary = dictionariesById.get(dictionaryId);
+        if (dictionary == null) {
+            // make sure dictionary of the process is loaded
+            getDictionary(processId);
+            dictionary = dictionariesById.get(dictionaryId);
+        }
+        if (dictionary == null) {
+            throw new IllegalStateException("Dictionary " + dictionaryId + " required to decompress process instance of " 
+                    + processId + " is not available");
+        }
+        return dictionary;
+    }
+
+    private static byte[] loadDictionary(String processId) {
+        String location = DICTIONARY_LOCATION + processId + ".dict";
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ProcessInstanceCompression.class.getClassLoader();
+        }
+        InputStream in = classLoader.getResourceAsStream(location);
+        if (in == null) {
+            return NO_DICTIONARY;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            logger.debug("Loaded compression dictionary for process {} from {}", processId, location);
+            return out.toByteArray();
+        } catch (IOException e) {
+            logger.warn("Unable to load compression dictionary for process {} from {}", processId, location, e);
+            return NO_DICTIONARY;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static byte[] buildDefaultDictionary() {
+        // content that appears in most of the marshalled process instances
+        String[] common = new String[] {
+            "java.util.Date", "java.lang.Boolean", "java.lang.Long", "java.lang.Integer", "java.util.ArrayList", "java.util.HashMap",
+            "java.lang.String", "org.jbpm.document.marshalling.DocumentMarshallingStrategy",
+            "org.jbpm.marshalling.impl.ProcessInstanceResolverStrategy", "org.drools.persistence.jpa.marshaller.JPAPlaceholderResolverStrategy",
+            "org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy", "ActorId", "TaskName", "NodeName", "Skippable",
+            "Priority", "Comment", "GroupId", "processInstanceId", "RuleFlow"
+        };
+        StringBuilder dictionary = new StringBuilder();
+        for (String s : common) {
+            dictionary.append(s);
+        }
+        return dictionary.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static int dictionaryId(byte[] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary);
+        return (int) adler.getValue();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write((value >>> 24) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    private static int readInt(byte[] content, int offset) {
+        return ((content[offset] & 0xFF) << 24) | ((content[offset + 1] & 0xFF) << 16) 
+                | ((content[offset + 2] & 0xFF) << 8) | (content[offset + 3] & 0xFF);
+    }
+
+    private static class Segment {
+
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        Segment(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + data[i];
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Segment)) {
+                return false;
+            }
+            Segment other = (Segment) obj;
+            if (other.hash != hash || other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (data[offset + i] != other.data[other.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
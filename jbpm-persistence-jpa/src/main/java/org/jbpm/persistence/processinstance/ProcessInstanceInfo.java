@@ -60,6 +60,13 @@ import org.kie.api.runtime.process.ProcessInstance;
 @SequenceGenerator(name="processInstanceInfoIdSeq", sequenceName="PROCESS_INSTANCE_INFO_ID_SEQ")
 public class ProcessInstanceInfo implements Transformable {
 
+    // when enabled process instances that were not changed since they were loaded are not marshalled again
+    private static boolean dirtyCheck = Boolean.parseBoolean(System.getProperty("org.jbpm.persistence.pi.dirty.check", "false"));
+    // mainly for testability as the setting is global
+    public static void setDirtyCheck(boolean turnOn) {
+        dirtyCheck = turnOn;
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO, generator="processInstanceInfoIdSeq")
     @Column(name = "InstanceId")
@@ -90,6 +97,13 @@ public class ProcessInstanceInfo implements Transformable {
     @Transient
     Environment                               env;
 
+    // last read date as loaded, restored when the instance is not changed so the row is not updated at all
+    @Transient
+    private Date                              loadedLastReadDate;
+    
+    @Transient
+    private boolean                           lastReadDateUpdated;
+
     protected ProcessInstanceInfo() {
     }
 
@@ -149,6 +163,10 @@ public class ProcessInstanceInfo implements Transformable {
     }
 
     public void updateLastReadDate() {
+        if (!lastReadDateUpdated) {
+            loadedLastReadDate = lastReadDate;
+            lastReadDateUpdated = true;
+        }
     	Date updateTo = new Date();
     	if (lastReadDate == null || lastReadDate.compareTo(updateTo) < 0) {
     		lastReadDate = updateTo;
@@ -172,7 +190,7 @@ public class ProcessInstanceInfo implements Transformable {
         this.env = env;
         if ( processInstance == null ) {        	
             try {
-                ByteArrayInputStream bais = new ByteArrayInputStream( processInstanceByteArray );
+                ByteArrayInputStream bais = new ByteArrayInputStream( ProcessInstanceCompression.decompress( processId, processInstanceByteArray ) );
                 MarshallerReaderContext context = new MarshallerReaderContext( bais,
                                                                                (InternalKnowledgeBase) kruntime.getKieBase(),
                                                                                null,
@@ -184,6 +202,7 @@ public class ProcessInstanceInfo implements Transformable {
             	context.wm = ((StatefulKnowledgeSessionImpl) kruntime).getInternalWorkingMemory();
                 processInstance = marshaller.readProcessInstance(context);
                 ((WorkflowProcessInstanceImpl) processInstance).setPersisted(false);
+                ((WorkflowProcessInstanceImpl) processInstance).resetDirty();
                 if (readOnly) {
                     ((WorkflowProcessInstanceImpl) processInstance).disconnect();
                 }
@@ -196,7 +215,21 @@ public class ProcessInstanceInfo implements Transformable {
         }
         return processInstance;
     }
-   
+
+    /*
+     * Uses process instance taken from ProcessInstanceCache instead of unmarshalling it
+     * from the byte array, to be called only when the version matches
+     */
+    void setCachedProcessInstance(ProcessInstance processInstance, Environment env) {
+        if ( this.processInstance != null ) {
+            return;
+        }
+        this.env = env;
+        this.processInstance = processInstance;
+        ((WorkflowProcessInstanceImpl) processInstance).setPersisted(false);
+        ((WorkflowProcessInstanceImpl) processInstance).resetDirty();
+    }
+
     private ProcessInstanceMarshaller getMarshallerFromContext(MarshallerReaderContext context) throws IOException {
         ObjectInputStream stream = context.stream;
         String processInstanceType = stream.readUTF();
@@ -215,6 +248,13 @@ public class ProcessInstanceInfo implements Transformable {
 //    	if (processInstance == null) {
 //    		return;
 //    	}
+        if (isUnchanged()) {
+            if (lastReadDateUpdated) {
+                lastReadDate = loadedLastReadDate;
+            }
+            ((WorkflowProcessInstanceImpl) processInstance).setPersisted(true);
+            return;
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         boolean variablesChanged = false;
         try {
@@ -246,7 +286,7 @@ public class ProcessInstanceInfo implements Transformable {
             throw new IllegalArgumentException( "IOException while storing process instance "
         		+ processInstance.getId() + ": " + e.getMessage(), e );
         }
-        byte[] newByteArray = baos.toByteArray();
+        byte[] newByteArray = ProcessInstanceCompression.compress( processInstance.getProcessId(), baos.toByteArray() );
         if ( variablesChanged || !Arrays.equals( newByteArray,
                                                  processInstanceByteArray ) ) {
             this.state = processInstance.getState();
@@ -260,7 +300,17 @@ public class ProcessInstanceInfo implements Transformable {
         if (!processInstance.getProcessId().equals(this.processId)) {
     		this.processId = processInstance.getProcessId();
     	}
+        lastReadDateUpdated = false;
         ((WorkflowProcessInstanceImpl) processInstance).setPersisted(true);
+        ((WorkflowProcessInstanceImpl) processInstance).resetDirty();
+    }
+
+    protected boolean isUnchanged() {
+        if (!dirtyCheck || processInstanceByteArray == null || !(processInstance instanceof WorkflowProcessInstanceImpl)) {
+            return false;
+        }
+        return !((WorkflowProcessInstanceImpl) processInstance).isDirty()
+                && processInstance.getProcessId().equals(this.processId);
     }
 
 
@@ -0,0 +1,640 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.timer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+
+import org.drools.core.time.InternalSchedulerService;
+import org.drools.core.time.Job;
+import org.drools.core.time.JobContext;
+import org.drools.core.time.JobHandle;
+import org.drools.core.time.SelfRemovalJobContext;
+import org.drools.core.time.TimerService;
+import org.drools.core.time.Trigger;
+import org.drools.core.time.impl.TimerJobInstance;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerFactory;
+import org.jbpm.process.core.timer.GlobalSchedulerService;
+import org.jbpm.process.core.timer.NamedJobContext;
+import org.jbpm.process.core.timer.SchedulerServiceInterceptor;
+import org.jbpm.process.core.timer.impl.DelegateSchedulerServiceInterceptor;
+import org.jbpm.process.core.timer.impl.GlobalTimerService;
+import org.jbpm.process.core.timer.impl.GlobalTimerService.GlobalJobHandle;
+import org.jbpm.process.instance.timer.TimerManager.ProcessJobContext;
+import org.jbpm.process.instance.timer.TimerManager.StartProcessJobContext;
+import org.kie.api.runtime.EnvironmentName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data base backed <code>GlobalSchedulerService</code> that stores timers as <code>ScheduledTimerInfo</code> entities
+ * within the same transaction as the process engine itself, without need of Quartz.
+ * <br/>
+ * Every scheduler service (one per runtime manager) polls for due timers of its own timer service and claims
+ * them in batches - claimed timers get owner (node id) and lease expiration assigned in single transaction, 
+ * rows are selected with pessimistic lock that skips already locked rows where data base supports it. 
+ * Timers with expired lease (e.g. owner node crashed) are claimed again by any node.
+ * Claimed timers are grouped by session and each group is fired sequentially by one worker thread so the same 
+ * session is not contended by multiple workers. Lease of timers not yet fired is extended while their group 
+ * is executing so other nodes do not claim them again.
+ * <br/>
+ * Following system properties can be used to tune it:
+ * <ul>
+ *  <li>org.jbpm.timer.jpa.node - unique id of this node (defaults to random UUID)</li>
+ *  <li>org.jbpm.timer.jpa.poll.interval - how often (in milliseconds) due timers are looked up (defaults to 1000)</li>
+ *  <li>org.jbpm.timer.jpa.batch.size - max number of timers claimed at once (defaults to 50)</li>
+ *  <li>org.jbpm.timer.jpa.lease - how long (in milliseconds) claimed timers are owned by the node (defaults to 60000)</li>
+ * </ul>
+ * Timers that cannot be serialized (e.g. rule timers) are kept in memory only, they are fired by the worker threads as well.
+ * <br/>
+ * Requires JTA transactions as timers are stored within the transaction of the engine.
+ */
+public class JPASchedulerService implements GlobalSchedulerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JPASchedulerService.class);
+
+    private static final String NODE_ID = System.getProperty("org.jbpm.timer.jpa.node", UUID.randomUUID().toString());
+    private static final int MAX_FAILURES = 5;
+    // hibernate's LockOptions.SKIP_LOCKED
+    private static final int SKIP_LOCKED = -2;
+
+    private AtomicLong idCounter = new AtomicLong();
+    private TimerService globalTimerService;
+    private SchedulerServiceInterceptor interceptor = new DelegateSchedulerServiceInterceptor(this);
+
+    private EntityManagerFactory emf;
+    private final int poolSize;
+    private final long pollInterval;
+    private final int batchSize;
+    private final long lease;
+
+    private ScheduledExecutorService poller;
+    private ExecutorService workers;
+    private volatile boolean active = false;
+
+    private ConcurrentHashMap<String, ScheduledFuture<?>> inMemoryTimers = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+
+    public JPASchedulerService(int poolSize) {
+        this(null, poolSize);
+    }
+
+    public JPASchedulerService(EntityManagerFactory emf, int poolSize) {
+        this(emf, poolSize, 
+                Long.parseLong(System.getProperty("org.jbpm.timer.jpa.poll.interval", "1000")),
+                Integer.parseInt(System.getProperty("org.jbpm.timer.jpa.batch.size", "50")),
+                Long.parseLong(System.getProperty("org.jbpm.timer.jpa.lease", "60000")));
+    }
+
+    public JPASchedulerService(EntityManagerFactory emf, int poolSize, long pollInterval, int batchSize, long lease) {
+        this.emf = emf;
+        this.poolSize = poolSize;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.lease = lease;
+    }
+
+    @Override
+    public void initScheduler(TimerService timerService) {
+        this.globalTimerService = timerService;
+        if (emf == null) {
+            emf = (EntityManagerFactory) ((GlobalTimerService) timerService).getRuntimeManager()
+                    .getEnvironment().getEnvironment().get(EnvironmentName.ENTITY_MANAGER_FACTORY);
+        }
+        // timers are stored in data base so there is no need to initialize them on runtime manager start
+        System.setProperty("org.jbpm.rm.init.timer", "false");
+
+        this.workers = Executors.newFixedThreadPool(poolSize);
+        this.poller = Executors.newSingleThreadScheduledExecutor();
+        this.active = true;
+        this.poller.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    pollDueTimers();
+                } catch (Throwable e) {
+                    logger.warn("Unable to poll due timers due to {}", e.getMessage(), e);
+                }
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        active = false;
+        if (poller == null) {
+            return;
+        }
+        poller.shutdownNow();
+        try {
+            this.workers.shutdown();
+            if ( !this.workers.awaitTermination( 10, TimeUnit.SECONDS ) ) {
+                this.workers.shutdownNow();
+            }
+        } catch ( InterruptedException e ) {
+            this.workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public JobHandle scheduleJob(Job job, JobContext ctx, Trigger trigger) {
+        Long id = idCounter.getAndIncrement();
+        String jobname = null;
+
+        if (ctx instanceof ProcessJobContext) {
+            ProcessJobContext processCtx = (ProcessJobContext) ctx;
+            jobname = processCtx.getSessionId() + "-" + processCtx.getProcessInstanceId() + "-" + processCtx.getTimer().getId();
+            if (processCtx instanceof StartProcessJobContext) {
+                jobname = "StartProcess-"+((StartProcessJobContext) processCtx).getProcessId()+ "-" + processCtx.getTimer().getId();
+            }
+        } else if (ctx instanceof NamedJobContext) {
+            jobname = ((NamedJobContext) ctx).getJobName();
+        } else {
+            jobname = "Timer-"+ctx.getClass().getSimpleName()+ "-" + id;
+        }
+        logger.debug("Scheduling timer with name " + jobname);
+        // check if this timer is already stored if so there is no need to schedule it again
+        final String name = jobname;
+        ScheduledTimerInfo existing = execute(new Command<ScheduledTimerInfo>() {
+            @Override
+            public ScheduledTimerInfo execute(EntityManager em) {
+                return findByJobName(em, name);
+            }
+        });
+        if (existing != null) {
+            TimerJobInstance timerJobInstance = deserialize(existing.getTimerJobInstance());
+            if (timerJobInstance != null) {
+                return timerJobInstance.getJobHandle();
+            }
+        }
+
+        GlobalJPAJobHandle jobHandle = new GlobalJPAJobHandle(id, jobname);
+        TimerJobInstance jobInstance = globalTimerService.
+                getTimerJobFactoryManager().createTimerJobInstance( job,
+                                                                    ctx,
+                                                                    trigger,
+                                                                    jobHandle,
+                                                                    (InternalSchedulerService) globalTimerService );
+        jobHandle.setTimerJobInstance( (TimerJobInstance) jobInstance );
+
+        interceptor.internalSchedule(jobInstance);
+        return jobHandle;
+    }
+
+    @Override
+    public boolean removeJob(JobHandle jobHandle) {
+        final GlobalJPAJobHandle jpaJobHandle = (GlobalJPAJobHandle) jobHandle;
+        jobHandle.setCancel(true);
+
+        ScheduledFuture<?> inMemory = inMemoryTimers.remove(jpaJobHandle.getJobName());
+        if (inMemory != null) {
+            return inMemory.cancel(false);
+        }
+        int removed = execute(new Command<Integer>() {
+            @Override
+            public Integer execute(EntityManager em) {
+                return em.createNamedQuery("DeleteScheduledTimerByJobName")
+                        .setParameter("jobName", jpaJobHandle.getJobName())
+                        .executeUpdate();
+            }
+        });
+        return removed > 0;
+    }
+
+    @Override
+    public void internalSchedule(final TimerJobInstance timerJobInstance) {
+        if (!active) {
+            return;
+        }
+        final GlobalJPAJobHandle jobHandle = (GlobalJPAJobHandle) timerJobInstance.getJobHandle();
+        final Date fireTime = timerJobInstance.getTrigger().hasNextFireTime();
+        globalTimerService.getTimerJobFactoryManager().addTimerJobInstance( timerJobInstance );
+
+        final byte[] content;
+        try {
+            content = serialize(timerJobInstance);
+        } catch (NotSerializableException e) {
+            // in case job cannot be persisted, like rule timer then make it in memory
+            scheduleInMemory(jobHandle.getJobName(), timerJobInstance, fireTime);
+            return;
+        } catch (IOException e) {
+            globalTimerService.getTimerJobFactoryManager().removeTimerJobInstance(timerJobInstance);
+            throw new RuntimeException("Exception while scheduling job", e);
+        }
+
+        execute(new Command<Void>() {
+            @Override
+            public Void execute(EntityManager em) {
+                ScheduledTimerInfo info = findByJobName(em, jobHandle.getJobName());
+                if (info == null) {
+                    info = new ScheduledTimerInfo();
+                    info.setJobName(jobHandle.getJobName());
+                    em.persist(info);
+                }
+                info.setTimerServiceId(((GlobalTimerService) globalTimerService).getTimerServiceId());
+                info.setSessionId(jobHandle.getSessionId());
+                JobContext ctx = timerJobInstance.getJobContext();
+                if (ctx instanceof SelfRemovalJobContext) {
+                    ctx = ((SelfRemovalJobContext) ctx).getJobContext();
+                }
+                if (ctx instanceof ProcessJobContext) {
+                    info.setProcessInstanceId(((ProcessJobContext) ctx).getProcessInstanceId());
+                }
+                info.setFireTime(fireTime);
+                info.setOwner(null);
+                info.setLeaseExpiration(null);
+                info.setTimerJobInstance(content);
+                return null;
+            }
+        });
+    }
+
+    /*
+     * Claims batch of due timers of this timer service and hands them over to workers grouped by session
+     */
+    protected void pollDueTimers() {
+        if (!active) {
+            return;
+        }
+        final String timerServiceId = ((GlobalTimerService) globalTimerService).getTimerServiceId();
+        List<ScheduledTimerInfo> claimed = execute(new Command<List<ScheduledTimerInfo>>() {
+            @Override
+            public List<ScheduledTimerInfo> execute(EntityManager em) {
+                Date now = new Date();
+                List<ScheduledTimerInfo> due = em.createNamedQuery("FindDueScheduledTimers", ScheduledTimerInfo.class)
+                        .setParameter("timerServiceId", timerServiceId)
+                        .setParameter("now", now)
+                        .setMaxResults(batchSize)
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                        .setHint("javax.persistence.lock.timeout", SKIP_LOCKED)
+                        .getResultList();
+                Date leaseExpiration = new Date(now.getTime() + lease);
+                for (ScheduledTimerInfo info : due) {
+                    info.setOwner(NODE_ID);
+                    info.setLeaseExpiration(leaseExpiration);
+                }
+                return due;
+            }
+        });
+        if (claimed.isEmpty()) {
+            return;
+        }
+        logger.debug("Claimed {} due timers of timer service {}", claimed.size(), timerServiceId);
+        for (List<ScheduledTimerInfo> group : groupBySession(claimed)) {
+            try {
+                workers.execute(new FireTimers(group));
+            } catch (RejectedExecutionException e) {
+                // lease will expire and timers will be claimed again
+                logger.debug("Scheduler service already shut down, {} timers not fired", group.size());
+            }
+        }
+    }
+
+    protected List<List<ScheduledTimerInfo>> groupBySession(List<ScheduledTimerInfo> timers) {
+        Map<Long, List<ScheduledTimerInfo>> groups = new LinkedHashMap<Long, List<ScheduledTimerInfo>>();
+        for (ScheduledTimerInfo info : timers) {
+            Long sessionId = info.getSessionId() == null ? Long.valueOf(-1) : info.getSessionId();
+            List<ScheduledTimerInfo> group = groups.get(sessionId);
+            if (group == null) {
+                group = new ArrayList<ScheduledTimerInfo>();
+                groups.put(sessionId, group);
+            }
+            group.add(info);
+        }
+        List<List<ScheduledTimerInfo>> result = new ArrayList<List<ScheduledTimerInfo>>(groups.values());
+        // groups with most urgent timers go first
+        Collections.sort(result, new Comparator<List<ScheduledTimerInfo>>() {
+            @Override
+            public int compare(List<ScheduledTimerInfo> o1, List<ScheduledTimerInfo> o2) {
+                return o1.get(0).getFireTime().compareTo(o2.get(0).getFireTime());
+            }
+        });
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void fire(final ScheduledTimerInfo info) {
+        TimerJobInstance timerJobInstance = deserialize(info.getTimerJobInstance());
+        try {
+            ((Callable<Void>) timerJobInstance).call();
+            // timer that was rescheduled (repeatable timers) is released so it is not deleted here
+            execute(new Command<Integer>() {
+                @Override
+                public Integer execute(EntityManager em) {
+                    return em.createNamedQuery("DeleteClaimedScheduledTimer")
+                            .setParameter("id", info.getId())
+                            .setParameter("owner", NODE_ID)
+                            .executeUpdate();
+                }
+            });
+        } catch (Exception e) {
+            final int failedCount = info.getFailedCount() + 1;
+            if (failedCount > MAX_FAILURES) {
+                logger.error("Timer execution failed {} times in a row, unscheduling ({})", MAX_FAILURES, info.getJobName());
+                execute(new Command<Integer>() {
+                    @Override
+                    public Integer execute(EntityManager em) {
+                        return em.createNamedQuery("DeleteClaimedScheduledTimer")
+                                .setParameter("id", info.getId())
+                                .setParameter("owner", NODE_ID)
+                                .executeUpdate();
+                    }
+                });
+            } else {
+                logger.warn("Timer execution failed ({}), retrying in {} seconds", info.getJobName(), failedCount, e);
+                execute(new Command<Integer>() {
+                    @Override
+                    public Integer execute(EntityManager em) {
+                        return em.createNamedQuery("ReleaseFailedScheduledTimer")
+                                .setParameter("fireTime", new Date(System.currentTimeMillis() + failedCount * 1000))
+                                .setParameter("id", info.getId())
+                                .setParameter("owner", NODE_ID)
+                                .executeUpdate();
+                    }
+                });
+            }
+        }
+    }
+
+    protected void scheduleInMemory(final String jobName, final TimerJobInstance timerJobInstance, Date fireTime) {
+        long delay = Math.max(0, fireTime.getTime() - System.currentTimeMillis());
+        // poller only triggers the timer, it is fired by workers so it does not hold up polling
+        ScheduledFuture<?> future = poller.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                inMemoryTimers.remove(jobName);
+                try {
+                    workers.execute(new Runnable() {
+
+                        @SuppressWarnings("unchecked")
+                        @Override
+                        public void run() {
+                            try {
+                                ((Callable<Void>) timerJobInstance).call();
+                            } catch (Exception e) {
+                                logger.warn("In memory timer {} failed due to {}", jobName, e.getMessage());
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Scheduler service already shut down, in memory timer {} not fired", jobName);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        inMemoryTimers.put(jobName, future);
+    }
+
+    /*
+     * Extends lease of given timers as long as they are still owned by this node
+     */
+    protected void extendLease(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        int extended = execute(new Command<Integer>() {
+            @Override
+            public Integer execute(EntityManager em) {
+                return em.createNamedQuery("ExtendScheduledTimersLease")
+                        .setParameter("leaseExpiration", new Date(System.currentTimeMillis() + lease))
+                        .setParameter("ids", ids)
+                        .setParameter("owner", NODE_ID)
+                        .executeUpdate();
+            }
+        });
+        logger.debug("Extended lease of {} timers", extended);
+    }
+
+    protected ScheduledTimerInfo findByJobName(EntityManager em, String jobName) {
+        List<ScheduledTimerInfo> result = em.createNamedQuery("FindScheduledTimerByJobName", ScheduledTimerInfo.class)
+                .setParameter("jobName", jobName)
+                .getResultList();
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result.get(0);
+    }
+
+    protected <T> T execute(Command<T> command) {
+        TransactionManager tm = TransactionManagerFactory.get().newTransactionManager();
+        boolean txOwner = tm.begin();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.joinTransaction();
+            T result = command.execute(em);
+            em.flush();
+            tm.commit(txOwner);
+            return result;
+        } catch (RuntimeException e) {
+            tm.rollback(txOwner);
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    protected byte[] serialize(TimerJobInstance timerJobInstance) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(timerJobInstance);
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    protected TimerJobInstance deserialize(byte[] content) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(content));
+            try {
+                return (TimerJobInstance) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to read stored timer job instance", e);
+        }
+    }
+
+    @Override
+    public JobHandle buildJobHandleForContext(NamedJobContext ctx) {
+        return new GlobalJPAJobHandle(-1, ctx.getJobName());
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return true;
+    }
+
+    @Override
+    public boolean retryEnabled() {
+        return false;
+    }
+
+    @Override
+    public void setInterceptor(SchedulerServiceInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public boolean isValid(GlobalJobHandle jobHandle) {
+        final GlobalJPAJobHandle jpaJobHandle = (GlobalJPAJobHandle) jobHandle;
+        if (inMemoryTimers.containsKey(jpaJobHandle.getJobName())) {
+            return true;
+        }
+        Long count = execute(new Command<Long>() {
+            @Override
+            public Long execute(EntityManager em) {
+                return em.createNamedQuery("CountScheduledTimersByJobName", Long.class)
+                        .setParameter("jobName", jpaJobHandle.getJobName())
+                        .getSingleResult();
+            }
+        });
+        return count > 0;
+    }
+
+    protected interface Command<T> {
+
+        T execute(EntityManager em);
+    }
+
+    private class FireTimers implements Runnable {
+
+        private final List<ScheduledTimerInfo> timers;
+
+        FireTimers(List<ScheduledTimerInfo> timers) {
+            this.timers = timers;
+        }
+
+        @Override
+        public void run() {
+            final Set<Long> remaining = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+            for (ScheduledTimerInfo info : timers) {
+                remaining.add(info.getId());
+            }
+            // renew well before the lease expires, timers not fired yet must not be claimed by other nodes
+            long renewalInterval = Math.max(1, lease / 2);
+            ScheduledFuture<?> renewal = null;
+            try {
+                renewal = poller.scheduleWithFixedDelay(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            extendLease(new ArrayList<Long>(remaining));
+                        } catch (Throwable e) {
+                            logger.warn("Unable to extend lease of timers due to {}", e.getMessage(), e);
+                        }
+                    }
+                }, renewalInterval, renewalInterval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // already shutting down, timers are not fired below
+            }
+            try {
+                for (ScheduledTimerInfo info : timers) {
+                    if (!active) {
+                        // not fired timers will be claimed again once their lease expires
+                        return;
+                    }
+                    try {
+                        fire(info);
+                    } catch (Exception e) {
+                        logger.error("Unexpected error when firing timer {}", info.getJobName(), e);
+                    } finally {
+                        remaining.remove(info.getId());
+                    }
+                }
+            } finally {
+                if (renewal != null) {
+                    renewal.cancel(false);
+                }
+            }
+        }
+    }
+
+    public static class GlobalJPAJobHandle extends GlobalJobHandle {
+
+        private static final long serialVersionUID = 510l;
+        private String jobName;
+
+        public GlobalJPAJobHandle(long id, String jobName) {
+            super(id);
+            this.jobName = jobName;
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public void setJobName(String jobName) {
+            this.jobName = jobName;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 + ((jobName == null) ? 0 : jobName.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            GlobalJPAJobHandle other = (GlobalJPAJobHandle) obj;
+            if (jobName == null) {
+                return other.jobName == null;
+            }
+            return jobName.equals(other.jobName);
+        }
+
+        @Override
+        public String toString() {
+            return "GlobalJPAJobHandle [jobName=" + jobName + "]";
+        }
+    }
+}
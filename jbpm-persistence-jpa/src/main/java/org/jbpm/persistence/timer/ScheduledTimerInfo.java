@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.timer;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+/**
+ * Timer stored by <code>JPASchedulerService</code> together with serialized timer job instance.
+ * Timers are claimed by scheduler nodes for a limited time (lease) - owner and lease expiration -
+ * so timers of a crashed node are taken over by other nodes once the lease expires.
+ * <br/>
+ * This entity must be included in the persistence.xml when <code>JPASchedulerService</code> is used.
+ */
+@Entity
+@Table(name="ScheduledTimerInfo", uniqueConstraints={@UniqueConstraint(columnNames={"jobName"})})
+@SequenceGenerator(name="scheduledTimerInfoIdSeq", sequenceName="SCHEDULED_TIMER_ID_SEQ")
+@NamedQueries(value=
+    {@NamedQuery(name="FindScheduledTimerByJobName", 
+                query="from ScheduledTimerInfo where jobName = :jobName"),
+     @NamedQuery(name="FindDueScheduledTimers", 
+                query="from ScheduledTimerInfo where timerServiceId = :timerServiceId and fireTime <= :now"
+                        + " and (owner is null or leaseExpiration < :now) order by fireTime"),
+     @NamedQuery(name="CountScheduledTimersByJobName", 
+                query="select count(id) from ScheduledTimerInfo where jobName = :jobName"),
+     @NamedQuery(name="DeleteScheduledTimerByJobName", 
+                query="delete from ScheduledTimerInfo where jobName = :jobName"),
+     @NamedQuery(name="DeleteClaimedScheduledTimer", 
+                query="delete from ScheduledTimerInfo where id = :id and owner = :owner"),
+     @NamedQuery(name="ReleaseFailedScheduledTimer", 
+                query="update ScheduledTimerInfo set owner = null, leaseExpiration = null, fireTime = :fireTime,"
+                        + " failedCount = failedCount + 1, version = version + 1 where id = :id and owner = :owner"),
+     @NamedQuery(name="ExtendScheduledTimersLease", 
+                query="update ScheduledTimerInfo set leaseExpiration = :leaseExpiration, version = version + 1"
+                        + " where id in (:ids) and owner = :owner")})
+public class ScheduledTimerInfo implements Serializable {
+
+    private static final long serialVersionUID = -8437256163298540547L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO, generator="scheduledTimerInfoIdSeq")
+    private Long id;
+
+    @Version
+    @Column(name = "OPTLOCK")
+    private int version;
+
+    @Column(nullable=false)
+    private String jobName;
+
+    private String timerServiceId;
+
+    private Long sessionId;
+
+    private Long processInstanceId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fireTime;
+
+    private String owner;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date leaseExpiration;
+
+    private int failedCount;
+
+    @Lob
+    @Column(length=2147483647)
+    private byte[] timerJobInstance;
+
+    public ScheduledTimerInfo() {
+
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getTimerServiceId() {
+        return timerServiceId;
+    }
+
+    public void setTimerServiceId(String timerServiceId) {
+        this.timerServiceId = timerServiceId;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Long getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public void setProcessInstanceId(Long processInstanceId) {
+        this.processInstanceId = processInstanceId;
+    }
+
+    public Date getFireTime() {
+        return fireTime;
+    }
+
+    public void setFireTime(Date fireTime) {
+        this.fireTime = fireTime;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Date getLeaseExpiration() {
+        return leaseExpiration;
+    }
+
+    public void setLeaseExpiration(Date leaseExpiration) {
+        this.leaseExpiration = leaseExpiration;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(int failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public byte[] getTimerJobInstance() {
+        return timerJobInstance;
+    }
+
+    public void setTimerJobInstance(byte[] timerJobInstance) {
+        this.timerJobInstance = timerJobInstance;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledTimerInfo [id=" + id + ", jobName=" + jobName + ", fireTime=" + fireTime 
+                + ", owner=" + owner + "]";
+    }
+}
@@ -20,10 +20,12 @@ import java.util.List;
 
 import org.drools.core.process.core.Work;
 import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
+import org.drools.core.process.core.datatype.impl.type.StringDataType;
 import org.drools.core.process.core.impl.WorkImpl;
 import org.jbpm.persistence.session.objects.Person;
 import org.jbpm.process.core.context.variable.Variable;
 import org.jbpm.process.core.event.EventTypeFilter;
+import org.jbpm.process.core.timer.Timer;
 import org.jbpm.ruleflow.core.RuleFlowProcess;
 import org.jbpm.workflow.core.Node;
 import org.jbpm.workflow.core.impl.ConnectionImpl;
@@ -153,6 +155,53 @@ public class ProcessCreatorForHelp {
         return process;
     }
 
+    public static RuleFlowProcess newEventAndTimerProcess(String processId, String eventType, String timerName) {
+        RuleFlowProcess process = new RuleFlowProcess();
+        process.setId(processId);
+
+        List<Variable> variables = new ArrayList<Variable>();
+        Variable variable = new Variable();
+        variable.setName("event");
+        variable.setType(new StringDataType());
+        variables.add(variable);
+        process.getVariableScope().setVariables(variables);
+
+        StartNode startNode = new StartNode();
+        startNode.setName("Start");
+        startNode.setId(1);
+
+        EventNode eventNode = new EventNode();
+        eventNode.setName("EventNode");
+        eventNode.setId(2);
+        eventNode.setScope("external");
+        eventNode.setVariableName("event");
+        EventTypeFilter eventFilter = new EventTypeFilter();
+        eventFilter.setType(eventType);
+        eventNode.addEventFilter(eventFilter);
+
+        TimerNode timerNode = new TimerNode();
+        timerNode.setName(timerName);
+        timerNode.setId(3);
+        Timer timer = new Timer();
+        // long enough to not fire during the test
+        timer.setDelay("3600000");
+        timerNode.setTimer(timer);
+
+        EndNode endNode = new EndNode();
+        endNode.setName("End");
+        endNode.setId(4);
+
+        connect(startNode, eventNode);
+        connect(eventNode, timerNode);
+        connect(timerNode, endNode);
+
+        process.addNode(startNode);
+        process.addNode(eventNode);
+        process.addNode(timerNode);
+        process.addNode(endNode);
+        return process;
+    }
+
     public static RuleFlowProcess newShortestProcess(String processId) {
         StartNode startNode = new StartNode();
         startNode.setName("Start");
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.persistence.processinstance;
+
+import static org.jbpm.persistence.util.PersistenceUtil.JBPM_PERSISTENCE_UNIT_NAME;
+import static org.jbpm.persistence.util.PersistenceUtil.cleanUp;
+import static org.jbpm.persistence.util.PersistenceUtil.createEnvironment;
+import static org.jbpm.persistence.util.PersistenceUtil.setupWithPoolingDataSource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.InitialContext;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.UserTransaction;
+
+import org.jbpm.persistence.map.impl.ProcessCreatorForHelp;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
+import org.kie.internal.persistence.jpa.JPAKnowledgeService;
+import org.kie.internal.runtime.manager.InternalRuntimeManager;
+
+public class JPAProcessInstanceManagerCacheTest extends AbstractBaseTest {
+
+    private static final String MANAGER_ID = "process-instance-cache-test";
+    private static final String PROCESS_ID = "org.jbpm.persistence.CachedProcess";
+
+    private HashMap<String, Object> context;
+    private KieSession ksession;
+
+    @Before
+    public void setUp() {
+        ProcessInstanceCache.setCacheSize(10);
+        context = setupWithPoolingDataSource(JBPM_PERSISTENCE_UNIT_NAME);
+
+        Environment env = createEnvironment(context);
+        // cache is kept per runtime manager
+        InternalRuntimeManager manager = mock(InternalRuntimeManager.class);
+        when(manager.getIdentifier()).thenReturn(MANAGER_ID);
+        env.set(EnvironmentName.RUNTIME_MANAGER, manager);
+
+        KieBase kbase = createKieBase(ProcessCreatorForHelp.newSimpleEventProcess(PROCESS_ID, "continue"));
+        ksession = JPAKnowledgeService.newStatefulKnowledgeSession(kbase, null, env);
+    }
+
+    @After
+    public void tearDown() {
+        if (ksession != null) {
+            ksession.dispose();
+        }
+        ProcessInstanceCache.remove(MANAGER_ID);
+        ProcessInstanceCache.setCacheSize(0);
+        cleanUp(context);
+    }
+
+    @Test
+    public void testProcessInstanceServedFromCache() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("name", "john");
+        ProcessInstance processInstance = ksession.startProcess(PROCESS_ID, params);
+        ProcessInstanceCache cache = ProcessInstanceCache.get(MANAGER_ID);
+        assertEquals(1, cache.size());
+
+        // next transaction reuses the instance unmarshalled by the previous one
+        ProcessInstance loaded = ksession.getProcessInstance(processInstance.getId());
+        assertSame(processInstance, loaded);
+        assertEquals("john", ((WorkflowProcessInstance) loaded).getVariable("name"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        // and it is cached again once that transaction commits
+        assertEquals(1, cache.size());
+        ksession.signalEvent("continue", null, processInstance.getId());
+        assertEquals(2, cache.getHits());
+        // completed instances are not cached
+        assertEquals(0, cache.size());
+        assertNull(ksession.getProcessInstance(processInstance.getId()));
+    }
+
+    @Test
+    public void testVersionMismatchForcesUnmarshalling() throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("name", "john");
+        ProcessInstance processInstance = ksession.startProcess(PROCESS_ID, params);
+        ProcessInstanceCache cache = ProcessInstanceCache.get(MANAGER_ID);
+        assertEquals(1, cache.size());
+
+        // simulate change made by another node
+        UserTransaction ut = (UserTransaction) new InitialContext().lookup("java:comp/UserTransaction");
+        ut.begin();
+        EntityManager em = ((EntityManagerFactory) context.get(EnvironmentName.ENTITY_MANAGER_FACTORY)).createEntityManager();
+        em.joinTransaction();
+        int updated = em.createQuery("update ProcessInstanceInfo set version = version + 1 where processInstanceId = :id")
+                .setParameter("id", processInstance.getId())
+                .executeUpdate();
+        ut.commit();
+        em.close();
+        assertEquals(1, updated);
+
+        ProcessInstance loaded = ksession.getProcessInstance(processInstance.getId());
+        assertNotNull(loaded);
+        assertNotSame(processInstance, loaded);
+        assertEquals("john", ((WorkflowProcessInstance) loaded).getVariable("name"));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getStale());
+
+        // freshly unmarshalled instance replaces the stale one
+        assertSame(loaded, ksession.getProcessInstance(processInstance.getId()));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testInstanceWithMutableVariableNotCached() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        ArrayList<String> list = new ArrayList<String>();
+        params.put("list", list);
+        ProcessInstance processInstance = ksession.startProcess(PROCESS_ID, params);
+        ProcessInstanceCache cache = ProcessInstanceCache.get(MANAGER_ID);
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getRejected());
+
+        // changes made by the caller after commit must not be visible
+        list.add("not persisted");
+        ProcessInstance loaded = ksession.getProcessInstance(processInstance.getId());
+        assertNotSame(processInstance, loaded);
+        assertEquals(0, ((ArrayList<?>) ((WorkflowProcessInstance) loaded).getVariable("list")).size());
+    }
+}
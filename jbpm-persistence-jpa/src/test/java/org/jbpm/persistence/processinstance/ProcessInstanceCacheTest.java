@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.jbpm.process.core.context.variable.VariableScope;
+import org.jbpm.process.instance.context.variable.VariableScopeInstance;
+import org.jbpm.ruleflow.instance.RuleFlowProcessInstance;
+import org.junit.Test;
+import org.kie.api.runtime.process.ProcessInstance;
+
+public class ProcessInstanceCacheTest {
+
+    @Test
+    public void testTakeWithMatchingVersion() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        ProcessInstance processInstance = createProcessInstance(1);
+        cache.put(1, 3, processInstance);
+        assertEquals(1, cache.size());
+
+        assertSame(processInstance, cache.take(1, 3));
+        // taken instance is no longer cached
+        assertEquals(0, cache.size());
+        assertNull(cache.take(1, 3));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testTakeWithStaleVersion() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        cache.put(1, 3, createProcessInstance(1));
+
+        // instance was updated elsewhere in the meantime
+        assertNull(cache.take(1, 4));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getStale());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(2);
+        cache.put(1, 0, createProcessInstance(1));
+        cache.put(2, 0, createProcessInstance(2));
+        cache.put(3, 0, createProcessInstance(3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.take(1, 0));
+        assertEquals(3, cache.take(3, 0).getId());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        cache.put(1, 0, createProcessInstance(1));
+        cache.invalidate(1);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.take(1, 0));
+    }
+
+    @Test
+    public void testImmutableVariablesAreShared() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        RuleFlowProcessInstance processInstance = createProcessInstance(1);
+        VariableScopeInstance scope = addVariableScope(processInstance);
+        scope.internalSetVariable("name", "john");
+        scope.internalSetVariable("age", 42);
+
+        assertTrue(cache.put(1, 0, processInstance));
+        assertSame(processInstance, cache.take(1, 0));
+        assertEquals("john", scope.getVariable("name"));
+        assertEquals(0, cache.getRejected());
+    }
+
+    @Test
+    public void testDateVariableIsCopied() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        RuleFlowProcessInstance processInstance = createProcessInstance(1);
+        VariableScopeInstance scope = addVariableScope(processInstance);
+        Date date = new Date(1000);
+        scope.internalSetVariable("date", date);
+
+        assertTrue(cache.put(1, 0, processInstance));
+        // changing the date held by the caller does not change the cached instance
+        date.setTime(2000);
+        assertSame(processInstance, cache.take(1, 0));
+        Object cachedDate = scope.getVariable("date");
+        assertNotSame(date, cachedDate);
+        assertEquals(new Date(1000), cachedDate);
+    }
+
+    @Test
+    public void testMutableVariableIsNotCached() {
+        ProcessInstanceCache cache = new ProcessInstanceCache(10);
+        cache.put(1, 0, createProcessInstance(1));
+
+        RuleFlowProcessInstance processInstance = createProcessInstance(1);
+        VariableScopeInstance scope = addVariableScope(processInstance);
+        scope.internalSetVariable("list", new ArrayList<String>());
+
+        assertFalse(cache.put(1, 1, processInstance));
+        // previously cached version is dropped as well
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getRejected());
+    }
+
+    private VariableScopeInstance addVariableScope(RuleFlowProcessInstance processInstance) {
+        VariableScopeInstance scope = new VariableScopeInstance();
+        scope.setProcessInstance(processInstance);
+        processInstance.addContextInstance(VariableScope.VARIABLE_SCOPE, scope);
+        return scope;
+    }
+
+    private RuleFlowProcessInstance createProcessInstance(long id) {
+        RuleFlowProcessInstance processInstance = new RuleFlowProcessInstance();
+        processInstance.setId(id);
+        return processInstance;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.core.common.InternalKnowledgeRuntime;
+import org.drools.core.impl.EnvironmentFactory;
+import org.drools.core.impl.KnowledgeBaseImpl;
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jbpm.persistence.map.impl.ProcessCreatorForHelp;
+import org.jbpm.process.instance.impl.demo.DoNothingWorkItemHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+
+public class ProcessInstanceCompressionTest {
+
+    @Before
+    public void setUp() {
+        ProcessInstanceCompression.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessInstanceCompression.setEnabled(false);
+    }
+
+    @Test
+    public void testCompressAndDecompress() {
+        byte[] content = sample(0, 10000);
+        byte[] compressed = ProcessInstanceCompression.compress("org.jbpm.test", content);
+
+        assertTrue(ProcessInstanceCompression.isCompressed(compressed));
+        assertTrue(compressed.length < content.length);
+        assertArrayEquals(content, ProcessInstanceCompression.decompress("org.jbpm.test", compressed));
+    }
+
+    @Test
+    public void testUncompressedContentIsReadAsIs() {
+        byte[] content = sample(0, 10000);
+        assertFalse(ProcessInstanceCompression.isCompressed(content));
+        assertSame(content, ProcessInstanceCompression.decompress("org.jbpm.test", content));
+
+        // small instances are not compressed
+        byte[] small = sample(0, 100);
+        assertSame(small, ProcessInstanceCompression.compress("org.jbpm.test", small));
+
+        ProcessInstanceCompression.setEnabled(false);
+        assertSame(content, ProcessInstanceCompression.compress("org.jbpm.test", content));
+    }
+
+    @Test
+    public void testTrainedDictionary() {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 0; i < 5; i++) {
+            samples.add(sample(i, 5000));
+        }
+        byte[] dictionary = ProcessInstanceCompression.trainDictionary(samples, 32 * 1024);
+        assertTrue(dictionary.length > 0);
+        ProcessInstanceCompression.registerDictionary("org.jbpm.trained", dictionary);
+
+        byte[] content = sample(10, 5000);
+        byte[] compressed = ProcessInstanceCompression.compress("org.jbpm.trained", content);
+
+        assertTrue(compressed.length < content.length);
+        assertArrayEquals(content, ProcessInstanceCompression.decompress("org.jbpm.trained", compressed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingDictionary() {
+        byte[] compressed = ProcessInstanceCompression.compress("org.jbpm.test", sample(0, 10000));
+        // corrupt dictionary id
+        compressed[3] ^= 0x7F;
+        ProcessInstanceCompression.decompress("org.jbpm.test", compressed);
+    }
+
+    @Test
+    public void testProcessInstanceInfoRoundTrip() {
+        String processId = "org.jbpm.test.CompressedProcess";
+        KnowledgeBase kbase = KnowledgeBaseFactory.newKnowledgeBase();
+        ((KnowledgeBaseImpl) kbase).addProcess(ProcessCreatorForHelp.newProcessWithOneWork(processId, "TestWork"));
+        KieSession ksession = kbase.newKieSession();
+        try {
+            ksession.getWorkItemManager().registerWorkItemHandler("TestWork", new DoNothingWorkItemHandler());
+            Environment env = EnvironmentFactory.newEnvironment();
+            env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[] {
+                    new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT) });
+
+            Map<String, Object> parameters = new HashMap<String, Object>();
+            for (int i = 0; i < 20; i++) {
+                parameters.put("var" + i, "value of variable " + i + " that is long enough to make compression worth it");
+            }
+            ProcessInstance processInstance = ksession.startProcess(processId, parameters);
+
+            ProcessInstanceInfo processInstanceInfo = new ProcessInstanceInfo(processInstance, env);
+            processInstanceInfo.transform();
+            byte[] stored = processInstanceInfo.getProcessInstanceByteArray();
+            assertTrue(ProcessInstanceCompression.isCompressed(stored));
+            assertTrue(stored.length < ProcessInstanceCompression.decompress(processId, stored).length);
+            assertUnmarshalled(processInstanceInfo, processInstance, parameters, ksession, env);
+
+            // instances stored before compression was turned on are still readable
+            ProcessInstanceCompression.setEnabled(false);
+            processInstanceInfo = new ProcessInstanceInfo(processInstance, env);
+            processInstanceInfo.transform();
+            assertFalse(ProcessInstanceCompression.isCompressed(processInstanceInfo.getProcessInstanceByteArray()));
+            ProcessInstanceCompression.setEnabled(true);
+            assertUnmarshalled(processInstanceInfo, processInstance, parameters, ksession, env);
+        } finally {
+            ksession.dispose();
+        }
+    }
+
+    private void assertUnmarshalled(ProcessInstanceInfo processInstanceInfo, ProcessInstance processInstance, 
+            Map<String, Object> parameters, KieSession ksession, Environment env) {
+        processInstanceInfo.clearProcessInstance();
+        WorkflowProcessInstance unmarshalled = (WorkflowProcessInstance) 
+                processInstanceInfo.getProcessInstance((InternalKnowledgeRuntime) ksession, env);
+        assertNotSame(processInstance, unmarshalled);
+        assertEquals(processInstance.getId(), unmarshalled.getId());
+        assertEquals(processInstance.getProcessId(), unmarshalled.getProcessId());
+        assertEquals(1, unmarshalled.getNodeInstances().size());
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            assertEquals(parameter.getValue(), unmarshalled.getVariable(parameter.getKey()));
+        }
+    }
+
+    private byte[] sample(int seed, int size) {
+        byte[] content = new byte[size];
+        // marshalled instances start with java serialization stream header
+        content[0] = (byte) 0xAC;
+        content[1] = (byte) 0xED;
+        String text = "org.jbpm.test.Variable" + seed + " java.lang.String processInstanceId ";
+        for (int i = 2; i < size; i++) {
+            content[i] = (byte) text.charAt(i % text.length());
+        }
+        return content;
+    }
+}
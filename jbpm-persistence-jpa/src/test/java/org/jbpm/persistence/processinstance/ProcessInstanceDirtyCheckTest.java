@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import static org.jbpm.persistence.util.PersistenceUtil.JBPM_PERSISTENCE_UNIT_NAME;
+import static org.jbpm.persistence.util.PersistenceUtil.cleanUp;
+import static org.jbpm.persistence.util.PersistenceUtil.createEnvironment;
+import static org.jbpm.persistence.util.PersistenceUtil.setupWithPoolingDataSource;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.drools.core.command.impl.GenericCommand;
+import org.drools.core.command.impl.KnowledgeCommandContext;
+import org.drools.core.command.runtime.process.SetProcessInstanceVariablesCommand;
+import org.jbpm.persistence.map.impl.ProcessCreatorForHelp;
+import org.jbpm.process.instance.command.UpdateTimerCommand;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
+import org.kie.internal.command.Context;
+import org.kie.internal.persistence.jpa.JPAKnowledgeService;
+
+/**
+ * Skipping of marshalling for unchanged process instances (org.jbpm.persistence.pi.dirty.check) -
+ * verified on the stored row, its blob and version (OPTLOCK).
+ */
+public class ProcessInstanceDirtyCheckTest extends AbstractBaseTest {
+
+    private static final String PROCESS_ID = "org.jbpm.persistence.DirtyCheckProcess";
+    private static final String TIMER_NAME = "Timer";
+
+    private HashMap<String, Object> context;
+    private KieSession ksession;
+
+    @Before
+    public void setUp() {
+        ProcessInstanceInfo.setDirtyCheck(true);
+        context = setupWithPoolingDataSource(JBPM_PERSISTENCE_UNIT_NAME);
+
+        KieBase kbase = createKieBase(ProcessCreatorForHelp.newEventAndTimerProcess(PROCESS_ID, "continue", TIMER_NAME));
+        ksession = JPAKnowledgeService.newStatefulKnowledgeSession(kbase, null, createEnvironment(context));
+    }
+
+    @After
+    public void tearDown() {
+        if (ksession != null) {
+            ksession.dispose();
+        }
+        ProcessInstanceInfo.setDirtyCheck(false);
+        cleanUp(context);
+    }
+
+    @Test
+    public void testUnchangedInstanceNotWritten() {
+        final long processInstanceId = ksession.startProcess(PROCESS_ID).getId();
+        ProcessInstanceInfo stored = load(processInstanceId);
+
+        // loads the process instance for update but does not change it
+        ksession.execute(new GenericCommand<Void>() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Void execute(Context context) {
+                KieSession ksession = ((KnowledgeCommandContext) context).getKieSession();
+                assertNotNull(ksession.getProcessInstance(processInstanceId));
+                return null;
+            }
+        });
+
+        assertUnchanged(stored, load(processInstanceId));
+    }
+
+    @Test
+    public void testChangedInstanceWritten() {
+        long processInstanceId = ksession.startProcess(PROCESS_ID).getId();
+        ProcessInstanceInfo stored = load(processInstanceId);
+
+        ksession.execute(new SetProcessInstanceVariablesCommand(processInstanceId,
+                Collections.<String, Object>singletonMap("name", "john")));
+        stored = assertChanged(stored, load(processInstanceId));
+
+        ksession.signalEvent("continue", "event data", processInstanceId);
+        stored = assertChanged(stored, load(processInstanceId));
+        assertEquals("event data", ((WorkflowProcessInstance) ksession.getProcessInstance(processInstanceId)).getVariable("event"));
+
+        ksession.execute(new UpdateTimerCommand(processInstanceId, TIMER_NAME, 7200));
+        assertChanged(stored, load(processInstanceId));
+    }
+
+    @Test
+    public void testInPlaceChangeRequiresMarkDirty() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("list", new ArrayList<String>());
+        long processInstanceId = ksession.startProcess(PROCESS_ID, params).getId();
+        ProcessInstanceInfo stored = load(processInstanceId);
+
+        // change of the variable value that the process instance is not aware of is not persisted
+        addToList(processInstanceId, "not persisted", false);
+        stored = assertUnchanged(stored, load(processInstanceId));
+        assertEquals(Collections.emptyList(), getList(processInstanceId));
+
+        addToList(processInstanceId, "persisted", true);
+        assertChanged(stored, load(processInstanceId));
+        assertEquals(Arrays.asList("persisted"), getList(processInstanceId));
+    }
+
+    private void addToList(final long processInstanceId, final String value, final boolean markDirty) {
+        ksession.execute(new GenericCommand<Void>() {
+
+            private static final long serialVersionUID = 1L;
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Void execute(Context context) {
+                KieSession ksession = ((KnowledgeCommandContext) context).getKieSession();
+                WorkflowProcessInstanceImpl processInstance = (WorkflowProcessInstanceImpl) ksession.getProcessInstance(processInstanceId);
+                ((List<String>) processInstance.getVariable("list")).add(value);
+                if (markDirty) {
+                    processInstance.markDirty();
+                }
+                return null;
+            }
+        });
+    }
+
+    private List<?> getList(long processInstanceId) {
+        ProcessInstance processInstance = ksession.getProcessInstance(processInstanceId);
+        return (List<?>) ((WorkflowProcessInstance) processInstance).getVariable("list");
+    }
+
+    private ProcessInstanceInfo assertUnchanged(ProcessInstanceInfo before, ProcessInstanceInfo after) {
+        assertEquals(before.getVersion(), after.getVersion());
+        assertArrayEquals(before.getProcessInstanceByteArray(), after.getProcessInstanceByteArray());
+        assertEquals(before.getLastModificationDate(), after.getLastModificationDate());
+        return after;
+    }
+
+    private ProcessInstanceInfo assertChanged(ProcessInstanceInfo before, ProcessInstanceInfo after) {
+        assertTrue(after.getVersion() > before.getVersion());
+        assertFalse(Arrays.equals(before.getProcessInstanceByteArray(), after.getProcessInstanceByteArray()));
+        return after;
+    }
+
+    private ProcessInstanceInfo load(long processInstanceId) {
+        EntityManager em = ((EntityManagerFactory) context.get(EnvironmentName.ENTITY_MANAGER_FACTORY)).createEntityManager();
+        try {
+            ProcessInstanceInfo processInstanceInfo = em.find(ProcessInstanceInfo.class, processInstanceId);
+            assertNotNull(processInstanceInfo);
+            return processInstanceInfo;
+        } finally {
+            em.close();
+        }
+    }
+}
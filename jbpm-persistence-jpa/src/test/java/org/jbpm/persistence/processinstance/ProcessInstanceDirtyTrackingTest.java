@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.persistence.processinstance;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.jbpm.persistence.map.impl.ProcessCreatorForHelp;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Dirty flag of process instance that <code>ProcessInstanceInfo</code> relies on to skip marshalling
+ * of unchanged process instances.
+ */
+public class ProcessInstanceDirtyTrackingTest extends AbstractBaseTest {
+
+    private static final String PROCESS_ID = "org.jbpm.persistence.DirtyTrackingProcess";
+
+    private KieSession ksession;
+
+    @Before
+    public void setUp() {
+        ksession = createKieBase(ProcessCreatorForHelp.newEventAndTimerProcess(PROCESS_ID, "continue", "Timer")).newKieSession();
+    }
+
+    @After
+    public void tearDown() {
+        if (ksession != null) {
+            ksession.dispose();
+        }
+    }
+
+    @Test
+    public void testProcessInstanceDirtyTracking() {
+        WorkflowProcessInstanceImpl processInstance = (WorkflowProcessInstanceImpl) ksession.startProcess(PROCESS_ID);
+        assertTrue(processInstance.isDirty());
+
+        processInstance.resetDirty();
+        assertFalse(processInstance.isDirty());
+        processInstance.getVariable("event");
+        assertFalse(processInstance.isDirty());
+
+        processInstance.setVariable("event", "event data");
+        assertTrue(processInstance.isDirty());
+
+        processInstance.resetDirty();
+        ksession.abortProcessInstance(processInstance.getId());
+        assertTrue(processInstance.isDirty());
+    }
+}
@@ -18,6 +18,12 @@ package org.jbpm.persistence.session;
 import static org.jbpm.persistence.util.PersistenceUtil.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,6 +45,7 @@ import javax.transaction.UserTransaction;
 
 import junit.framework.Assert;
 
+import org.drools.core.common.DroolsObjectInputStream;
 import org.drools.core.impl.InternalKnowledgeBase;
 import org.drools.core.impl.KnowledgeBaseImpl;
 import org.drools.core.io.impl.ClassPathResource;
@@ -48,6 +55,8 @@ import org.drools.core.process.core.Work;
 import org.drools.core.process.core.datatype.impl.type.ObjectDataType;
 import org.drools.core.process.core.impl.WorkImpl;
 import org.drools.persistence.jpa.marshaller.JPAPlaceholderResolverStrategy;
+import org.jbpm.marshalling.impl.ProcessInstanceResolverStrategy;
+import org.jbpm.marshalling.impl.ProtobufProcessMarshaller;
 import org.jbpm.persistence.session.objects.MyEntity;
 import org.jbpm.persistence.session.objects.MyEntityMethods;
 import org.jbpm.persistence.session.objects.MyEntityOnlyFields;
@@ -147,6 +156,171 @@ public class VariablePersistenceStrategyTest extends AbstractBaseTest {
         Assert.assertNull( ksession.getProcessInstance( processInstanceId ) );
     }
 
+    @Test
+    public void testLazyVariablePersistence() throws Exception {
+        ProtobufProcessMarshaller.setLazyVariables(true);
+        try {
+            final List<String> marshalled = new ArrayList<String>();
+            final List<String> unmarshalled = new ArrayList<String>();
+            Environment env = PersistenceUtil.createEnvironment(context);
+            // strategy without context, its bytes can be written back without unmarshalling them
+            env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[]{
+                    new SerializedBytesStrategy() {
+
+                        @Override
+                        public byte[] marshal(Context context, ObjectOutputStream os, Object object) throws IOException {
+                            if (object.getClass() == MyVariableSerializable.class) {
+                                marshalled.add(((MyVariableSerializable) object).getText());
+                            }
+                            return super.marshal(context, os, object);
+                        }
+
+                        @Override
+                        public Object unmarshal(Context context, ObjectInputStream is, byte[] object, ClassLoader classloader) throws IOException, ClassNotFoundException {
+                            Object value = super.unmarshal(context, is, object, classloader);
+                            if (value.getClass() == MyVariableSerializable.class) {
+                                unmarshalled.add(((MyVariableSerializable) value).getText());
+                            }
+                            return value;
+                        }
+                    }
+            });
+            String processId = "lazyVariablePersistence";
+            String variableText = "my lazy variable text";
+            String unreadText = "never read variable text";
+            KnowledgeBase kbase = getKnowledgeBaseForExtendingInterfaceVariablePersistence(processId,
+                                                                                           variableText);
+            Variable unread = new Variable();
+            unread.setName("y");
+            ObjectDataType serializableDataType = new ObjectDataType();
+            serializableDataType.setClassName(MyVariableSerializable.class.getName());
+            unread.setType(serializableDataType);
+            ((RuleFlowProcess) kbase.getProcess(processId)).getVariableScope().getVariables().add(unread);
+
+            StatefulKnowledgeSession ksession = createSession( kbase , env );
+            Map<String, Object> initialParams = new HashMap<String, Object>();
+            initialParams.put( "x", new MyVariableExtendingSerializable( variableText ) );
+            initialParams.put( "y", new MyVariableSerializable( unreadText ) );
+            
+            long processInstanceId = ksession.startProcess( processId, initialParams ).getId();
+            int marshalledOnStart = marshalled.size();
+            assertTrue(marshalledOnStart > 0);
+            
+            // process instance is updated but its variables are not accessed so they are written back 
+            // from their original bytes without invoking the strategy
+            ksession = reloadSession( ksession, kbase, env );
+            ksession.signalEvent( "NotAccepted", null, processInstanceId );
+            assertEquals(marshalledOnStart, marshalled.size());
+            assertTrue(unmarshalled.isEmpty());
+
+            // written back bytes are unmarshalled once the variable is read
+            ksession = reloadSession( ksession, kbase, env );
+            WorkflowProcessInstance processInstance = (WorkflowProcessInstance) ksession.getProcessInstance( processInstanceId );
+            assertTrue(unmarshalled.isEmpty());
+            assertEquals(unreadText, ((MyVariableSerializable) processInstance.getVariable("y")).getText());
+            assertEquals(Arrays.asList(unreadText), unmarshalled);
+
+            long workItemId = TestWorkItemHandler.getInstance().getWorkItem().getId();
+            ksession.getWorkItemManager().completeWorkItem( workItemId, null );
+            
+            // action node reads the variable once it is unmarshalled on demand
+            Assert.assertNull( ksession.getProcessInstance( processInstanceId ) );
+        } finally {
+            ProtobufProcessMarshaller.setLazyVariables(false);
+        }
+    }
+
+    @Test
+    public void testLazyVariablePersistenceWithPlaceholderStrategy() throws Exception {
+        ProtobufProcessMarshaller.setLazyVariables(true);
+        try {
+            // bytes of placeholder strategy are index into objects kept in its context
+            Environment env = PersistenceUtil.createEnvironment(context);
+            env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[]{
+                    new SerializablePlaceholderResolverStrategy( ClassObjectMarshallingStrategyAcceptor.DEFAULT )
+            });
+            String processId = "lazyPlaceholderVariablePersistence";
+            String variableText = "my lazy variable text";
+            KnowledgeBase kbase = getKnowledgeBaseForExtendingInterfaceVariablePersistence(processId,
+                                                                                           variableText);
+            Variable unread = new Variable();
+            unread.setName("y");
+            ObjectDataType serializableDataType = new ObjectDataType();
+            serializableDataType.setClassName(MyVariableSerializable.class.getName());
+            unread.setType(serializableDataType);
+            ((RuleFlowProcess) kbase.getProcess(processId)).getVariableScope().getVariables().add(unread);
+
+            StatefulKnowledgeSession ksession = createSession( kbase , env );
+            Map<String, Object> initialParams = new HashMap<String, Object>();
+            initialParams.put( "x", new MyVariableExtendingSerializable( variableText ) );
+            initialParams.put( "y", new MyVariableSerializable( "first unread text" ) );
+            long processInstanceId = ksession.startProcess( processId, initialParams ).getId();
+            
+            // updated without accessing variables, they must still be stored together with their context
+            ksession = reloadSession( ksession, kbase, env );
+            ksession.signalEvent( "NotAccepted", null, processInstanceId );
+            ksession = reloadSession( ksession, kbase, env );
+            ksession.signalEvent( "NotAccepted", null, processInstanceId );
+
+            ksession = reloadSession( ksession, kbase, env );
+            WorkflowProcessInstance processInstance = (WorkflowProcessInstance) ksession.getProcessInstance( processInstanceId );
+            assertEquals(variableText, ((MyVariableExtendingSerializable) processInstance.getVariable("x")).getText());
+            assertEquals("first unread text", ((MyVariableSerializable) processInstance.getVariable("y")).getText());
+
+            long workItemId = TestWorkItemHandler.getInstance().getWorkItem().getId();
+            ksession.getWorkItemManager().completeWorkItem( workItemId, null );
+            Assert.assertNull( ksession.getProcessInstance( processInstanceId ) );
+        } finally {
+            ProtobufProcessMarshaller.setLazyVariables(false);
+        }
+    }
+
+    @Test
+    public void testLazyVariablePersistenceWithProcessInstanceVariable() throws Exception {
+        ProtobufProcessMarshaller.setLazyVariables(true);
+        try {
+            Environment env = PersistenceUtil.createEnvironment(context);
+            env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, new ObjectMarshallingStrategy[]{
+                    new ProcessInstanceResolverStrategy(),
+                    new SerializablePlaceholderResolverStrategy( ClassObjectMarshallingStrategyAcceptor.DEFAULT )
+            });
+            String processId = "lazyProcessInstanceVariablePersistence";
+            String variableText = "my lazy variable text";
+            KnowledgeBase kbase = getKnowledgeBaseForExtendingInterfaceVariablePersistence(processId,
+                                                                                           variableText);
+            Variable related = new Variable();
+            related.setName("related");
+            ObjectDataType processInstanceDataType = new ObjectDataType();
+            processInstanceDataType.setClassName(ProcessInstance.class.getName());
+            related.setType(processInstanceDataType);
+            ((RuleFlowProcess) kbase.getProcess(processId)).getVariableScope().getVariables().add(related);
+
+            StatefulKnowledgeSession ksession = createSession( kbase , env );
+            Map<String, Object> initialParams = new HashMap<String, Object>();
+            initialParams.put( "x", new MyVariableExtendingSerializable( variableText ) );
+            ProcessInstance relatedProcessInstance = ksession.startProcess( processId, initialParams );
+            
+            initialParams.put( "related", relatedProcessInstance );
+            long processInstanceId = ksession.startProcess( processId, initialParams ).getId();
+            
+            // variable stored through process instance resolver needs the reader context so it is read eagerly
+            ksession = reloadSession( ksession, kbase, env );
+            WorkflowProcessInstance processInstance = (WorkflowProcessInstance) ksession.getProcessInstance( processInstanceId );
+            ProcessInstance relatedValue = (ProcessInstance) processInstance.getVariable("related");
+            assertNotNull(relatedValue);
+            assertEquals(relatedProcessInstance.getId(), relatedValue.getId());
+            assertEquals(ProcessInstance.STATE_ACTIVE, relatedValue.getState());
+            
+            // and is written back correctly once the process instance is updated
+            ksession.signalEvent( "NotAccepted", null, processInstanceId );
+            ksession = reloadSession( ksession, kbase, env );
+            processInstance = (WorkflowProcessInstance) ksession.getProcessInstance( processInstanceId );
+            assertEquals(relatedProcessInstance.getId(), ((ProcessInstance) processInstance.getVariable("related")).getId());
+        } finally {
+            ProtobufProcessMarshaller.setLazyVariables(false);
+        }
+    }
+
     private KnowledgeBase getKnowledgeBaseForExtendingInterfaceVariablePersistence(String processId, final String variableText) {
         RuleFlowProcess process = new RuleFlowProcess();
         process.setId( processId );
@@ -637,6 +811,45 @@ public class VariablePersistenceStrategyTest extends AbstractBaseTest {
         return JPAKnowledgeService.newStatefulKnowledgeSession( kbase, null, env );
     }
     
+    /*
+     * Plain java serialization of the value into variable bytes, keeps no context
+     */
+    private static class SerializedBytesStrategy implements ObjectMarshallingStrategy {
+
+        public boolean accept(Object object) {
+            return object instanceof Serializable;
+        }
+
+        public void write(ObjectOutputStream os, Object object) throws IOException {
+            os.writeObject( object );
+        }
+
+        public Object read(ObjectInputStream os) throws IOException, ClassNotFoundException {
+            return os.readObject();
+        }
+
+        public byte[] marshal(Context context, ObjectOutputStream os, Object object) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream( bytes );
+            out.writeObject( object );
+            out.close();
+            return bytes.toByteArray();
+        }
+
+        public Object unmarshal(Context context, ObjectInputStream is, byte[] object, ClassLoader classloader) throws IOException, ClassNotFoundException {
+            ObjectInputStream in = new DroolsObjectInputStream( new ByteArrayInputStream( object ), classloader );
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        }
+
+        public Context createContext() {
+            return null;
+        }
+    }
+
     private StatefulKnowledgeSession reloadSession(StatefulKnowledgeSession ksession, KnowledgeBase kbase, Environment env){
         long sessionId = ksession.getIdentifier();
         ksession.dispose();
@@ -22,12 +22,16 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.persistence.EntityManagerFactory;
+
 import org.drools.core.time.TimerService;
 import org.drools.persistence.OrderedTransactionSynchronization;
 import org.drools.persistence.TransactionManager;
 import org.drools.persistence.TransactionManagerFactory;
 import org.drools.persistence.TransactionManagerHelper;
 import org.drools.persistence.TransactionSynchronization;
+import org.jbpm.persistence.processinstance.ProcessInstanceCache;
+import org.jbpm.process.audit.AsyncAuditLogWriter;
 import org.jbpm.process.core.timer.GlobalSchedulerService;
 import org.jbpm.process.core.timer.TimerServiceRegistry;
 import org.jbpm.process.core.timer.impl.GlobalTimerService;
@@ -211,8 +215,11 @@ public abstract class AbstractRuntimeManager implements InternalRuntimeManager {
     
     public void close(boolean removeJobs) {
     	cacheManager.dispose();
+    	// write audit entries that are still queued before the environment goes away
+    	AsyncAuditLogWriter.shutdown((EntityManagerFactory) environment.getEnvironment().get(EnvironmentName.ENTITY_MANAGER_FACTORY));
         environment.close();
         registry.remove(identifier);
+        ProcessInstanceCache.remove(identifier);
         TimerService timerService = TimerServiceRegistry.getInstance().remove(getIdentifier() + TimerServiceRegistry.TIMER_SERVICE_SUFFIX);
         if (timerService != null) {
             if (removeJobs && timerService instanceof GlobalTimerService) {
@@ -18,9 +18,11 @@ package org.jbpm.runtime.manager.impl;
 import javax.naming.InitialContext;
 import javax.persistence.EntityManagerFactory;
 
+import org.jbpm.persistence.timer.JPASchedulerService;
 import org.jbpm.process.core.timer.GlobalSchedulerService;
 import org.jbpm.process.core.timer.impl.QuartzSchedulerService;
 import org.jbpm.process.core.timer.impl.ThreadPoolSchedulerService;
+import org.jbpm.process.core.timer.impl.TimingWheelSchedulerService;
 import org.jbpm.runtime.manager.impl.identity.UserDataServiceProvider;
 import org.jbpm.runtime.manager.impl.jpa.EntityManagerFactoryManager;
 import org.jbpm.runtime.manager.impl.mapper.InMemoryMapper;
@@ -87,6 +89,10 @@ public class DefaultRuntimeEnvironment extends SimpleRuntimeEnvironment {
     protected static GlobalSchedulerService discoverSchedulerService() {
         if (System.getProperty("org.quartz.properties") != null) {
             return new QuartzSchedulerService();
+        } else if ("true".equalsIgnoreCase(System.getProperty("org.jbpm.timer.jpa"))) {
+            return new JPASchedulerService(3);
+        } else if ("true".equalsIgnoreCase(System.getProperty("org.jbpm.timer.wheel"))) {
+            return new TimingWheelSchedulerService(3);
         } else {
         	// if there is ejb scheduler service available make use of it unless it's disabled
         	if (!"true".equalsIgnoreCase(System.getProperty("org.kie.timer.ejb.disabled"))) {
@@ -15,9 +15,14 @@
  */
 package org.jbpm.runtime.manager.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
 
 import org.drools.core.command.CommandService;
 import org.drools.core.command.SingleSessionCommandService;
@@ -28,6 +33,7 @@ import org.drools.core.common.InternalKnowledgeRuntime;
 import org.drools.persistence.OrderedTransactionSynchronization;
 import org.drools.persistence.TransactionManager;
 import org.drools.persistence.TransactionManagerHelper;
+import org.drools.persistence.TransactionSynchronization;
 import org.jbpm.runtime.manager.impl.factory.LocalTaskServiceFactory;
 import org.jbpm.runtime.manager.impl.mapper.EnvironmentAwareProcessInstanceContext;
 import org.jbpm.runtime.manager.impl.mapper.InMemoryMapper;
@@ -75,6 +81,17 @@ import org.slf4j.LoggerFactory;
  *  <li>CorrelationKeyContext</li>
  *  <li>EmptyContext - for initial RuntimeEngine to start process only</li>
  * </ul>
+ * <br/>
+ * Optionally (<code>org.jbpm.runtime.manager.ppi.pool.size</code> system property greater than 0) runtime engines
+ * are recycled instead of being disposed:
+ * <ul>
+ *  <li>engines that were never bound to a process instance are kept in a pool and handed out for new contexts</li>
+ *  <li>engines bound to an active process instance are kept by ksession id and rebound on next request for that
+ *  process instance, avoiding reload of the ksession and registration of handlers and listeners</li>
+ * </ul>
+ * Engines are only recycled when their transaction committed and their process instance did not complete.
+ * As recycled ksessions stay in memory between requests this should only be enabled when process instances
+ * of this manager are not accessed from other cluster members.
  */
 public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 	
@@ -89,12 +106,28 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
     
     private Mapper mapper;
     
+    private int poolSize = Integer.parseInt(System.getProperty("org.jbpm.runtime.manager.ppi.pool.size", "0"));
+    // initialized engines not yet bound to any process instance
+    private LinkedBlockingDeque<RuntimeEngine> idleEngines;
+    // initialized engines bound to active process instances, keyed by ksession id
+    private Map<Long, RuntimeEngine> boundEngines;
+    // engines that must not be recycled e.g. due to rolled back transaction or completed process instance
+    private Set<RuntimeEngine> nonRecyclable = Collections.newSetFromMap(new ConcurrentHashMap<RuntimeEngine, Boolean>());
+    
     public PerProcessInstanceRuntimeManager(RuntimeEnvironment environment, SessionFactory factory, TaskServiceFactory taskServiceFactory, String identifier) {
         super(environment, identifier);
         this.factory = factory;
         this.taskServiceFactory = taskServiceFactory;
         this.mapper = ((org.kie.internal.runtime.manager.RuntimeEnvironment)environment).getMapper();
         this.registry.register(this);
+        if (poolSize > 0) {
+            if (environment.usePersistence() && !hasEnvironmentEntry("IS_JTA_TRANSACTION", false)) {
+                initPools();
+            } else {
+                logger.warn("Runtime engine pooling is supported only with persistence and JTA transactions, disabling it for {}", identifier);
+                poolSize = 0;
+            }
+        }
     }
     
     @Override
@@ -110,6 +143,16 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
     		logger.warn("ProcessInstanceIdContext or CorrelationKeyContext shall be used when interacting with PerProcessInstance runtime manager");
     	}
     	
+    	if (isPoolingEnabled()) {
+    	    runtime = takePooledRuntime(context);
+    	    if (runtime != null) {
+    	        createLockOnGetEngine(context, runtime);
+    	        saveLocalRuntime(contextId, runtime);
+    	        
+    	        return runtime;
+    	    }
+    	}
+    	
     	if (engineInitEager) {
 			KieSession ksession = null;
 			Long ksessionId = null;
@@ -132,7 +175,7 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 			((RuntimeEngineImpl) runtime).setManager(this);
 			((RuntimeEngineImpl) runtime).setContext(context);
 			configureRuntimeOnTaskService(internalTaskService, runtime);
-			registerDisposeCallback(runtime, new DisposeSessionTransactionSynchronization(this, runtime));
+			registerDisposeCallback(runtime, newDisposeSynchronization(runtime));
 			registerItems(runtime);
 			attachManager(runtime);
 			ksession.addEventListener(new MaintainMappingListener(ksessionId, runtime, this.identifier));
@@ -224,7 +267,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
             	if (mapper instanceof InMemoryMapper && ((InMemoryMapper)mapper).hasContext(runtime.getKieSession().getIdentifier())){
             		return;
             	}
-                ((Disposable) runtime).dispose();
+            	if (!recycle(runtime)) {
+            	    ((Disposable) runtime).dispose();
+            	}
             }
             
         	releaseAndCleanLock(runtime);
@@ -249,6 +294,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         } catch(Exception e) {
            // do nothing 
         }
+        if (isPoolingEnabled()) {
+            disposePools();
+        }
         super.close();
         factory.close();
     }
@@ -281,6 +329,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
             		event.getKieRuntime().getEnvironment(),
             		event.getProcessInstance().getId()), managerId);
             removeLocalRuntime(runtime);
+            if (isPoolingEnabled()) {
+                nonRecyclable.add(runtime);
+            }
             
             registerDisposeCallback(runtime, 
                         new DestroySessionTransactionSynchronization(runtime.getKieSession()));            
@@ -373,6 +424,97 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
             map.remove(keyToRemove);
         }
     }
+
+    protected boolean isPoolingEnabled() {
+        return poolSize > 0;
+    }
+    
+    protected void initPools() {
+        this.idleEngines = new LinkedBlockingDeque<RuntimeEngine>(poolSize);
+        this.boundEngines = Collections.synchronizedMap(new LinkedHashMap<Long, RuntimeEngine>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, RuntimeEngine> eldest) {
+                if (size() > poolSize) {
+                    ((Disposable) eldest.getValue()).dispose();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+    
+    protected void disposePools() {
+        RuntimeEngine engine = null;
+        while ((engine = idleEngines.poll()) != null) {
+            ((Disposable) engine).dispose();
+        }
+        synchronized (boundEngines) {
+            for (RuntimeEngine bound : boundEngines.values()) {
+                ((Disposable) bound).dispose();
+            }
+            boundEngines.clear();
+        }
+        nonRecyclable.clear();
+    }
+    
+    /**
+     * Takes already initialized runtime engine from the pools if there is one available for given context.
+     * @param context context the runtime engine is requested for
+     * @return recycled runtime engine or null if there is none available
+     */
+    protected RuntimeEngine takePooledRuntime(Context<?> context) {
+        Object contextId = context.getContextId();
+        RuntimeEngine runtime = null;
+        if (contextId == null || context instanceof EmptyContext) {
+            runtime = idleEngines.poll();
+        } else if (!boundEngines.isEmpty() && findLocalRuntime(contextId) == null) {
+            Long ksessionId = mapper.findMapping(context, this.identifier);
+            if (ksessionId != null) {
+                runtime = boundEngines.remove(ksessionId);
+            }
+        }
+        if (runtime != null) {
+            logger.debug("Reusing pooled runtime engine with ksession {} for context {}", ((RuntimeEngineImpl) runtime).getKieSessionId(), contextId);
+            ((RuntimeEngineImpl) runtime).setAfterCompletion(false);
+            ((RuntimeEngineImpl) runtime).setContext(context);
+            registerDisposeCallback(runtime, newDisposeSynchronization(runtime));
+        }
+        return runtime;
+    }
+    
+    /**
+     * Returns runtime engine to the pools instead of disposing it, if the runtime engine can be safely reused.
+     * @param runtime runtime engine being disposed
+     * @return true if the runtime engine was recycled, false if it should be disposed
+     */
+    protected boolean recycle(RuntimeEngine runtime) {
+        if (!isPoolingEnabled() || nonRecyclable.remove(runtime)) {
+            return false;
+        }
+        RuntimeEngineImpl engine = (RuntimeEngineImpl) runtime;
+        if (engine.internalGetKieSession() == null) {
+            // lazy engine that was never used, nothing worth keeping
+            return false;
+        }
+        Context<?> context = engine.getContext();
+        if (context == null || context instanceof EmptyContext || context.getContextId() == null) {
+            return idleEngines.offer(runtime);
+        }
+        RuntimeEngine replaced = boundEngines.put(engine.getKieSessionId(), runtime);
+        if (replaced != null && replaced != runtime) {
+            ((Disposable) replaced).dispose();
+        }
+        return true;
+    }
+    
+    protected TransactionSynchronization newDisposeSynchronization(RuntimeEngine runtime) {
+        if (isPoolingEnabled()) {
+            return new RecyclingDisposeSessionTransactionSynchronization(runtime);
+        }
+        return new DisposeSessionTransactionSynchronization(this, runtime);
+    }
     
     @Override
     public void init() {
@@ -548,7 +690,7 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
             ((RuntimeEngineImpl)engine).internalSetKieSession(ksession);
             registerItems(engine);
             attachManager(engine);
-            registerDisposeCallback(engine, new DisposeSessionTransactionSynchronization(manager, engine));
+            registerDisposeCallback(engine, newDisposeSynchronization(engine));
             ksession.addEventListener(new MaintainMappingListener(ksessionId, engine, manager.getIdentifier()));
     		return ksession;
     	}
@@ -562,6 +704,25 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 
     }
 
+    private class RecyclingDisposeSessionTransactionSynchronization extends DisposeSessionTransactionSynchronization {
+        
+        private RuntimeEngine runtime;
+        
+        RecyclingDisposeSessionTransactionSynchronization(RuntimeEngine runtime) {
+            super(PerProcessInstanceRuntimeManager.this, runtime);
+            this.runtime = runtime;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // ksession state might not be in sync with the data store any more
+            if (status != TransactionManager.STATUS_COMMITTED) {
+                nonRecyclable.add(runtime);
+            }
+            super.afterCompletion(status);
+        }
+    }
+
     @Override
     protected boolean isUseLocking() {
         return useLocking;
@@ -18,6 +18,7 @@ package org.jbpm.runtime.manager.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -1321,4 +1322,64 @@ public class PerProcessInstanceRuntimeManagerTest extends AbstractBaseTest {
         manager.disposeRuntimeEngine(runtime);     
         manager.close();
     }
+    
+    @Test
+    public void testRecyclingOfRuntimeEnginesWithPool() {
+        System.setProperty("org.jbpm.runtime.manager.ppi.pool.size", "5");
+        try {
+            RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get()
+                    .newDefaultBuilder()
+                    .userGroupCallback(userGroupCallback)
+                    .addAsset(ResourceFactory.newClassPathResource("BPMN2-UserTask.bpmn2"), ResourceType.BPMN2)
+                    .get();
+            
+            manager = RuntimeManagerFactory.Factory.get().newPerProcessInstanceRuntimeManager(environment);
+        } finally {
+            System.clearProperty("org.jbpm.runtime.manager.ppi.pool.size");
+        }
+        assertNotNull(manager);
+        
+        // engine that was not used to start process instance is returned to the pool
+        RuntimeEngine runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+        long ksessionId = runtime.getKieSession().getIdentifier();
+        manager.disposeRuntimeEngine(runtime);
+        
+        RuntimeEngine pooled = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+        assertSame(runtime, pooled);
+        assertEquals(ksessionId, pooled.getKieSession().getIdentifier());
+        
+        ProcessInstance processInstance = pooled.getKieSession().startProcess("UserTask");
+        assertEquals(ProcessInstance.STATE_ACTIVE, processInstance.getState());
+        manager.disposeRuntimeEngine(pooled);
+        
+        // engine bound to active process instance is rebound instead of loading the ksession again
+        RuntimeEngine rebound = manager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstance.getId()));
+        assertSame(runtime, rebound);
+        assertEquals(ksessionId, rebound.getKieSession().getIdentifier());
+        
+        // new context must not get the engine that is bound to the process instance
+        RuntimeEngine other = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+        assertTrue(other != rebound);
+        assertTrue(ksessionId != other.getKieSession().getIdentifier());
+        manager.disposeRuntimeEngine(other);
+        
+        List<Long> taskIds = rebound.getTaskService().getTasksByProcessInstanceId(processInstance.getId());
+        assertEquals(1, taskIds.size());
+        rebound.getTaskService().start(taskIds.get(0), "john");
+        rebound.getTaskService().complete(taskIds.get(0), "john", null);
+        manager.disposeRuntimeEngine(rebound);
+        
+        // completed process instance makes the engine not reusable any more
+        try {
+            manager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstance.getId())).getKieSession();
+            fail("Session for this (" + processInstance.getId() + ") process instance is no more accessible");
+        } catch (RuntimeException e) {
+            
+        }
+        RuntimeEngine fresh = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+        assertTrue(fresh != rebound);
+        assertTrue(ksessionId != fresh.getKieSession().getIdentifier());
+        manager.disposeRuntimeEngine(fresh);
+        manager.close();
+    }
 }
@@ -28,6 +28,7 @@ import java.util.Map;
 
 import org.apache.commons.io.input.ClassLoaderObjectInputStream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.drools.persistence.TransactionManager;
 import org.jbpm.executor.entities.ErrorInfo;
 import org.jbpm.executor.entities.RequestInfo;
 import org.jbpm.executor.impl.event.ExecutorEventSupport;
@@ -64,6 +65,11 @@ public abstract class AbstractAvailableJobsExecutor {
     protected ExecutorStoreService executorStoreService;
     
     protected ExecutorEventSupport eventSupport = new ExecutorEventSupport();
+    
+    // set only when in JVM signaling is enabled
+    protected AvailableJobsSignal signal;
+    
+    protected TransactionManager transactionManager;
 
     public void setEventSupport(ExecutorEventSupport eventSupport) {
         this.eventSupport = eventSupport;
@@ -80,6 +86,14 @@ public abstract class AbstractAvailableJobsExecutor {
 	public void setExecutorStoreService(ExecutorStoreService executorStoreService) {
 		this.executorStoreService = executorStoreService;
 	}
+	
+    public void setSignal(AvailableJobsSignal signal) {
+        this.signal = signal;
+    }
+
+    public void setTransactionManager(TransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
      
     public void executeGivenJob(RequestInfo request) {
         Throwable exception = null;
@@ -215,6 +229,7 @@ public abstract class AbstractAvailableJobsExecutor {
             logger.debug("Retrying ({}) still available!", request.getRetries());
             
             executorStoreService.updateRequest(request);
+            signalAfterCommit(request);
             
             return false;
         } else {
@@ -269,8 +284,19 @@ public abstract class AbstractAvailableJobsExecutor {
                 }
                 
                 executorStoreService.persistRequest(requestInfo);
+                signalAfterCommit(requestInfo);
             }
         }
     }
+    
+    /*
+     * Wakes up executor threads waiting for a signal once given job is stored, so retries and 
+     * reoccurring jobs are not left for the fallback poll
+     */
+    protected void signalAfterCommit(RequestInfo request) {
+        if (signal != null) {
+            SignalTransactionSynchronization.signalAfterCommit(transactionManager, signal, request);
+        }
+    }
 
 }
@@ -16,7 +16,17 @@
 
 package org.jbpm.executor.impl;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jbpm.executor.BatchProcessingAware;
 import org.jbpm.executor.entities.RequestInfo;
+import org.kie.api.executor.STATUS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +51,82 @@ public class AvailableJobsExecutor extends AbstractAvailableJobsExecutor {
             logger.warn("Unexpected error while processin executor's job {}", e.getMessage(), e);
         }
     }
-
+    
+    /**
+     * Claims up to <code>claimSize</code> jobs in one transaction and executes them - in parallel
+     * on given workers if they are provided, otherwise sequentially on the calling thread.
+     * Returns only when all claimed jobs are executed so the caller will not claim more jobs than it can handle.
+     * Jobs that were claimed but did not start because the thread was interrupted or an error occurred are
+     * put back to the queue so they are not left in running state.
+     * Falls back to single job processing when query service does not support batch claiming.
+     * @param claimSize maximum number of jobs to be claimed at once
+     * @param workers optional executor service to run claimed jobs on
+     */
+    public void executeJobs(int claimSize, ExecutorService workers) {
+        if (claimSize <= 1 || !(queryService instanceof BatchProcessingAware)) {
+            executeJob();
+            return;
+        }
+        logger.debug("Executor Thread {} Waking Up to claim up to {} jobs", this.toString(), claimSize);
+        // claimed jobs that were not started yet
+        List<RequestInfo> notStarted = new ArrayList<RequestInfo>();
+        Map<Future<?>, RequestInfo> results = new LinkedHashMap<Future<?>, RequestInfo>();
+        try {
+            List<org.kie.api.executor.RequestInfo> requests = ((BatchProcessingAware) queryService).getRequestsForProcessing(claimSize);
+            logger.debug("Claimed {} jobs for processing", requests.size());
+            for (org.kie.api.executor.RequestInfo request : requests) {
+                notStarted.add((RequestInfo) request);
+            }
+            if (workers == null) {
+                while (!notStarted.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                    executeGivenJob(notStarted.remove(0));
+                }
+                return;
+            }
+            while (!notStarted.isEmpty()) {
+                final RequestInfo request = notStarted.get(0);
+                results.put(workers.submit(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        executeGivenJob(request);
+                    }
+                }), request);
+                notStarted.remove(0);
+            }
+            for (Future<?> result : results.keySet()) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    logger.warn("Unexpected error while processin executor's job {}", e.getMessage(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Unexpected error while processin executor's jobs {}", e.getMessage(), e);
+        } finally {
+            // jobs still waiting for a worker will not run
+            for (Map.Entry<Future<?>, RequestInfo> result : results.entrySet()) {
+                if (result.getKey().cancel(false)) {
+                    notStarted.add(result.getValue());
+                }
+            }
+            requeue(notStarted);
+        }
+    }
+    
+    protected void requeue(List<RequestInfo> requests) {
+        for (RequestInfo request : requests) {
+            logger.debug("Job {} was claimed but not executed, putting it back to the queue", request.getId());
+            try {
+                request.setStatus(STATUS.QUEUED);
+                executorStoreService.updateRequest(request);
+                signalAfterCommit(request);
+            } catch (Exception e) {
+                logger.warn("Unable to put job {} back to the queue due to {}", request.getId(), e.getMessage(), e);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In JVM signaling mechanism between <code>ExecutorImpl</code> that schedules jobs and threads that execute them.
+ * Keeps time ordered index of due times of scheduled jobs so waiting threads can sleep exactly until next job
+ * is due instead of polling data base in fixed intervals.
+ * Index is bounded - when it's full the latest due times are dropped, jobs they belong to
+ * (same as jobs scheduled by other cluster members) are then picked by fallback poll.
+ * Index of size 0 keeps no due times at all, so only the fallback poll picks up jobs.
+ */
+public class AvailableJobsSignal {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailableJobsSignal.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // due time -> number of jobs due at that time
+    private final TreeMap<Long, Integer> dueTimes = new TreeMap<Long, Integer>();
+    private final int maxIndexSize;
+    private int size = 0;
+
+    public AvailableJobsSignal(int maxIndexSize) {
+        if (maxIndexSize < 0) {
+            throw new IllegalArgumentException("Index size cannot be negative, was " + maxIndexSize);
+        }
+        this.maxIndexSize = maxIndexSize;
+    }
+
+    /**
+     * Records job due at given time and wakes up one of the waiting threads so it can
+     * recalculate its wait time.
+     * @param dueTime time when job should be executed
+     */
+    public void signal(Date dueTime) {
+        long time = dueTime == null ? System.currentTimeMillis() : dueTime.getTime();
+        lock.lock();
+        try {
+            if (size >= maxIndexSize) {
+                if (dueTimes.isEmpty() || time >= dueTimes.lastKey()) {
+                    logger.debug("Signal index is full, job due at {} will be picked by fallback poll", dueTime);
+                    return;
+                }
+                decrement(dueTimes.lastEntry());
+            }
+            Integer count = dueTimes.get(time);
+            dueTimes.put(time, count == null ? 1 : count + 1);
+            size++;
+
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until next job is due or given fallback time elapsed, whichever comes first.
+     * @param fallback maximum time to wait in milliseconds
+     * @return true if woken up because of due job, false when fallback time elapsed
+     * @throws InterruptedException in case waiting thread was interrupted
+     */
+    public boolean await(long fallback) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + fallback;
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                Map.Entry<Long, Integer> next = dueTimes.firstEntry();
+                if (next != null && next.getKey() < now) {
+                    decrement(next);
+                    return true;
+                }
+                long waitTime = deadline - now;
+                if (waitTime <= 0) {
+                    return false;
+                }
+                if (next != null) {
+                    // wake up right after the job is due as only jobs with time older than now are taken
+                    waitTime = Math.min(waitTime, next.getKey() - now + 1);
+                }
+                available.await(waitTime, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of threads currently waiting for a job to become due.
+     */
+    public int getWaitingThreads() {
+        lock.lock();
+        try {
+            return lock.getWaitQueueLength(available);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            dueTimes.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrement(Map.Entry<Long, Integer> entry) {
+        if (entry.getValue() > 1) {
+            dueTimes.put(entry.getKey(), entry.getValue() - 1);
+        } else {
+            dueTimes.remove(entry.getKey());
+        }
+        size--;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -38,6 +39,8 @@ import javax.jms.TextMessage;
 import javax.naming.InitialContext;
 
 import org.drools.core.time.TimeUtils;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerFactory;
 import org.jbpm.executor.ExecutorNotStartedException;
 import org.jbpm.executor.entities.RequestInfo;
 import org.jbpm.executor.impl.event.ExecutorEventSupport;
@@ -56,6 +59,10 @@ import org.slf4j.LoggerFactory;
  *  <li>thread pool size - default 1 - use system property org.kie.executor.pool.size</li>
  *  <li>retry count - default 3 retries - use system property org.kie.executor.retry.count</li>
  *  <li>execution interval - default 3 seconds - use system property org.kie.executor.interval</li>
+ *  <li>claim size - default 1 - number of jobs claimed in single transaction on each execution interval 
+ *  - use system property org.kie.executor.claim.size</li>
+ *  <li>worker pool size - default 0 - number of threads that execute claimed jobs in parallel, when set to 0 
+ *  claimed jobs are executed sequentially by the polling thread - use system property org.kie.executor.worker.pool.size</li>
  * </ul>
  * Additionally executor can be disable to not start at all when system property org.kie.executor.disabled is 
  * set to true
@@ -69,6 +76,17 @@ import org.slf4j.LoggerFactory;
  *  <li>org.kie.executor.jms.cf - JNDI name of connection factory to be used for sending messages</li>
  *  <li>org.kie.executor.jms.queue - JNDI name for destination (usually a queue) to be used to send messages to</li>
  * </ul>
+ * As an alternative to JMS that does not require any broker executor can be notified about jobs within the same JVM.
+ * When enabled, executor threads wait for a signal (sent after transaction that scheduled the job was committed)
+ * or for the time the next known job is due, and poll mechanism becomes a fallback used to pick up jobs 
+ * scheduled by other cluster members or rescheduled for retry.
+ * Configuration parameters for in JVM signaling:
+ * <ul>
+ *  <li>org.kie.executor.wakeup - allows to enable in JVM signaling - default set to false</li>
+ *  <li>org.kie.executor.wakeup.fallback.interval - interval of the fallback poll expressed in configured time unit 
+ *  - default 10 times the execution interval</li>
+ *  <li>org.kie.executor.wakeup.index.size - maximum number of due times of scheduled jobs kept in memory - default 10000</li>
+ * </ul>
  */
 public class ExecutorImpl implements Executor {
 
@@ -82,6 +100,8 @@ public class ExecutorImpl implements Executor {
     private int interval = Integer.parseInt(System.getProperty("org.kie.executor.interval", "3"));
     private int initialDelay = Integer.parseInt(System.getProperty("org.kie.executor.initial.delay", "100"));
     private TimeUnit timeunit = TimeUnit.valueOf(System.getProperty("org.kie.executor.timeunit", "SECONDS"));
+    private int claimSize = Integer.parseInt(System.getProperty("org.kie.executor.claim.size", "1"));
+    private int workerPoolSize = Integer.parseInt(System.getProperty("org.kie.executor.worker.pool.size", "0"));
     
     
     // jms related instances
@@ -91,8 +111,17 @@ public class ExecutorImpl implements Executor {
     private boolean transacted = Boolean.parseBoolean(System.getProperty("org.kie.executor.jms.transacted", "false"));
     private ConnectionFactory connectionFactory;
     private Queue queue;
+    
+    // in jvm signaling related instances
+    private boolean useWakeUp = Boolean.parseBoolean(System.getProperty("org.kie.executor.wakeup", "false"));
+    private Integer fallbackInterval = System.getProperty("org.kie.executor.wakeup.fallback.interval") == null ? null 
+            : Integer.valueOf(System.getProperty("org.kie.executor.wakeup.fallback.interval"));
+    private int wakeUpIndexSize = Integer.parseInt(System.getProperty("org.kie.executor.wakeup.index.size", "10000"));
+    private AvailableJobsSignal signal;
+    private TransactionManager transactionManager;
 
 	private ScheduledExecutorService scheduler;
+	private ExecutorService workers;
 	
 	private ExecutorEventSupport eventSupport = new ExecutorEventSupport();
 
@@ -206,6 +235,52 @@ public class ExecutorImpl implements Executor {
 	public void setTimeunit(TimeUnit timeunit) {
 		this.timeunit = timeunit;
 	}
+	
+	public boolean isUseWakeUp() {
+	    return useWakeUp;
+	}
+	
+	public void setUseWakeUp(boolean useWakeUp) {
+	    this.useWakeUp = useWakeUp;
+	}
+	
+	public int getFallbackInterval() {
+	    if (fallbackInterval == null) {
+	        return interval * 10;
+	    }
+	    return fallbackInterval;
+	}
+	
+	public void setFallbackInterval(int fallbackInterval) {
+	    this.fallbackInterval = fallbackInterval;
+	}
+	
+	/**
+	 * Returns in JVM signal executor threads wait for, null when signaling is not enabled or executor is not started.
+	 */
+	public AvailableJobsSignal getSignal() {
+	    return signal;
+	}
+	
+	public void setTransactionManager(TransactionManager transactionManager) {
+	    this.transactionManager = transactionManager;
+	}
+	
+	public int getClaimSize() {
+	    return claimSize;
+	}
+	
+	public void setClaimSize(int claimSize) {
+	    this.claimSize = claimSize;
+	}
+	
+	public int getWorkerPoolSize() {
+	    return workerPoolSize;
+	}
+	
+	public void setWorkerPoolSize(int workerPoolSize) {
+	    this.workerPoolSize = workerPoolSize;
+	}
 
     /**
      * {@inheritDoc}
@@ -213,17 +288,22 @@ public class ExecutorImpl implements Executor {
     public void init() {
         if (!"true".equalsIgnoreCase(System.getProperty("org.kie.executor.disabled"))) {
             logger.info("Starting Executor Component ...\n" + " \t - Thread Pool Size: {}" + "\n"
-                    + " \t - Interval: {} {} \n" + " \t - Retries per Request: {}\n",
-                    threadPoolSize, interval, timeunit.toString(), retries);
+                    + " \t - Interval: {} {} \n" + " \t - Retries per Request: {}\n"
+                    + " \t - Claim Size: {}\n" + " \t - Worker Pool Size: {}\n",
+                    threadPoolSize, interval, timeunit.toString(), retries, claimSize, workerPoolSize);
             
             int delayIncremental = 0;
             
             scheduler = Executors.newScheduledThreadPool(threadPoolSize);
+            if (useWakeUp) {
+                signal = new AvailableJobsSignal(wakeUpIndexSize);
+            }
+            if (claimSize > 1 && workerPoolSize > 0) {
+                workers = Executors.newFixedThreadPool(workerPoolSize);
+            }
             for (int i = 0; i < threadPoolSize; i++) {
                 long delay = 2000 + delayIncremental;
-                long interval = TimeUnit.MILLISECONDS.convert(this.interval, timeunit);
-                logger.debug("Starting executor thread with initial delay {} interval {} and time unit {}", delay, interval, TimeUnit.MILLISECONDS);
-                handle.add(scheduler.scheduleAtFixedRate(executorStoreService.buildExecutorRunnable(), delay, interval, TimeUnit.MILLISECONDS));
+                scheduleExecutorRunnable(delay);
                                
                 delayIncremental += this.initialDelay;
                 
@@ -260,12 +340,16 @@ public class ExecutorImpl implements Executor {
             int delayIncremental = 0;
             
             scheduler = Executors.newScheduledThreadPool(threadPoolSize, threadFactory);
+            if (useWakeUp) {
+                signal = new AvailableJobsSignal(wakeUpIndexSize);
+            }
+            if (claimSize > 1 && workerPoolSize > 0) {
+                workers = Executors.newFixedThreadPool(workerPoolSize, threadFactory);
+            }
             for (int i = 0; i < threadPoolSize; i++) {
                 
                 long delay = 2000 + delayIncremental;
-                long interval = TimeUnit.MILLISECONDS.convert(this.interval, timeunit);
-                logger.debug("Starting executor thread with initial delay {} interval {} and time unit {}", delay, interval, TimeUnit.MILLISECONDS);
-                handle.add(scheduler.scheduleAtFixedRate(executorStoreService.buildExecutorRunnable(), delay, interval, TimeUnit.MILLISECONDS));
+                scheduleExecutorRunnable(delay);
                 
                 delayIncremental += this.initialDelay;
             }
@@ -287,6 +371,40 @@ public class ExecutorImpl implements Executor {
         if (scheduler != null) {
             scheduler.shutdownNow();
         }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        if (signal != null) {
+            signal.clear();
+            signal = null;
+        }
+    }
+    
+    protected void scheduleExecutorRunnable(long delay) {
+        if (signal != null) {
+            long fallback = TimeUnit.MILLISECONDS.convert(getFallbackInterval(), timeunit);
+            logger.debug("Starting signal aware executor thread with initial delay {} fallback interval {} and time unit {}", delay, fallback, TimeUnit.MILLISECONDS);
+            handle.add(scheduler.schedule(new SignalAwareExecutorRunnable(buildExecutorRunnable(), signal, fallback), delay, TimeUnit.MILLISECONDS));
+        } else {
+            long interval = TimeUnit.MILLISECONDS.convert(this.interval, timeunit);
+            logger.debug("Starting executor thread with initial delay {} interval {} and time unit {}", delay, interval, TimeUnit.MILLISECONDS);
+            handle.add(scheduler.scheduleAtFixedRate(buildExecutorRunnable(), delay, interval, TimeUnit.MILLISECONDS));
+        }
+    }
+    
+    protected Runnable buildExecutorRunnable() {
+        Runnable runnable = executorStoreService.buildExecutorRunnable();
+        if (claimSize > 1 && runnable instanceof ExecutorRunnable) {
+            ((ExecutorRunnable) runnable).setClaimSize(claimSize);
+            ((ExecutorRunnable) runnable).setWorkers(workers);
+        }
+        if (signal != null && runnable instanceof ExecutorRunnable) {
+            // retried and rescheduled reoccurring jobs wake up executor threads as well
+            ((ExecutorRunnable) runnable).setSignal(signal, getTransactionManager());
+        }
+        
+        return runnable;
     }
 
     /**
@@ -373,6 +491,10 @@ public class ExecutorImpl implements Executor {
                 }
             }
             
+            if (signal != null) {
+                signalAfterCommit(signal, requestInfo);
+            }
+            
             logger.debug("Scheduled request for Command: {} - requestId: {} with {} retries", commandId, requestInfo.getId(), requestInfo.getRetries());
             eventSupport.fireAfterJobScheduled(requestInfo, null);
         } catch (Throwable e) {
@@ -399,6 +521,21 @@ public class ExecutorImpl implements Executor {
     }
 
     
+    protected void signalAfterCommit(AvailableJobsSignal signal, RequestInfo requestInfo) {
+        SignalTransactionSynchronization.signalAfterCommit(getTransactionManager(), signal, requestInfo);
+    }
+    
+    protected TransactionManager getTransactionManager() {
+        if (transactionManager == null) {
+            try {
+                transactionManager = TransactionManagerFactory.get().newTransactionManager();
+            } catch (Throwable e) {
+                logger.debug("No transaction manager available, executor will be signaled immediately due to {}", e.getMessage());
+            }
+        }
+        return transactionManager;
+    }
+    
     protected void sendMessage(String messageBody, int priority) {
         if (connectionFactory == null && queue == null) {
             throw new IllegalStateException("ConnectionFactory and Queue cannot be null");
@@ -445,6 +582,32 @@ public class ExecutorImpl implements Executor {
             }
         }
     }
+    
+    private static class SignalAwareExecutorRunnable implements Runnable {
+        
+        private Runnable delegate;
+        private AvailableJobsSignal signal;
+        private long fallback;
+        
+        SignalAwareExecutorRunnable(Runnable delegate, AvailableJobsSignal signal, long fallback) {
+            this.delegate = delegate;
+            this.signal = signal;
+            this.fallback = fallback;
+        }
 
+        @Override
+        public void run() {
+            // runs until executor is destroyed, first round is always a poll to pick up jobs scheduled before start
+            while (!Thread.currentThread().isInterrupted()) {
+                delegate.run();
+                try {
+                    boolean signaled = signal.await(fallback);
+                    logger.debug("Executor thread woken up by {}", signaled ? "signal" : "fallback interval");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
 
 }
@@ -16,6 +16,9 @@
 
 package org.jbpm.executor.impl;
 
+import java.util.concurrent.ExecutorService;
+
+import org.drools.persistence.TransactionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,15 +34,35 @@ public class ExecutorRunnable implements Runnable {
 
     private AvailableJobsExecutor availableJobsExecutor;       
     
+    private int claimSize = 1;
+    private ExecutorService workers;
+    
     public void setAvailableJobsExecutor(AvailableJobsExecutor availableJobsExecutor) {
 		this.availableJobsExecutor = availableJobsExecutor;
 	}
+    
+    public void setClaimSize(int claimSize) {
+        this.claimSize = claimSize;
+    }
+    
+    public void setWorkers(ExecutorService workers) {
+        this.workers = workers;
+    }
+    
+    public void setSignal(AvailableJobsSignal signal, TransactionManager transactionManager) {
+        this.availableJobsExecutor.setSignal(signal);
+        this.availableJobsExecutor.setTransactionManager(transactionManager);
+    }
 
     public void run() {
     	try {
     		logger.debug("About to execute jobs...");
     		
-    		this.availableJobsExecutor.executeJob();
+    		if (claimSize > 1) {
+    		    this.availableJobsExecutor.executeJobs(claimSize, workers);
+    		} else {
+    		    this.availableJobsExecutor.executeJob();
+    		}
     	} catch (Exception e) {
     		logger.warn("Error while executing jobs due to {}", e.getMessage());
     	}
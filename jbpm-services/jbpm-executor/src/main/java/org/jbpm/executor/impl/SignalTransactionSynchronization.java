@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl;
+
+import java.util.Date;
+
+import org.drools.persistence.OrderedTransactionSynchronization;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerHelper;
+import org.jbpm.executor.entities.RequestInfo;
+
+/**
+ * Signals <code>AvailableJobsSignal</code> once transaction that stored the job was committed so executor
+ * threads never look for jobs that are not yet visible to them.
+ */
+class SignalTransactionSynchronization extends OrderedTransactionSynchronization {
+
+    private AvailableJobsSignal signal;
+    private Date date;
+
+    SignalTransactionSynchronization(AvailableJobsSignal signal, RequestInfo requestInfo) {
+        super(5, "ExecutorSignal-" + requestInfo.getId());
+        this.signal = signal;
+        this.date = requestInfo.getTime();
+    }
+
+    /**
+     * Signals given job after active transaction commits or right away when there is no active transaction.
+     * @param tm transaction manager, might be null when not available
+     * @param signal signal to notify executor threads with
+     * @param requestInfo stored job
+     */
+    static void signalAfterCommit(TransactionManager tm, AvailableJobsSignal signal, RequestInfo requestInfo) {
+        if (tm != null && tm.getStatus() != TransactionManager.STATUS_NO_TRANSACTION
+                && tm.getStatus() != TransactionManager.STATUS_ROLLEDBACK
+                && tm.getStatus() != TransactionManager.STATUS_COMMITTED) {
+            TransactionManagerHelper.registerTransactionSyncInContainer(tm, new SignalTransactionSynchronization(signal, requestInfo));
+
+            return;
+        }
+        signal.signal(requestInfo.getTime());
+    }
+
+    @Override
+    public void beforeCompletion() {
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (status == TransactionManager.STATUS_COMMITTED) {
+            signal.signal(date);
+        }
+    }
+}
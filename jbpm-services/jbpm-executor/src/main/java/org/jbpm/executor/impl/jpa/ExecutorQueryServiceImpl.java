@@ -16,6 +16,7 @@
 
 package org.jbpm.executor.impl.jpa;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +26,7 @@ import javax.persistence.NoResultException;
 
 import org.drools.core.command.CommandService;
 import org.drools.core.command.impl.GenericCommand;
+import org.jbpm.executor.BatchProcessingAware;
 import org.jbpm.shared.services.impl.JpaPersistenceContext;
 import org.jbpm.shared.services.impl.QueryManager;
 import org.kie.api.executor.ErrorInfo;
@@ -42,9 +44,12 @@ import org.kie.internal.executor.api.ExecutorQueryService;
  * IMPORTANT: please keep all classes from package org.jbpm.shared.services.impl as FQCN
  * inside method body to avoid exception logged by CDI when used with in memory mode
  */
-public class ExecutorQueryServiceImpl implements ExecutorQueryService {
+public class ExecutorQueryServiceImpl implements ExecutorQueryService, BatchProcessingAware {
 
     private CommandService commandService;
+    // lock timeout hint used when claiming batches, -2 means SKIP LOCKED for hibernate on dialects that support it
+    private Integer batchLockTimeout = System.getProperty("org.kie.executor.batch.lock.timeout") == null ? null
+            : Integer.valueOf(System.getProperty("org.kie.executor.batch.lock.timeout"));
    
     public ExecutorQueryServiceImpl(boolean active) {
         QueryManager.get().addNamedQueries("META-INF/Executor-orm.xml");
@@ -54,6 +59,10 @@ public class ExecutorQueryServiceImpl implements ExecutorQueryService {
         this.commandService = commandService;
     }
 
+    public void setBatchLockTimeout(Integer batchLockTimeout) {
+        this.batchLockTimeout = batchLockTimeout;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -221,6 +230,18 @@ public class ExecutorQueryServiceImpl implements ExecutorQueryService {
         return request;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RequestInfo> getRequestsForProcessing(int maxResults) {
+        
+        // lock all of them at once so other executor services (and nodes) won't pick the same elements
+        List<RequestInfo> requests = commandService.execute(new LockAndUpdateRequestInfosCommand(maxResults));
+        
+        return requests;
+    }
+
     private class LockAndUpdateRequestInfoCommand implements GenericCommand<RequestInfo> {
 
 		private static final long serialVersionUID = 8670412133363766161L;
@@ -251,6 +272,45 @@ public class ExecutorQueryServiceImpl implements ExecutorQueryService {
     	
     }
     
+    private class LockAndUpdateRequestInfosCommand implements GenericCommand<List<RequestInfo>> {
+
+        private static final long serialVersionUID = -2378539834730423398L;
+        
+        private int maxResults;
+        
+        LockAndUpdateRequestInfosCommand(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public List<RequestInfo> execute(Context context) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("now", new Date());
+            params.put("firstResult", 0);
+            params.put("maxResults", maxResults);
+            params.put("owner", ExecutorService.EXECUTOR_ID);
+            if (batchLockTimeout != null) {
+                params.put(org.jbpm.shared.services.impl.JpaPersistenceContext.LOCK_TIMEOUT, batchLockTimeout);
+            }
+            List<RequestInfo> requests = new ArrayList<RequestInfo>();
+            org.jbpm.shared.services.impl.JpaPersistenceContext ctx = (org.jbpm.shared.services.impl.JpaPersistenceContext) context;
+            List<RequestInfo> found = ctx.queryAndLockWithParametersInTransaction("PendingRequestsForProcessing",params, false, List.class);
+            if (found != null) {
+                Date startedAt = new Date();
+                for (RequestInfo request : found) {
+                    request.setStatus(STATUS.RUNNING);
+                    // update date on when it was started to be executed
+                    ((org.jbpm.executor.entities.RequestInfo)request).setTime(startedAt);
+                    requests.add(ctx.merge(request));
+                }
+            }
+            
+            return requests;
+        }
+        
+    }
+    
     private class LockAndUpdateRequestInfoByIdCommand implements GenericCommand<RequestInfo> {
 
         private static final long serialVersionUID = 8670412133363766161L;
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.executor.impl.AvailableJobsExecutor;
+import org.jbpm.executor.impl.ClassCacheManager;
+import org.jbpm.executor.impl.ExecutorImpl;
+import org.jbpm.executor.impl.ExecutorRunnable;
+import org.jbpm.executor.impl.ExecutorServiceImpl;
+import org.jbpm.executor.impl.event.ExecutorEventSupport;
+import org.jbpm.executor.impl.jpa.ExecutorQueryServiceImpl;
+import org.jbpm.executor.impl.jpa.JPAExecutorStoreService;
+import org.jbpm.executor.test.CountDownAsyncJobListener;
+import org.jbpm.shared.services.impl.TransactionalCommandService;
+import org.jbpm.test.util.ExecutorTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.executor.CommandContext;
+import org.kie.api.executor.ExecutorService;
+import org.kie.api.executor.RequestInfo;
+import org.kie.api.runtime.query.QueryContext;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+
+public class BatchClaimExecutorTest {
+    
+	protected ExecutorService executorService;
+    
+	private List<Integer> claims = new CopyOnWriteArrayList<Integer>();
+	private PoolingDataSource pds;
+	private EntityManagerFactory emf = null;
+    
+    @Before
+    public void setUp() {
+        pds = ExecutorTestUtil.setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        ((ExecutorImpl) ((ExecutorServiceImpl) executorService).getExecutor()).setExecutorStoreService(
+                new RecordingExecutorStoreService(((ExecutorServiceImpl) executorService).getEventSupport()));
+        executorService.setThreadPoolSize(2);
+        executorService.setInterval(3000);
+        executorService.setTimeunit(TimeUnit.MILLISECONDS);
+        ((ExecutorImpl) ((ExecutorServiceImpl) executorService).getExecutor()).setClaimSize(5);
+        ((ExecutorImpl) ((ExecutorServiceImpl) executorService).getExecutor()).setWorkerPoolSize(3);
+        
+        executorService.init();
+    }
+    
+    @After
+    public void tearDown() {
+    	executorService.clearAllRequests();
+        executorService.clearAllErrors();
+        
+        executorService.destroy();
+        if (emf != null) {
+        	emf.close();
+        }
+        pds.close();
+    }
+    
+    protected CountDownAsyncJobListener configureListener(int threads) {
+        CountDownAsyncJobListener countDownListener = new CountDownAsyncJobListener(threads);
+        ((ExecutorServiceImpl) executorService).addAsyncJobListener(countDownListener);
+        
+        return countDownListener;
+    }
+   
+    @Test
+    public void batchExcecutionTest() throws InterruptedException {
+        CountDownAsyncJobListener countDownListener = configureListener(10);
+        for (int i = 0; i < 10; i++) {
+            CommandContext ctxCMD = new CommandContext();
+            ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+    
+            executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        }
+
+        countDownListener.waitTillCompleted();
+
+        List<RequestInfo> inErrorRequests = executorService.getInErrorRequests(new QueryContext());
+        assertEquals(0, inErrorRequests.size());
+        List<RequestInfo> queuedRequests = executorService.getQueuedRequests(new QueryContext());
+        assertEquals(0, queuedRequests.size());
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests(new QueryContext());
+        assertEquals(10, executedRequests.size());
+        
+        int claimed = 0;
+        int largestClaim = 0;
+        for (Integer claim : claims) {
+            assertTrue("Claimed more jobs than claim size " + claims, claim <= 5);
+            claimed += claim;
+            largestClaim = Math.max(largestClaim, claim);
+        }
+        assertEquals(10, claimed);
+        assertTrue("Jobs were not claimed in batches " + claims, largestClaim > 1);
+    }
+    
+    @Test
+    public void notStartedJobsRequeuedTest() throws InterruptedException {
+        // stop executor threads so jobs are claimed only by the job executor below
+        executorService.destroy();
+        for (int i = 0; i < 3; i++) {
+            CommandContext ctxCMD = new CommandContext();
+            ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+    
+            executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        }
+        // accepts the first job only, the rest of the claimed batch fails to be submitted
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            
+            private int submitted = 0;
+            
+            @Override
+            public void execute(Runnable command) {
+                if (++submitted > 1) {
+                    throw new RejectedExecutionException("Worker pool is full");
+                }
+                super.execute(command);
+            }
+        };
+        try {
+            AvailableJobsExecutor jobExecutor = new RecordingExecutorStoreService(
+                    ((ExecutorServiceImpl) executorService).getEventSupport()).buildJobExecutor();
+            jobExecutor.executeJobs(5, workers);
+        } finally {
+            // first job is either done or it was cancelled before it started
+            workers.shutdown();
+            assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        
+        assertEquals(Arrays.asList(3), claims);
+        assertEquals(0, executorService.getRunningRequests(new QueryContext()).size());
+        int queued = executorService.getQueuedRequests(new QueryContext()).size();
+        assertTrue("Not submitted jobs were not put back to the queue", queued >= 2);
+        assertEquals(3, queued + executorService.getCompletedRequests(new QueryContext()).size());
+    }
+    
+    /*
+     * Store service that hands out executor runnables whose query service records
+     * the size of every non empty batch claimed for processing.
+     */
+    private class RecordingExecutorStoreService extends JPAExecutorStoreService {
+        
+        private ExecutorEventSupport eventSupport;
+        
+        RecordingExecutorStoreService(ExecutorEventSupport eventSupport) {
+            super(true);
+            this.eventSupport = eventSupport;
+            setCommandService(new TransactionalCommandService(emf));
+            setEmf(emf);
+            setEventSupport(eventSupport);
+        }
+        
+        @Override
+        public Runnable buildExecutorRunnable() {
+            ExecutorRunnable runnable = new ExecutorRunnable();
+            runnable.setAvailableJobsExecutor(buildJobExecutor());
+            return runnable;
+        }
+        
+        AvailableJobsExecutor buildJobExecutor() {
+            TransactionalCommandService commandService = new TransactionalCommandService(emf);
+            
+            ExecutorQueryServiceImpl queryService = new ExecutorQueryServiceImpl(true) {
+                @Override
+                public List<RequestInfo> getRequestsForProcessing(int maxResults) {
+                    List<RequestInfo> requests = super.getRequestsForProcessing(maxResults);
+                    if (!requests.isEmpty()) {
+                        claims.add(requests.size());
+                    }
+                    return requests;
+                }
+            };
+            queryService.setCommandService(commandService);
+            
+            JPAExecutorStoreService storeService = new JPAExecutorStoreService(true);
+            storeService.setCommandService(commandService);
+            storeService.setEmf(emf);
+            
+            AvailableJobsExecutor jobExecutor = new AvailableJobsExecutor();
+            jobExecutor.setClassCacheManager(new ClassCacheManager());
+            jobExecutor.setQueryService(queryService);
+            jobExecutor.setExecutorStoreService(storeService);
+            jobExecutor.setEventSupport(eventSupport);
+            
+            return jobExecutor;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.executor.impl.AvailableJobsSignal;
+import org.jbpm.executor.impl.ExecutorImpl;
+import org.jbpm.executor.impl.ExecutorServiceImpl;
+import org.jbpm.executor.test.CountDownAsyncJobListener;
+import org.jbpm.test.util.ExecutorTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.executor.CommandContext;
+import org.kie.api.executor.ExecutorService;
+import org.kie.api.executor.RequestInfo;
+import org.kie.api.runtime.query.QueryContext;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+
+public class WakeUpExecutorTest {
+    
+    // poll and fallback poll intervals are longer than any of the waits below, so jobs can only be picked up 
+    // because executor threads were signaled
+    private static final int INTERVAL = 30000;
+    private static final int FALLBACK_INTERVAL = 60000;
+    private static final long MAX_LATENCY = 5000;
+    
+	protected ExecutorService executorService;
+    
+	private PoolingDataSource pds;
+	private EntityManagerFactory emf = null;
+	private ExecutorImpl executor;
+    
+    @Before
+    public void setUp() {
+        pds = ExecutorTestUtil.setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        executorService.setThreadPoolSize(2);
+        executorService.setInterval(INTERVAL);
+        executorService.setTimeunit(TimeUnit.MILLISECONDS);
+        executor = (ExecutorImpl) ((ExecutorServiceImpl) executorService).getExecutor();
+        executor.setUseWakeUp(true);
+        executor.setFallbackInterval(FALLBACK_INTERVAL);
+        
+        executorService.init();
+    }
+    
+    @After
+    public void tearDown() {
+    	executorService.clearAllRequests();
+        executorService.clearAllErrors();
+        executorService.destroy();
+        if (emf != null) {
+        	emf.close();
+        }
+        pds.close();
+    }
+    
+    protected CountDownAsyncJobListener configureListener(int threads) {
+        CountDownAsyncJobListener countDownListener = new CountDownAsyncJobListener(threads);
+        ((ExecutorServiceImpl) executorService).addAsyncJobListener(countDownListener);
+        
+        return countDownListener;
+    }
+    
+    /*
+     * Waits until all executor threads did their initial poll and wait for a signal
+     */
+    protected void awaitExecutorThreadsWaiting() throws InterruptedException {
+        AvailableJobsSignal signal = executor.getSignal();
+        while (signal.getWaitingThreads() < 2) {
+            Thread.sleep(10);
+        }
+    }
+   
+    @Test(timeout=20000)
+    public void immediateJobWakeUpTest() throws InterruptedException {
+        awaitExecutorThreadsWaiting();
+        CountDownAsyncJobListener countDownListener = configureListener(1);
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+
+        long scheduled = System.currentTimeMillis();
+        executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+
+        countDownListener.waitTillCompleted(MAX_LATENCY);
+        long latency = System.currentTimeMillis() - scheduled;
+
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests(new QueryContext());
+        assertEquals(1, executedRequests.size());
+        assertTrue("Job executed after " + latency + " ms", latency < MAX_LATENCY);
+    }
+    
+    @Test(timeout=20000)
+    public void futureJobWakeUpTest() throws InterruptedException {
+        awaitExecutorThreadsWaiting();
+        CountDownAsyncJobListener countDownListener = configureListener(1);
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+
+        Date due = new Date(System.currentTimeMillis() + 2000);
+        executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", due, ctxCMD);
+
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests(new QueryContext());
+        assertEquals(0, executedRequests.size());
+        
+        countDownListener.waitTillCompleted(2000 + MAX_LATENCY);
+        long executed = System.currentTimeMillis();
+
+        executedRequests = executorService.getCompletedRequests(new QueryContext());
+        assertEquals(1, executedRequests.size());
+        assertTrue("Job executed before it was due", executed >= due.getTime());
+        assertTrue("Job executed " + (executed - due.getTime()) + " ms after it was due", executed - due.getTime() < MAX_LATENCY);
+    }
+    
+    @Test(timeout=20000)
+    public void retriedJobWakeUpTest() throws InterruptedException {
+        awaitExecutorThreadsWaiting();
+        CountDownAsyncJobListener countDownListener = configureListener(2);
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+        ctxCMD.setData("retries", 1);
+
+        long scheduled = System.currentTimeMillis();
+        executorService.scheduleRequest("org.jbpm.executor.ThrowExceptionCommand", ctxCMD);
+
+        countDownListener.waitTillCompleted(2 * MAX_LATENCY);
+        long latency = System.currentTimeMillis() - scheduled;
+
+        List<RequestInfo> inErrorRequests = executorService.getInErrorRequests(new QueryContext());
+        assertEquals(1, inErrorRequests.size());
+        // initial execution and the retry
+        assertEquals(2, executorService.getAllErrors(new QueryContext()).size());
+        assertTrue("Job retried after " + latency + " ms", latency < 2 * MAX_LATENCY);
+    }
+    
+    @Test(timeout=20000)
+    public void reoccurringJobWakeUpTest() throws InterruptedException {
+        awaitExecutorThreadsWaiting();
+        CountDownAsyncJobListener countDownListener = configureListener(2);
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+
+        long scheduled = System.currentTimeMillis();
+        executorService.scheduleRequest("org.jbpm.executor.commands.ReoccurringPrintOutCommand", ctxCMD);
+
+        // reoccurring job is rescheduled one second after it was executed
+        countDownListener.waitTillCompleted(1000 + 2 * MAX_LATENCY);
+        long latency = System.currentTimeMillis() - scheduled;
+
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests(new QueryContext());
+        assertEquals(2, executedRequests.size());
+        assertTrue("Reoccurring job executed after " + latency + " ms", latency < 1000 + 2 * MAX_LATENCY);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.executor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AvailableJobsSignalTest {
+
+    private ExecutorService waiters = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        waiters.shutdownNow();
+    }
+
+    @Test(timeout=10000)
+    public void testDueJobTakenWithoutWaiting() throws Exception {
+        AvailableJobsSignal signal = new AvailableJobsSignal(10);
+        signal.signal(new Date(System.currentTimeMillis() - 1000));
+        assertEquals(1, signal.size());
+
+        // fallback is far beyond the test timeout, returning at all means the due job was found
+        assertTrue(signal.await(60000));
+        assertEquals(0, signal.size());
+    }
+
+    @Test(timeout=10000)
+    public void testFallbackWhenNothingIsDue() throws Exception {
+        AvailableJobsSignal signal = new AvailableJobsSignal(10);
+        signal.signal(new Date(System.currentTimeMillis() + 60000));
+
+        assertFalse(signal.await(10));
+        assertEquals(1, signal.size());
+    }
+
+    @Test(timeout=10000)
+    public void testWaitingThreadWokenUpBySignal() throws Exception {
+        final AvailableJobsSignal signal = new AvailableJobsSignal(10);
+        Future<Boolean> woken = waitFor(signal);
+        awaitWaitingThreads(signal, 1);
+
+        signal.signal(null);
+
+        // true means woken up by the signal, not by the (60 seconds) fallback
+        assertTrue(woken.get(5, TimeUnit.SECONDS));
+        assertEquals(0, signal.size());
+    }
+
+    @Test(timeout=10000)
+    public void testWaitingThreadWokenUpWhenJobIsDue() throws Exception {
+        final AvailableJobsSignal signal = new AvailableJobsSignal(10);
+        Future<Boolean> woken = waitFor(signal);
+        awaitWaitingThreads(signal, 1);
+
+        long due = System.currentTimeMillis() + 200;
+        signal.signal(new Date(due));
+
+        assertTrue(woken.get(5, TimeUnit.SECONDS));
+        // not taken before the job was due
+        assertTrue(System.currentTimeMillis() >= due);
+    }
+
+    @Test
+    public void testFullIndexDropsLatestDueTimes() {
+        AvailableJobsSignal signal = new AvailableJobsSignal(2);
+        long now = System.currentTimeMillis();
+        signal.signal(new Date(now + 3000));
+        signal.signal(new Date(now + 2000));
+        // later than everything in the full index, left to the fallback poll
+        signal.signal(new Date(now + 4000));
+        assertEquals(2, signal.size());
+        // earlier one replaces the latest
+        signal.signal(new Date(now - 1000));
+        assertEquals(2, signal.size());
+    }
+
+    @Test(timeout=10000)
+    public void testEmptyIndex() throws Exception {
+        AvailableJobsSignal signal = new AvailableJobsSignal(0);
+        signal.signal(new Date());
+        signal.signal(null);
+
+        assertEquals(0, signal.size());
+        assertFalse(signal.await(10));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeIndexSize() {
+        new AvailableJobsSignal(-1);
+    }
+
+    private Future<Boolean> waitFor(final AvailableJobsSignal signal) {
+        return waiters.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                return signal.await(60000);
+            }
+        });
+    }
+
+    private void awaitWaitingThreads(AvailableJobsSignal signal, int threads) throws InterruptedException {
+        while (signal.getWaitingThreads() < threads) {
+            Thread.sleep(10);
+        }
+    }
+}
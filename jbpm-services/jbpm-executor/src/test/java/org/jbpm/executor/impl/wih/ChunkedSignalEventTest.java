@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jbpm.executor.impl.wih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.executor.ExecutorServiceFactory;
+import org.jbpm.executor.impl.ExecutorServiceImpl;
+import org.jbpm.executor.test.CountDownAsyncJobListener;
+import org.jbpm.services.task.identity.JBossUserGroupCallbackImpl;
+import org.jbpm.test.util.AbstractExecutorBaseTest;
+import org.jbpm.test.util.ExecutorTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.event.process.DefaultProcessEventListener;
+import org.kie.api.event.process.ProcessStartedEvent;
+import org.kie.api.executor.ExecutorService;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.manager.RuntimeEngine;
+import org.kie.api.runtime.manager.RuntimeEnvironment;
+import org.kie.api.runtime.manager.RuntimeEnvironmentBuilder;
+import org.kie.api.runtime.manager.RuntimeManager;
+import org.kie.api.runtime.manager.RuntimeManagerFactory;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.task.UserGroupCallback;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.manager.RuntimeManagerRegistry;
+import org.kie.internal.runtime.manager.context.EmptyContext;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+public class ChunkedSignalEventTest extends AbstractExecutorBaseTest {
+
+    private PoolingDataSource pds;
+    private UserGroupCallback userGroupCallback;  
+    private RuntimeManager manager;
+    private ExecutorService executorService;
+    private EntityManagerFactory emf = null;
+
+    @Before
+    public void setup() {
+        System.setProperty("org.jbpm.signal.chunk.size", "2");
+        ExecutorTestUtil.cleanupSingletonSessionId();
+        pds = ExecutorTestUtil.setupPoolingDataSource();
+        Properties properties= new Properties();
+        properties.setProperty("mary", "HR");
+        properties.setProperty("john", "HR");
+        userGroupCallback = new JBossUserGroupCallbackImpl(properties);
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        executorService.init();
+    }
+    
+    @After
+    public void teardown() {
+        System.clearProperty("org.jbpm.signal.chunk.size");
+        executorService.destroy();
+        if (manager != null) {
+            RuntimeManagerRegistry.get().remove(manager.getIdentifier());
+            manager.close();
+        }
+        if (emf != null) {
+            emf.close();
+        }
+        pds.close();
+    }
+
+    @Test(timeout=10000)
+    public void testSyncSignalInChunksDeliveredOnce() throws Exception {
+        KieSession ksession = createSession("BPMN2-WaitForEventTwice.bpmn2");
+
+        List<Long> processInstanceIds = startProcesses(ksession, "WaitForEventTwice", 5);
+
+        ksession.signalEvent("MySignal", null);
+        // every instance got the signal exactly once and its state was written when evicted after its chunk
+        for (Long id : processInstanceIds) {
+            ProcessInstance processInstance = ksession.getProcessInstance(id);
+            assertNotNull(processInstance);
+            assertEquals(ProcessInstance.STATE_ACTIVE, processInstance.getState());
+        }
+
+        ksession.signalEvent("MySignal", null);
+        for (Long id : processInstanceIds) {
+            assertNull(ksession.getProcessInstance(id));
+        }
+    }
+
+    @Test(timeout=10000)
+    public void testSyncSignalInChunksSkipsInstancesStartedBySignal() throws Exception {
+        KieSession ksession = createSession("BPMN2-SignalStartWaitForEvent.bpmn2");
+        final List<Long> started = new ArrayList<Long>();
+        ksession.addEventListener(new DefaultProcessEventListener() {
+
+            @Override
+            public void beforeProcessStarted(ProcessStartedEvent event) {
+                started.add(event.getProcessInstance().getId());
+            }
+        });
+
+        ksession.signalEvent("MySignal", null);
+        assertEquals(1, started.size());
+        ProcessInstance processInstance = ksession.getProcessInstance(started.get(0));
+        assertNotNull(processInstance);
+        assertEquals(ProcessInstance.STATE_ACTIVE, processInstance.getState());
+    }
+
+    @Test(timeout=10000)
+    public void testAsyncSignalInChunks() throws Exception {
+        // 5 waiting instances in chunks of 2 make 3 jobs
+        CountDownAsyncJobListener countDownListener = new CountDownAsyncJobListener(3);
+        ((ExecutorServiceImpl) executorService).addAsyncJobListener(countDownListener);
+        KieSession ksession = createSession("BPMN2-WaitForEvent.bpmn2");
+
+        List<Long> processInstanceIds = startProcesses(ksession, "WaitForEvent", 5);
+
+        ksession.signalEvent("ASYNC-MySignal", null);
+        // nothing is delivered until the executor picks up the jobs
+        for (Long id : processInstanceIds) {
+            assertNotNull(ksession.getProcessInstance(id));
+        }
+
+        countDownListener.waitTillCompleted();
+
+        for (Long id : processInstanceIds) {
+            assertNull(ksession.getProcessInstance(id));
+        }
+    }
+
+    private KieSession createSession(String resource) {
+        RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get().newDefaultBuilder()
+                .userGroupCallback(userGroupCallback)
+                .addAsset(ResourceFactory.newClassPathResource(resource), ResourceType.BPMN2)
+                .addEnvironmentEntry("ExecutorService", executorService)                
+                .get();
+        
+        manager = RuntimeManagerFactory.Factory.get().newSingletonRuntimeManager(environment); 
+        assertNotNull(manager);
+        
+        RuntimeEngine runtime = manager.getRuntimeEngine(EmptyContext.get());
+        KieSession ksession = runtime.getKieSession();
+        assertNotNull(ksession);
+        return ksession;
+    }
+
+    private List<Long> startProcesses(KieSession ksession, String processId, int count) {
+        List<Long> processInstanceIds = new ArrayList<Long>();
+        for (int i = 0; i < count; i++) {
+            ProcessInstance processInstance = ksession.startProcess(processId);
+            assertEquals(ProcessInstance.STATE_ACTIVE, processInstance.getState());
+            processInstanceIds.add(processInstance.getId());
+        }
+        return processInstanceIds;
+    }
+}
@@ -20,21 +20,37 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.drools.core.command.impl.GenericCommand;
 import org.drools.core.command.impl.KnowledgeCommandContext;
 import org.drools.core.command.runtime.process.SetProcessInstanceVariablesCommand;
 import org.drools.core.command.runtime.process.StartProcessCommand;
 import org.drools.core.process.instance.WorkItemManager;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionManagerFactory;
 import org.jbpm.process.instance.impl.ProcessInstanceImpl;
+import org.jbpm.runtime.manager.impl.PerRequestRuntimeManager;
+import org.jbpm.runtime.manager.impl.SingletonRuntimeManager;
 import org.jbpm.services.api.DeploymentNotFoundException;
 import org.jbpm.services.api.DeploymentService;
 import org.jbpm.services.api.ProcessInstanceNotFoundException;
 import org.jbpm.services.api.ProcessService;
 import org.jbpm.services.api.RuntimeDataService;
 import org.jbpm.services.api.WorkItemNotFoundException;
+import org.jbpm.services.api.model.BulkOperationResult;
+import org.jbpm.services.api.model.BulkOperationResult.Outcome;
 import org.jbpm.services.api.model.DeployedUnit;
 import org.jbpm.services.api.model.NodeInstanceDesc;
 import org.jbpm.services.api.model.ProcessInstanceDesc;
@@ -201,6 +217,226 @@ public class ProcessServiceImpl implements ProcessService, VariablesAware {
 		}
 
 	}
+
+	@Override
+	public BulkOperationResult abortProcessInstances(List<Long> processInstanceIds, int batchSize, int threads) {
+	    return executeInBulk(processInstanceIds, null, batchSize, threads, new BulkOperation() {
+
+	        @Override
+	        public void execute(KieSession ksession, Long processInstanceId, Object event) {
+	            ksession.abortProcessInstance(processInstanceId);
+	        }
+	    });
+	}
+
+	@Override
+	public BulkOperationResult signalProcessInstances(List<Long> processInstanceIds, final String signalName, Object event, int batchSize, int threads) {
+	    return executeInBulk(processInstanceIds, event, batchSize, threads, new BulkOperation() {
+
+	        @Override
+	        public void execute(KieSession ksession, Long processInstanceId, Object event) {
+	            ksession.signalEvent(signalName, event, processInstanceId);
+	        }
+	    });
+	}
+
+	/*
+	 * Resolves all process instances with single query, groups them by deployment and executes given operation
+	 * in batches - each batch in one transaction, optionally in parallel. Batches are not grouped by session,
+	 * for strategies with a single session (singleton, per request) a batch reuses one runtime engine while
+	 * per process instance and per case strategies get an engine per process instance
+	 */
+	protected BulkOperationResult executeInBulk(List<Long> processInstanceIds, Object event, int batchSize, int threads, BulkOperation operation) {
+	    BulkOperationResult result = new BulkOperationResult();
+	    Set<Long> remaining = new LinkedHashSet<Long>(processInstanceIds);
+	    if (remaining.isEmpty()) {
+	        return result;
+	    }
+	    batchSize = Math.max(1, batchSize);
+
+	    Map<String, List<Long>> byDeployment = new LinkedHashMap<String, List<Long>>();
+	    for (ProcessInstanceDesc piDesc : dataService.getProcessInstancesByIds(new ArrayList<Long>(remaining))) {
+	        if (!remaining.remove(piDesc.getId())) {
+	            continue;
+	        }
+	        if (piDesc.getState() == null || piDesc.getState() != ProcessInstance.STATE_ACTIVE) {
+	            result.addOutcome(piDesc.getId(), Outcome.NOT_ACTIVE);
+	            continue;
+	        }
+	        List<Long> deploymentInstances = byDeployment.get(piDesc.getDeploymentId());
+	        if (deploymentInstances == null) {
+	            deploymentInstances = new ArrayList<Long>();
+	            byDeployment.put(piDesc.getDeploymentId(), deploymentInstances);
+	        }
+	        deploymentInstances.add(piDesc.getId());
+	    }
+	    for (Long processInstanceId : remaining) {
+	        result.addFailure(processInstanceId, Outcome.NOT_FOUND, "Process instance with id " + processInstanceId + " was not found");
+	    }
+
+	    List<Callable<Void>> batches = new ArrayList<Callable<Void>>();
+	    for (Map.Entry<String, List<Long>> entry : byDeployment.entrySet()) {
+	        DeployedUnit deployedUnit = deploymentService.getDeployedUnit(entry.getKey());
+	        if (deployedUnit == null) {
+	            for (Long processInstanceId : entry.getValue()) {
+	                result.addFailure(processInstanceId, Outcome.DEPLOYMENT_NOT_FOUND, "No deployments available for " + entry.getKey());
+	            }
+	            continue;
+	        }
+	        RuntimeManager manager = deployedUnit.getRuntimeManager();
+	        Object deploymentEvent = process(event, ((InternalRuntimeManager) manager).getEnvironment().getClassLoader());
+	        List<Long> deploymentInstances = entry.getValue();
+	        for (int i = 0; i < deploymentInstances.size(); i += batchSize) {
+	            List<Long> batch = deploymentInstances.subList(i, Math.min(i + batchSize, deploymentInstances.size()));
+	            batches.add(new BulkBatch(manager, batch, deploymentEvent, operation, result));
+	        }
+	    }
+
+	    executeBatches(batches, threads);
+	    logger.debug("Bulk operation on {} process instances completed with {}", processInstanceIds.size(), result);
+	    return result;
+	}
+
+	/*
+	 * Runs batches in calling thread or on a pool of given size, each batch must record its own failures
+	 */
+	protected void executeBatches(List<Callable<Void>> batches, int threads) {
+	    if (threads <= 1 || batches.size() <= 1) {
+	        for (Callable<Void> batch : batches) {
+	            try {
+	                batch.call();
+	            } catch (Exception e) {
+	                // failures are recorded by the batch itself
+	            }
+	        }
+	    } else {
+	        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches.size()));
+	        try {
+	            executeBatches(executor, batches, threads);
+	        } finally {
+	            executor.shutdownNow();
+	        }
+	    }
+	}
+
+	/*
+	 * Submits at most given number of workers that take batches from shared queue so the parallelism is bounded
+	 * regardless of the executor's own size, and waits for all of them to complete
+	 */
+	protected void executeBatches(ExecutorService executor, List<Callable<Void>> batches, int threads) {
+	    final Queue<Callable<Void>> queue = new ConcurrentLinkedQueue<Callable<Void>>(batches);
+	    List<Future<?>> workers = new ArrayList<Future<?>>();
+	    for (int i = 0; i < Math.max(1, Math.min(threads, batches.size())); i++) {
+	        workers.add(executor.submit(new Runnable() {
+
+	            @Override
+	            public void run() {
+	                Callable<Void> batch;
+	                while ((batch = queue.poll()) != null) {
+	                    try {
+	                        batch.call();
+	                    } catch (Exception e) {
+	                        // failures are recorded by the batch itself
+	                    }
+	                }
+	            }
+	        }));
+	    }
+	    try {
+	        for (Future<?> worker : workers) {
+	            worker.get();
+	        }
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        logger.warn("Interrupted while waiting for bulk operation to complete");
+	    } catch (ExecutionException e) {
+	        logger.warn("Bulk operation worker failed", e.getCause());
+	    }
+	}
+
+	/*
+	 * Executes operation on all process instances of the batch in single transaction, in case of failure
+	 * the transaction is rolled back and process instances are retried one by one to find out which one failed
+	 */
+	protected void executeBatch(RuntimeManager manager, List<Long> processInstanceIds, Object event, 
+	        BulkOperation operation, BulkOperationResult result) {
+	    TransactionManager tm = TransactionManagerFactory.get().newTransactionManager();
+	    boolean txOwner = tm.begin();
+	    try {
+	        if (isSharedSession(manager)) {
+	            // all process instances live in the same session so the engine is acquired once per batch
+	            RuntimeEngine engine = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+	            try {
+	                for (Long processInstanceId : processInstanceIds) {
+	                    operation.execute(engine.getKieSession(), processInstanceId, event);
+	                }
+	            } finally {
+	                disposeRuntimeEngine(manager, engine);
+	            }
+	        } else {
+	            for (Long processInstanceId : processInstanceIds) {
+	                RuntimeEngine engine = manager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstanceId));
+	                try {
+	                    operation.execute(engine.getKieSession(), processInstanceId, event);
+	                } finally {
+	                    disposeRuntimeEngine(manager, engine);
+	                }
+	            }
+	        }
+	        tm.commit(txOwner);
+	        for (Long processInstanceId : processInstanceIds) {
+	            result.addOutcome(processInstanceId, Outcome.SUCCESS);
+	        }
+	    } catch (Exception e) {
+	        try {
+	            tm.rollback(txOwner);
+	        } catch (Exception re) {
+	            logger.debug("Unable to roll back bulk operation transaction", re);
+	        }
+	        if (txOwner && processInstanceIds.size() > 1) {
+	            for (Long processInstanceId : processInstanceIds) {
+	                executeBatch(manager, Collections.singletonList(processInstanceId), event, operation, result);
+	            }
+	        } else {
+	            // single process instance or running within outer transaction that is now marked for roll back
+	            for (Long processInstanceId : processInstanceIds) {
+	                result.addFailure(processInstanceId, Outcome.FAILED, e.getMessage());
+	            }
+	        }
+	    }
+	}
+
+	protected boolean isSharedSession(RuntimeManager manager) {
+	    return manager instanceof SingletonRuntimeManager || manager instanceof PerRequestRuntimeManager;
+	}
+
+	protected static abstract class BulkOperation {
+
+	    public abstract void execute(KieSession ksession, Long processInstanceId, Object event);
+	}
+
+	private class BulkBatch implements Callable<Void> {
+
+	    private final RuntimeManager manager;
+	    private final List<Long> processInstanceIds;
+	    private final Object event;
+	    private final BulkOperation operation;
+	    private final BulkOperationResult result;
+
+	    BulkBatch(RuntimeManager manager, List<Long> processInstanceIds, Object event, BulkOperation operation, BulkOperationResult result) {
+	        this.manager = manager;
+	        this.processInstanceIds = processInstanceIds;
+	        this.event = event;
+	        this.operation = operation;
+	        this.result = result;
+	    }
+
+	    @Override
+	    public Void call() throws Exception {
+	        executeBatch(manager, processInstanceIds, event, operation, result);
+	        return null;
+	    }
+	}
 	
 
     @Override
@@ -67,6 +67,8 @@ import org.kie.internal.task.query.TaskSummaryQueryBuilder;
 public class RuntimeDataServiceImpl implements RuntimeDataService, DeploymentEventListener {
 
     private static final String DEPLOYMENT_ID_MUST_NOT_BE_NULL = "DeploymentId must not be null";
+    // Oracle does not allow more than 1000 elements in the IN clause
+    private static final int MAX_IN_CLAUSE_ELEMENTS = 1000;
 
     protected Set<String> deploymentIds = new HashSet<String>();
     protected Set<ProcessDefinition> availableProcesses = new HashSet<ProcessDefinition>();
@@ -444,6 +446,21 @@ public class RuntimeDataServiceImpl implements RuntimeDataService, DeploymentEve
         return null;
    }
 
+    @Override
+    public Collection<ProcessInstanceDesc> getProcessInstancesByIds(List<Long> processInstanceIds) {
+        List<ProcessInstanceDesc> processInstances = new ArrayList<ProcessInstanceDesc>();
+        // query in chunks as some data bases limit number of elements in the IN clause
+        for (int i = 0; i < processInstanceIds.size(); i += MAX_IN_CLAUSE_ELEMENTS) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("processInstanceIds", new ArrayList<Long>(
+                    processInstanceIds.subList(i, Math.min(i + MAX_IN_CLAUSE_ELEMENTS, processInstanceIds.size()))));
+            List<ProcessInstanceDesc> found = commandService.execute(
+                    new QueryNameCommand<List<ProcessInstanceDesc>>("getProcessInstancesByIds", params));
+            processInstances.addAll(found);
+        }
+        return Collections.unmodifiableCollection(processInstances);
+    }
+
 	@Override
 	public ProcessInstanceDesc getProcessInstanceByCorrelationKey(CorrelationKey correlationKey) {
 	   	Map<String, Object> params = new HashMap<String, Object>();
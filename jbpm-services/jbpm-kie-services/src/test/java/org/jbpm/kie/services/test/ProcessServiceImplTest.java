@@ -17,6 +17,7 @@
 package org.jbpm.kie.services.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -39,6 +40,8 @@ import org.drools.core.command.runtime.process.GetProcessInstanceCommand;
 import org.jbpm.kie.services.impl.KModuleDeploymentUnit;
 import org.jbpm.kie.test.util.AbstractKieServicesBaseTest;
 import org.jbpm.runtime.manager.impl.deploy.DeploymentDescriptorImpl;
+import org.jbpm.services.api.model.BulkOperationResult;
+import org.jbpm.services.api.model.BulkOperationResult.Outcome;
 import org.jbpm.services.api.model.DeploymentUnit;
 import org.jbpm.services.api.model.NodeInstanceDesc;
 import org.jbpm.services.api.model.ProcessInstanceDesc;
@@ -332,6 +335,68 @@ public class ProcessServiceImplTest extends AbstractKieServicesBaseTest {
     	assertNull(pi2);
     }
 
+    @Test
+    public void testStartAndSignalProcessesInBulk() {
+        assertNotNull(deploymentService);
+
+        KModuleDeploymentUnit deploymentUnit = new KModuleDeploymentUnit(GROUP_ID, ARTIFACT_ID, VERSION);
+
+        deploymentService.deploy(deploymentUnit);
+        units.add(deploymentUnit);
+
+        boolean isDeployed = deploymentService.isDeployed(deploymentUnit.getIdentifier());
+        assertTrue(isDeployed);
+
+        assertNotNull(processService);
+        List<Long> instances = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            instances.add(processService.startProcess(deploymentUnit.getIdentifier(), "org.jbpm.signal"));
+        }
+        // include non existing process instance
+        instances.add(-1l);
+
+        BulkOperationResult result = processService.signalProcessInstances(instances, "MySignal", null, 2, 2);
+        assertNotNull(result);
+        assertFalse(result.isSuccessful());
+        assertEquals(5, result.getProcessInstanceIds(Outcome.SUCCESS).size());
+        assertEquals(Outcome.NOT_FOUND, result.getOutcome(-1l));
+
+        for (Long processInstanceId : result.getProcessInstanceIds(Outcome.SUCCESS)) {
+            assertNull(processService.getProcessInstance(processInstanceId));
+        }
+        // already completed so nothing to signal
+        result = processService.signalProcessInstances(instances.subList(0, 1), "MySignal", null, 2, 1);
+        assertEquals(Outcome.NOT_ACTIVE, result.getOutcome(instances.get(0)));
+    }
+
+    @Test
+    public void testStartAndAbortProcessesInBulk() {
+        assertNotNull(deploymentService);
+
+        KModuleDeploymentUnit deploymentUnit = new KModuleDeploymentUnit(GROUP_ID, ARTIFACT_ID, VERSION);
+
+        deploymentService.deploy(deploymentUnit);
+        units.add(deploymentUnit);
+
+        boolean isDeployed = deploymentService.isDeployed(deploymentUnit.getIdentifier());
+        assertTrue(isDeployed);
+
+        assertNotNull(processService);
+        List<Long> instances = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            instances.add(processService.startProcess(deploymentUnit.getIdentifier(), "org.jbpm.writedocument"));
+        }
+
+        BulkOperationResult result = processService.abortProcessInstances(instances, 3, 1);
+        assertNotNull(result);
+        assertTrue(result.isSuccessful());
+        assertEquals(5, result.getOutcomes().size());
+
+        for (Long processInstanceId : instances) {
+            assertNull(processService.getProcessInstance(processInstanceId));
+        }
+    }
+
     @Test
     public void testStartAndSignal() {
         assertNotNull(deploymentService);
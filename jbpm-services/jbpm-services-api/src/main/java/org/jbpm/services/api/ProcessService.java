@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.jbpm.services.api.model.BulkOperationResult;
 import org.kie.api.command.Command;
 import org.kie.api.runtime.manager.Context;
 import org.kie.api.runtime.process.ProcessInstance;
@@ -94,6 +95,18 @@ public interface ProcessService {
 	 */
     void abortProcessInstances(List<Long> processInstanceIds);
 
+    /**
+     * Aborts all specified processes in bulk - process instances are looked up at once, grouped by deployment
+     * and aborted in batches, each batch in single transaction. Failures do not stop the operation but are reported
+     * in the result.
+     * 
+     * @param processInstanceIds list of process instance unique identifiers
+     * @param batchSize number of process instances aborted in single transaction
+     * @param threads max number of threads used to process batches in parallel, 1 to process them in calling thread
+     * @return outcome of the operation for every process instance
+     */
+    BulkOperationResult abortProcessInstances(List<Long> processInstanceIds, int batchSize, int threads);
+
     /**
 	 * Signal an event to a single process instance
 	 * 
@@ -115,6 +128,20 @@ public interface ProcessService {
 	 * @throws ProcessInstanceNotFoundException in case process instance with given id was not found
 	 */
     void signalProcessInstances(List<Long> processInstanceIds, String signalName, Object event);
+
+    /**
+     * Signal an event to given list of process instances in bulk - process instances are looked up at once, 
+     * grouped by deployment and signaled in batches, each batch in single transaction. Failures do not stop 
+     * the operation but are reported in the result.
+     * 
+     * @param processInstanceIds list of process instance unique identifiers
+     * @param signalName the signal's id in the process
+     * @param event the event object to be passed in with the event
+     * @param batchSize number of process instances signaled in single transaction
+     * @param threads max number of threads used to process batches in parallel, 1 to process them in calling thread
+     * @return outcome of the operation for every process instance
+     */
+    BulkOperationResult signalProcessInstances(List<Long> processInstanceIds, String signalName, Object event, int batchSize, int threads);
     
     /**
      * Signal an event to a any process instance that listens to give signal that belongs to given deployment
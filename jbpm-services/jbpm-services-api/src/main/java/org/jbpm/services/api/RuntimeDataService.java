@@ -125,6 +125,14 @@ public interface RuntimeDataService {
      */
     ProcessInstanceDesc getProcessInstanceById(long processInstanceId);
 
+    /**
+     * Returns process instance descriptions found for given list of process instance ids, in contrast to 
+     * {@link #getProcessInstanceById(long)} active tasks are not fetched. Ids that were not found are not included.
+     * @param processInstanceIds The ids of the process instances to be fetched
+     * @return A list of {@link ProcessInstanceDesc} instances, in no particular order
+     */
+    Collection<ProcessInstanceDesc> getProcessInstancesByIds(List<Long> processInstanceIds);
+
     /**
      * Returns active process instance description found for given correlation key if found otherwise null. At the same time it will
      * fetch all active tasks (in status: Ready, Reserved, InProgress) to provide information what user task is keeping instance
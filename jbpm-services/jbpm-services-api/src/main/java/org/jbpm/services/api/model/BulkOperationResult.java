@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.api.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Basic data carrier with result of bulk operation (e.g. signal or abort) on set of process instances - 
+ * outcome and error message (if any) for every process instance.
+ */
+public class BulkOperationResult implements Serializable {
+
+    private static final long serialVersionUID = 3589124607235718851L;
+
+    public enum Outcome {
+        SUCCESS,
+        // process instance was not found
+        NOT_FOUND,
+        // process instance is not active any more
+        NOT_ACTIVE,
+        // deployment process instance belongs to is not available
+        DEPLOYMENT_NOT_FOUND,
+        // operation failed - see error message
+        FAILED
+    }
+
+    private final Map<Long, Outcome> outcomes = new LinkedHashMap<Long, Outcome>();
+    private final Map<Long, String> errors = new LinkedHashMap<Long, String>();
+
+    public synchronized void addOutcome(Long processInstanceId, Outcome outcome) {
+        outcomes.put(processInstanceId, outcome);
+    }
+
+    public synchronized void addFailure(Long processInstanceId, Outcome outcome, String error) {
+        outcomes.put(processInstanceId, outcome);
+        errors.put(processInstanceId, error);
+    }
+
+    public synchronized Outcome getOutcome(Long processInstanceId) {
+        return outcomes.get(processInstanceId);
+    }
+
+    public synchronized String getError(Long processInstanceId) {
+        return errors.get(processInstanceId);
+    }
+
+    public synchronized Map<Long, Outcome> getOutcomes() {
+        return new LinkedHashMap<Long, Outcome>(outcomes);
+    }
+
+    public synchronized List<Long> getProcessInstanceIds(Outcome outcome) {
+        List<Long> processInstanceIds = new ArrayList<Long>();
+        for (Map.Entry<Long, Outcome> entry : outcomes.entrySet()) {
+            if (entry.getValue() == outcome) {
+                processInstanceIds.add(entry.getKey());
+            }
+        }
+        return processInstanceIds;
+    }
+
+    public synchronized boolean isSuccessful() {
+        for (Outcome outcome : outcomes.values()) {
+            if (outcome != Outcome.SUCCESS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BulkOperationResult [total=" + outcomes.size() + ", succeeded=" + getProcessInstanceIds(Outcome.SUCCESS).size() 
+                + ", errors=" + errors + "]";
+    }
+}
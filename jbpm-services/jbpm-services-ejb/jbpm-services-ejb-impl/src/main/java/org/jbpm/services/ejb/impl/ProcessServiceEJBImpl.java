@@ -16,13 +16,21 @@
 
 package org.jbpm.services.ejb.impl;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 
 import org.jbpm.kie.services.impl.ProcessServiceImpl;
 import org.jbpm.services.api.DeploymentService;
 import org.jbpm.services.api.ProcessService;
 import org.jbpm.services.api.RuntimeDataService;
+import org.jbpm.services.api.model.BulkOperationResult;
 import org.jbpm.services.ejb.api.DeploymentServiceEJBLocal;
 import org.jbpm.services.ejb.api.ProcessServiceEJBLocal;
 import org.jbpm.services.ejb.api.ProcessServiceEJBRemote;
@@ -33,6 +41,9 @@ import org.kie.api.runtime.manager.RuntimeManager;
 @Stateless
 public class ProcessServiceEJBImpl extends ProcessServiceImpl implements ProcessService, ProcessServiceEJBLocal, ProcessServiceEJBRemote {
 
+	@Resource(lookup="java:comp/DefaultManagedExecutorService")
+	private ExecutorService executorService;
+
 	@EJB(beanInterface=DeploymentServiceEJBLocal.class)
 	@Override
 	public void setDeploymentService(DeploymentService deploymentService) {
@@ -55,6 +66,28 @@ public class ProcessServiceEJBImpl extends ProcessServiceImpl implements Process
 		return result;
 	}
 
+	/*
+	 * Bulk operations demarcate transaction per batch so they must not join caller's transaction,
+	 * otherwise single failure would roll back all batches
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	@Override
+	public BulkOperationResult abortProcessInstances(List<Long> processInstanceIds, int batchSize, int threads) {
+		return super.abortProcessInstances(processInstanceIds, batchSize, threads);
+	}
+
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	@Override
+	public BulkOperationResult signalProcessInstances(List<Long> processInstanceIds, String signalName, Object event, int batchSize, int threads) {
+		return super.signalProcessInstances(processInstanceIds, signalName, event, batchSize, threads);
+	}
+
+	@Override
+	protected void executeBatches(List<Callable<Void>> batches, int threads) {
+		// container managed threads are used even for single thread as they can demarcate their own transactions
+		executeBatches(executorService, batches, threads);
+	}
+
 	@Override
 	protected void disposeRuntimeEngine(RuntimeManager manager, RuntimeEngine engine) {
 		// do nothing since this is CMT bean tx sync will dispose runtime engine
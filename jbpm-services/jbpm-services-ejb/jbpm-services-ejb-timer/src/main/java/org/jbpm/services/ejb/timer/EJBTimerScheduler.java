@@ -18,17 +18,24 @@ package org.jbpm.services.ejb.timer;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Resource;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
+import javax.ejb.NoSuchObjectLocalException;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.Timeout;
 import javax.ejb.Timer;
 import javax.ejb.TimerConfig;
+import javax.ejb.TimerHandle;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.drools.core.time.JobHandle;
 import org.drools.core.time.impl.TimerJobInstance;
@@ -36,6 +43,17 @@ import org.jbpm.process.core.timer.TimerServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Scheduler backed by EJB timer service. Timers are indexed by job name (uuid of the job handle) so they can be
+ * looked up and canceled directly instead of iterating over (and deserializing) all timers. The index is
+ * maintained when timers are scheduled and executed and built from existing timers on first use (e.g. after restart).
+ * Index changes made within a transaction are reverted (schedule) or applied (cancel) only when the transaction completes.
+ * <br/>
+ * Timers that are not indexed (e.g. created by other cluster member after the index was built) are found by scanning
+ * all timers on index miss, which can be turned off with <code>org.jbpm.ejb.timer.scan.on.miss</code> set to false
+ * when timers are never shared between nodes. Index can be disabled completely with <code>org.jbpm.ejb.timer.index</code>
+ * set to false.
+ */
 @Singleton
 @Startup
 @ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
@@ -46,9 +64,19 @@ public class EJBTimerScheduler {
 
 	private static final Integer OVERDUE_WAIT_TIME = Integer.parseInt(System.getProperty("org.jbpm.overdue.timer.wait", "10000"));
 	
+	private boolean useIndex = Boolean.parseBoolean(System.getProperty("org.jbpm.ejb.timer.index", "true"));
+	private boolean scanOnMiss = Boolean.parseBoolean(System.getProperty("org.jbpm.ejb.timer.scan.on.miss", "true"));
+	
 	@Resource
 	private javax.ejb.TimerService timerService;
 	
+	@Resource
+	private TransactionSynchronizationRegistry txRegistry;
+	
+	private final ConcurrentMap<String, TimerHandle> timerIndex = new ConcurrentHashMap<String, TimerHandle>();
+	private volatile boolean indexBuilt = false;
+	private final Object indexLock = new Object();
+	
 	@SuppressWarnings("unchecked")
 	@Timeout
 	public void executeTimerJob(Timer timer) {
@@ -57,6 +85,8 @@ public class EJBTimerScheduler {
 		logger.debug("About to execute timer for job {}", timerJob);
 		TimerJobInstance timerJobInstance = timerJob.getTimerJobInstance();
 		String timerServiceId = ((EjbGlobalJobHandle)timerJobInstance.getJobHandle()).getDeploymentId();
+		String uuid = ((EjbGlobalJobHandle)timerJobInstance.getJobHandle()).getUuid();
+		TimerHandle indexed = timerIndex.get(uuid);
 		
 		// handle overdue timers as ejb timer service might start before all deployments are ready		
 		long time = 0;
@@ -76,6 +106,10 @@ public class EJBTimerScheduler {
         }
 		try {
 			((Callable<Void>) timerJobInstance).call();
+			if (indexed != null) {
+				// unless job was rescheduled (new timer indexed under the same name) this timer is gone
+				unindexOnCommit(uuid, indexed);
+			}
 		} catch (Exception e) {
 			logger.warn("Execution of time failed due to {}", e.getMessage(), e);
 		}
@@ -86,7 +120,25 @@ public class EJBTimerScheduler {
 		Date expirationTime = timerJobInstance.getTrigger().nextFireTime();
 		
 		if (expirationTime != null) {
-			timerService.createSingleActionTimer(expirationTime, config);
+			Timer timer = timerService.createSingleActionTimer(expirationTime, config);
+			if (useIndex) {
+				final String uuid = ((EjbGlobalJobHandle) timerJobInstance.getJobHandle()).getUuid();
+				final TimerHandle timerHandle = timer.getHandle();
+				timerIndex.put(uuid, timerHandle);
+				if (isTransactionActive()) {
+					// timer creation is undone on rollback so must be its index entry
+					txRegistry.registerInterposedSynchronization(new Synchronization() {
+						public void beforeCompletion() {
+						}
+						
+						public void afterCompletion(int status) {
+							if (status != Status.STATUS_COMMITTED) {
+								timerIndex.remove(uuid, timerHandle);
+							}
+						}
+					});
+				}
+			}
 			logger.debug("Timer scheduled {} on {} scheduler service", timerJobInstance);
 		} else {
 			logger.info("Timer that was to be scheduled has already expired");
@@ -95,7 +147,58 @@ public class EJBTimerScheduler {
 	
 	public boolean removeJob(JobHandle jobHandle) {
 		EjbGlobalJobHandle ejbHandle = (EjbGlobalJobHandle) jobHandle;
-		
+		if (!useIndex) {
+			return scanAndRemoveJob(ejbHandle);
+		}
+		buildIndex();
+		TimerHandle timerHandle = timerIndex.get(ejbHandle.getUuid());
+		if (timerHandle == null) {
+			if (scanOnMiss) {
+				return scanAndRemoveJob(ejbHandle);
+			}
+			logger.debug("Job handle {} does not match any timer on {} scheduler service", jobHandle, this);
+			return false;
+		}
+		try {
+			timerHandle.getTimer().cancel();
+			unindexOnCommit(ejbHandle.getUuid(), timerHandle);
+			logger.debug("Job handle {} does match timer and was canceled", jobHandle);
+			return true;
+		} catch (NoSuchObjectLocalException e) {
+			timerIndex.remove(ejbHandle.getUuid(), timerHandle);
+			logger.debug("Timer for job handle {} has already expired or was canceled", jobHandle);
+			return false;
+		} catch (Throwable e) {
+			logger.debug("Timer cancel error due to {}", e.getMessage());
+			return false;
+		}
+	}
+	
+	/*
+	 * Canceled or expired timer is restored when transaction rolls back so it stays indexed until commit
+	 */
+	protected void unindexOnCommit(final String uuid, final TimerHandle timerHandle) {
+		if (!isTransactionActive()) {
+			timerIndex.remove(uuid, timerHandle);
+			return;
+		}
+		txRegistry.registerInterposedSynchronization(new Synchronization() {
+			public void beforeCompletion() {
+			}
+			
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					timerIndex.remove(uuid, timerHandle);
+				}
+			}
+		});
+	}
+	
+	protected boolean isTransactionActive() {
+		return txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE;
+	}
+	
+	protected boolean scanAndRemoveJob(EjbGlobalJobHandle ejbHandle) {
 		for (Timer timer : timerService.getTimers()) {
 			Serializable info = timer.getInfo();
 			if (info instanceof EjbTimerJob) {
@@ -103,7 +206,7 @@ public class EJBTimerScheduler {
 				
 				EjbGlobalJobHandle handle = (EjbGlobalJobHandle) job.getTimerJobInstance().getJobHandle();
 				if (handle.getUuid().equals(ejbHandle.getUuid())) {
-					logger.debug("Job handle {} does match timer and is going to be canceled", jobHandle);
+					logger.debug("Job handle {} does match timer and is going to be canceled", ejbHandle);
 					try {
 					    timer.cancel();
 					} catch (Throwable e) {
@@ -114,11 +217,31 @@ public class EJBTimerScheduler {
 				}
 			}
 		}
-		logger.debug("Job handle {} does not match any timer on {} scheduler service", jobHandle, this);
+		logger.debug("Job handle {} does not match any timer on {} scheduler service", ejbHandle, this);
 		return false;
 	}
 	
 	public TimerJobInstance getTimerByName(String jobName) {
+		if (!useIndex) {
+			return scanForTimerByName(jobName);
+		}
+		buildIndex();
+		TimerHandle timerHandle = timerIndex.get(jobName);
+		if (timerHandle == null) {
+			return scanOnMiss ? scanForTimerByName(jobName) : null;
+		}
+		try {
+			EjbTimerJob job = (EjbTimerJob) timerHandle.getTimer().getInfo();
+			EjbGlobalJobHandle handle = (EjbGlobalJobHandle) job.getTimerJobInstance().getJobHandle();
+			logger.debug("Job  {} does match timer and is going to be returned", jobName);
+			return handle.getTimerJobInstance();
+		} catch (NoSuchObjectLocalException e) {
+			timerIndex.remove(jobName, timerHandle);
+			return null;
+		}
+	}
+	
+	protected TimerJobInstance scanForTimerByName(String jobName) {
 		for (Timer timer : timerService.getTimers()) {
 			Serializable info = timer.getInfo();
 			if (info instanceof EjbTimerJob) {
@@ -135,4 +258,34 @@ public class EJBTimerScheduler {
 		return null;
 	}
 	
+	/*
+	 * Indexes timers that exist already (e.g. scheduled before restart), done once on first lookup
+	 */
+	protected void buildIndex() {
+		if (indexBuilt) {
+			return;
+		}
+		synchronized (indexLock) {
+			if (indexBuilt) {
+				return;
+			}
+			int count = 0;
+			for (Timer timer : timerService.getTimers()) {
+				try {
+					Serializable info = timer.getInfo();
+					if (info instanceof EjbTimerJob) {
+						EjbGlobalJobHandle handle = (EjbGlobalJobHandle) ((EjbTimerJob) info).getTimerJobInstance().getJobHandle();
+						if (timerIndex.putIfAbsent(handle.getUuid(), timer.getHandle()) == null) {
+							count++;
+						}
+					}
+				} catch (NoSuchObjectLocalException e) {
+					// timer expired or was canceled in the meantime
+				}
+			}
+			indexBuilt = true;
+			logger.debug("Indexed {} existing timers on {} scheduler service", count, this);
+		}
+	}
+	
 }
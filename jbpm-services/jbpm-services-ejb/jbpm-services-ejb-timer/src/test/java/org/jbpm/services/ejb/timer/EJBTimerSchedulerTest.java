@@ -0,0 +1,453 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.services.ejb.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ejb.EJBException;
+import javax.ejb.NoSuchObjectLocalException;
+import javax.ejb.ScheduleExpression;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerHandle;
+import javax.ejb.TimerService;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.drools.core.time.Job;
+import org.drools.core.time.JobContext;
+import org.drools.core.time.JobHandle;
+import org.drools.core.time.Trigger;
+import org.drools.core.time.impl.PointInTimeTrigger;
+import org.drools.core.time.impl.TimerJobInstance;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EJBTimerSchedulerTest {
+
+    private EJBTimerScheduler scheduler;
+    private TestTransactionSynchronizationRegistry txRegistry;
+    private InMemoryTimerService timerService;
+
+    @Before
+    public void setup() throws Exception {
+        txRegistry = new TestTransactionSynchronizationRegistry();
+        timerService = new InMemoryTimerService(txRegistry);
+        scheduler = new EJBTimerScheduler();
+        setField(scheduler, "timerService", timerService);
+        setField(scheduler, "txRegistry", txRegistry);
+    }
+
+    @Test
+    public void testRemoveJobWithoutTransaction() throws Exception {
+        TestTimerJobInstance job = newJob();
+        scheduler.internalSchedule(job);
+        assertTrue(getIndex().containsKey(uuid(job)));
+
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        assertFalse(getIndex().containsKey(uuid(job)));
+        assertEquals(0, timerService.getTimers().size());
+        assertFalse(scheduler.removeJob(job.getJobHandle()));
+    }
+
+    @Test
+    public void testRemoveJobUnindexedOnCommit() throws Exception {
+        TestTimerJobInstance job = newJob();
+        scheduler.internalSchedule(job);
+
+        txRegistry.begin();
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        // still indexed until transaction commits
+        assertTrue(getIndex().containsKey(uuid(job)));
+        txRegistry.complete(Status.STATUS_COMMITTED);
+
+        assertFalse(getIndex().containsKey(uuid(job)));
+        assertEquals(0, timerService.getTimers().size());
+    }
+
+    @Test
+    public void testRemoveJobKeptIndexedOnRollback() throws Exception {
+        TestTimerJobInstance job = newJob();
+        scheduler.internalSchedule(job);
+
+        txRegistry.begin();
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        txRegistry.complete(Status.STATUS_ROLLEDBACK);
+
+        // timer was restored by the timer service so it must be still indexed and cancelable
+        assertEquals(1, timerService.getTimers().size());
+        assertTrue(getIndex().containsKey(uuid(job)));
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        assertEquals(0, timerService.getTimers().size());
+    }
+
+    @Test
+    public void testScheduleUnindexedOnRollback() throws Exception {
+        TestTimerJobInstance job = newJob();
+
+        txRegistry.begin();
+        scheduler.internalSchedule(job);
+        assertTrue(getIndex().containsKey(uuid(job)));
+        txRegistry.complete(Status.STATUS_ROLLEDBACK);
+
+        assertFalse(getIndex().containsKey(uuid(job)));
+        assertEquals(0, timerService.getTimers().size());
+    }
+
+    @Test
+    public void testScanOnMissFindsTimerNotIndexed() throws Exception {
+        TestTimerJobInstance indexed = newJob();
+        scheduler.internalSchedule(indexed);
+        // builds the index
+        assertTrue(scheduler.removeJob(indexed.getJobHandle()));
+
+        // timer created by another cluster member is not known to local index
+        TestTimerJobInstance job = newJob();
+        timerService.createSingleActionTimer(new Date(System.currentTimeMillis() + 60000), new TimerConfig(new EjbTimerJob(job), true));
+        assertFalse(getIndex().containsKey(uuid(job)));
+
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        assertEquals(0, timerService.getTimers().size());
+    }
+
+    @Test
+    public void testNoScanOnMissWhenDisabled() throws Exception {
+        setField(scheduler, "scanOnMiss", false);
+        TestTimerJobInstance indexed = newJob();
+        scheduler.internalSchedule(indexed);
+        assertTrue(scheduler.removeJob(indexed.getJobHandle()));
+
+        TestTimerJobInstance job = newJob();
+        timerService.createSingleActionTimer(new Date(System.currentTimeMillis() + 60000), new TimerConfig(new EjbTimerJob(job), true));
+
+        assertFalse(scheduler.removeJob(job.getJobHandle()));
+        assertEquals(1, timerService.getTimers().size());
+    }
+
+    @Test
+    public void testIndexBuiltFromExistingTimers() throws Exception {
+        TestTimerJobInstance job = newJob();
+        // timer scheduled before restart
+        timerService.createSingleActionTimer(new Date(System.currentTimeMillis() + 60000), new TimerConfig(new EjbTimerJob(job), true));
+
+        setField(scheduler, "scanOnMiss", false);
+        assertTrue(scheduler.removeJob(job.getJobHandle()));
+        assertEquals(0, timerService.getTimers().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<String, TimerHandle> getIndex() throws Exception {
+        Field field = EJBTimerScheduler.class.getDeclaredField("timerIndex");
+        field.setAccessible(true);
+        return (ConcurrentMap<String, TimerHandle>) field.get(scheduler);
+    }
+
+    private static TestTimerJobInstance newJob() {
+        return new TestTimerJobInstance(new EjbGlobalJobHandle(1, UUID.randomUUID().toString(), "test"), System.currentTimeMillis() + 60000);
+    }
+
+    private static String uuid(TimerJobInstance job) {
+        return ((EjbGlobalJobHandle) job.getJobHandle()).getUuid();
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    public static class TestTimerJobInstance implements TimerJobInstance, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final JobHandle jobHandle;
+        private final Trigger trigger;
+
+        public TestTimerJobInstance(JobHandle jobHandle, long fireTime) {
+            this.jobHandle = jobHandle;
+            this.trigger = new PointInTimeTrigger(fireTime, null, null);
+        }
+
+        public JobHandle getJobHandle() {
+            return jobHandle;
+        }
+
+        public Job getJob() {
+            return null;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public JobContext getJobContext() {
+            return null;
+        }
+    }
+
+    private static class TestTransactionSynchronizationRegistry implements TransactionSynchronizationRegistry {
+
+        private int status = Status.STATUS_NO_TRANSACTION;
+        private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+
+        void begin() {
+            status = Status.STATUS_ACTIVE;
+        }
+
+        void complete(int outcome) {
+            status = Status.STATUS_NO_TRANSACTION;
+            for (Synchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(outcome);
+            }
+            synchronizations.clear();
+        }
+
+        public Object getTransactionKey() {
+            return null;
+        }
+
+        public void putResource(Object key, Object value) {
+        }
+
+        public Object getResource(Object key) {
+            return null;
+        }
+
+        public void registerInterposedSynchronization(Synchronization sync) {
+            if (status != Status.STATUS_ACTIVE) {
+                throw new IllegalStateException("No active transaction");
+            }
+            synchronizations.add(sync);
+        }
+
+        public int getTransactionStatus() {
+            return status;
+        }
+
+        public void setRollbackOnly() {
+        }
+
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+
+    /*
+     * Transactional in memory timer service - creation and cancellation are undone on rollback
+     */
+    private static class InMemoryTimerService implements TimerService {
+
+        private final TestTransactionSynchronizationRegistry txRegistry;
+        private final Map<Long, InMemoryTimer> timers = new LinkedHashMap<Long, InMemoryTimer>();
+        private long counter;
+
+        InMemoryTimerService(TestTransactionSynchronizationRegistry txRegistry) {
+            this.txRegistry = txRegistry;
+        }
+
+        public Timer createSingleActionTimer(Date expiration, TimerConfig timerConfig) {
+            final InMemoryTimer timer = new InMemoryTimer(this, ++counter, expiration, serialize(timerConfig.getInfo()));
+            timers.put(timer.id, timer);
+            onRollback(new Runnable() {
+                public void run() {
+                    timers.remove(timer.id);
+                }
+            });
+            return timer;
+        }
+
+        void cancel(final InMemoryTimer timer) {
+            getTimer(timer.id);
+            timers.remove(timer.id);
+            onRollback(new Runnable() {
+                public void run() {
+                    timers.put(timer.id, timer);
+                }
+            });
+        }
+
+        private void onRollback(final Runnable action) {
+            if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                txRegistry.registerInterposedSynchronization(new Synchronization() {
+                    public void beforeCompletion() {
+                    }
+
+                    public void afterCompletion(int status) {
+                        if (status != Status.STATUS_COMMITTED) {
+                            action.run();
+                        }
+                    }
+                });
+            }
+        }
+
+        public Timer createSingleActionTimer(long duration, TimerConfig timerConfig) {
+            return createSingleActionTimer(new Date(System.currentTimeMillis() + duration), timerConfig);
+        }
+
+        public Timer createTimer(long duration, Serializable info) {
+            return createSingleActionTimer(duration, new TimerConfig(info, true));
+        }
+
+        public Timer createTimer(Date expiration, Serializable info) {
+            return createSingleActionTimer(expiration, new TimerConfig(info, true));
+        }
+
+        public Timer createTimer(long initialDuration, long intervalDuration, Serializable info) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createTimer(Date initialExpiration, long intervalDuration, Serializable info) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createIntervalTimer(long initialDuration, long intervalDuration, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createIntervalTimer(Date initialExpiration, long intervalDuration, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createCalendarTimer(ScheduleExpression schedule) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Timer createCalendarTimer(ScheduleExpression schedule, TimerConfig timerConfig) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Collection<Timer> getTimers() {
+            return new ArrayList<Timer>(timers.values());
+        }
+
+        public Collection<Timer> getAllTimers() {
+            return getTimers();
+        }
+
+        InMemoryTimer getTimer(long id) {
+            InMemoryTimer timer = timers.get(id);
+            if (timer == null) {
+                throw new NoSuchObjectLocalException("Timer " + id + " does not exist");
+            }
+            return timer;
+        }
+
+        private static byte[] serialize(Serializable object) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(object);
+                out.close();
+                return bytes.toByteArray();
+            } catch (Exception e) {
+                throw new EJBException(e);
+            }
+        }
+
+        private static Serializable deserialize(byte[] data) {
+            try {
+                ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+                return (Serializable) in.readObject();
+            } catch (Exception e) {
+                throw new EJBException(e);
+            }
+        }
+    }
+
+    private static class InMemoryTimer implements Timer {
+
+        private final InMemoryTimerService timerService;
+        private final long id;
+        private final Date expiration;
+        private final byte[] info;
+
+        InMemoryTimer(InMemoryTimerService timerService, long id, Date expiration, byte[] info) {
+            this.timerService = timerService;
+            this.id = id;
+            this.expiration = expiration;
+            this.info = info;
+        }
+
+        public void cancel() {
+            timerService.cancel(this);
+        }
+
+        public long getTimeRemaining() {
+            return expiration.getTime() - System.currentTimeMillis();
+        }
+
+        public Date getNextTimeout() {
+            return expiration;
+        }
+
+        public ScheduleExpression getSchedule() {
+            throw new IllegalStateException("Not a calendar timer");
+        }
+
+        public boolean isPersistent() {
+            return true;
+        }
+
+        public boolean isCalendarTimer() {
+            return false;
+        }
+
+        public Serializable getInfo() {
+            return InMemoryTimerService.deserialize(info);
+        }
+
+        public TimerHandle getHandle() {
+            return new InMemoryTimerHandle(timerService, id);
+        }
+    }
+
+    private static class InMemoryTimerHandle implements TimerHandle {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient InMemoryTimerService timerService;
+        private final long id;
+
+        InMemoryTimerHandle(InMemoryTimerService timerService, long id) {
+            this.timerService = timerService;
+            this.id = id;
+        }
+
+        public Timer getTimer() {
+            return timerService.getTimer(id);
+        }
+    }
+}
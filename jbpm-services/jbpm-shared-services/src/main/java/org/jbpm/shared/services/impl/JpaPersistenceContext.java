@@ -29,6 +29,7 @@ public class JpaPersistenceContext implements Context {
 
 	public final static String FIRST_RESULT = "firstResult";
     public final static String MAX_RESULTS = "maxResults";
+    public final static String LOCK_TIMEOUT = "lockTimeout";
 	
 	private EntityManager em;
 	
@@ -173,7 +174,13 @@ public class JpaPersistenceContext implements Context {
 						query.setMaxResults((Integer) params.get(name));
 					}
 					continue;
-				} 
+				}
+				else if (LOCK_TIMEOUT.equals(name)) {
+					// lock timeout is passed as query hint - negative values are provider specific
+					// e.g. -2 stands for SKIP LOCKED in Hibernate (on dialects that support it)
+					query.setHint("javax.persistence.lock.timeout", params.get(name));
+					continue;
+				}
 				// skip control parameters
 				else if (QueryManager.ASCENDING_KEY.equals(name) 
 						|| QueryManager.DESCENDING_KEY.equals(name)
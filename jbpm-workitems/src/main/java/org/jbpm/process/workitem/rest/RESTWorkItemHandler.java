@@ -26,7 +26,22 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.xml.bind.JAXBContext;
 
 import org.apache.http.Consts;
@@ -43,6 +58,7 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
@@ -61,14 +77,21 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.util.EntityUtils;
+import org.drools.core.process.instance.impl.WorkItemImpl;
 import org.drools.core.util.StringUtils;
+import org.jbpm.bpmn2.handler.WorkItemHandlerRuntimeException;
 import org.jbpm.process.workitem.AbstractLogOrThrowWorkItemHandler;
+import org.kie.api.runtime.manager.RuntimeEngine;
+import org.kie.api.runtime.manager.RuntimeManager;
 import org.kie.api.runtime.process.WorkItem;
 import org.kie.api.runtime.process.WorkItemManager;
+import org.kie.internal.runtime.manager.RuntimeManagerRegistry;
+import org.kie.internal.runtime.manager.context.ProcessInstanceIdContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,6 +120,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *  of non successful response codes (other than 2XX)</li>
  *  <li>ResultClass - fully qualified class name of the class that response should be transformed to, 
  *  if not given string format will be returned</li>
+ *  <li>Mode - SYNC (default) or ASYNC - in asynchronous mode request is executed on a dedicated thread pool 
+ *  and work item is completed from there once response is received, so engine thread is not blocked. Request is sent
+ *  once engine transaction commits (when no JTA TransactionSynchronizationRegistry is available it is sent right away).
+ *  Failures go through the same error handling as in synchronous mode, when handler is configured to throw 
+ *  the work item is aborted as there is no caller the error could be thrown to. Work item is aborted as well
+ *  when request is rejected after commit because the asynchronous queue is full</li>
+ * </ul>
+ * Connections are kept in a pool shared by all handler instances (with http client 4.4 or newer) so they can be reused
+ * between requests. Pool can be configured with following system properties:
+ * <ul>
+ *  <li>org.jbpm.rest.pool.max.total - max number of connections in total - default 200</li>
+ *  <li>org.jbpm.rest.pool.max.per.route - max number of connections per route - default 20</li>
+ *  <li>org.jbpm.rest.pool.idle.timeout - number of seconds after which idle connections are evicted - default 30</li>
+ *  <li>org.jbpm.rest.async.pool.size - number of threads that execute asynchronous requests - default 10</li>
+ *  <li>org.jbpm.rest.async.queue.size - number of asynchronous requests that can wait for a thread - default 1000</li>
+ *  <li>org.jbpm.rest.async.submit.timeout - number of milliseconds to wait for free space in full queue 
+ *  before request is rejected - default 5000</li>
  * </ul>
  */
 public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
@@ -112,6 +152,13 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
 	
 	// protected for test purpose
 	protected static boolean HTTP_CLIENT_API_43 = true;
+	// shared connection manager requires http client 4.4
+	protected static boolean HTTP_CLIENT_POOLING = true;
+	
+	private static PoolingHttpClientConnectionManager connectionManager;
+	private static ScheduledExecutorService evictor;
+	private static ExecutorService asyncExecutor;
+	private static Thread shutdownHook;
 	
 	static {
 		try {
@@ -120,6 +167,12 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
 		} catch (ClassNotFoundException e) {
 			HTTP_CLIENT_API_43 = false;
 		}		
+		try {
+		    HttpClientBuilder.class.getMethod("setConnectionManagerShared", boolean.class);
+		    HTTP_CLIENT_POOLING = HTTP_CLIENT_API_43;
+		} catch (Throwable e) {
+		    HTTP_CLIENT_POOLING = false;
+		}
 	}
 	
 	/**
@@ -230,11 +283,33 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
         Integer readTimeout = getParamAsInt(params.get("ReadTimeout"));
         if (readTimeout==null) readTimeout = 60000;
 
+        String mode = (String) params.get("Mode");
+        if ("ASYNC".equalsIgnoreCase(mode)) {
+            executeAsync(workItem, manager, urlStr, method, resultClass, handleException, params, authType, readTimeout, connectTimeout);
+            return;
+        }
+        
+        try {
+            Map<String, Object> results = doExecute(urlStr, method, resultClass, handleException, params, authType, readTimeout, connectTimeout);
+            // notify manager that work item has been completed
+            manager.completeWorkItem(workItem.getId(), results);
+        } catch (Exception e) {
+            handleException(e);
+        }
+    }
+    
+    protected Map<String, Object> doExecute(String urlStr, String method, String resultClass, boolean handleException, 
+            Map<String, Object> params, AuthenticationType authType, Integer readTimeout, Integer connectTimeout) throws Exception {
         HttpClient httpClient = getHttpClient(readTimeout, connectTimeout);
 	        
         Object methodObject = configureRequest(method, urlStr, params);
+        if (HTTP_CLIENT_POOLING && methodObject instanceof RequestBuilder) {
+            // client is shared so timeouts are given per request
+            ((RequestBuilder) methodObject).setConfig(buildRequestConfig(readTimeout, connectTimeout));
+        }
+        HttpResponse response = null;
         try {
-            HttpResponse response = doRequestWithAuthorization(httpClient, methodObject, params, authType);
+            response = doRequestWithAuthorization(httpClient, methodObject, params, authType);
         	StatusLine statusLine = response.getStatusLine();
         	int responseCode = statusLine.getStatusCode();
 	        Map<String, Object> results = new HashMap<String, Object>();
@@ -262,11 +337,16 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
 	        }
             results.put("Status", responseCode);
             
-	        // notify manager that work item has been completed
-	        manager.completeWorkItem(workItem.getId(), results);
-    	} catch (Exception e) {
-    		handleException(e);
+            return results;
     	} finally {
+    	    if (response instanceof CloseableHttpResponse) {
+    	        // makes sure pooled connection is given back even if response was not consumed
+    	        try {
+    	            ((CloseableHttpResponse) response).close();
+    	        } catch (IOException e) {
+    	            logger.debug("Error when closing response", e);
+    	        }
+    	    }
     	    try { 
     	        close(httpClient, methodObject);
     	    } catch( Exception e ) { 
@@ -274,6 +354,116 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
     	    }
     	}
     }
+    
+    protected void executeAsync(final WorkItem workItem, final WorkItemManager manager, final String urlStr, final String method, 
+            final String resultClass, final boolean handleException, final Map<String, Object> params, final AuthenticationType authType, 
+            final Integer readTimeout, final Integer connectTimeout) {
+        final long workItemId = workItem.getId();
+        final long processInstanceId = workItem.getProcessInstanceId();
+        final String deploymentId = workItem instanceof WorkItemImpl ? ((WorkItemImpl) workItem).getDeploymentId() : null;
+        
+        final Runnable request = new Runnable() {
+            
+            @Override
+            public void run() {
+                Map<String, Object> results = null;
+                try {
+                    results = doExecute(urlStr, method, resultClass, handleException, params, authType, readTimeout, connectTimeout);
+                    logger.debug("Received async response from {} completing work item {}", urlStr, workItemId);
+                } catch (Exception e) {
+                    try {
+                        handleException(e);
+                        // exception was only logged, same as in synchronous mode work item stays active
+                        return;
+                    } catch (WorkItemHandlerRuntimeException wihRe) {
+                        // there is no caller to throw to, abort the work item so the process instance does not wait forever
+                        logger.error("Asynchronous request to endpoint {} for work item {} failed, aborting work item", urlStr, workItemId, wihRe);
+                    }
+                }
+                finishAsyncWorkItem(manager, deploymentId, processInstanceId, workItemId, results);
+            }
+        };
+        
+        TransactionSynchronizationRegistry txRegistry = getTransactionSynchronizationRegistry();
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            // work item exists only once engine transaction commits, so request is sent after that
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                
+                @Override
+                public void beforeCompletion() {
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        try {
+                            submit(request);
+                        } catch (final RejectedExecutionException e) {
+                            // request is never sent so nothing would complete the work item, abort it instead; transaction is 
+                            // already completed and this thread cannot start new one so abort is done from a separate thread
+                            Thread abort = new Thread(new Runnable() {
+                                
+                                @Override
+                                public void run() {
+                                    try {
+                                        handleException(e);
+                                    } catch (WorkItemHandlerRuntimeException wihRe) {
+                                        // no caller to throw to, work item is aborted below
+                                    }
+                                    logger.error("Asynchronous request to endpoint {} for work item {} was rejected, aborting work item", urlStr, workItemId, e);
+                                    finishAsyncWorkItem(manager, deploymentId, processInstanceId, workItemId, null);
+                                }
+                            }, "jbpm-rest-async-rejected-" + workItemId);
+                            abort.setDaemon(true);
+                            abort.start();
+                        }
+                    } else {
+                        logger.debug("Transaction was rolled back, request to {} for work item {} is not sent", urlStr, workItemId);
+                    }
+                }
+            });
+        } else {
+            // no JTA transaction (registry) available, request is sent right away which might be 
+            // before the work item is persisted, rejection is thrown to the caller
+            submit(request);
+        }
+    }
+    
+    protected void submit(Runnable request) {
+        getAsyncExecutor().execute(request);
+    }
+    
+    protected void finishAsyncWorkItem(WorkItemManager manager, String deploymentId, long processInstanceId, long workItemId, Map<String, Object> results) {
+        RuntimeManager runtimeManager = deploymentId == null ? null : RuntimeManagerRegistry.get().getManager(deploymentId);
+        if (runtimeManager != null) {
+            RuntimeEngine engine = runtimeManager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstanceId));
+            try {
+                finishWorkItem(engine.getKieSession().getWorkItemManager(), workItemId, results);
+            } finally {
+                runtimeManager.disposeRuntimeEngine(engine);
+            }
+        } else {
+            // in case there is no RuntimeManager available use given work item manager, 
+            // as it might be used without runtime manager at all
+            finishWorkItem(manager, workItemId, results);
+        }
+    }
+    
+    protected void finishWorkItem(WorkItemManager manager, long workItemId, Map<String, Object> results) {
+        if (results == null) {
+            manager.abortWorkItem(workItemId);
+        } else {
+            manager.completeWorkItem(workItemId, results);
+        }
+    }
+    
+    protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+        try {
+            return InitialContext.doLookup("java:comp/TransactionSynchronizationRegistry");
+        } catch (NamingException e) {
+            return null;
+        }
+    }
 	
 	protected Integer getParamAsInt(Object param) {
 		if (param == null) {
@@ -609,14 +799,15 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
     protected HttpClient getHttpClient(Integer readTimeout, Integer connectTimeout) {
     	
     	if (HTTP_CLIENT_API_43) {
-            RequestConfig config = RequestConfig.custom()
-                    .setSocketTimeout(readTimeout)
-                    .setConnectTimeout(connectTimeout)
-                    .setConnectionRequestTimeout(connectTimeout)
-                    .build();
+            RequestConfig config = buildRequestConfig(readTimeout, connectTimeout);
 
             HttpClientBuilder clientBuilder = HttpClientBuilder.create()
                     .setDefaultRequestConfig(config);
+            if (HTTP_CLIENT_POOLING) {
+                // client itself is cheap, connections are kept in shared pool that is not closed together with the client
+                clientBuilder.setConnectionManager(getConnectionManager())
+                        .setConnectionManagerShared(true);
+            }
             
             HttpClient httpClient = clientBuilder.build();
             
@@ -631,6 +822,115 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
     	}
     }
     
+    protected RequestConfig buildRequestConfig(Integer readTimeout, Integer connectTimeout) {
+        return RequestConfig.custom()
+                .setSocketTimeout(readTimeout)
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .build();
+    }
+    
+    protected static synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+        if (connectionManager == null) {
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(Integer.parseInt(System.getProperty("org.jbpm.rest.pool.max.total", "200")));
+            connectionManager.setDefaultMaxPerRoute(Integer.parseInt(System.getProperty("org.jbpm.rest.pool.max.per.route", "20")));
+            
+            final long idleTimeout = Long.parseLong(System.getProperty("org.jbpm.rest.pool.idle.timeout", "30"));
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "jbpm-rest-connection-evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            final PoolingHttpClientConnectionManager manager = connectionManager;
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                
+                @Override
+                public void run() {
+                    manager.closeExpiredConnections();
+                    manager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+                }
+            }, idleTimeout, idleTimeout, TimeUnit.SECONDS);
+            
+            if (shutdownHook == null) {
+                shutdownHook = new Thread(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        shutdownConnectionPool();
+                    }
+                }, "jbpm-rest-connection-pool-shutdown");
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+            logger.debug("REST work item handler connection pool created (max total {}, max per route {}, idle timeout {} s)", 
+                    connectionManager.getMaxTotal(), connectionManager.getDefaultMaxPerRoute(), idleTimeout);
+        }
+        return connectionManager;
+    }
+    
+    protected static synchronized ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            int poolSize = Integer.parseInt(System.getProperty("org.jbpm.rest.async.pool.size", "10"));
+            int queueSize = Integer.parseInt(System.getProperty("org.jbpm.rest.async.queue.size", "1000"));
+            final long submitTimeout = Long.parseLong(System.getProperty("org.jbpm.rest.async.submit.timeout", "5000"));
+            // when queue is full submitter waits (bounded) for free space so back pressure is applied on engine threads,
+            // request is never run by the submitter as that would call back into the engine from its own thread
+            asyncExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, 
+                    new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                        
+                        private final AtomicInteger counter = new AtomicInteger();
+                        
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "jbpm-rest-async-" + counter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new RejectedExecutionHandler() {
+                        
+                        @Override
+                        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                            if (executor.isShutdown()) {
+                                throw new RejectedExecutionException("Asynchronous REST request processing was shut down");
+                            }
+                            try {
+                                if (!executor.getQueue().offer(r, submitTimeout, TimeUnit.MILLISECONDS)) {
+                                    throw new RejectedExecutionException("Asynchronous REST request queue is full, request not accepted within " 
+                                            + submitTimeout + " ms");
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new RejectedExecutionException("Interrupted while waiting to submit asynchronous REST request", e);
+                            }
+                        }
+                    });
+        }
+        return asyncExecutor;
+    }
+    
+    /**
+     * Closes all pooled connections and stops asynchronous request processing. 
+     * Pool is recreated on next request. Invoked automatically on JVM shutdown.
+     */
+    public static synchronized void shutdownConnectionPool() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+    }
+    
     protected void close(HttpClient httpClient, Object httpMethod) throws IOException {
     	if (HTTP_CLIENT_API_43) {
     		((CloseableHttpClient) httpClient).close();
@@ -16,13 +16,25 @@
 package org.jbpm.process.workitem.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.ws.rs.ext.RuntimeDelegate;
 
 import org.apache.cxf.endpoint.Server;
@@ -112,6 +124,181 @@ public class RestWorkItemHandlerTest {
         assertEquals("request to endpoint " + workItem.getParameter("Url") +" successfully completed OK", responseMsg);
     }
     
+    @Test
+    public void testGETOperationAsync() throws Exception {
+        RESTWorkItemHandler handler = new RESTWorkItemHandler();
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        
+        WorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        // work item is completed from the callback
+        for (int i = 0; i < 50 && workItem.getResult("Status") == null; i++) {
+            Thread.sleep(100);
+        }
+        
+        String result = (String) workItem.getResult("Result");
+        assertNotNull("result cannot be null", result);
+        assertEquals("Hello from REST", result);
+        int responseCode = (Integer) workItem.getResult("Status");
+        assertEquals(200, responseCode);
+    }
+    
+    @Test
+    public void testGETOperationAsyncFailureAbortsWorkItem() throws Exception {
+        RESTWorkItemHandler handler = new RESTWorkItemHandler();
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL + "/notexisting");
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "HandleResponseErrors", "true" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        TestWorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        for (int i = 0; i < 50 && !manager.aborted; i++) {
+            Thread.sleep(100);
+        }
+        
+        assertTrue(manager.aborted);
+        assertNull(workItem.getResult("Status"));
+    }
+    
+    @Test
+    public void testGETOperationAsyncFailureLoggedOnly() throws Exception {
+        final CountDownLatch handled = new CountDownLatch(1);
+        RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+            @Override
+            protected void handleException(Throwable cause) {
+                super.handleException(cause);
+                handled.countDown();
+            }
+        };
+        handler.setLogThrownException(true);
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL + "/notexisting");
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "HandleResponseErrors", "true" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        TestWorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        // same as in synchronous mode the work item is completed with the error status
+        for (int i = 0; i < 50 && workItem.getResult("Status") == null; i++) {
+            Thread.sleep(100);
+        }
+        
+        assertFalse(manager.aborted);
+        assertNotNull(workItem.getResult("Status"));
+    }
+    
+    @Test
+    public void testGETOperationAsyncSentAfterCommit() throws Exception {
+        final TestTransactionSynchronizationRegistry txRegistry = new TestTransactionSynchronizationRegistry();
+        RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+            @Override
+            protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+                return txRegistry;
+            }
+        };
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        WorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        assertEquals(1, txRegistry.synchronizations.size());
+        
+        txRegistry.complete(Status.STATUS_COMMITTED);
+        for (int i = 0; i < 50 && workItem.getResult("Status") == null; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(200, ((Integer) workItem.getResult("Status")).intValue());
+    }
+    
+    @Test
+    public void testGETOperationAsyncRejectedAfterCommitAbortsWorkItem() throws Exception {
+        final TestTransactionSynchronizationRegistry txRegistry = new TestTransactionSynchronizationRegistry();
+        final CountDownLatch handled = new CountDownLatch(1);
+        RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+            @Override
+            protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+                return txRegistry;
+            }
+            
+            @Override
+            protected void submit(Runnable request) {
+                throw new RejectedExecutionException("Asynchronous REST request queue is full");
+            }
+            
+            @Override
+            protected void handleException(Throwable cause) {
+                handled.countDown();
+                super.handleException(cause);
+            }
+        };
+        handler.setLogThrownException(true);
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        TestWorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        // rejection must not be thrown to the transaction manager completing the transaction
+        txRegistry.complete(Status.STATUS_COMMITTED);
+        
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && !manager.aborted; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(manager.aborted);
+        assertNull(workItem.getResult("Status"));
+    }
+    
+    @Test
+    public void testGETOperationAsyncNotSentOnRollback() throws Exception {
+        final TestTransactionSynchronizationRegistry txRegistry = new TestTransactionSynchronizationRegistry();
+        final AtomicInteger requests = new AtomicInteger();
+        RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+            @Override
+            protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+                return txRegistry;
+            }
+            
+            @Override
+            protected Map<String, Object> doExecute(String urlStr, String method, String resultClass, boolean handleException, 
+                    Map<String, Object> params, AuthenticationType authType, Integer readTimeout, Integer connectTimeout) throws Exception {
+                requests.incrementAndGet();
+                return super.doExecute(urlStr, method, resultClass, handleException, params, authType, readTimeout, connectTimeout);
+            }
+        };
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "Mode", "ASYNC" );
+        
+        TestWorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        txRegistry.complete(Status.STATUS_ROLLEDBACK);
+        
+        // give a chance to wrongly submitted request to complete
+        Thread.sleep(500);
+        assertEquals(0, requests.get());
+        assertNull(workItem.getResult("Status"));
+        assertFalse(manager.aborted);
+    }
+    
     @Test
     public void testGETOperationWithCustomTimeout() {
         RESTWorkItemHandler handler = new RESTWorkItemHandler();
@@ -559,9 +746,49 @@ public class RestWorkItemHandlerTest {
         assertEquals("request to endpoint " + workItem.getParameter("Url") +" successfully completed OK", responseMsg);
     }
     
+    private static class TestTransactionSynchronizationRegistry implements TransactionSynchronizationRegistry {
+        
+        private int status = Status.STATUS_ACTIVE;
+        private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+        
+        void complete(int outcome) {
+            status = Status.STATUS_NO_TRANSACTION;
+            for (Synchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(outcome);
+            }
+        }
+
+        public Object getTransactionKey() {
+            return null;
+        }
+
+        public void putResource(Object key, Object value) {
+        }
+
+        public Object getResource(Object key) {
+            return null;
+        }
+
+        public void registerInterposedSynchronization(Synchronization sync) {
+            synchronizations.add(sync);
+        }
+
+        public int getTransactionStatus() {
+            return status;
+        }
+
+        public void setRollbackOnly() {
+        }
+
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+    
     private class TestWorkItemManager implements WorkItemManager {
         
         private WorkItem workItem;
+        private volatile boolean aborted;
         
         TestWorkItemManager(WorkItem workItem) {
             this.workItem = workItem;
@@ -575,7 +802,7 @@ public class RestWorkItemHandlerTest {
 
         @Override
         public void abortWorkItem(long id) {
-            
+            aborted = true;
         }
 
         @Override